@@ -97,6 +97,15 @@ public class BenchmarkDatasetXmlSerializer
 										.getProperty("gc.collection.time.milli.pre"));
 						addTextChild(s, "nanoseconds",
 								String.valueOf(nanoseconds));
+						if (iterationProperties
+								.containsKey("gc.allocated.bytes.pre"))
+						{
+							addTextChild(
+									s,
+									"allocatedBytes",
+									iterationProperties
+											.getProperty("gc.allocated.bytes.pre"));
+						}
 
 						s = addChild(gcSamplesElement, "object");
 						addTextChild(s, "label", "post");
@@ -111,6 +120,15 @@ public class BenchmarkDatasetXmlSerializer
 										.getProperty("gc.collection.time.milli.post"));
 						addTextChild(s, "nanoseconds",
 								String.valueOf(nanoseconds));
+						if (iterationProperties
+								.containsKey("gc.allocated.bytes.post"))
+						{
+							addTextChild(
+									s,
+									"allocatedBytes",
+									iterationProperties
+											.getProperty("gc.allocated.bytes.post"));
+						}
 					}
 					if (iterationProperties.containsKey("nanoseconds.post"))
 					{
@@ -18,8 +18,18 @@ package com.analog.lyric.benchmarking;
 
 import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Collects garbage collection counts and times and, when supported by the JVM, the number of
+ * bytes allocated by the benchmark thread.
+ * <p>
+ * Allocation is measured on the thread that invokes {@link #startCollection()} and
+ * {@link #finishCollection()}, which is the thread that runs the benchmark iteration.
+ */
 public class GCDataCollector implements DataCollector
 {
 	ArrayList<GarbageCollectorMXBean> _gcs = new ArrayList<GarbageCollectorMXBean>();
@@ -27,6 +37,9 @@ public class GCDataCollector implements DataCollector
 	long _timesPre;
 	long _countsPost;
 	long _timesPost;
+	long _allocatedPre;
+	long _allocatedPost;
+	final @Nullable com.sun.management.ThreadMXBean _threadBean;
 
 	public GCDataCollector()
 	{
@@ -35,6 +48,22 @@ public class GCDataCollector implements DataCollector
 		{
 			_gcs.add(gc);
 		}
+		
+		@Nullable com.sun.management.ThreadMXBean threadBean = null;
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			threadBean = (com.sun.management.ThreadMXBean) bean;
+			if (threadBean.isThreadAllocatedMemorySupported())
+			{
+				threadBean.setThreadAllocatedMemoryEnabled(true);
+			}
+			else
+			{
+				threadBean = null;
+			}
+		}
+		_threadBean = threadBean;
 	}
 
 	@Override
@@ -49,6 +78,7 @@ public class GCDataCollector implements DataCollector
 			_countsPre += gc.getCollectionCount();
 			_timesPre += gc.getCollectionTime();
 		}
+		_allocatedPre = allocatedBytes();
 	}
 
 	@Override
@@ -56,6 +86,7 @@ public class GCDataCollector implements DataCollector
 	{
 		_countsPost = 0;
 		_timesPost = 0;
+		_allocatedPost = allocatedBytes();
 		for (GarbageCollectorMXBean gc : _gcs)
 		{
 			_countsPost += gc.getCollectionCount();
@@ -74,5 +105,25 @@ public class GCDataCollector implements DataCollector
 				String.valueOf(_countsPost));
 		iteration.getProperties().setProperty("gc.collection.time.milli.post",
 				String.valueOf(_timesPost));
+		if (_threadBean != null)
+		{
+			iteration.getProperties().setProperty("gc.allocated.bytes.pre",
+					String.valueOf(_allocatedPre));
+			iteration.getProperties().setProperty("gc.allocated.bytes.post",
+					String.valueOf(_allocatedPost));
+		}
+	}
+
+	/**
+	 * Bytes allocated so far by the current thread, or -1 if not supported.
+	 */
+	long allocatedBytes()
+	{
+		final com.sun.management.ThreadMXBean threadBean = _threadBean;
+		if (threadBean == null)
+		{
+			return -1;
+		}
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
 	}
 }
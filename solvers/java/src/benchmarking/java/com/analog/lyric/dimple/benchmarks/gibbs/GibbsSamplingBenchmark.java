@@ -0,0 +1,105 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.dimple.benchmarks.gibbs;
+
+import java.util.Random;
+
+import com.analog.lyric.benchmarking.Benchmark;
+import com.analog.lyric.benchmarking.GCDataCollector;
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+
+/**
+ * Measures steady-state Gibbs sampling on a grid graph.
+ * <p>
+ * The graph is built, initialized and burned in once when the class is instantiated, so each
+ * iteration only runs {@link GibbsSolverGraph#sample(int)}. The allocated byte counts recorded by
+ * {@link GCDataCollector} should therefore not grow with the number of samples.
+ *
+ * @since 0.08
+ */
+public class GibbsSamplingBenchmark
+{
+	private static final int GRID_SIZE = 20;
+	private static final int SAMPLES = 50000; // Aiming for ~1s execution time
+	
+	private final GibbsSolverGraph _binaryGrid = buildGrid(2);
+	private final GibbsSolverGraph _fiveStateGrid = buildGrid(5);
+
+	@Benchmark(warmupIterations = 1, iterations = 3)
+	public boolean gibbsSampleGrid20x20x2()
+	{
+		_binaryGrid.sample(SAMPLES);
+		return false;
+	}
+
+	@Benchmark(warmupIterations = 1, iterations = 3)
+	public boolean gibbsSampleGrid20x20x5()
+	{
+		_fiveStateGrid.sample(SAMPLES / 2);
+		return false;
+	}
+
+	private static GibbsSolverGraph buildGrid(int domainSize)
+	{
+		final Random rand = new Random(0);
+		final DiscreteDomain domain = DiscreteDomain.range(0, domainSize - 1);
+		final FactorGraph fg = new FactorGraph();
+		final GibbsSolverGraph solver = fg.setSolverFactory(new GibbsSolver());
+
+		final IFactorTable table = FactorTable.create(domain, domain);
+		final double[] weights = new double[domainSize * domainSize];
+		for (int i = 0; i < weights.length; ++i)
+		{
+			weights[i] = rand.nextDouble() + .1;
+		}
+		table.setWeightsDense(weights);
+
+		final Discrete[][] vars = new Discrete[GRID_SIZE][GRID_SIZE];
+		for (int row = 0; row < GRID_SIZE; ++row)
+		{
+			for (int col = 0; col < GRID_SIZE; ++col)
+			{
+				final Discrete var = vars[row][col] = new Discrete(domain);
+				final double[] input = new double[domainSize];
+				for (int i = 0; i < domainSize; ++i)
+				{
+					input[i] = rand.nextDouble() + .1;
+				}
+				var.setInput(input);
+				if (row > 0)
+				{
+					fg.addFactor(table, vars[row - 1][col], var);
+				}
+				if (col > 0)
+				{
+					fg.addFactor(table, vars[row][col - 1], var);
+				}
+			}
+		}
+
+		fg.initialize();
+		solver.burnIn();
+		return solver;
+	}
+}
@@ -30,6 +30,7 @@ import com.analog.lyric.benchmarking.utils.functional.Threshold;
 import com.analog.lyric.benchmarking.utils.functional.TransformFunction;
 import com.analog.lyric.dimple.benchmarks.utils.Image;
 import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.schedulers.GibbsChromaticScheduler;
 
 @SuppressWarnings({"null", "deprecation"})
 public class ImageDenoisingBenchmark
@@ -56,6 +57,32 @@ public class ImageDenoisingBenchmark
 		return false;
 	}
 
+	/**
+	 * Same as {@link #imageDenoisingGibbs()} but using the {@link GibbsChromaticScheduler} to sample
+	 * the pixels of each color concurrently.
+	 */
+	@Benchmark(warmupIterations = 0, iterations = 1)
+	public boolean imageDenoisingGibbsChromatic() throws IOException
+	{
+		FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new com.analog.lyric.dimple.solvers.gibbs.Solver());
+		fg.setScheduler(new GibbsChromaticScheduler());
+		com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph solver = (com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph) fg
+				.getSolver();
+		solver.setNumSamples(1600);
+		solver.useMultithreading(true);
+
+		int imageDimension = 100;
+		int xImageOffset = 800;
+		int yImageOffset = 1925;
+		int xImageSize = imageDimension;
+		int yImageSize = imageDimension;
+		double noiseSigma = 1.0;
+		imageDenoisingInference(fg, "images/1202.4002.3.png", "gibbsChromatic", imageDimension, xImageOffset, yImageOffset, xImageSize,
+				yImageSize, noiseSigma);
+		return false;
+	}
+
 	@Benchmark(warmupIterations = 0, iterations = 1)
 	public boolean imageDenoisingSumProduct() throws IOException
 	{
@@ -36,7 +36,7 @@ public class ImageDenoisingGraph
 	private int _rows;
 	private int _cols;
 
-	ImageDenoisingGraph(final FactorGraph fg, final String factorFileName,
+	public ImageDenoisingGraph(final FactorGraph fg, final String factorFileName,
 			final int xImageSize, final int yImageSize, final int xBlockSize,
 			final int yBlockSize)
 	{
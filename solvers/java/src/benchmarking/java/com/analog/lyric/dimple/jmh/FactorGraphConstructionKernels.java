@@ -0,0 +1,135 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+
+/**
+ * Times construction of a square grid model with pairwise factors that share a single table.
+ * <p>
+ * With a {@code solver} other than {@code "none"}, the solver objects are created as the model is
+ * built, so their construction is timed as well.
+ *
+ * @since 0.08
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class FactorGraphConstructionKernels
+{
+	/*------------
+	 * Parameters
+	 */
+
+	@Param({"none", "sumproduct", "gibbs"})
+	public String solver;
+
+	@Param({"10", "30"})
+	public int gridSize;
+
+	@Param({"2", "16"})
+	public int domainSize;
+
+	/*-------
+	 * State
+	 */
+
+	private DiscreteDomain _domain;
+	private IFactorTable _table;
+
+	@Setup
+	public void setup()
+	{
+		final Random rand = new Random(42);
+		_domain = DiscreteDomain.range(1, domainSize);
+		_table = FactorTable.create(_domain, _domain);
+		final double[] weights = new double[domainSize * domainSize];
+		for (int i = 0; i < weights.length; ++i)
+		{
+			weights[i] = rand.nextDouble() + .01;
+		}
+		_table.setWeightsDense(weights);
+	}
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark
+	public FactorGraph buildGrid()
+	{
+		final FactorGraph fg = new FactorGraph();
+		switch (solver)
+		{
+		case "sumproduct":
+			fg.setSolverFactory(new SumProductSolver());
+			break;
+		case "gibbs":
+			fg.setSolverFactory(new GibbsSolver());
+			break;
+		default:
+			fg.setSolverFactory(null);
+			break;
+		}
+
+		final DiscreteDomain domain = _domain;
+		final IFactorTable table = _table;
+		final int n = gridSize;
+		final Discrete[][] vars = new Discrete[n][n];
+		for (int row = 0; row < n; ++row)
+		{
+			for (int col = 0; col < n; ++col)
+			{
+				final Discrete var = vars[row][col] = new Discrete(domain);
+				if (row > 0)
+				{
+					fg.addFactor(table, vars[row - 1][col], var);
+				}
+				if (col > 0)
+				{
+					fg.addFactor(table, vars[row][col - 1], var);
+				}
+			}
+		}
+		return fg;
+	}
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.FactorTableRepresentation;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+
+/**
+ * Times conversions between {@link FactorTable} representations.
+ * <p>
+ * Each benchmark converts a random table to another representation and back, so that every
+ * invocation starts from the same state and performs two conversions.
+ *
+ * @since 0.08
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class FactorTableKernels
+{
+	/*------------
+	 * Parameters
+	 */
+
+	@Param({"4", "16"})
+	public int domainSize;
+
+	@Param({"2", "3"})
+	public int degree;
+
+	@Param({"0.1", "1.0"})
+	public double density;
+
+	/*-------
+	 * State
+	 */
+
+	private IFactorTable _denseTable;
+	private IFactorTable _sparseTable;
+
+	@Setup
+	public void setup()
+	{
+		final Random rand = new Random(42);
+		final DiscreteDomain[] domains = new DiscreteDomain[degree];
+		for (int i = 0; i < degree; ++i)
+		{
+			domains[i] = DiscreteDomain.range(1, domainSize);
+		}
+
+		final IFactorTable table = FactorTable.create(domains);
+		final double[] weights = new double[table.jointSize()];
+		for (int i = 0; i < weights.length; ++i)
+		{
+			if (rand.nextDouble() < density)
+			{
+				weights[i] = rand.nextDouble() + .01;
+			}
+		}
+		table.setWeightsDense(weights);
+
+		_denseTable = table;
+		_sparseTable = table.clone();
+		_sparseTable.setRepresentation(FactorTableRepresentation.SPARSE_WEIGHT);
+	}
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark
+	public IFactorTable denseToSparse()
+	{
+		final IFactorTable table = _denseTable;
+		table.setRepresentation(FactorTableRepresentation.SPARSE_WEIGHT);
+		table.setRepresentation(FactorTableRepresentation.DENSE_WEIGHT);
+		return table;
+	}
+
+	@Benchmark
+	public IFactorTable weightsToEnergies()
+	{
+		final IFactorTable table = _sparseTable;
+		table.setRepresentation(FactorTableRepresentation.SPARSE_ENERGY);
+		table.setRepresentation(FactorTableRepresentation.SPARSE_WEIGHT);
+		return table;
+	}
+
+	@Benchmark
+	public IFactorTable sparseIndices()
+	{
+		final IFactorTable table = _sparseTable;
+		table.setRepresentation(FactorTableRepresentation.SPARSE_WEIGHT_WITH_INDICES);
+		table.setRepresentation(FactorTableRepresentation.SPARSE_WEIGHT);
+		return table;
+	}
+}
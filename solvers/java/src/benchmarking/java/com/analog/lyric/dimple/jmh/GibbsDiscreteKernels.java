@@ -0,0 +1,123 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsDiscrete;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.samplers.generic.CDFSampler;
+
+/**
+ * Times a single Gibbs update of a discrete variable using the {@link CDFSampler}.
+ * <p>
+ * Builds a single variable connected to {@code degree} pairwise factors whose other variables
+ * have fixed sample values, and times the variable's {@code update()}, which computes the
+ * conditional distribution from the neighboring factors and draws a new sample.
+ *
+ * @since 0.08
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class GibbsDiscreteKernels
+{
+	/*------------
+	 * Parameters
+	 */
+
+	@Param({"4", "32", "256"})
+	public int domainSize;
+
+	@Param({"2", "8"})
+	public int degree;
+
+	/*-------
+	 * State
+	 */
+
+	private GibbsDiscrete _svar;
+
+	@Setup
+	public void setup()
+	{
+		final Random rand = new Random(42);
+		final FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new GibbsSolver());
+		fg.setOption(GibbsOptions.discreteSampler, CDFSampler.class);
+
+		final DiscreteDomain domain = DiscreteDomain.range(1, domainSize);
+		final Discrete var = new Discrete(domain);
+		final double[] input = new double[domainSize];
+		for (int i = 0; i < domainSize; ++i)
+		{
+			input[i] = rand.nextDouble() + .01;
+		}
+		var.setInput(input);
+
+		final IFactorTable table = FactorTable.create(domain, domain);
+		final double[] weights = new double[domainSize * domainSize];
+		for (int i = 0; i < weights.length; ++i)
+		{
+			weights[i] = rand.nextDouble() + .01;
+		}
+		table.setWeightsDense(weights);
+		for (int i = 0; i < degree; ++i)
+		{
+			final Discrete neighbor = new Discrete(domain);
+			neighbor.setFixedValueIndex(rand.nextInt(domainSize));
+			fg.addFactor(table, var, neighbor);
+		}
+
+		fg.initialize();
+
+		_svar = (GibbsDiscrete)var.getSolver();
+	}
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark
+	public void update()
+	{
+		_svar.update();
+	}
+}
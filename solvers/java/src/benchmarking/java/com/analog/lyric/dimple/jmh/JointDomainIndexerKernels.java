@@ -0,0 +1,141 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.domains.JointDomainIndexer;
+
+/**
+ * Times conversions between joint indices and per-domain element indices in
+ * {@link JointDomainIndexer}.
+ * <p>
+ * Each benchmark converts {@value #N} random entries, and scores are reported per entry.
+ *
+ * @since 0.08
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class JointDomainIndexerKernels
+{
+	/*------------
+	 * Parameters
+	 */
+
+	@Param({"2", "16"})
+	public int domainSize;
+
+	@Param({"2", "4"})
+	public int dimensions;
+
+	/*-------
+	 * State
+	 */
+
+	static final int N = 1024;
+
+	private JointDomainIndexer _indexer;
+	private int[] _jointIndices;
+	private int[][] _indices;
+	private int[] _scratch;
+
+	@Setup
+	public void setup()
+	{
+		final Random rand = new Random(42);
+		final DiscreteDomain[] domains = new DiscreteDomain[dimensions];
+		for (int i = 0; i < dimensions; ++i)
+		{
+			domains[i] = DiscreteDomain.range(1, domainSize);
+		}
+		final JointDomainIndexer indexer = _indexer = JointDomainIndexer.create(domains);
+
+		_jointIndices = new int[N];
+		_indices = new int[N][];
+		for (int i = 0; i < N; ++i)
+		{
+			_indices[i] = indexer.randomIndices(rand, null);
+			_jointIndices[i] = indexer.jointIndexFromIndices(_indices[i]);
+		}
+		_scratch = new int[dimensions];
+	}
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public int jointIndexFromIndices()
+	{
+		final JointDomainIndexer indexer = _indexer;
+		int sum = 0;
+		for (int[] indices : _indices)
+		{
+			sum += indexer.jointIndexFromIndices(indices);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public int jointIndexToIndices()
+	{
+		final JointDomainIndexer indexer = _indexer;
+		final int[] indices = _scratch;
+		int sum = 0;
+		for (int jointIndex : _jointIndices)
+		{
+			sum += indexer.jointIndexToIndices(jointIndex, indices)[0];
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public int jointIndexToElementIndex()
+	{
+		final JointDomainIndexer indexer = _indexer;
+		final int domainIndex = dimensions - 1;
+		int sum = 0;
+		for (int jointIndex : _jointIndices)
+		{
+			sum += indexer.jointIndexToElementIndex(jointIndex, domainIndex);
+		}
+		return sum;
+	}
+}
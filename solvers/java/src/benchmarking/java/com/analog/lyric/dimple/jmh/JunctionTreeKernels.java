@@ -0,0 +1,173 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.options.DimpleOptions;
+import com.analog.lyric.dimple.solvers.junctiontree.JunctionTreeOptions;
+import com.analog.lyric.dimple.solvers.junctiontree.JunctionTreeSolver;
+import com.analog.lyric.dimple.solvers.junctiontreemap.JunctionTreeMAPSolver;
+
+/**
+ * Times exact inference on a square grid with random pairwise factors, with and without
+ * {@link JunctionTreeOptions#useCliqueTreeEngine}.
+ * <p>
+ * The junction tree transformation is computed during setup, so only inference is timed. The
+ * {@code solve} benchmark also includes initialization of the transformed graph's solver. The
+ * {@code updateOneInput} benchmark models an online query that changes one input and then reads the
+ * belief of another variable, which exercises incremental and, with {@code lazy}, lazy propagation.
+ *
+ * @since 0.08
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class JunctionTreeKernels
+{
+	/*------------
+	 * Parameters
+	 */
+
+	@Param({"sumproduct", "minsum"})
+	public String solver;
+
+	@Param({"false", "true"})
+	public boolean engine;
+
+	@Param({"5", "7"})
+	public int gridSize;
+
+	@Param({"3"})
+	public int domainSize;
+
+	@Param({"false"})
+	public boolean lazy;
+
+	/*-------
+	 * State
+	 */
+
+	private FactorGraph _fg;
+	private Discrete[] _vars;
+	private Random _rand;
+
+	@Setup
+	public void setup()
+	{
+		final Random rand = new Random(42);
+		final FactorGraph fg = _fg = new FactorGraph();
+		fg.setSolverFactory("minsum".equals(solver) ? new JunctionTreeMAPSolver() : new JunctionTreeSolver());
+		fg.setOption(JunctionTreeOptions.useCliqueTreeEngine, engine);
+		fg.setOption(JunctionTreeOptions.useLazyPropagation, lazy);
+		fg.setOption(DimpleOptions.randomSeed, 42L); // same transformation for every run
+		_rand = rand;
+		_vars = new Discrete[gridSize * gridSize];
+
+		final DiscreteDomain domain = DiscreteDomain.range(1, domainSize);
+		final Discrete[][] vars = new Discrete[gridSize][gridSize];
+		for (int row = 0; row < gridSize; ++row)
+		{
+			for (int col = 0; col < gridSize; ++col)
+			{
+				final Discrete var = vars[row][col] = _vars[row * gridSize + col] = new Discrete(domain);
+				final double[] input = new double[domainSize];
+				for (int j = 0; j < domainSize; ++j)
+				{
+					input[j] = rand.nextDouble() + .01;
+				}
+				var.setInput(input);
+
+				if (row > 0)
+				{
+					fg.addFactor(randomTable(rand, domain), vars[row - 1][col], var);
+				}
+				if (col > 0)
+				{
+					fg.addFactor(randomTable(rand, domain), vars[row][col - 1], var);
+				}
+			}
+		}
+
+		// Compute the transformation before timing.
+		fg.solve();
+	}
+
+	private static IFactorTable randomTable(Random rand, DiscreteDomain domain)
+	{
+		final IFactorTable table = FactorTable.create(domain, domain);
+		final double[] weights = new double[table.jointSize()];
+		for (int i = 0; i < weights.length; ++i)
+		{
+			weights[i] = rand.nextDouble() + .01;
+		}
+		table.setWeightsDense(weights);
+		return table;
+	}
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark
+	public void solve()
+	{
+		_fg.solve();
+	}
+
+	@Benchmark
+	public void iterate()
+	{
+		_fg.getSolver().iterate();
+	}
+
+	@Benchmark
+	public double[] updateOneInput()
+	{
+		final Discrete[] vars = _vars;
+		final double[] input = new double[domainSize];
+		for (int j = 0; j < domainSize; ++j)
+		{
+			input[j] = _rand.nextDouble() + .01;
+		}
+		vars[_rand.nextInt(vars.length)].setInput(input);
+		_fg.solve();
+		return vars[_rand.nextInt(vars.length)].getBelief();
+	}
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.solvers.core.kbest.IKBestFactor;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
+import com.analog.lyric.dimple.solvers.minsum.MinSumSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+
+/**
+ * Times k-best factor updates for a factor that has no factor table, as happens when
+ * {@link BPOptions#maxMessageSize} is smaller than the variable domains.
+ * <p>
+ * The {@code updateEdge} benchmark leaves the input messages unchanged, so the same
+ * indices are selected each time, while {@code updateEdgeChangingInputs} alternates between
+ * two sets of input messages, so the factor function must be evaluated on every update.
+ *
+ * @since 0.08
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class KBestFactorKernels
+{
+	/*------------
+	 * Parameters
+	 */
+
+	@Param({"sumproduct", "minsum"})
+	public String solver;
+
+	@Param({"16", "64"})
+	public int domainSize;
+
+	@Param({"4", "8"})
+	public int k;
+
+	/*-------
+	 * State
+	 */
+
+	private static final int DEGREE = 3;
+
+	private ISolverFactor _sfactor;
+	private double[][] _inputMsgs;
+	private double[][][] _alternateMsgs;
+	private int _counter;
+
+	@Setup
+	public void setup()
+	{
+		final Random rand = new Random(42);
+
+		final FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(solver.equals("minsum") ? new MinSumSolver() : new SumProductSolver());
+		fg.setOption(BPOptions.maxMessageSize, k);
+		final DiscreteDomain domain = DiscreteDomain.range(0.0, domainSize - 1, 1.0);
+		final Discrete[] vars = new Discrete[DEGREE];
+		for (int i = 0; i < DEGREE; ++i)
+		{
+			vars[i] = new Discrete(domain);
+		}
+		_sfactor = fg.addFactor(new Normal(domainSize / 2.0, 1.0 / domainSize), vars).getSolver();
+		fg.initialize();
+
+		_inputMsgs = ((IKBestFactor)_sfactor).getInPortMsgs();
+		_alternateMsgs = new double[2][DEGREE][domainSize];
+		for (double[][] msgs : _alternateMsgs)
+		{
+			for (double[] msg : msgs)
+			{
+				for (int j = 0; j < domainSize; ++j)
+				{
+					msg[j] = rand.nextDouble();
+				}
+			}
+		}
+		for (int i = 0; i < DEGREE; ++i)
+		{
+			System.arraycopy(_alternateMsgs[0][i], 0, _inputMsgs[i], 0, domainSize);
+		}
+	}
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark
+	public void updateEdge()
+	{
+		_sfactor.updateEdge(0);
+	}
+
+	@Benchmark
+	public void updateEdgeChangingInputs()
+	{
+		final double[][] msgs = _alternateMsgs[++_counter & 1];
+		for (int i = 0; i < DEGREE; ++i)
+		{
+			System.arraycopy(msgs[i], 0, _inputMsgs[i], 0, domainSize);
+		}
+		_sfactor.updateEdge(0);
+	}
+}
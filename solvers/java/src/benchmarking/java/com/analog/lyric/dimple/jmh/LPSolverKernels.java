@@ -0,0 +1,201 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.dimple.jmh;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.javailp.Linear;
+import net.sf.javailp.Operator;
+import net.sf.javailp.OptType;
+import net.sf.javailp.Problem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.lp.IntegerEquation;
+import com.analog.lyric.dimple.solvers.lp.IntegerEquation.TermIterator;
+import com.analog.lyric.dimple.solvers.lp.LPSolver;
+import com.analog.lyric.dimple.solvers.lp.LPSolverGraph;
+import com.analog.lyric.dimple.solvers.lp.SparseSimplex;
+
+/**
+ * Measures the built-in LP solver on grid-shaped MAP problems.
+ * <p>
+ * Times building the LP state, translating it into a Java ILP {@link Problem} as done for the
+ * external LP solvers (which are not themselves timed since they require native libraries), and
+ * solving with {@link SparseSimplex} both from scratch and warm-started after an input change.
+ *
+ * @since 0.08
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class LPSolverKernels
+{
+	/*------------
+	 * Parameters
+	 */
+
+	@Param({"5", "10", "20"})
+	public int gridSize;
+
+	@Param({"2", "3"})
+	public int domainSize;
+
+	/*-------
+	 * State
+	 */
+
+	private LPSolverGraph _sfg;
+	private double[] _objective;
+	private double[] _perturbedObjective;
+	private List<IntegerEquation> _constraints;
+	private SparseSimplex _warmSimplex;
+	private boolean _perturbed;
+
+	@Setup
+	public void setup()
+	{
+		final Random rand = new Random(42);
+		final DiscreteDomain domain = DiscreteDomain.range(1, domainSize);
+		final FactorGraph fg = new FactorGraph();
+
+		final Discrete[][] vars = new Discrete[gridSize][gridSize];
+		for (int i = 0; i < gridSize; ++i)
+		{
+			for (int j = 0; j < gridSize; ++j)
+			{
+				final Discrete var = vars[i][j] = new Discrete(domain);
+				final double[] input = new double[domainSize];
+				for (int k = 0; k < domainSize; ++k)
+				{
+					input[k] = rand.nextDouble() + .05;
+				}
+				var.setInput(input);
+				if (i > 0)
+				{
+					fg.addFactor(randomTable(rand, domain), vars[i-1][j], var);
+				}
+				if (j > 0)
+				{
+					fg.addFactor(randomTable(rand, domain), vars[i][j-1], var);
+				}
+			}
+		}
+
+		_sfg = fg.setSolverFactory(new LPSolver());
+		fg.initialize();
+		_sfg.buildLPState();
+		_objective = _sfg.getObjectiveFunction();
+		_constraints = _sfg.getConstraints();
+
+		_perturbedObjective = _objective.clone();
+		for (int i = 0; i < _perturbedObjective.length; i += 7)
+		{
+			_perturbedObjective[i] += .05;
+		}
+
+		_warmSimplex = new SparseSimplex();
+		_warmSimplex.setProblem(_objective, _constraints);
+		_warmSimplex.solve();
+	}
+
+	private static IFactorTable randomTable(Random rand, DiscreteDomain domain)
+	{
+		final IFactorTable table = FactorTable.create(domain, domain);
+		final double[] weights = new double[table.jointSize()];
+		for (int i = 0; i < weights.length; ++i)
+		{
+			weights[i] = rand.nextDouble() + .05;
+		}
+		table.setWeightsDense(weights);
+		return table;
+	}
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark
+	public void buildLPState()
+	{
+		_sfg.buildLPState();
+	}
+
+	@Benchmark
+	public Problem javailpProblem()
+	{
+		final Problem problem = new Problem();
+		final Linear objective = new Linear();
+		for (int i = 0, end = _objective.length; i < end; ++i)
+		{
+			objective.add(_objective[i], i);
+			problem.setVarBounds(0.0, i, 1.0);
+		}
+		problem.setObjective(objective, OptType.MAX);
+
+		for (IntegerEquation constraint : _constraints)
+		{
+			final Linear linear = new Linear();
+			final TermIterator iter = constraint.getTerms();
+			while (iter.advance())
+			{
+				linear.add(iter.getCoefficient(), iter.getVariable());
+			}
+			problem.add(linear, Operator.EQ, constraint.getRHS());
+		}
+		return problem;
+	}
+
+	@Benchmark
+	public double[] simplexCold()
+	{
+		final SparseSimplex simplex = new SparseSimplex();
+		simplex.setProblem(_objective, _constraints);
+		return simplex.solve();
+	}
+
+	@Benchmark
+	public double[] simplexWarm()
+	{
+		// Alternate between two objectives so that every solve starts from a different optimum.
+		_perturbed = !_perturbed;
+		_warmSimplex.setProblem(_perturbed ? _perturbedObjective : _objective, _constraints);
+		return _warmSimplex.solve();
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.jmh;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.analog.lyric.benchmarking.utils.doublespace.DoubleSpaceFactory;
+import com.analog.lyric.benchmarking.utils.functional.GeneratorFunction;
+import com.analog.lyric.dimple.benchmarks.imageDenoising.ImageDenoisingGraph;
+import com.analog.lyric.dimple.benchmarks.stereoVision.Dataset;
+import com.analog.lyric.dimple.benchmarks.stereoVision.StereoVisionGraph;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultiThreadingManager;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultithreadingMode;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+
+/**
+ * Measures how sum-product iterations on the image denoising and stereo vision benchmark
+ * graphs scale with the number of multithreading workers for each {@link MultithreadingMode}.
+ * <p>
+ * The {@code workers} parameter is the number of workers given to the
+ * {@link MultiThreadingManager}; a value of one runs single threaded without the multithreading
+ * manager. To scale up to the number of cores on a given machine, override the parameter on the
+ * JMH command line, e.g. {@code -p workers=1,2,4,8,16}.
+ *
+ * @since 0.08
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class MultithreadingScalingKernels
+{
+	/*------------
+	 * Parameters
+	 */
+
+	@Param({"imageDenoising", "stereoVision"})
+	public String graph;
+
+	@Param({"Phase", "SingleQueue", "PersistentPhase"})
+	public MultithreadingMode mode;
+
+	@Param({"1", "2", "4", "8"})
+	public int workers;
+
+	/*-------
+	 * State
+	 */
+
+	private SFactorGraphBase _sfg;
+
+	@Setup
+	public void setup() throws IOException
+	{
+		final FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new SumProductSolver());
+
+		if ("stereoVision".equals(graph))
+		{
+			final Dataset dataset = new Dataset("art_scaled");
+			new StereoVisionGraph(fg, 75, dataset.getImageL(), dataset.getImageR());
+		}
+		else
+		{
+			final int imageSize = 100;
+			final ImageDenoisingGraph imageGraph =
+				new ImageDenoisingGraph(fg, "imageStats/factorTableValues300dpi.csv", imageSize, imageSize, 4, 4);
+			final Random rand = new Random(42);
+			imageGraph.setInput(DoubleSpaceFactory.generate(new GeneratorFunction() {
+				@Override
+				public double apply(int... coordinates)
+				{
+					return .05 + .9 * rand.nextDouble();
+				}
+			}, imageSize, imageSize));
+		}
+
+		_sfg = (SFactorGraphBase)fg.getSolver();
+		if (workers > 1)
+		{
+			_sfg.useMultithreading(true);
+			final MultiThreadingManager manager = _sfg.getMultithreadingManager();
+			manager.setMode(mode);
+			manager.setNumWorkers(workers);
+		}
+		fg.initialize();
+
+		// Build the dependency graph before timing.
+		_sfg.iterate(1);
+	}
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark
+	public void iterate()
+	{
+		_sfg.iterate(1);
+	}
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.dimple.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.analog.lyric.dimple.factorfunctions.Gamma;
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.Sum;
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.RealDomain;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
+import com.analog.lyric.dimple.solvers.particleBP.ParticleBPOptions;
+import com.analog.lyric.dimple.solvers.particleBP.ParticleBPSolver;
+
+/**
+ * Compares per-combination factor function evaluation on boxed arguments, as done by
+ * Particle BP prior to batching, against {@link FactorFunction#evalEnergies} and times
+ * the Particle BP factor update that uses it, with and without cached factor weights.
+ * <p>
+ * Particles are never resampled here, so with caching enabled the factor updates only
+ * measure the cost of combining the cached weights with the input messages.
+ *
+ * @since 0.08
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class ParticleBPFactorKernels
+{
+	/*------------
+	 * Parameters
+	 */
+
+	@Param({"normal", "sum", "gamma"})
+	public String function;
+
+	@Param({"16", "64"})
+	public int numParticles;
+
+	@Param({"false", "true"})
+	public boolean cacheWeights;
+
+	/*-------
+	 * State
+	 */
+
+	private static final int DEGREE = 3;
+
+	private FactorFunction _function;
+	private double[][] _columns;
+	private Object[][] _rows;
+	private double[] _energies;
+	private ISolverFactor _sfactor;
+
+	@Setup
+	public void setup()
+	{
+		final Random rand = new Random(42);
+
+		switch (function)
+		{
+		case "sum":
+			_function = new Sum(1.0);
+			break;
+		case "gamma":
+			_function = new Gamma(2.0, 1.0);
+			break;
+		default:
+			_function = new Normal(0.0, 1.0);
+			break;
+		}
+
+		_columns = new double[DEGREE][numParticles];
+		_rows = new Object[numParticles][DEGREE];
+		_energies = new double[numParticles];
+		for (int j = 0; j < numParticles; ++j)
+		{
+			for (int i = 0; i < DEGREE; ++i)
+			{
+				final double x = rand.nextDouble() * 2;
+				_columns[i][j] = x;
+				_rows[j][i] = x;
+			}
+		}
+
+		final FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new ParticleBPSolver());
+		fg.setOption(ParticleBPOptions.numParticles, numParticles);
+		fg.setOption(BPOptions.iterations, 1);
+		fg.setOption(ParticleBPOptions.maxCachedFactorWeights, cacheWeights ? Integer.MAX_VALUE : 0);
+		final Real[] vars = new Real[DEGREE];
+		for (int i = 0; i < DEGREE; ++i)
+		{
+			vars[i] = new Real(RealDomain.create(0, 2));
+		}
+		_sfactor = fg.addFactor(_function, vars).getSolver();
+		fg.initialize();
+	}
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark
+	public void evalObjects(Blackhole blackhole)
+	{
+		for (Object[] row : _rows)
+		{
+			blackhole.consume(_function.eval(row));
+		}
+	}
+
+	@Benchmark
+	public double[] evalEnergies()
+	{
+		_function.evalEnergies(_columns, numParticles, _energies);
+		return _energies;
+	}
+
+	@Benchmark
+	public void factorUpdateEdge()
+	{
+		_sfactor.updateEdge(0);
+	}
+
+	@Benchmark
+	public void factorUpdate()
+	{
+		_sfactor.update();
+	}
+}
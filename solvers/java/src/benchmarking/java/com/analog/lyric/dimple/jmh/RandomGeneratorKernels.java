@@ -0,0 +1,150 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.dimple.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.jet.random.Beta;
+import cern.jet.random.Binomial;
+import cern.jet.random.Gamma;
+import cern.jet.random.engine.RandomEngine;
+
+import com.analog.lyric.math.DimpleRandom;
+import com.analog.lyric.math.DimpleRandomGenerator;
+import com.analog.lyric.math.SplittableRandomGenerator;
+
+/**
+ * Measures throughput of the random variate generators used by the Gibbs samplers.
+ * <p>
+ * The {@code mersenne} generator is the pair of Mersenne twisters (Apache and Colt) that Dimple
+ * previously shared across all threads; {@code splittable} is the {@link DimpleRandom} stream
+ * now provided per thread by the environment. The {@code lookup} benchmarks additionally include the
+ * cost of obtaining the current thread's stream through {@link DimpleRandomGenerator}.
+ *
+ * @since 0.08
+ * @see SplittableRandomGenerator
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class RandomGeneratorKernels
+{
+	/*------------
+	 * Parameters
+	 */
+	
+	@Param({"mersenne", "splittable"})
+	public String generator;
+	
+	/*-------
+	 * State
+	 */
+	
+	private RandomGenerator _rand;
+	private Gamma _gamma;
+	private Beta _beta;
+	private Binomial _binomial;
+	private @Nullable DimpleRandom _random;
+	
+	@Setup
+	public void setup()
+	{
+		if ("mersenne".equals(generator))
+		{
+			_rand = new MersenneTwister(42);
+			final RandomEngine engine = new cern.jet.random.engine.MersenneTwister(42);
+			_gamma = new Gamma(1, 1, engine);
+			_beta = new Beta(1, 1, engine);
+			_binomial = new Binomial(1, 0.5, engine);
+		}
+		else
+		{
+			final DimpleRandom random = new DimpleRandom(42);
+			_rand = random.getGenerator();
+			_gamma = random.getGamma();
+			_beta = random.getBeta();
+			_random = random;
+		}
+		DimpleRandomGenerator.setSeed(42);
+	}
+	
+	/*------------
+	 * Benchmarks
+	 */
+	
+	@Benchmark
+	public double uniform()
+	{
+		return _rand.nextDouble();
+	}
+	
+	@Benchmark
+	public int uniformInt()
+	{
+		return _rand.nextInt(10);
+	}
+	
+	@Benchmark
+	public double gaussian()
+	{
+		return _rand.nextGaussian();
+	}
+	
+	@Benchmark
+	public double gamma()
+	{
+		return _gamma.nextDouble(2.5, 1);
+	}
+	
+	@Benchmark
+	public double beta()
+	{
+		return _beta.nextDouble(2, 5);
+	}
+	
+	@Benchmark
+	public int binomial()
+	{
+		return _random != null ? _random.nextBinomial(20, .3) : _binomial.nextInt(20, .3);
+	}
+	
+	@Benchmark
+	public double lookupUniform()
+	{
+		return DimpleRandomGenerator.rand().nextDouble();
+	}
+}
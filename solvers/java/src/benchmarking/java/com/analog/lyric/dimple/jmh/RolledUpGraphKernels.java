@@ -0,0 +1,125 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.dimple.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.repeated.DiscreteStream;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+
+/**
+ * Measures the cost of advancing a rolled-up graph as a function of its buffer size.
+ * <p>
+ * Builds a hidden Markov model over a {@link DiscreteStream} with no data source and an
+ * infinite number of steps, and times {@link FactorGraph#advance()} alone and together with
+ * a single step of the solver.
+ *
+ * @since 0.08
+ * @see FactorGraph#addRepeatedFactorWithBufferSize
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class RolledUpGraphKernels
+{
+	/*------------
+	 * Parameters
+	 */
+
+	@Param({"10", "50", "200", "500"})
+	public int bufferSize;
+
+	@Param({"8"})
+	public int domainSize;
+
+	/*-------
+	 * State
+	 */
+
+	private FactorGraph _fg;
+	private ISolverFactorGraph _sfg;
+
+	@Setup
+	public void setup()
+	{
+		final Random rand = new Random(42);
+		final DiscreteDomain domain = DiscreteDomain.range(1, domainSize);
+
+		final IFactorTable transition = FactorTable.create(domain, domain);
+		final double[] weights = new double[transition.jointSize()];
+		for (int i = 0; i < weights.length; ++i)
+		{
+			weights[i] = rand.nextDouble() + .01;
+		}
+		transition.setWeightsDense(weights);
+
+		final Discrete x0 = new Discrete(domain), x1 = new Discrete(domain);
+		final FactorGraph slice = new FactorGraph(x0, x1);
+		slice.addFactor(transition, x0, x1);
+
+		_fg = new FactorGraph();
+		_fg.setSolverFactory(new SumProductSolver());
+		final DiscreteStream stream = new DiscreteStream(domain);
+		_fg.addRepeatedFactorWithBufferSize(slice, bufferSize, stream, stream.getSlice(1));
+		_fg.setNumStepsInfinite(true);
+		_fg.initialize();
+
+		_sfg = _fg.getSolver();
+		_sfg.solveOneStep();
+	}
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark
+	public void advance()
+	{
+		_fg.advance();
+	}
+
+	@Benchmark
+	public void advanceAndSolve()
+	{
+		_fg.advance();
+		_sfg.solveOneStep();
+	}
+}
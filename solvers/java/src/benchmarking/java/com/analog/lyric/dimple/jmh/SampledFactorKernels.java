@@ -0,0 +1,127 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.schedulers.FloodingScheduler;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductOptions;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
+import com.analog.lyric.dimple.solvers.sumproduct.sampledfactor.SampledFactor;
+
+/**
+ * Times sum-product iterations over a chain of {@link SampledFactor}s, with and without warm-started
+ * chains and samples shared across the edges of each factor.
+ * <p>
+ * Warm start only saves burn-in, so its benefit depends on the number of burn-in scans relative
+ * to the number of samples (1000 by default).
+ *
+ * @since 0.08
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class SampledFactorKernels
+{
+	/*------------
+	 * Parameters
+	 */
+
+	@Param({"false", "true"})
+	public boolean warmStart;
+
+	@Param({"false", "true"})
+	public boolean shareSamples;
+
+	@Param({"10", "200"})
+	public int burnInScans;
+
+	/*-------
+	 * State
+	 */
+
+	private static final int NUM_FACTORS = 8;
+
+	/**
+	 * Nonlinear coupling with no custom sum-product implementation.
+	 */
+	public static class Coupling extends FactorFunction
+	{
+		@Override
+		public double evalEnergy(Value[] values)
+		{
+			final double diff = values[0].getDouble() - Math.sin(values[1].getDouble());
+			return 2 * diff * diff;
+		}
+	}
+
+	private SumProductSolverGraph _sfg;
+
+	@Setup
+	public void setup()
+	{
+		final FactorGraph fg = new FactorGraph();
+		fg.setScheduler(new FloodingScheduler());
+		_sfg = fg.setSolverFactory(new SumProductSolver());
+		_sfg.setOption(SumProductOptions.sampledFactorWarmStart, warmStart);
+		_sfg.setOption(SumProductOptions.sampledFactorShareSamples, shareSamples);
+		_sfg.setOption(GibbsOptions.burnInScans, burnInScans);
+
+		Real previous = new Real();
+		previous.setInputObject(new Normal(0, 1));
+		for (int i = 0; i < NUM_FACTORS; ++i)
+		{
+			final Real next = new Real();
+			fg.addFactor(new Coupling(), next, previous);
+			previous = next;
+		}
+		fg.initialize();
+	}
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark
+	public void iterate()
+	{
+		_sfg.iterate(1);
+	}
+}
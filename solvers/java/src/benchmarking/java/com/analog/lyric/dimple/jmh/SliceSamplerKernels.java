@@ -0,0 +1,107 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.options.DimpleOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsReal;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.samplers.generic.SliceSampler;
+
+/**
+ * Times a single Gibbs update of a real variable using the {@link SliceSampler}.
+ * <p>
+ * Builds a single variable with a normal prior connected to {@code degree} nonlinear
+ * {@link SampledFactorKernels.Coupling} factors, which have no conjugate sampler, whose other
+ * variables have fixed values. Each update evaluates the neighboring factors once per slice
+ * sampler step.
+ *
+ * @since 0.08
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class SliceSamplerKernels
+{
+	/*------------
+	 * Parameters
+	 */
+
+	@Param({"1", "4", "16"})
+	public int degree;
+
+	/*-------
+	 * State
+	 */
+
+	private GibbsReal _svar;
+
+	@Setup
+	public void setup()
+	{
+		final Random rand = new Random(42);
+		final FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new GibbsSolver());
+		fg.setOption(GibbsOptions.realSampler, SliceSampler.class);
+		fg.setOption(DimpleOptions.randomSeed, 42L);
+
+		final Real var = new Real();
+		var.setInputObject(new Normal(0, 1));
+		for (int i = 0; i < degree; ++i)
+		{
+			final Real neighbor = new Real();
+			neighbor.setFixedValue(rand.nextGaussian());
+			fg.addFactor(new SampledFactorKernels.Coupling(), var, neighbor);
+		}
+
+		fg.initialize();
+
+		_svar = (GibbsReal)var.getSolver();
+	}
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark
+	public void update()
+	{
+		_svar.update();
+	}
+}
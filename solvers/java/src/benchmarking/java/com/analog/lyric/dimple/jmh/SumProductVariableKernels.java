@@ -0,0 +1,157 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.dimple.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductDiscrete;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductOptions;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+
+/**
+ * Compares sum-product discrete variable updates computed in the log domain against updates
+ * computed directly on message weights.
+ * <p>
+ * Builds a single variable connected to {@code degree} pairwise factors, sets random incoming
+ * messages and times the variable's {@code update()}, {@code updateEdge()} and {@code getBelief()}
+ * methods. Agreement between the two computations is checked by {@code TestSumProductDiscreteUpdates}.
+ *
+ * @since 0.08
+ * @see SumProductOptions#logDomainVariableUpdates
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class SumProductVariableKernels
+{
+	/*------------
+	 * Parameters
+	 */
+
+	@Param({"false", "true"})
+	public boolean logDomain;
+
+	@Param({"4", "32", "256"})
+	public int domainSize;
+
+	@Param({"2", "4", "8"})
+	public int degree;
+
+	/*-------
+	 * State
+	 */
+
+	private SumProductDiscrete _svar;
+
+	@Setup
+	public void setup()
+	{
+		final Random rand = new Random(42);
+		final FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new SumProductSolver());
+		fg.setOption(SumProductOptions.logDomainVariableUpdates, logDomain);
+
+		final DiscreteDomain domain = DiscreteDomain.range(1, domainSize);
+		final Discrete var = new Discrete(domain);
+		var.setInput(randomWeights(rand));
+		
+		final IFactorTable table = FactorTable.create(domain, domain);
+		table.setWeightsDense(randomWeights(rand, domainSize * domainSize));
+		for (int i = 0; i < degree; ++i)
+		{
+			fg.addFactor(table, var, new Discrete(domain));
+		}
+		
+		fg.initialize();
+		
+		_svar = (SumProductDiscrete)var.getSolver();
+		for (int port = 0; port < degree; ++port)
+		{
+			_svar.setInputMsgValues(port, randomWeights(rand));
+		}
+	}
+	
+	private double[] randomWeights(Random rand)
+	{
+		final double[] weights = randomWeights(rand, domainSize);
+		double sum = 0;
+		for (double weight : weights)
+		{
+			sum += weight;
+		}
+		for (int i = 0; i < weights.length; ++i)
+		{
+			weights[i] /= sum;
+		}
+		return weights;
+	}
+
+	private static double[] randomWeights(Random rand, int size)
+	{
+		final double[] weights = new double[size];
+		for (int i = 0; i < size; ++i)
+		{
+			weights[i] = rand.nextDouble() + .01;
+		}
+		return weights;
+	}
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark
+	public void update()
+	{
+		_svar.update();
+	}
+
+	@Benchmark
+	public void updateEdge()
+	{
+		_svar.updateEdge(0);
+	}
+
+	@Benchmark
+	public double[] getBelief()
+	{
+		return _svar.getBelief();
+	}
+}
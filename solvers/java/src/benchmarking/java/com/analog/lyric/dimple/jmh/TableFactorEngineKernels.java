@@ -0,0 +1,171 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph;
+import com.analog.lyric.dimple.solvers.minsum.MinSumSolver;
+import com.analog.lyric.dimple.solvers.optimizedupdate.UpdateApproach;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+
+/**
+ * Compares discrete table factor updates using per-entry index arrays against
+ * updates using packed factor table indices, and against the optimized update algorithm.
+ * <p>
+ * Builds a single factor with a random sparse table and times the factor's {@code update()}
+ * and {@code updateEdge()} methods. The {@code packed} parameter has no effect with the
+ * {@link UpdateApproach#OPTIMIZED OPTIMIZED} update approach, which only applies to
+ * {@code update()}.
+ *
+ * @since 0.08
+ * @see BPOptions#usePackedTableIndices
+ * @see BPOptions#updateApproach
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("null")
+public class TableFactorEngineKernels
+{
+	/*------------
+	 * Parameters
+	 */
+
+	@Param({"sumproduct", "minsum"})
+	public String solver;
+
+	@Param({"false", "true"})
+	public boolean packed;
+
+	@Param({"NORMAL", "OPTIMIZED"})
+	public UpdateApproach updateApproach;
+
+	@Param({"8", "32"})
+	public int domainSize;
+
+	@Param({"3", "4"})
+	public int degree;
+
+	@Param({"0.05", "0.5"})
+	public double density;
+
+	/*-------
+	 * State
+	 */
+
+	private ISolverFactor _sfactor;
+
+	@Setup
+	public void setup()
+	{
+		final Random rand = new Random(42);
+		final FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory("minsum".equals(solver) ? new MinSumSolver() : new SumProductSolver());
+
+		final DiscreteDomain domain = DiscreteDomain.range(1, domainSize);
+		final Discrete[] vars = new Discrete[degree];
+		final DiscreteDomain[] domains = new DiscreteDomain[degree];
+		for (int i = 0; i < degree; ++i)
+		{
+			vars[i] = new Discrete(domain);
+			domains[i] = domain;
+
+			final double[] input = new double[domainSize];
+			for (int j = 0; j < domainSize; ++j)
+			{
+				input[j] = rand.nextDouble() + .01;
+			}
+			vars[i].setInput(input);
+		}
+
+		final IFactorTable table = FactorTable.create(domains);
+		final int jointSize = table.jointSize();
+		final int sparseSize = Math.max(1, (int)(jointSize * density));
+		final int[] jointIndices = new int[sparseSize];
+		final double[] weights = new double[sparseSize];
+		for (int si = 0, ji = 0; si < sparseSize; ++ji)
+		{
+			// Selection sampling gives sorted joint indices with the requested density.
+			if (rand.nextInt(jointSize - ji) < sparseSize - si)
+			{
+				jointIndices[si] = ji;
+				weights[si] = rand.nextDouble() + .01;
+				++si;
+			}
+		}
+		table.setWeightsSparse(jointIndices, weights);
+
+		final Factor factor = fg.addFactor(table, vars);
+
+		final ISolverFactorGraph sfg = fg.getSolver();
+		sfg.setOption(BPOptions.updateApproach, updateApproach);
+		sfg.setOption(BPOptions.usePackedTableIndices, packed);
+		fg.initialize();
+
+		// Propagate the inputs to the factor so that its input messages are not uniform.
+		for (Discrete var : vars)
+		{
+			var.getSolver().update();
+		}
+
+		_sfactor = factor.getSolver();
+
+		// Force lazily computed index representations before timing.
+		_sfactor.update();
+	}
+
+	/*------------
+	 * Benchmarks
+	 */
+
+	@Benchmark
+	public void update()
+	{
+		_sfactor.update();
+	}
+
+	@Benchmark
+	public void updateEdge()
+	{
+		_sfactor.updateEdge(0);
+	}
+}
@@ -0,0 +1,30 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+/**
+ * JMH microbenchmarks for individual solver kernels.
+ * <p>
+ * Unlike the application level benchmarks in {@code com.analog.lyric.dimple.benchmarks}, these
+ * are run through the JMH harness, which handles JIT warmup, forking and result reporting.
+ * <p>
+ * The {@code runJmhBenchmarks} Gradle task runs them and writes the results in JSON form to
+ * {@code build/reports/jmh/results.json}, so that regressions can be tracked across builds.
+ * Extra JMH arguments may be passed using {@code -Pjmh}, e.g.
+ * {@code gradle runJmhBenchmarks -Pjmh="TableFactorEngineKernels -p solver=minsum"}.
+ */
+@NonNullByDefault
+package com.analog.lyric.dimple.jmh;
+import org.eclipse.jdt.annotation.NonNullByDefault;
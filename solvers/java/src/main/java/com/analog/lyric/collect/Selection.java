@@ -36,32 +36,26 @@ public abstract class Selection
 	 * Returns the indices of the k lowest elements.
 	 * <p>
 	 * Returns a newly allocated array of the indices of the {@code k} lowest
-	 * elements in {@linkplain Comparable natural order}.
+	 * elements in {@linkplain Comparable natural order}, in increasing order of index.
+	 * When there are ties for the kth lowest value, those with the lowest indices are chosen.
 	 * <p>
 	 * @param array is a non-empty array in any order.
 	 * @param k is in the range [1, array.length]
+	 * @see #findFirstKIndices(double[], int, int[], double[])
 	 */
 	public static int [] findFirstKIndices(double [] array, int k)
 	{
-		 //select the kth
-		 double val = select(array,k-1);
-		 
-		 int [] result = new int[k];
-		 
-		 for (int index = 0, i = -1; index < k; ++index)
-		 {
-			 while (array[++i] > val) {}
-			 result[index] = i;
-		 }
-
-		 return result;
+		int [] result = new int[k];
+		findFirstKIndices(array, k, result, new double[array.length]);
+		return result;
 	}
 
 	/**
 	 * Returns the indices of the k lowest elements.
 	 * <p>
 	 * Returns a newly allocated array of the indices of the {@code k} lowest
-	 * elements in {@linkplain Comparable natural order}.
+	 * elements in {@linkplain Comparable natural order}, in increasing order of index.
+	 * When there are ties for the kth lowest value, those with the lowest indices are chosen.
 	 * <p>
 	 * @param array is a non-empty array in any order.
 	 * @param k is in the range [1, array.length]
@@ -71,12 +65,19 @@ public abstract class Selection
 		 //select the kth
 		 T obj = select(array,k-1);
 		 
+		 // Ties with the kth value are only used to fill out the elements strictly below it
+		 int nTies = k;
+		 for (T t : array)
+			 if (t.compareTo(obj) < 0)
+				 --nTies;
+		 
 		 int [] result = new int[k];
 		 
-		 for (int index = 0, i = -1; index < k; index++)
+		 for (int index = 0, i = 0; index < k; ++i)
 		 {
-			 while (array[++i].compareTo(obj) > 0) {}
-			 result[index] = i;
+			 final int c = array[i].compareTo(obj);
+			 if (c < 0 || c == 0 && --nTies >= 0)
+				 result[index++] = i;
 		 }
 		 
 		 return result;
@@ -87,31 +88,26 @@ public abstract class Selection
 	 * Returns the indices of the k highest elements.
 	 * <p>
 	 * Returns a newly allocated array of the indices of the {@code k} highest
-	 * elements in {@linkplain Comparable natural order}.
+	 * elements in {@linkplain Comparable natural order}, in increasing order of index.
+	 * When there are ties for the kth highest value, those with the lowest indices are chosen.
 	 * <p>
 	 * @param array is a non-empty array in any order.
 	 * @param k is in the range [1, array.length]
+	 * @see #findLastKIndices(double[], int, int[], double[])
 	 */
 	public static int [] findLastKIndices(double [] array, int k)
 	{
-		double val = select(array,array.length-k);
-		
-		 int [] result = new int[k];
-		 
-		 for (int index = 0, i = -1; index < k; index++)
-		 {
-			 while (array[++i] < val) {}
-			 result[index] = i;
-		 }
-		 
-		 return result;
+		int [] result = new int[k];
+		findLastKIndices(array, k, result, new double[array.length]);
+		return result;
 	}
 	
 	/**
 	 * Returns the indices of the k highest elements.
 	 * <p>
 	 * Returns a newly allocated array of the indices of the {@code k} highest
-	 * elements in {@linkplain Comparable natural order}.
+	 * elements in {@linkplain Comparable natural order}, in increasing order of index.
+	 * When there are ties for the kth highest value, those with the lowest indices are chosen.
 	 * <p>
 	 * @param array is a non-empty array in any order.
 	 * @param k is in the range [1, array.length]
@@ -120,18 +116,91 @@ public abstract class Selection
 	{
 		T obj = select(array,array.length-k);
 		
+		 // Ties with the kth value are only used to fill out the elements strictly above it
+		 int nTies = k;
+		 for (T t : array)
+			 if (t.compareTo(obj) > 0)
+				 --nTies;
+		 
 		 int [] result = new int[k];
 		 
-		 for (int index = 0, i = -1; index < k; index++)
+		 for (int index = 0, i = 0; index < k; ++i)
 		 {
-			 while (array[++i].compareTo(obj) < 0) {}
-			 result[index] = i;
+			 final int c = array[i].compareTo(obj);
+			 if (c > 0 || c == 0 && --nTies >= 0)
+				 result[index++] = i;
 		 }
 		 
 		 return result;
 	}
 
 
+	/**
+	 * Computes the indices of the k lowest elements without allocating.
+	 * <p>
+	 * Writes the indices of the {@code k} lowest elements of {@code array} into the first
+	 * {@code k} entries of {@code indices} in increasing order. When there are ties for the kth
+	 * lowest value, those with the lowest indices are chosen.
+	 * <p>
+	 * @param array is a non-empty array in any order.
+	 * @param k is in the range [1, array.length]
+	 * @param indices is an array of length at least {@code k} that will hold the result.
+	 * @param scratch is an array of length at least {@code array.length} used as working storage.
+	 * @since 0.08
+	 */
+	public static void findFirstKIndices(double[] array, int k, int[] indices, double[] scratch)
+	{
+		final int n = array.length;
+		System.arraycopy(array, 0, scratch, 0, n);
+		final double val = select(scratch, 0, n - 1, k - 1);
+		
+		// Ties with the kth value are only used to fill out the elements strictly below it
+		int nTies = k;
+		for (int i = 0; i < n; ++i)
+			if (array[i] < val)
+				--nTies;
+		
+		for (int index = 0, i = 0; index < k; ++i)
+		{
+			final double d = array[i];
+			if (d < val || d == val && --nTies >= 0)
+				indices[index++] = i;
+		}
+	}
+	
+	/**
+	 * Computes the indices of the k highest elements without allocating.
+	 * <p>
+	 * Writes the indices of the {@code k} highest elements of {@code array} into the first
+	 * {@code k} entries of {@code indices} in increasing order. When there are ties for the kth
+	 * highest value, those with the lowest indices are chosen.
+	 * <p>
+	 * @param array is a non-empty array in any order.
+	 * @param k is in the range [1, array.length]
+	 * @param indices is an array of length at least {@code k} that will hold the result.
+	 * @param scratch is an array of length at least {@code array.length} used as working storage.
+	 * @since 0.08
+	 */
+	public static void findLastKIndices(double[] array, int k, int[] indices, double[] scratch)
+	{
+		final int n = array.length;
+		System.arraycopy(array, 0, scratch, 0, n);
+		final double val = select(scratch, 0, n - 1, n - k);
+		
+		// Ties with the kth value are only used to fill out the elements strictly above it
+		int nTies = k;
+		for (int i = 0; i < n; ++i)
+			if (array[i] > val)
+				--nTies;
+		
+		for (int index = 0, i = 0; index < k; ++i)
+		{
+			final double d = array[i];
+			if (d > val || d == val && --nTies >= 0)
+				indices[index++] = i;
+		}
+	}
+
 	/**
 	 * Returns the kth element in array in natural order.
 	 * <p>
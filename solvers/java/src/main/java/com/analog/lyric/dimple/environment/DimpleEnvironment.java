@@ -18,6 +18,7 @@ package com.analog.lyric.dimple.environment;
 
 import java.security.SecureRandom;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
@@ -44,6 +45,8 @@ import com.analog.lyric.dimple.solvers.core.DimpleSolverRegistry;
 import com.analog.lyric.dimple.solvers.core.proposalKernels.IProposalKernel;
 import com.analog.lyric.dimple.solvers.gibbs.samplers.generic.IGenericSampler;
 import com.analog.lyric.dimple.solvers.interfaces.IFactorGraphFactory;
+import com.analog.lyric.math.DimpleRandom;
+import com.analog.lyric.math.SplittableRandomGenerator;
 import com.analog.lyric.options.IOptionHolder;
 import com.analog.lyric.options.IOptionKey;
 
@@ -119,6 +122,16 @@ import com.analog.lyric.options.IOptionKey;
  * {@linkplain #logWarning(String, Object...) warnings}. The environment's {@link #logger()} instance can
  * be used directly for cases when these methods are not sufficient.
  * 
+ * <h2>Random numbers</h2>
+ * 
+ * The environment provides each thread with its own {@linkplain #getRandom() random stream}, which is
+ * used by the Gibbs samplers, proposal kernels and other randomized algorithms in Dimple. All of the
+ * streams are derived from a single {@linkplain #getRandomSeed() root seed}, which may be set using
+ * {@link #setRandomSeed(long)}. Code that needs reproducible results from work distributed across
+ * multiple threads should give each unit of work its own stream obtained from {@link #createRandom(long)}
+ * or {@link DimpleRandom#split()} and install it on the thread that does the work using
+ * {@link #setThreadRandom(DimpleRandom)}.
+ * 
  * @since 0.07
  * @author Christopher Barber
  */
@@ -191,6 +204,72 @@ public class DimpleEnvironment extends DimpleOptionHolder
 	@GuardedBy("_eventListenerLock")
 	private volatile @Nullable DimpleEventListener _eventListener = null;
 	private final Object _eventListenerLock = new Object();
+	
+	@GuardedBy("_randomLock")
+	private volatile long _randomSeed = new SecureRandom().nextLong();
+	@GuardedBy("_randomLock")
+	private volatile int _randomEpoch = 0;
+	private final Object _randomLock = new Object();
+	
+	/**
+	 * Index of next stream to be assigned to a thread that has not been given one explicitly.
+	 * Stream zero is reserved for the thread that most recently set the seed.
+	 */
+	private final AtomicLong _nextRandomStream = new AtomicLong(1);
+	
+	private final ThreadLocal<ThreadRandom> _threadRandom = new ThreadLocal<ThreadRandom>() {
+		@Override
+		protected ThreadRandom initialValue()
+		{
+			return new ThreadRandom();
+		}
+	};
+	
+	/**
+	 * Per-thread random stream state.
+	 */
+	private static final class ThreadRandom
+	{
+		private @Nullable DimpleRandom _random = null;
+		
+		/**
+		 * Value of {@link DimpleEnvironment#_randomEpoch} when {@link #_random} was assigned.
+		 */
+		private int _epoch;
+		
+		/**
+		 * True if {@link #_random} was set explicitly by {@link DimpleEnvironment#setThreadRandom}, in
+		 * which case it is not replaced when the seed changes on another thread.
+		 */
+		private boolean _explicit;
+	}
+	
+	/**
+	 * Snapshot of a thread's random stream state, as returned by {@link DimpleEnvironment#saveThreadRandom()}.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final class ThreadRandomState
+	{
+		private final @Nullable DimpleRandom _random;
+		private final int _epoch;
+		private final boolean _explicit;
+		
+		private ThreadRandomState(ThreadRandom threadRandom)
+		{
+			_random = threadRandom._random;
+			_epoch = threadRandom._epoch;
+			_explicit = threadRandom._explicit;
+		}
+		
+		/**
+		 * The stream at the time the state was saved, or null if none had been assigned.
+		 */
+		public @Nullable DimpleRandom getRandom()
+		{
+			return _random;
+		}
+	}
 
 	/*--------------
 	 * Construction
@@ -588,6 +667,144 @@ public class DimpleEnvironment extends DimpleOptionHolder
 		return _logger.getAndSet(logger);
 	}
 	
+	/*------------------------
+	 * Random number methods
+	 */
+	
+	/**
+	 * The root seed from which the environment's random streams are derived.
+	 * <p>
+	 * This is initialized to a random value when the environment is constructed.
+	 * <p>
+	 * @since 0.08
+	 * @see #setRandomSeed(long)
+	 */
+	public long getRandomSeed()
+	{
+		return _randomSeed;
+	}
+	
+	/**
+	 * Sets the root seed from which the environment's random streams are derived.
+	 * <p>
+	 * The current thread's stream is immediately replaced by stream zero for the new seed (i.e.
+	 * {@code createRandom(0)}), so that the subsequent sequence of random values generated on this
+	 * thread is a deterministic function of the seed. Streams for other threads that have not been
+	 * {@linkplain #setThreadRandom set explicitly} will be replaced the next time they are accessed
+	 * with a stream derived from the new seed.
+	 * <p>
+	 * @since 0.08
+	 */
+	public void setRandomSeed(long seed)
+	{
+		final ThreadRandom threadRandom = _threadRandom.get();
+		synchronized (_randomLock)
+		{
+			_randomSeed = seed;
+			threadRandom._epoch = ++_randomEpoch;
+			_nextRandomStream.set(1);
+		}
+		threadRandom._random = createRandom(0);
+		threadRandom._explicit = false;
+	}
+	
+	/**
+	 * Creates new random stream with given {@code index} derived from the {@linkplain #getRandomSeed() root seed}.
+	 * <p>
+	 * Returns a new object with the same state each time it is invoked with the same index and seed, so
+	 * this can be used to give a numbered set of workers reproducible streams regardless of the threads
+	 * on which they are run.
+	 * <p>
+	 * @since 0.08
+	 * @see #setThreadRandom(DimpleRandom)
+	 */
+	public DimpleRandom createRandom(long index)
+	{
+		return new DimpleRandom(SplittableRandomGenerator.streamSeed(_randomSeed, index));
+	}
+	
+	/**
+	 * The random stream for this environment on the current thread.
+	 * <p>
+	 * If the stream has not been {@linkplain #setThreadRandom(DimpleRandom) set explicitly} for this thread,
+	 * it will be assigned the next unused stream index for the current seed. The returned object
+	 * is not thread safe and should not be handed to another thread.
+	 * <p>
+	 * @since 0.08
+	 */
+	public DimpleRandom getRandom()
+	{
+		final ThreadRandom threadRandom = _threadRandom.get();
+		DimpleRandom random = threadRandom._random;
+		if (random == null || !threadRandom._explicit && threadRandom._epoch != _randomEpoch)
+		{
+			threadRandom._epoch = _randomEpoch;
+			threadRandom._random = random = createRandom(_nextRandomStream.getAndIncrement());
+			threadRandom._explicit = false;
+		}
+		return random;
+	}
+	
+	/**
+	 * Sets the random stream for this environment on the current thread.
+	 * <p>
+	 * This is intended for use by code that distributes randomized work across threads, which
+	 * should set the stream for each unit of work before running it and restore the previous state
+	 * afterward:
+	 * <blockquote>
+	 * <pre>
+	 * ThreadRandomState saved = env.saveThreadRandom();
+	 * env.setThreadRandom(random);
+	 * try { ... } finally { env.restoreThreadRandom(saved); }
+	 * </pre>
+	 * </blockquote>
+	 * <p>
+	 * A stream that has been set explicitly is not replaced when the seed is changed from another thread.
+	 * Restoring the previous stream using this method would also mark that stream as explicit, so use
+	 * {@link #restoreThreadRandom} to put back a stream that was assigned implicitly.
+	 * <p>
+	 * @param random is the new stream for the current thread. If null, the thread's stream will be
+	 * reassigned the next time it is {@linkplain #getRandom() accessed}.
+	 * @return the previous stream for the current thread, or null if none had been assigned.
+	 * @since 0.08
+	 */
+	public @Nullable DimpleRandom setThreadRandom(@Nullable DimpleRandom random)
+	{
+		final ThreadRandom threadRandom = _threadRandom.get();
+		final DimpleRandom prev = threadRandom._random;
+		threadRandom._random = random;
+		threadRandom._explicit = random != null;
+		return prev;
+	}
+	
+	/**
+	 * Saves the state of the random stream for this environment on the current thread, including
+	 * whether it was {@linkplain #setThreadRandom set explicitly}.
+	 * <p>
+	 * @see #restoreThreadRandom(ThreadRandomState)
+	 * @since 0.08
+	 */
+	public ThreadRandomState saveThreadRandom()
+	{
+		return new ThreadRandomState(_threadRandom.get());
+	}
+	
+	/**
+	 * Restores the state of the random stream for this environment on the current thread
+	 * from a previous call to {@link #saveThreadRandom()} on the same thread.
+	 * <p>
+	 * A stream that had been assigned implicitly is still replaced when the seed changes.
+	 * <p>
+	 * @since 0.08
+	 */
+	public void restoreThreadRandom(ThreadRandomState state)
+	{
+		final ThreadRandom threadRandom = _threadRandom.get();
+		threadRandom._random = state._random;
+		threadRandom._epoch = state._epoch;
+		threadRandom._explicit = state._explicit;
+	}
+	
 	/*--------------------
 	 * Various registries
 	 */
@@ -33,6 +33,7 @@ import com.analog.lyric.dimple.model.variables.VariableChangeEvent;
 import com.analog.lyric.dimple.model.variables.VariableFixedValueChangeEvent;
 import com.analog.lyric.dimple.model.variables.VariableInputChangeEvent;
 import com.analog.lyric.dimple.solvers.core.FactorToVariableMessageEvent;
+import com.analog.lyric.dimple.solvers.core.MessageConvergenceEvent;
 import com.analog.lyric.dimple.solvers.core.VariableToFactorMessageEvent;
 import com.analog.lyric.dimple.solvers.gibbs.GibbsScoredVariableUpdateEvent;
 import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverVariableEvent;
@@ -94,6 +95,7 @@ public enum StandardDimpleEvents implements Iterable<Class<? extends DimpleEvent
 			GibbsScoredVariableUpdateEvent.class,
 			GibbsSolverVariableEvent.class,
 			GibbsVariableUpdateEvent.class,
+			MessageConvergenceEvent.class,
 			ModelEvent.class,
 			SolverEvent.class,
 			SolverFactorEvent.class,
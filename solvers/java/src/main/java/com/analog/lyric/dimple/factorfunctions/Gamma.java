@@ -131,6 +131,52 @@ public class Gamma extends FactorFunction implements IParametricFactorFunction
     	}
 	}
     
+    @Override
+    public final void evalEnergies(double[][] columns, int count, double[] energies)
+    {
+    	// Unlike evalEnergy, this does not modify the parameter fields, so it may be invoked concurrently.
+    	int first = 0;
+    	final double[] alphas = _parametersConstant ? null : columns[first++];
+    	final double[] betas = _parametersConstant ? null : columns[first++];
+    	final int length = columns.length;
+    	final int N = length - first;
+    	double alpha = _alpha, beta = _beta, logBeta = _logBeta;
+    	double alphaMinusOne = _alphaMinusOne, logGammaAlphaMinusAlphaLogBeta = _logGammaAlphaMinusAlphaLogBeta;
+    	for (int j = 0; j < count; j++)
+    	{
+    		if (alphas != null && betas != null)
+    		{
+    			alpha = alphas[j];
+    			beta = betas[j];
+    			if (alpha <= 0 || beta <= 0)
+    			{
+    				energies[j] = Double.POSITIVE_INFINITY;
+    				continue;
+    			}
+    			logBeta = Math.log(beta);
+    			if (alpha != 1)
+    			{
+    				alphaMinusOne = alpha - 1;
+    				logGammaAlphaMinusAlphaLogBeta = org.apache.commons.math3.special.Gamma.logGamma(alpha) - alpha * logBeta;
+    			}
+    		}
+    		
+    		double sum = 0;
+    		for (int index = first; index < length; index++)
+    		{
+    			final double x = columns[index][j];
+    			if (x < 0)
+    			{
+    				sum = Double.POSITIVE_INFINITY;
+    				break;
+    			}
+    			sum += alpha == 1 ? x * beta : x * beta - Math.log(x) * alphaMinusOne;
+    		}
+    		final double energy = sum + (alpha == 1 ? -N * logBeta : N * logGammaAlphaMinusAlphaLogBeta);
+    		energies[j] = energy != energy ? Double.POSITIVE_INFINITY : energy;
+    	}
+    }
+    
     @Override
     public final boolean isDirected() {return true;}
     @Override
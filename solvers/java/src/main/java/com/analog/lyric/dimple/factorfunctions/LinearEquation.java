@@ -77,6 +77,27 @@ public class LinearEquation extends FactorFunction
     	}
     }
     
+    @Override
+    public final void evalEnergies(double[][] columns, int count, double[] energies)
+    {
+    	final int length = columns.length;
+    	final double[] out = columns[0];
+    	for (int j = 0; j < count; j++)
+    	{
+    		double sum = 1;
+    		for (int i = 1; i < length; i++)
+    			sum += _weightVector[i-1] * columns[i][j];
+    		if (_smoothingSpecified)
+    		{
+    			final double diff = sum - out[j];
+    			final double energy = diff*diff*_beta;
+    			energies[j] = energy != energy ? Double.POSITIVE_INFINITY : energy;
+    		}
+    		else
+    			energies[j] = (sum == out[j]) ? 0 : Double.POSITIVE_INFINITY;
+    	}
+    }
+    
     
     @Override
     public final boolean isDirected() {return true;}
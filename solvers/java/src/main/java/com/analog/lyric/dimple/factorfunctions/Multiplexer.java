@@ -16,8 +16,13 @@
 
 package com.analog.lyric.dimple.factorfunctions;
 
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.analog.lyric.collect.ArrayUtil;
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.model.values.IndexedValue;
 import com.analog.lyric.dimple.model.values.Value;
 
 
@@ -92,6 +97,39 @@ public class Multiplexer extends FactorFunction
     	arguments[0].setFrom(arguments[arguments[1].getInt() + 2]);
     }
     
+    @Override
+    public final int updateDeterministicLimit(int numEdges)
+    {
+    	// An update never costs more than a full update, and can avoid changing the output.
+    	return numEdges;
+    }
+    
+    @Override
+    public final boolean updateDeterministic(Value[] values, Collection<IndexedValue> oldValues,
+    	AtomicReference<int[]> changedOutputsHolder)
+    {
+    	final int nValues = values.length;
+    	final int selectedIndex = values[1].getInt() + 2;
+    	
+    	for (IndexedValue old : oldValues)
+    	{
+    		final int changedIndex = old.getIndex();
+    		if (changedIndex < 1 || nValues <= changedIndex)
+    		{
+    			throw new IndexOutOfBoundsException();
+    		}
+    		
+    		if (changedIndex == 1 || changedIndex == selectedIndex)
+    		{
+    			return super.updateDeterministic(values, oldValues, changedOutputsHolder);
+    		}
+    	}
+    	
+    	// Neither the selector nor the selected input changed, so the output is unchanged.
+    	changedOutputsHolder.set(ArrayUtil.EMPTY_INT_ARRAY);
+    	return true;
+    }
+    
     // Factor-specific methods
     public final boolean hasSmoothing()
     {
@@ -123,6 +123,42 @@ public class Normal extends FactorFunction implements IParametricFactorFunction
     	return sum * _precisionOverTwo - N * _logSqrtPrecisionOver2Pi;
 	}
     
+    @Override
+    public final void evalEnergies(double[][] columns, int count, double[] energies)
+    {
+    	int first = 0;
+    	double mean = _mean;
+    	double precisionOverTwo = _precisionOverTwo;
+    	double logSqrtPrecisionOver2Pi = _logSqrtPrecisionOver2Pi;
+    	final double[] means = _parametersConstant ? null : columns[first++];
+    	final double[] precisions = _parametersConstant ? null : columns[first++];
+    	final int length = columns.length;
+    	final int N = length - first;
+    	for (int j = 0; j < count; j++)
+    	{
+    		if (means != null && precisions != null)
+    		{
+    			mean = means[j];
+    			final double precision = precisions[j];
+    			if (precision < 0)
+    			{
+    				energies[j] = Double.POSITIVE_INFINITY;
+    				continue;
+    			}
+    			precisionOverTwo = precision*0.5;
+    			logSqrtPrecisionOver2Pi = Math.log(precision)*0.5 - _logSqrt2pi;
+    		}
+    		double sum = 0;
+    		for (int index = first; index < length; index++)
+    		{
+    			final double relInput = columns[index][j] - mean;
+    			sum += relInput*relInput;
+    		}
+    		final double energy = sum * precisionOverTwo - N * logSqrtPrecisionOver2Pi;
+    		energies[j] = energy != energy ? Double.POSITIVE_INFINITY : energy;
+    	}
+    }
+    
     
     @Override
     public final boolean isDirected() {return true;}
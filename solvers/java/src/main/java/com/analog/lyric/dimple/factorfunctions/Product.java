@@ -72,6 +72,27 @@ public class Product extends FactorFunction
     	}
     }
     
+    @Override
+    public final void evalEnergies(double[][] columns, int count, double[] energies)
+    {
+    	final int length = columns.length;
+    	final double[] out = columns[0];
+    	for (int j = 0; j < count; j++)
+    	{
+    		double product = 1;
+    		for (int i = 1; i < length; i++)
+    			product *= columns[i][j];
+    		if (_smoothingSpecified)
+    		{
+    			final double diff = product - out[j];
+    			final double energy = diff*diff*_beta;
+    			energies[j] = energy != energy ? Double.POSITIVE_INFINITY : energy;
+    		}
+    		else
+    			energies[j] = (product == out[j]) ? 0 : Double.POSITIVE_INFINITY;
+    	}
+    }
+    
     
     @Override
     public final boolean isDirected() {return true;}
@@ -16,7 +16,11 @@
 
 package com.analog.lyric.dimple.factorfunctions;
 
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.model.values.IndexedValue;
 import com.analog.lyric.dimple.model.values.Value;
 
 
@@ -72,6 +76,27 @@ public class Sum extends FactorFunction
     	}
     }
     
+    @Override
+    public final void evalEnergies(double[][] columns, int count, double[] energies)
+    {
+    	final int length = columns.length;
+    	final double[] out = columns[0];
+    	for (int j = 0; j < count; j++)
+    	{
+    		double sum = 0;
+    		for (int i = 1; i < length; i++)
+    			sum += columns[i][j];
+    		if (_smoothingSpecified)
+    		{
+    			final double diff = sum - out[j];
+    			final double energy = diff*diff*_beta;
+    			energies[j] = energy != energy ? Double.POSITIVE_INFINITY : energy;
+    		}
+    		else
+    			energies[j] = (sum == out[j]) ? 0 : Double.POSITIVE_INFINITY;
+    	}
+    }
+    
     
     @Override
     public final boolean isDirected() {return true;}
@@ -90,4 +115,73 @@ public class Sum extends FactorFunction
     	
     	arguments[0].setDouble(sum);		// Replace the output value
     }
+    
+    @Override
+    public final int updateDeterministicLimit(int numEdges)
+    {
+    	// Each incremental update uses 2 adds versus <number-of-inputs> for a full update.
+    	return _smoothingSpecified ? 0 : (numEdges - 1) / 2;
+    }
+    
+    @Override
+    public final boolean updateDeterministic(Value[] values, Collection<IndexedValue> oldValues,
+    	AtomicReference<int[]> changedOutputsHolder)
+    {
+    	final int nValues = values.length;
+    	final Value outputValue = values[0];
+    	double output = outputValue.getDouble();
+    	
+    	boolean incremental = false;
+    	
+    	doIncremental:
+    	{
+    		// Only update incrementally when all of the values involved are integers, for which
+    		// the result is exact. Otherwise rounding error would accumulate in the output.
+    		if (!isExactInteger(output))
+    		{
+    			break doIncremental;
+    		}
+    		
+    		for (IndexedValue old : oldValues)
+    		{
+    			final int changedIndex = old.getIndex();
+    			if (changedIndex < 1 || nValues <= changedIndex)
+    			{
+    				throw new IndexOutOfBoundsException();
+    			}
+    			
+    			final double newInput = values[changedIndex].getDouble();
+    			final double oldInput = old.getValue().getDouble();
+    			if (!isExactInteger(newInput) || !isExactInteger(oldInput))
+    			{
+    				break doIncremental;
+    			}
+    			output += newInput - oldInput;
+    		}
+    		
+    		if (!isExactInteger(output))
+    		{
+    			break doIncremental;
+    		}
+    		
+    		outputValue.setDouble(output);
+    		changedOutputsHolder.set(null);
+    		incremental = true;
+    	}
+    	
+    	return incremental || super.updateDeterministic(values, oldValues, changedOutputsHolder);
+    }
+    
+    /*-----------------
+     * Private methods
+     */
+    
+    /**
+     * True if {@code value} is an integer small enough that sums and differences of such
+     * values are computed exactly.
+     */
+    private static boolean isExactInteger(double value)
+    {
+    	return value == Math.rint(value) && Math.abs(value) <= 0x1p51;
+    }
 }
@@ -408,7 +408,42 @@ public abstract class FactorFunction implements IFactorFunction
     {
     	return evalEnergy(values);
     }
-    
+
+    /**
+     * Evaluate the energy of a batch of real-valued argument lists.
+     * <p>
+     * The arguments are given in column order: {@code columns[i][j]} is the value of the
+     * ith argument of the jth argument list. The energy of the jth argument list is written to
+     * {@code energies[j]} for each j less than {@code count}. As with {@link #evalEnergy(Object...)},
+     * a NaN energy is reported as positive infinity. The contents of {@code columns} are not modified.
+     * <p>
+     * This is intended for solvers such as Particle BP that evaluate the function over many
+     * combinations of numeric values. The default implementation wraps the values in a
+     * single reused array of {@link RealValue}s and invokes {@link #evalEnergy(Value[])} on each
+     * argument list. Functions whose energy is a simple closed form should override this method
+     * to compute directly from the columns.
+     * <p>
+     * @param columns contains one column per argument, each of length at least {@code count}.
+     * @param count is the number of argument lists to evaluate.
+     * @param energies is the output array, of length at least {@code count}.
+     * @since 0.08
+     */
+    public void evalEnergies(double[][] columns, int count, double[] energies)
+    {
+    	final int size = columns.length;
+    	final Value[] values = new Value[size];
+    	for (int i = 0; i < size; ++i)
+    		values[i] = RealValue.create();
+
+    	for (int j = 0; j < count; ++j)
+    	{
+    		for (int i = 0; i < size; ++i)
+    			values[i].setDouble(columns[i][j]);
+    		final double energy = evalEnergy(values);
+    		energies[j] = energy != energy ? Double.POSITIVE_INFINITY : energy;
+    	}
+    }
+
     /*-------------------
      * Protected methods
      */
@@ -42,6 +42,11 @@ public class FactorFunctionWithConstants extends FactorFunction
 	private int[] _edgeToIndex;
 	private int _largestConstantIndex;
 	private int _smallestConstantIndex;
+	private final boolean _numericConstants;
+	
+	// Argument columns for evalEnergies, whose constant columns are filled for the first _expandedCapacity rows
+	private double[][] _expandedColumns = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
+	private int _expandedCapacity = 0;
 	public final static int NO_PORT = -1;
 	
 	@Internal
@@ -66,10 +71,13 @@ public class FactorFunctionWithConstants extends FactorFunction
 		}
 
 		_constantValues = new Value[numConstants];
+		boolean numericConstants = true;
 		for (int i = numConstants; --i>=0;)
 		{
 			_constantValues[i] = Value.create(_constants[i]);
+			numericConstants &= _constants[i] instanceof Number;
 		}
+		_numericConstants = numericConstants;
 		
 		// Map edges to indices, where an edge is an actually attached variable that isn't a constant
 		_smallestConstantIndex = _constantIndices[0];
@@ -241,6 +249,43 @@ public class FactorFunctionWithConstants extends FactorFunction
 		return _factorFunction.evalEnergy(expandValues(values));
 	}
 	
+	@Override
+	public void evalEnergies(double[][] columns, int count, double[] energies)
+	{
+		if (!_numericConstants)
+		{
+			super.evalEnergies(columns, count, energies);
+			return;
+		}
+		
+		// Insert a column for each constant, repeating its value for each argument list. The constant
+		// columns are kept between calls and only recreated when a larger count is requested.
+		final int numConstants = _constants.length;
+		final int numExpandedColumns = columns.length + numConstants;
+		double[][] expandedColumns = _expandedColumns;
+		if (expandedColumns.length != numExpandedColumns || _expandedCapacity < count)
+		{
+			final int capacity = Math.max(count, _expandedCapacity);
+			expandedColumns = new double[numExpandedColumns][];
+			for (int iConst = 0; iConst < numConstants; iConst++)
+			{
+				final double[] column = new double[capacity];
+				Arrays.fill(column, _constantValues[iConst].getDouble());
+				expandedColumns[_constantIndices[iConst]] = column;
+			}
+			_expandedColumns = expandedColumns;
+			_expandedCapacity = capacity;
+		}
+		for (int iExp = 0, iOrig = 0, iConst = 0; iExp < numExpandedColumns; iExp++)
+		{
+			if (iConst < numConstants && iExp == _constantIndices[iConst])
+				iConst++;
+			else
+				expandedColumns[iExp] = columns[iOrig++];
+		}
+		_factorFunction.evalEnergies(expandedColumns, count, energies);
+	}
+	
 	@Override
 	public boolean isDirected()
 	{
@@ -201,7 +201,24 @@ public interface IFactorTable extends IFactorTableBase
 	 * sparse energies.
 	 */
 	public int[][] getIndicesSparseUnsafe();
-	
+
+	/**
+	 * Returns the sparse element indices packed into a single row-major array.
+	 * <p>
+	 * The element index for dimension {@code d} of sparse entry {@code si} is stored at offset
+	 * {@code si * getDimensions() + d}. This holds the same information as {@link #getIndicesSparseUnsafe()}
+	 * but in one contiguous array, which avoids an object dereference per table entry in solver inner loops.
+	 * <p>
+	 * <b>IMPORTANT</b>: the array is cached by the table and must be treated as a read-only value.
+	 * A new array will be computed if the sparse indices of the table change, so callers should not hold on
+	 * to the result across modifications of the table.
+	 * <p>
+	 * Has the same implicit effect on the table representation as {@link #getIndicesSparseUnsafe()}.
+	 *
+	 * @since 0.08
+	 */
+	public int[] getIndicesSparsePackedUnsafe();
+
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -81,6 +81,13 @@ public abstract class SparseFactorTableBase extends FactorTableBase implements I
 	 */
 	int[][] _sparseIndices = ArrayUtil.EMPTY_INT_ARRAY_ARRAY;
 	
+	/**
+	 * Lazily computed row-major copy of {@link #_sparseIndices} returned by
+	 * {@link #getIndicesSparsePackedUnsafe()}. Recomputed whenever {@link #_sparseIndices} is
+	 * replaced by a different array.
+	 */
+	private transient @Nullable PackedIndices _packedIndices = null;
+	
 	/**
 	 * Information computed about the table based on its values. This field is zeroed out whenever
 	 * table weights or energies are changed.
@@ -96,6 +103,28 @@ public abstract class SparseFactorTableBase extends FactorTableBase implements I
 	 */
 	int _computedMask = 0;
 
+	/**
+	 * Immutable pairing of packed indices with the array they were computed from, so that
+	 * the two can be published together without synchronization.
+	 */
+	private static final class PackedIndices
+	{
+		private final int[][] _source;
+		private final int[] _packed;
+		
+		private PackedIndices(int[][] source, int nDimensions)
+		{
+			final int size = source.length;
+			final int[] packed = new int[size * nDimensions];
+			for (int si = 0, offset = 0; si < size; ++si, offset += nDimensions)
+			{
+				System.arraycopy(source[si], 0, packed, offset, nDimensions);
+			}
+			_source = source;
+			_packed = packed;
+		}
+	}
+	
 	/*--------------
 	 * Construction
 	 */
@@ -222,6 +251,18 @@ public abstract class SparseFactorTableBase extends FactorTableBase implements I
 		return getEnergySlice(null, sliceDimension, values);
 	}
 
+	@Override
+	public final int[] getIndicesSparsePackedUnsafe()
+	{
+		final int[][] indices = getIndicesSparseUnsafe();
+		PackedIndices packedIndices = _packedIndices;
+		if (packedIndices == null || packedIndices._source != indices)
+		{
+			_packedIndices = packedIndices = new PackedIndices(indices, getDimensions());
+		}
+		return packedIndices._packed;
+	}
+	
 	@Override
 	public final FactorTableRepresentation getRepresentation()
 	{
@@ -227,8 +227,18 @@ public class FactorGraphStream
 		}
 	}
 
+	/**
+	 * Shifts the buffered nested graphs by one step, discarding the oldest.
+	 * <p>
+	 * Messages are moved from each nested graph to its predecessor, so the cost is linear in
+	 * the {@linkplain #getBufferSize() buffer size}.
+	 */
 	public void advance()
 	{
+		// FIXME: ring-buffer mode is not implemented. Rotating a head index instead of moving messages
+		// requires the oldest nested graph to be reconnected to the newest stream variables, the
+		// blast-from-the-past factors to follow the oldest variables, and the solver edge state and
+		// schedule to be updated for those ports without a full re-initialization.
 	
 		//Deal with parameters
 		//for each parameter
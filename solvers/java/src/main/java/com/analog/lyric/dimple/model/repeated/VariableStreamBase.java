@@ -63,8 +63,16 @@ public abstract class VariableStreamBase implements IVariableStreamSlice
 		return _variables.contains(vb);
 	}
 	
+	/**
+	 * Shifts the inputs and solver state of the buffered variables by one step, pushing the oldest
+	 * belief to the {@linkplain #getDataSink() data sink} and reading the newest input from the
+	 * {@linkplain #getDataSource() data source}.
+	 * <p>
+	 * The cost is linear in the number of buffered variables.
+	 */
 	public void advanceState()
 	{
+		// FIXME: rotate a head index instead of moving state once FactorGraphStream supports a ring buffer
 		final IDataSink dataSink = _dataSink;
 		if (dataSink != null)
 		{
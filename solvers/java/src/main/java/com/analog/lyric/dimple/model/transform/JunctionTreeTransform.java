@@ -58,6 +58,7 @@ import com.analog.lyric.dimple.model.transform.VariableEliminator.VariableCost;
 import com.analog.lyric.dimple.model.variables.Discrete;
 import com.analog.lyric.dimple.model.variables.Variable;
 import com.analog.lyric.dimple.model.variables.VariableList;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.HashMultimap;
@@ -146,6 +147,7 @@ public class JunctionTreeTransform
 	
 	private int _nEliminationAttempts = DEFAULT_MAX_TRANSFORMATION_ATTEMPTS;
 	private boolean _useConditioning = false;
+	private boolean _useMultithreading = false;
 	private CostFunction[] _costFunctions = {};
 	private Random _rand = new Random();
 	
@@ -212,6 +214,31 @@ public class JunctionTreeTransform
 		return this;
 	}
 	
+	/**
+	 * If true, then the attempts to determine the variable elimination ordering will be run
+	 * concurrently using the {@link ThreadPool}.
+	 * <p>
+	 * False by default.
+	 * @see #useMultithreading(boolean)
+	 * @see VariableEliminator#generateInParallel
+	 * @since 0.08
+	 */
+	public boolean useMultithreading()
+	{
+		return _useMultithreading;
+	}
+	
+	/**
+	 * Sets {@link #useMultithreading()} to specified value.
+	 * @return this
+	 * @since 0.08
+	 */
+	public JunctionTreeTransform useMultithreading(boolean value)
+	{
+		_useMultithreading = value;
+		return this;
+	}
+	
 	/**
 	 * The cost functions used by {@link VariableEliminator} to determine the variable
 	 * elimination ordering. If empty (the default), then all of the standard {@link VariableCost}
@@ -624,6 +651,41 @@ public class JunctionTreeTransform
 		return transform(model, buildEliminationOrder(model));
 	}
 
+	/**
+	 * Computes the variable elimination ordering that {@link #transform(FactorGraph)} would use for the model.
+	 * <p>
+	 * This searches for an ordering using up to {@link #maxTransformationAttempts()} attempts. Since the
+	 * ordering only depends on the structure of the model, it can be computed once and passed to
+	 * {@link #transform(FactorGraph, VariableEliminator.Ordering)} for models that share that structure.
+	 * <p>
+	 * @since 0.08
+	 * @see JunctionTreeTransformCache
+	 */
+	public Ordering buildEliminationOrder(FactorGraph model)
+	{
+		// Find max cardinality of existing factors - we can't do better than that.
+		int maxCardinality = 0;
+		for (Factor factor : model.getFactors())
+		{
+			if (factor.hasFactorTable())
+			{
+				maxCardinality = Math.max(maxCardinality, factor.getFactorTable().getDomainIndexer().getCardinality());
+			}
+		}
+		
+		VariableEliminator.Stats threshold = new VariableEliminator.Stats().maxCliqueCardinality(maxCardinality);
+		
+		VariableEliminator eliminator = new VariableEliminator(model, _useConditioning, _rand);
+		
+		if (_useMultithreading)
+		{
+			return VariableEliminator.generateInParallel(eliminator, _nEliminationAttempts, threshold,
+				ThreadPool.getNumThreads(), _costFunctions);
+		}
+		
+		return VariableEliminator.generate(eliminator, _nEliminationAttempts, threshold, _costFunctions);
+	}
+
 	/**
 	 * Build junction tree transformation using a specified variable elimination ordering.
 	 * @param eliminationOrder is an ordering of the variables in the {@code model}. It must include
@@ -787,25 +849,6 @@ public class JunctionTreeTransform
 	// Private methods
 	//
 	
-	private Ordering buildEliminationOrder(FactorGraph model)
-	{
-		// Find max cardinality of existing factors - we can't do better than that.
-		int maxCardinality = 0;
-		for (Factor factor : model.getFactors())
-		{
-			if (factor.hasFactorTable())
-			{
-				maxCardinality = Math.max(maxCardinality, factor.getFactorTable().getDomainIndexer().getCardinality());
-			}
-		}
-		
-		VariableEliminator.Stats threshold = new VariableEliminator.Stats().maxCliqueCardinality(maxCardinality);
-		
-		VariableEliminator eliminator = new VariableEliminator(model, _useConditioning, _rand);
-		
-		return VariableEliminator.generate(eliminator, _nEliminationAttempts, threshold, _costFunctions);
-	}
-
 	private int disconnectConditionedVariables(Ordering eliminationOrder, JunctionTreeTransformMap transformMap)
 	{
 		final int nConditioned = _useConditioning ? eliminationOrder.stats.conditionedVariables() : 0;
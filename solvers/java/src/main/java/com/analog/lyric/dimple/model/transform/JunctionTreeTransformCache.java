@@ -0,0 +1,398 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.model.transform;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.domains.Domain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.transform.VariableEliminator.CostFunction;
+import com.analog.lyric.dimple.model.transform.VariableEliminator.Ordering;
+import com.analog.lyric.dimple.model.transform.VariableEliminator.Stats;
+import com.analog.lyric.dimple.model.transform.VariableEliminator.VariableCost;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.model.variables.VariableList;
+
+/**
+ * On-disk cache of variable elimination orderings for {@link JunctionTreeTransform}.
+ * <p>
+ * Searching for a good elimination ordering can be an expensive part of the junction tree transformation,
+ * especially with many {@linkplain JunctionTreeTransform#maxTransformationAttempts() attempts}, and the
+ * resulting clique structure is fully determined by the ordering. This cache
+ * stores the ordering and its {@link Stats} for a model in a file named by a structural hash of the model,
+ * so that another process with a structurally identical model can skip the search and pass the
+ * ordering directly to {@link JunctionTreeTransform#transform(FactorGraph, Ordering)}.
+ * <p>
+ * Only the ordering search is skipped on a hit. The transformed graph, including the joint factor tables
+ * of merged factors, is still built from the ordering and the model's current weights, and for models with
+ * large cliques that construction can take longer than the search.
+ * <p>
+ * The {@linkplain #key key} covers the variable domains, the graph topology and which factors have
+ * factor tables, as well as which variables have fixed values when conditioning is used. It also covers
+ * the transformer's settings that affect the search, namely the {@linkplain
+ * JunctionTreeTransform#maxTransformationAttempts() number of attempts} and the {@linkplain
+ * JunctionTreeTransform#variableEliminatorCostFunctions() cost functions}, so that an ordering found under
+ * one configuration is not reused under another. Factor table weights do not affect the ordering and are
+ * not part of the key, so models that differ only in their weights share an entry. Variables are identified
+ * by their position in {@link FactorGraph#getVariables()}, so the models must also be constructed in the
+ * same order.
+ * <p>
+ * Entries that cannot be read are treated as misses and failures to write entries are logged as
+ * warnings, so a missing or unusable cache directory never prevents the transformation.
+ * <p>
+ * @since 0.08
+ */
+public class JunctionTreeTransformCache
+{
+	/*-----------
+	 * Constants
+	 */
+
+	/**
+	 * File name extension for cache entries.
+	 */
+	public static final String FILE_EXTENSION = ".jto";
+
+	private static final int MAGIC = 0x4A544F31; // "JTO1"
+	private static final int VERSION = 2;
+
+	/*-------
+	 * State
+	 */
+
+	private final File _directory;
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Constructs cache that stores entries in the specified directory, which will be created
+	 * on demand.
+	 */
+	public JunctionTreeTransformCache(File directory)
+	{
+		_directory = directory;
+	}
+
+	/*---------
+	 * Methods
+	 */
+
+	/**
+	 * The directory containing the cache entries.
+	 */
+	public File directory()
+	{
+		return _directory;
+	}
+
+	/**
+	 * The file that holds the entry for {@code key}.
+	 */
+	public File file(String key)
+	{
+		return new File(_directory, key + FILE_EXTENSION);
+	}
+
+	/**
+	 * Computes the cache key for given model as a hexadecimal string.
+	 * <p>
+	 * @param transformer is the transformer that will search for the ordering. The key depends on whether
+	 * it {@linkplain JunctionTreeTransform#useConditioning() uses conditioning}, in which case it also depends
+	 * on which variables have a fixed value, and on its {@linkplain JunctionTreeTransform#maxTransformationAttempts()
+	 * maximum number of attempts} and {@linkplain JunctionTreeTransform#variableEliminatorCostFunctions() cost
+	 * functions}.
+	 */
+	public String key(FactorGraph model, JunctionTreeTransform transformer)
+	{
+		final boolean useConditioning = transformer.useConditioning();
+
+		final MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException ex)
+		{
+			throw new DimpleException(ex);
+		}
+
+		try (DataOutputStream out =
+			new DataOutputStream(new BufferedOutputStream(new DigestOutputStream(new NullOutputStream(), digest))))
+		{
+			out.writeInt(VERSION);
+			out.writeBoolean(useConditioning);
+			out.writeInt(transformer.maxTransformationAttempts());
+			CostFunction[] costFunctions = transformer.variableEliminatorCostFunctions();
+			if (costFunctions.length == 0)
+			{
+				// The default is to try all of the standard cost functions.
+				costFunctions = VariableCost.toFunctions(VariableCost.values());
+			}
+			out.writeInt(costFunctions.length);
+			for (CostFunction costFunction : costFunctions)
+			{
+				final VariableCost type = costFunction.type();
+				out.writeUTF(type != null ? type.name() : costFunction.getClass().getName());
+			}
+
+			final VariableList variables = model.getVariables();
+			final int nVariables = variables.size();
+			final Map<Variable,Integer> indices = new HashMap<Variable,Integer>(nVariables * 2);
+			final Map<Domain,Integer> domains = new IdentityHashMap<Domain,Integer>();
+			out.writeInt(nVariables);
+			for (Variable variable : variables)
+			{
+				indices.put(variable, indices.size());
+				final Domain domain = variable.getDomain();
+				final Integer domainIndex = domains.get(domain);
+				if (domainIndex != null)
+				{
+					// Same domain instance as an earlier variable
+					out.writeInt(-2);
+					out.writeInt(domainIndex);
+				}
+				else
+				{
+					domains.put(domain, domains.size());
+					writeDomain(out, domain);
+				}
+				out.writeBoolean(useConditioning && variable.hasFixedValue());
+			}
+
+			out.writeInt(model.getFactorCount());
+			for (Factor factor : model.getFactors())
+			{
+				final int nSiblings = factor.getSiblingCount();
+				out.writeInt(nSiblings);
+				for (int i = 0; i < nSiblings; ++i)
+				{
+					final Integer index = indices.get(factor.getSibling(i));
+					out.writeInt(index != null ? index : -1);
+				}
+				out.writeBoolean(factor.hasFactorTable());
+			}
+		}
+		catch (IOException ex)
+		{
+			// Cannot happen when writing to a digest
+			throw new DimpleException(ex);
+		}
+
+		final StringBuilder key = new StringBuilder(40);
+		for (byte b : digest.digest())
+		{
+			key.append(String.format("%02x", b & 0xFF));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Loads ordering for the model from the entry with given {@code key}.
+	 * <p>
+	 * Returns null if there is no such entry or if it cannot be read or does not fit the model.
+	 */
+	public @Nullable Ordering load(FactorGraph model, String key)
+	{
+		final File file = file(key);
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+		{
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+			{
+				return null;
+			}
+
+			final VariableList variables = model.getVariables();
+			final int nVariables = in.readInt();
+			if (nVariables != variables.size())
+			{
+				return null;
+			}
+
+			final boolean[] seen = new boolean[nVariables];
+			final ArrayList<Variable> order = new ArrayList<Variable>(nVariables);
+			for (int i = 0; i < nVariables; ++i)
+			{
+				final int index = in.readInt();
+				if (index < 0 || index >= nVariables || seen[index])
+				{
+					return null;
+				}
+				seen[index] = true;
+				order.add(variables.getByIndex(index));
+			}
+
+			final Stats stats = new Stats()
+				.addedEdges(in.readInt())
+				.addedEdgeWeight(in.readLong())
+				.conditionedVariables(in.readInt())
+				.factorsWithDuplicateVariables(in.readInt())
+				.maxCliqueSize(in.readInt())
+				.maxCliqueCardinality(in.readLong())
+				.mergedFactors(in.readInt())
+				.variablesWithDuplicateEdges(in.readInt());
+
+			return new Ordering(order, stats);
+		}
+		catch (FileNotFoundException ex)
+		{
+			return null;
+		}
+		catch (IOException ex)
+		{
+			DimpleEnvironment.logWarning("Cannot read junction tree transform cache entry '%s': %s", file, ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores {@code ordering} for the model in the entry with given {@code key}, replacing any
+	 * existing entry.
+	 * <p>
+	 * The entry is written to a temporary file that is then renamed, so that concurrent readers
+	 * never see a partially written entry.
+	 * <p>
+	 * @return false if the entry could not be written, in which case a warning will have been logged.
+	 */
+	public boolean store(FactorGraph model, String key, Ordering ordering)
+	{
+		final File file = file(key);
+		File tmpFile = null;
+
+		try
+		{
+			final VariableList variables = model.getVariables();
+			final Map<Variable,Integer> indices = new HashMap<Variable,Integer>(variables.size() * 2);
+			for (Variable variable : variables)
+			{
+				indices.put(variable, indices.size());
+			}
+
+			Files.createDirectories(_directory.toPath());
+			tmpFile = File.createTempFile(key, ".tmp", _directory);
+
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile))))
+			{
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(ordering.variables.size());
+				for (Variable variable : ordering.variables)
+				{
+					final Integer index = indices.get(variable);
+					if (index == null)
+					{
+						throw new IllegalArgumentException(
+							String.format("Ordering contains variable '%s' that is not in model", variable));
+					}
+					out.writeInt(index);
+				}
+
+				final Stats stats = ordering.stats;
+				out.writeInt(stats.addedEdges());
+				out.writeLong(stats.addedEdgeWeight());
+				out.writeInt(stats.conditionedVariables());
+				out.writeInt(stats.factorsWithDuplicateVariables());
+				out.writeInt(stats.maxCliqueSize());
+				out.writeLong(stats.maxCliqueCardinality());
+				out.writeInt(stats.mergedFactors());
+				out.writeInt(stats.variablesWithDuplicateEdges());
+			}
+
+			Files.move(tmpFile.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			tmpFile = null;
+			return true;
+		}
+		catch (IOException ex)
+		{
+			DimpleEnvironment.logWarning("Cannot write junction tree transform cache entry '%s': %s", file, ex);
+			return false;
+		}
+		finally
+		{
+			if (tmpFile != null)
+			{
+				tmpFile.delete();
+			}
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private static void writeDomain(DataOutputStream out, Domain domain) throws IOException
+	{
+		final DiscreteDomain discrete = domain.asDiscrete();
+		if (discrete != null)
+		{
+			final int size = discrete.size();
+			out.writeInt(size);
+			for (int i = 0; i < size; ++i)
+			{
+				out.writeUTF(String.valueOf(discrete.getElement(i)));
+			}
+		}
+		else
+		{
+			out.writeInt(-1);
+			out.writeUTF(domain.toString());
+		}
+	}
+
+	/**
+	 * Discards all output.
+	 */
+	private static final class NullOutputStream extends OutputStream
+	{
+		@Override
+		public void write(int b)
+		{
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len)
+		{
+		}
+	}
+}
@@ -24,13 +24,16 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.jcip.annotations.Immutable;
 
@@ -40,12 +43,10 @@ import com.analog.lyric.collect.IHeap.IEntry;
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.model.factors.Factor;
-import com.analog.lyric.dimple.model.factors.FactorBase;
-import com.analog.lyric.dimple.model.factors.FactorList;
 import com.analog.lyric.dimple.model.variables.Variable;
 import com.analog.lyric.dimple.model.variables.VariableList;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
 import org.eclipse.jdt.annotation.Nullable;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
 
 /**
@@ -182,6 +183,11 @@ public class VariableEliminator
 	private final FactorGraph _model;
 	private final @Nullable Random _rand;
 	
+	/**
+	 * Variable adjacency shared by all orderings, computed on first use.
+	 */
+	private @Nullable Adjacency _adjacency;
+	
 	/**
 	 * If true, then variables with fixed values will be eliminated first and will be
 	 * considered to be disjoint from the rest of the graph.
@@ -216,6 +222,10 @@ public class VariableEliminator
 	 * ties will be broken deterministically by favoring the variable
 	 * with the lower id ({@link Variable#getId()}), which is useful
 	 * for testing.
+	 * <p>
+	 * The structure of the model and the fixed values used for conditioning are captured
+	 * the first time an ordering is produced, so the model should not be modified while the
+	 * eliminator is in use.
 	 */
 	public VariableEliminator(FactorGraph model, boolean useConditioning, @Nullable Random rand)
 	{
@@ -241,7 +251,8 @@ public class VariableEliminator
 	 * {@linkplain VariableEliminator.Stats#compareTo compareTo} method to determine whether to keep the ordering.
 	 * If the stats at any point satisfy the specified threshold values (as determined by the
 	 * {@linkplain VariableEliminator.Stats#meetsThreshold meetsThreshold method} then the function will return
-	 * immediately.
+	 * immediately. When the threshold compares max clique cardinality, an iteration is abandoned as soon as its
+	 * cardinality exceeds that of the best ordering found so far, since it can no longer be chosen.
 	 * <p>
 	 * For example, the following call will generate an order by conditioning out any fixed value variables,
 	 * and will randomly try weighted min neighbors or weighted min fill cost functions up to ten iterations
@@ -385,9 +396,8 @@ public class VariableEliminator
 			nAttempts = nFunctions;
 		}
 		
+		final Search search = new Search(threshold, eliminator._nVariables);
 		ArrayList<Variable> curList = new ArrayList<Variable>(eliminator._nVariables);
-		ArrayList<Variable> bestList = new ArrayList<Variable>(eliminator._nVariables);
-		Stats bestStats = null;
 		
 		Random rand = eliminator.getRandomizer();
 		if (rand == null)
@@ -395,7 +405,7 @@ public class VariableEliminator
 			rand = new Random();
 		}
 		
-		for (int attempt = 0; attempt < nAttempts; ++attempt)
+		for (int attempt = 0; attempt < nAttempts && !search._done; ++attempt)
 		{
 			// Pick a cost function
 			int costIndex = 0;
@@ -420,35 +430,17 @@ public class VariableEliminator
 			
 			// Run variable elimination
 			final long beforeNS = System.nanoTime();
-			OrderIterator iterator = eliminator.orderIterator(cost);
-			Iterators.addAll(curList, iterator);
+			final Stats curStats = search.run(eliminator.orderIterator(cost), curList);
 			final long elapsedNS = System.nanoTime() - beforeNS;
 			timePerFunction[costIndex] += elapsedNS;
 			totalTime += elapsedNS;
 			
 			// Compare stats
-			Stats curStats = iterator.getStats();
-			
-			if (curStats.addedEdges() == 0)
+			if (curStats != null)
 			{
-				bestStats = curStats;
-				bestList = curList;
-				break;
-			}
-			
-			if (bestStats == null || curStats.compareTo(bestStats, threshold) < 0)
-			{
-				ArrayList<Variable> tmp = curList;
-				curList = bestList;
-				curList.clear();
-				bestList = tmp;
-				bestStats = curStats;
-				
-				if (bestStats.meetsThreshold(threshold))
-				{
-					break;
-				}
+				curList = search.offer(attempt, curStats, curList);
 			}
+			curList.clear();
 			
 			// Update functionCDF based on timings to favor cheaper cost function.
 			// TODO: give bonus weight to functions that improved the stats.
@@ -463,12 +455,296 @@ public class VariableEliminator
 			}
 		}
 		
-		if (bestStats == null)
+		return search.ordering();
+	}
+	
+	/**
+	 * Computes a variable elimination order like {@link #generate(VariableEliminator, int, Stats, CostFunction...)}
+	 * but runs the attempts concurrently on up to {@code nThreads} threads.
+	 * <p>
+	 * The calling thread runs attempts along with up to {@code nThreads - 1} tasks submitted to the
+	 * {@link ThreadPool}. Unlike the sequential version, the cost function for each attempt is chosen
+	 * uniformly at random (after each function has been tried once) rather than favoring cheaper functions.
+	 * The cost function and tie-breaking random seed for each attempt are drawn from the eliminator's
+	 * {@linkplain #getRandomizer() randomizer} up front, so each attempt is independent of which thread runs it.
+	 * <p>
+	 * As soon as any attempt satisfies the {@code threshold} or adds no edges, the remaining attempts are abandoned.
+	 * When {@code threshold} compares {@linkplain Stats#maxCliqueCardinality() max clique cardinality}, an attempt
+	 * is also abandoned as soon as its partial cardinality exceeds that of the best ordering found so far. Because
+	 * which attempts are abandoned depends on timing, the result may differ between runs when more than one attempt
+	 * satisfies the threshold.
+	 * <p>
+	 * If {@code nThreads} is less than two, this simply invokes the sequential version.
+	 * 
+	 * @since 0.08
+	 */
+	public static Ordering generateInParallel(
+		final VariableEliminator eliminator,
+		int nAttempts,
+		Stats threshold,
+		int nThreads,
+		CostFunction ... costFunctions)
+	{
+		final boolean deterministic = nAttempts <= 0;
+
+		if (costFunctions.length == 0)
 		{
-			bestStats = new Stats(null, 0);
+			costFunctions = VariableCost.toFunctions(VariableCost.values());
+		}
+		final int nFunctions = costFunctions.length;
+		final int nTasks = Math.min(nThreads, deterministic ? nFunctions : nAttempts);
+		
+		if (nTasks <= 1)
+		{
+			return generate(eliminator, nAttempts, threshold, costFunctions);
+		}
+		
+		if (deterministic)
+		{
+			nAttempts = nFunctions;
 		}
 		
-		return new Ordering(bestList, bestStats);
+		// Builds the shared adjacency in this thread, which also reports any non-discrete variable.
+		eliminator.adjacency();
+		
+		final Random rand = eliminator.getRandomizer();
+		final Random chooser = rand != null ? rand : new Random();
+		final CostFunction[] costs = new CostFunction[nAttempts];
+		final long[] seeds = new long[nAttempts];
+		for (int attempt = 0; attempt < nAttempts; ++attempt)
+		{
+			costs[attempt] = costFunctions[deterministic || attempt < nFunctions ? attempt % nFunctions :
+				chooser.nextInt(nFunctions)];
+			if (rand != null)
+			{
+				seeds[attempt] = rand.nextLong();
+			}
+		}
+
+		final Search search = new Search(threshold, eliminator._nVariables);
+		final AtomicInteger nextAttempt = new AtomicInteger();
+		class Worker implements Callable<Object>
+		{
+			@Override
+			public @Nullable Object call()
+			{
+				if (!search.enter())
+				{
+					return null;
+				}
+				try
+				{
+					ArrayList<Variable> list = new ArrayList<Variable>(eliminator._nVariables);
+					for (int attempt; !search._done && (attempt = nextAttempt.getAndIncrement()) < costs.length; )
+					{
+						final Random attemptRand = rand != null ? new Random(seeds[attempt]) : null;
+						final Stats stats = search.run(new OrderIterator(eliminator, costs[attempt], attemptRand), list);
+						if (stats != null)
+						{
+							list = search.offer(attempt, stats, list);
+						}
+						list.clear();
+					}
+				}
+				catch (RuntimeException ex)
+				{
+					search.fail(ex);
+				}
+				finally
+				{
+					search.exit();
+				}
+				return null;
+			}
+		}
+		
+		final Worker worker = new Worker();
+		final ExecutorService service = ThreadPool.getThreadPool();
+		final List<Future<Object>> futures = new ArrayList<Future<Object>>(nTasks - 1);
+		for (int i = 1; i < nTasks; ++i)
+		{
+			futures.add(service.submit(worker));
+		}
+		
+		worker.call();
+
+		// Tasks that have not started by now would find no work left, so they are simply dropped. This
+		// avoids waiting on tasks that cannot start because the pool is busy running this thread.
+		for (Future<Object> future : futures)
+		{
+			future.cancel(false);
+		}
+		search.close();
+		
+		return search.ordering();
+	}
+	
+	/**
+	 * Keeps track of the best ordering found by {@link VariableEliminator#generate} or
+	 * {@link VariableEliminator#generateInParallel}. Instances may be shared across threads.
+	 */
+	private static final class Search
+	{
+		private final Stats _threshold;
+		
+		/**
+		 * Attempts are abandoned once their max clique cardinality exceeds this value.
+		 */
+		private final AtomicLong _bound = new AtomicLong(Long.MAX_VALUE);
+		
+		/**
+		 * Set when no further attempts need to be made.
+		 */
+		private volatile boolean _done = false;
+		
+		private ArrayList<Variable> _bestList;
+		private @Nullable Stats _bestStats = null;
+		private int _bestAttempt = -1;
+		
+		private Search(Stats threshold, int nVariables)
+		{
+			_threshold = threshold;
+			_bestList = new ArrayList<Variable>(nVariables);
+		}
+		
+		/*
+		 * Tracking of concurrent tasks
+		 */
+		
+		private boolean _closed = false;
+		private int _nRunning = 0;
+		private @Nullable RuntimeException _error = null;
+		
+		/**
+		 * Registers start of a task, returning false if it should not run because the search has been closed.
+		 */
+		private synchronized boolean enter()
+		{
+			if (_closed)
+			{
+				return false;
+			}
+			++_nRunning;
+			return true;
+		}
+		
+		private synchronized void exit()
+		{
+			--_nRunning;
+			notifyAll();
+		}
+		
+		/**
+		 * Records error from a task and stops the search.
+		 */
+		private synchronized void fail(RuntimeException error)
+		{
+			if (_error == null)
+			{
+				_error = error;
+			}
+			_done = true;
+		}
+		
+		/**
+		 * Prevents further tasks from starting and waits for running tasks to finish, then rethrows
+		 * the first error from any task.
+		 */
+		private synchronized void close()
+		{
+			_closed = true;
+			boolean interrupted = false;
+			while (_nRunning > 0)
+			{
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException ex)
+				{
+					interrupted = true;
+					fail(new DimpleException(ex));
+				}
+			}
+			if (interrupted)
+			{
+				Thread.currentThread().interrupt();
+			}
+			
+			final RuntimeException error = _error;
+			if (error != null)
+			{
+				throw error;
+			}
+		}
+		
+		/**
+		 * Runs {@code iterator} to completion appending the variables to {@code list} and returns its stats,
+		 * or returns null if the attempt cannot improve on the best ordering or the search is done.
+		 */
+		private @Nullable Stats run(OrderIterator iterator, ArrayList<Variable> list)
+		{
+			final Stats stats = iterator.getStats();
+			final AtomicLong bound = _bound;
+			while (iterator.hasNext())
+			{
+				list.add(iterator.next());
+				if (stats._maxCliqueCardinality > bound.get() || _done)
+				{
+					return null;
+				}
+			}
+			return stats;
+		}
+		
+		/**
+		 * Records the ordering in {@code list} from given attempt if it is better than the best so far,
+		 * and returns a list that can be reused by the caller: either {@code list} or the previous best.
+		 * Ties are broken in favor of the lower attempt number and orderings with no added edges are
+		 * always preferred.
+		 */
+		private synchronized ArrayList<Variable> offer(int attempt, Stats stats, ArrayList<Variable> list)
+		{
+			final Stats best = _bestStats;
+			if (best != null)
+			{
+				int diff = Boolean.compare(stats.addedEdges() != 0, best.addedEdges() != 0);
+				if (diff == 0)
+				{
+					diff = stats.compareTo(best, _threshold);
+				}
+				if (diff == 0)
+				{
+					diff = attempt - _bestAttempt;
+				}
+				if (diff >= 0)
+				{
+					return list;
+				}
+			}
+			
+			final ArrayList<Variable> previous = _bestList;
+			_bestList = list;
+			_bestStats = stats;
+			_bestAttempt = attempt;
+			
+			if (_threshold._maxCliqueCardinality >= 0)
+			{
+				_bound.set(stats._maxCliqueCardinality);
+			}
+			if (stats.addedEdges() == 0 || stats.meetsThreshold(_threshold))
+			{
+				_done = true;
+			}
+			
+			return previous;
+		}
+		
+		private synchronized Ordering ordering()
+		{
+			final Stats stats = _bestStats;
+			return new Ordering(_bestList, stats != null ? stats : new Stats(null, 0));
+		}
 	}
 	
 	/**
@@ -507,7 +783,7 @@ public class VariableEliminator
 	 */
 	public OrderIterator orderIterator(CostFunction cost)
 	{
-		return new OrderIterator(this, cost);
+		return new OrderIterator(this, cost, _rand);
 	}
 	
 	/**
@@ -568,13 +844,13 @@ public class VariableEliminator
 		 * Construction
 		 */
 		
-		private OrderIterator(VariableEliminator eliminator, CostFunction costFunction)
+		private OrderIterator(VariableEliminator eliminator, CostFunction costFunction, @Nullable Random rand)
 		{
 			_eliminator = eliminator;
 			_costFunction = costFunction;
 			_stats = new Stats(costFunction, 0);
 		
-			final List<Var> adjacencyList = eliminator.buildAdjacencyList(_stats);
+			final List<Var> adjacencyList = eliminator.buildAdjacencyList(_stats, rand);
 			final int size = adjacencyList.size();
 		
 			final IHeap<Var> heap = _heap = new BinaryHeap<Var>(size);
@@ -1092,16 +1368,6 @@ public class VariableEliminator
 		{
 			++_conditionedVariables;
 		}
-
-		private void addFactorWithDuplicateVars(FactorBase factor)
-		{
-			++_factorsWithDuplicateVariables;
-		}
-
-		private void addVariableWithDuplicateEdges(Variable variable)
-		{
-			++_variablesWithDuplicateEdges;
-		}
 	} // Stats
 	
 	/**
@@ -1494,109 +1760,166 @@ public class VariableEliminator
 		}
 	}
 	
-	/*-----------------
-	 * Private methods
+	/*-----------
+	 * Adjacency
 	 */
 	
-	private List<Var> buildAdjacencyList(Stats stats)
+	/**
+	 * Immutable snapshot of the variable adjacency of the model, from which each {@link OrderIterator}
+	 * builds its own mutable {@link Var} graph.
+	 * <p>
+	 * This is computed once per eliminator without using the model's mark flags, so that orderings
+	 * can be generated concurrently from multiple threads.
+	 */
+	private static final class Adjacency
 	{
-		final List<Var> list = new LinkedList<Var>();
-		final VariableList variables = _model.getVariables();
-		final Map<Variable,Var> map = new LinkedHashMap<Variable,Var>(variables.size());
-
-		for (Variable variable : variables)
+		private final Variable[] _variables;
+		private final boolean[] _conditioned;
+		
+		/**
+		 * Indexes into {@link #_variables} of the unconditioned neighbors of each unconditioned variable.
+		 */
+		private final int[][] _neighbors;
+		
+		private final int _factorsWithDuplicateVariables;
+		private final int _variablesWithDuplicateEdges;
+		
+		private Adjacency(VariableEliminator eliminator)
 		{
-			if (!variable.getDomain().isDiscrete() && !isConditioned(variable))
+			final VariableList variableList = eliminator._model.getVariables();
+			final int nVariables = variableList.size();
+			final Variable[] variables = _variables = variableList.toArray(new Variable[nVariables]);
+			final boolean[] conditioned = _conditioned = new boolean[nVariables];
+			final Map<Variable,Integer> indices = new HashMap<Variable,Integer>(nVariables * 2);
+			
+			for (int i = 0; i < nVariables; ++i)
 			{
-				throw new DimpleException("VariableEliminator cannot handle non-discrete variable '%s'", variable);
+				final Variable variable = variables[i];
+				conditioned[i] = eliminator.isConditioned(variable);
+				if (!variable.getDomain().isDiscrete() && !conditioned[i])
+				{
+					throw new DimpleException("VariableEliminator cannot handle non-discrete variable '%s'", variable);
+				}
+				indices.put(variable, i);
 			}
-			Var var = new Var(variable, generateCostIncrement(variable), isConditioned(variable));
-			map.put(variable, var);
-			list.add(var);
-			variable.clearMarked();
-		}
-
-		final FactorList factors = _model.getFactors();
-		for (Factor factor : factors)
-		{
-			factor.clearMarked();
-		}
-
-		Set<Factor> factorsWithDuplicateVars = new HashSet<Factor>();
-		Set<Variable> variablesWithDuplicateEdges = new HashSet<Variable>();
-		
-		for (Var var : map.values())
-		{
-			if (var._isConditioned)
-				continue;
 			
-			final Variable variable = var._variable;
-
-			for (int fi = 0, nFactors = variable.getSiblingCount(); fi < nFactors; ++fi)
+			final int[][] neighbors = _neighbors = new int[nVariables][];
+			final Set<Factor> factorsWithDuplicateVars = new HashSet<Factor>();
+			int variablesWithDuplicateEdges = 0;
+			
+			// Identifies neighbors already visited for the current variable.
+			final int[] visited = new int[nVariables];
+			Arrays.fill(visited, -1);
+			final Set<Factor> visitedFactors = new HashSet<Factor>();
+			final int[] scratch = new int[nVariables];
+			
+			for (int i = 0; i < nVariables; ++i)
 			{
-				final Factor factor = variable.getSibling(fi);
-				if (factor.isMarked())
+				if (conditioned[i])
 				{
-					factorsWithDuplicateVars.add(factor);
+					neighbors[i] = new int[0];
 					continue;
 				}
-				factor.setMarked();
+				
+				final Variable variable = variables[i];
+				boolean hasDuplicateEdge = false;
+				int nNeighbors = 0;
+				visitedFactors.clear();
 
-				for (int vi = 0, nVariables = factor.getSiblingCount(); vi < nVariables; ++vi)
+				for (int fi = 0, nFactors = variable.getSiblingCount(); fi < nFactors; ++fi)
 				{
-					final Variable neighborVariable = factor.getSibling(vi);
-					if (neighborVariable == variable)
-						continue;
-					
-					final Var neighborVar = map.get(neighborVariable);
-					if (neighborVar._isConditioned)
-						continue;
-
-					if (neighborVariable.isMarked())
+					final Factor factor = variable.getSibling(fi);
+					if (!visitedFactors.add(factor))
 					{
-						variablesWithDuplicateEdges.add(variable);
+						factorsWithDuplicateVars.add(factor);
+						continue;
 					}
-					else
+
+					for (int vi = 0, nFactorVariables = factor.getSiblingCount(); vi < nFactorVariables; ++vi)
 					{
-						neighborVariable.setMarked();
-						var.addNeighbor(map.get(neighborVariable));
-					}
-				}
-			}
+						final Variable neighborVariable = factor.getSibling(vi);
+						if (neighborVariable == variable)
+							continue;
 
-			// Reset marks for visited factors and variables.
-			for (int fi = 0, nFactors = variable.getSiblingCount(); fi < nFactors; ++fi)
-			{
-				final Factor factor = variable.getSibling(fi);
-				factor.clearMarked();
-			}
+						final int neighbor = requireNonNull(indices.get(neighborVariable));
+						if (conditioned[neighbor])
+							continue;
 
-			for (VarLink link = var._neighborList._next; link.hasVar(); link = link._next)
-			{
-				link.var()._variable.clearMarked();
+						if (visited[neighbor] == i)
+						{
+							hasDuplicateEdge = true;
+						}
+						else
+						{
+							visited[neighbor] = i;
+							scratch[nNeighbors++] = neighbor;
+						}
+					}
+				}
+				
+				neighbors[i] = Arrays.copyOf(scratch, nNeighbors);
+				if (hasDuplicateEdge)
+				{
+					++variablesWithDuplicateEdges;
+				}
 			}
+			
+			_factorsWithDuplicateVariables = factorsWithDuplicateVars.size();
+			_variablesWithDuplicateEdges = variablesWithDuplicateEdges;
+		}
+	}
+	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	/**
+	 * Returns the variable adjacency of the model, computing it on first use.
+	 */
+	private synchronized Adjacency adjacency()
+	{
+		Adjacency adjacency = _adjacency;
+		if (adjacency == null)
+		{
+			_adjacency = adjacency = new Adjacency(this);
 		}
+		return adjacency;
+	}
+	
+	private List<Var> buildAdjacencyList(Stats stats, @Nullable Random rand)
+	{
+		final Adjacency adjacency = adjacency();
+		final Variable[] variables = adjacency._variables;
+		final int nVariables = variables.length;
+		final Var[] vars = new Var[nVariables];
 
-		for (Factor factor : factorsWithDuplicateVars)
+		for (int i = 0; i < nVariables; ++i)
 		{
-			stats.addFactorWithDuplicateVars(factor);
+			final Variable variable = variables[i];
+			vars[i] = new Var(variable, generateCostIncrement(variable, rand), adjacency._conditioned[i]);
 		}
 		
-		for (Variable variable : variablesWithDuplicateEdges)
+		for (int i = 0; i < nVariables; ++i)
 		{
-			stats.addVariableWithDuplicateEdges(variable);
+			final Var var = vars[i];
+			for (int neighbor : adjacency._neighbors[i])
+			{
+				var.addNeighbor(vars[neighbor]);
+			}
 		}
+
+		stats._factorsWithDuplicateVariables = adjacency._factorsWithDuplicateVariables;
+		stats._variablesWithDuplicateEdges = adjacency._variablesWithDuplicateEdges;
 		
-		return list;
+		return Arrays.asList(vars);
 	}
 	
 	/**
 	 * Generates a cost-increment in the range [0, 1) to break ties between
 	 * variables with same integer cost.
 	 */
-	private double generateCostIncrement(Variable variable)
+	private static double generateCostIncrement(Variable variable, @Nullable Random rand)
 	{
-		final Random rand = _rand;
 		if (rand == null)
 		{
 			return (double)variable.getId() / (double)Integer.MAX_VALUE;
@@ -16,8 +16,10 @@
 
 package com.analog.lyric.dimple.options;
 
+import com.analog.lyric.dimple.solvers.core.ConvergenceNorm;
 import com.analog.lyric.dimple.solvers.core.SNode;
 import com.analog.lyric.dimple.solvers.optimizedupdate.UpdateApproach;
+import com.analog.lyric.options.BooleanOptionKey;
 import com.analog.lyric.options.DoubleListOptionKey;
 import com.analog.lyric.options.DoubleOptionKey;
 import com.analog.lyric.options.EnumOptionKey;
@@ -51,6 +53,45 @@ public class BPOptions extends SolverOptions
 	 */
 	public final static IntegerOptionKey iterations =
 		new IntegerOptionKey(BPOptions.class, "iterations", 1);
+	
+	/**
+	 * Residual below which iteration will stop early.
+	 * <p>
+	 * When positive, the solver will measure how much the messages change during each iteration and will
+	 * stop iterating once the combined change, as determined by {@link #convergenceNorm}, is no larger than
+	 * this value and at least {@link #minIterations} iterations have been run. When zero, the solver will
+	 * always run the full number of {@link #iterations} and will not measure message changes.
+	 * <p>
+	 * This option should be set on the root graph. It is looked up when the solver graph is initialized.
+	 * <p>
+	 * Must be a non-negative value.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final DoubleOptionKey convergenceTolerance =
+		new DoubleOptionKey(BPOptions.class, "convergenceTolerance", 0.0, 0.0, Double.POSITIVE_INFINITY);
+	
+	/**
+	 * Specifies how the changes in individual messages are combined when testing for convergence.
+	 * <p>
+	 * Only used when {@link #convergenceTolerance} is positive.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final EnumOptionKey<ConvergenceNorm> convergenceNorm = new EnumOptionKey<ConvergenceNorm>(
+		BPOptions.class, "convergenceNorm", ConvergenceNorm.class, ConvergenceNorm.MAXIMUM);
+	
+	/**
+	 * Minimum number of iterations to run before stopping early due to convergence.
+	 * <p>
+	 * Only used when {@link #convergenceTolerance} is positive.
+	 * <p>
+	 * Must be a non-negative value.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final IntegerOptionKey minIterations =
+		new IntegerOptionKey(BPOptions.class, "minIterations", 1, 0, Integer.MAX_VALUE);
 
 	/**
 	 * Node specific damping values.
@@ -128,4 +169,40 @@ public class BPOptions extends SolverOptions
 	public static final DoubleOptionKey optimizedUpdateSparseThreshold = new DoubleOptionKey(BPOptions.class,
 			"optimizedUpdateSparseThreshold", 1.0, 0.0, 1.0);
 
+	/**
+	 * Use packed factor table indices for normal (non-optimized) table factor updates.
+	 * <p>
+	 * When true, discrete table factors in sum-product and min-sum will iterate over the row-major
+	 * index array returned by {@link com.analog.lyric.dimple.factorfunctions.core.IFactorTable#getIndicesSparsePackedUnsafe()}
+	 * rather than the array of per-entry index arrays. This produces the same results but is
+	 * typically faster for large sparse tables because it avoids a memory indirection per table entry.
+	 * The packed array does require additional memory for each distinct factor table.
+	 * <p>
+	 * This option may be set on entire graph or on individual discrete factors.
+	 * It is looked up when the solver graph is initialized.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final BooleanOptionKey usePackedTableIndices =
+		new BooleanOptionKey(BPOptions.class, "usePackedTableIndices", true);
+	
+	/**
+	 * Maximum number of factor values remembered by each k-best factor.
+	 * <p>
+	 * Discrete factors that are updated using the k-best algorithm (see {@link #maxMessageSize}) remember
+	 * the factor values computed for the inputs selected on the last update of each edge, so that they are
+	 * not computed again when the same inputs are selected on the next update of that edge. This option
+	 * limits the total number of values remembered over all of the factor's edges, each of which takes
+	 * eight bytes. Each edge may use an equal share of this limit, and the values of an edge that need
+	 * more than that are computed on every update.
+	 * <p>
+	 * This option may be set on entire graph or on individual discrete factors.
+	 * It is looked up when the solver graph is initialized.
+	 * <p>
+	 * Must be non-negative. Zero means that no values are remembered.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final IntegerOptionKey maxKBestMemoSize =
+		new IntegerOptionKey(BPOptions.class, "maxKBestMemoSize", 1 << 16, 0, Integer.MAX_VALUE);
 }
@@ -0,0 +1,174 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.schedulers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.options.SolverOptions;
+import com.analog.lyric.dimple.schedulers.schedule.GibbsChromaticSchedule;
+import com.analog.lyric.dimple.schedulers.schedule.ISchedule;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.BlockScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.NodeScheduleEntry;
+
+/**
+ * Generates a systematic scan Gibbs schedule that updates the variables one color at a time.
+ * <p>
+ * The variables are greedily colored in breadth-first order, so that no two variables with the
+ * same color share a factor. Within each color, variables are in the same order used by
+ * {@link GibbsSequentialScanScheduler}. Given the values of the other
+ * variables, the variables of one color are then conditionally independent, so they may be
+ * sampled in any order, or at the same time, without changing the distribution of the scan.
+ * For a grid with pairwise factors this produces the familiar two-color checkerboard schedule.
+ * <p>
+ * Variables connected to a deterministic directed factor are given a color of their own, since
+ * their updates propagate values to other variables.
+ * <p>
+ * When {@link SolverOptions#enableMultithreading} is true, the Gibbs solver will sample the
+ * variables of each color concurrently using the shared thread pool. This requires that the
+ * factor functions in the graph can be evaluated concurrently by more than one thread, and
+ * is disabled if variable update events are being raised or if more than one chain is being run.
+ * <p>
+ * WARNING: Like {@link GibbsSequentialScanScheduler}, this schedule DOES NOT respect any
+ * existing sub-graph scheduler associations.
+ * <p>
+ * @since 0.08
+ */
+public class GibbsChromaticScheduler implements IGibbsScheduler
+{
+	private @Nullable GibbsChromaticSchedule _schedule;
+
+	@Override
+	public ISchedule createSchedule(FactorGraph g)
+	{
+		final GibbsChromaticSchedule schedule = _schedule = new GibbsChromaticSchedule();
+
+		final ArrayList<Variable> variables = new ArrayList<Variable>();
+		final Map<Variable,Integer> variableIndex = new IdentityHashMap<Variable,Integer>();
+		for (Variable v : g.getVariablesFlat())
+		{
+			variableIndex.put(v, variables.size());
+			variables.add(v);
+		}
+
+		final int nVariables = variables.size();
+		final int[] colorOf = new int[nVariables];
+		Arrays.fill(colorOf, -1);
+		int nColors = 0;
+
+		// usedBy[c] == i + 1 if color c is used by a neighbor of the variable with index i
+		int[] usedBy = new int[8];
+
+		// Color in breadth-first order, which uses only two colors for bipartite graphs such as grids.
+		final boolean[] visited = new boolean[nVariables];
+		final int[] queue = new int[nVariables];
+		for (int root = 0; root < nVariables; ++root)
+		{
+			if (visited[root] || hasDeterministicDirectedSibling(variables.get(root)))
+				continue;
+
+			visited[root] = true;
+			queue[0] = root;
+			for (int head = 0, tail = 1; head < tail; ++head)
+			{
+				final int i = queue[head];
+				final Variable v = variables.get(i);
+
+				for (int j = 0, nFactors = v.getSiblingCount(); j < nFactors; ++j)
+				{
+					final Factor factor = v.getSibling(j);
+					for (int k = 0, nVars = factor.getSiblingCount(); k < nVars; ++k)
+					{
+						final Integer index = variableIndex.get(factor.getSibling(k));
+						if (index != null)
+						{
+							final int color = colorOf[index];
+							if (color >= 0)
+							{
+								usedBy[color] = i + 1;
+							}
+							else if (!visited[index] && !hasDeterministicDirectedSibling(variables.get(index)))
+							{
+								visited[index] = true;
+								queue[tail++] = index;
+							}
+						}
+					}
+				}
+
+				int color = 0;
+				while (color < nColors && usedBy[color] == i + 1)
+					++color;
+				if (color == nColors && ++nColors > usedBy.length)
+					usedBy = Arrays.copyOf(usedBy, usedBy.length * 2);
+				colorOf[i] = color;
+			}
+		}
+
+		// Variables within each color are kept in the original order.
+		final ArrayList<ArrayList<NodeScheduleEntry>> colors = new ArrayList<ArrayList<NodeScheduleEntry>>(nColors);
+		for (int color = 0; color < nColors; ++color)
+			colors.add(new ArrayList<NodeScheduleEntry>());
+		final ArrayList<NodeScheduleEntry> uncolored = new ArrayList<NodeScheduleEntry>();
+		for (int i = 0; i < nVariables; ++i)
+		{
+			final int color = colorOf[i];
+			(color >= 0 ? colors.get(color) : uncolored).add(new NodeScheduleEntry(variables.get(i)));
+		}
+
+		for (ArrayList<NodeScheduleEntry> color : colors)
+			schedule.addColor(color);
+		// Variables connected to deterministic factors are each given their own color at the end.
+		for (NodeScheduleEntry entry : uncolored)
+			schedule.add(entry);
+
+		return schedule;
+	}
+
+	// Add a block schedule entry, which will replace individual variable updates included in the block
+	@Override
+	public void addBlockScheduleEntry(BlockScheduleEntry blockScheduleEntry)
+	{
+		final GibbsChromaticSchedule schedule = _schedule;
+		if (schedule == null)
+			throw new DimpleException("Schedule must be created before adding a block schedule entry.");
+
+		schedule.addBlockScheduleEntry(blockScheduleEntry);
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private static boolean hasDeterministicDirectedSibling(Variable v)
+	{
+		for (int j = 0, nFactors = v.getSiblingCount(); j < nFactors; ++j)
+		{
+			if (v.getSibling(j).getFactorFunction().isDeterministicDirected())
+				return true;
+		}
+		return false;
+	}
+}
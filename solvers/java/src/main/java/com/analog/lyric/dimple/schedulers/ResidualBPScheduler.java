@@ -0,0 +1,96 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.schedulers;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.schedulers.schedule.ISchedule;
+import com.analog.lyric.dimple.schedulers.schedule.ResidualBPSchedule;
+
+/**
+ * Creates a dynamic residual belief propagation schedule.
+ * <p>
+ * The schedule orders edge updates by how much the messages they depend on have changed since
+ * the edge was last updated, so that edges whose inputs have stopped changing are not
+ * recomputed. See {@link ResidualBPSchedule} for details.
+ * <p>
+ * This is intended for use with the BP solvers (e.g. SumProduct and MinSum). Like other dynamic
+ * schedules, it cannot be used with multithreading.
+ * <p>
+ * WARNING: This schedule DOES NOT respect any existing sub-graph scheduler associations. That is,
+ * if any sub-graph already has an associated scheduler, that scheduler is ignored in creating this
+ * schedule.
+ * <p>
+ * @since 0.08
+ */
+public class ResidualBPScheduler implements IScheduler
+{
+	/*-------
+	 * State
+	 */
+
+	private final double _tolerance;
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Constructs scheduler using {@link ResidualBPSchedule#DEFAULT_TOLERANCE}.
+	 */
+	public ResidualBPScheduler()
+	{
+		this(ResidualBPSchedule.DEFAULT_TOLERANCE);
+	}
+
+	/**
+	 * Constructs scheduler with given residual {@code tolerance}.
+	 * <p>
+	 * @param tolerance is a non-negative value. Edges whose residual is not larger than this value
+	 * will not be updated.
+	 */
+	public ResidualBPScheduler(double tolerance)
+	{
+		if (!(tolerance >= 0))
+		{
+			throw new DimpleException("Residual tolerance must be non-negative: %g", tolerance);
+		}
+		_tolerance = tolerance;
+	}
+
+	/*--------------------
+	 * IScheduler methods
+	 */
+
+	@Override
+	public ISchedule createSchedule(FactorGraph g)
+	{
+		return new ResidualBPSchedule(g, _tolerance);
+	}
+
+	/*-------------------------------
+	 * ResidualBPScheduler methods
+	 */
+
+	/**
+	 * The residual tolerance that will be used by schedules created by this object.
+	 */
+	public double getTolerance()
+	{
+		return _tolerance;
+	}
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.schedulers.schedule;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.analog.lyric.dimple.model.core.INode;
+import com.analog.lyric.dimple.schedulers.GibbsChromaticScheduler;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.BlockScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.EdgeScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.IScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.NodeScheduleEntry;
+
+/**
+ * A fixed Gibbs schedule whose entries are partitioned into colors.
+ * <p>
+ * The entries of each color are contiguous in the schedule, and the entries within a color
+ * must not share any factors, so that the Gibbs solver may update them in any order, or
+ * concurrently, with the same result as updating them in schedule order. A full pass over the
+ * schedule is therefore still a systematic scan.
+ * <p>
+ * Entries added individually using {@link #add(IScheduleEntry)}, including block entries added
+ * using {@link #addBlockScheduleEntry(BlockScheduleEntry)}, are given a color of their own.
+ * <p>
+ * @see GibbsChromaticScheduler
+ * @since 0.08
+ */
+public class GibbsChromaticSchedule extends FixedSchedule
+{
+	/*-------
+	 * State
+	 */
+
+	private final ArrayList<ArrayList<IScheduleEntry>> _colors = new ArrayList<ArrayList<IScheduleEntry>>();
+
+	/*-----------------------
+	 * FixedSchedule methods
+	 */
+
+	/**
+	 * Appends entry to schedule with a color of its own.
+	 */
+	@Override
+	public void add(IScheduleEntry entry)
+	{
+		super.add(entry);
+		final ArrayList<IScheduleEntry> color = new ArrayList<IScheduleEntry>(1);
+		color.add(entry);
+		_colors.add(color);
+	}
+
+	/**
+	 * Replaces the entries for nodes in the block, removing any colors left empty, and
+	 * appends the block entry with a color of its own.
+	 */
+	@Override
+	public void addBlockScheduleEntry(BlockScheduleEntry blockScheduleEntry)
+	{
+		final Set<Long> ids = new HashSet<Long>();
+		for (INode node : blockScheduleEntry.getNodeList())
+			ids.add(node.getId());
+
+		for (Iterator<ArrayList<IScheduleEntry>> colors = _colors.iterator(); colors.hasNext(); )
+		{
+			final ArrayList<IScheduleEntry> color = colors.next();
+			for (Iterator<IScheduleEntry> entries = color.iterator(); entries.hasNext(); )
+			{
+				final IScheduleEntry entry = entries.next();
+				if ((entry instanceof NodeScheduleEntry && ids.contains(((NodeScheduleEntry)entry).getNode().getId())) ||
+					(entry instanceof EdgeScheduleEntry && ids.contains(((EdgeScheduleEntry)entry).getNode().getId())))
+				{
+					entries.remove();
+				}
+			}
+			if (color.isEmpty())
+				colors.remove();
+		}
+
+		super.addBlockScheduleEntry(blockScheduleEntry);
+	}
+
+	/*--------------------------------
+	 * GibbsChromaticSchedule methods
+	 */
+
+	/**
+	 * Appends entries to schedule as a new color.
+	 * <p>
+	 * The caller is responsible for ensuring that the entries do not share any factors.
+	 * Does nothing if {@code entries} is empty.
+	 */
+	public void addColor(Collection<? extends IScheduleEntry> entries)
+	{
+		if (!entries.isEmpty())
+		{
+			_schedule.addAll(entries);
+			_colors.add(new ArrayList<IScheduleEntry>(entries));
+		}
+	}
+
+	/**
+	 * The entries with given color in schedule order.
+	 * <p>
+	 * @param color is in the range [0, {@link #getColorCount()}-1].
+	 */
+	public List<IScheduleEntry> getColor(int color)
+	{
+		return Collections.unmodifiableList(_colors.get(color));
+	}
+
+	/**
+	 * The number of colors in the schedule.
+	 */
+	public int getColorCount()
+	{
+		return _colors.size();
+	}
+}
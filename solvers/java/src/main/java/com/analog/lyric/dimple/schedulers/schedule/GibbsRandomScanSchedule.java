@@ -79,7 +79,7 @@ public class GibbsRandomScanSchedule extends ScheduleBase implements IGibbsSched
 	{
 		// Choose an entry in the list of schedule entries uniformly at random
 		// Note: the DimpleRandomGenerator is used here so that if a fixed seed is set in the solver, then the schedule will also be repeatable
-		int entryIndex = DimpleRandomGenerator.rand.nextInt(_scheduleEntryPool.size());
+		int entryIndex = DimpleRandomGenerator.rand().nextInt(_scheduleEntryPool.size());
 		
 		// Create a single schedule entry that includes all of the selected variable
 		ArrayList<IScheduleEntry> updateList = new ArrayList<IScheduleEntry>();
@@ -41,4 +41,13 @@ public interface ISchedule extends Iterable<IScheduleEntry>
 	public @Nullable FactorGraph getFactorGraph();
 	public @Nullable ISchedule copy(Map<Node,Node> old2newObjs) ;
 	public @Nullable ISchedule copyToRoot(Map<Node,Node> old2newObjs) ;
+	
+	/**
+	 * Invoked when the solver graph that uses this schedule is initialized.
+	 * <p>
+	 * Initialization resets all of the messages, so schedules that keep state derived
+	 * from them, such as message residuals, should discard it here.
+	 * @since 0.08
+	 */
+	public void reset();
 }
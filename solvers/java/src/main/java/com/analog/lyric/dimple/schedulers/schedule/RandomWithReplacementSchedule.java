@@ -86,7 +86,7 @@ public class RandomWithReplacementSchedule extends ScheduleBase
 		// One iteration consists of the number of factor updates equaling the total number of factors, even though not all factors will necessarily be updated
 		for (int iFactor = 0; iFactor < _numFactors; iFactor++)
 		{
-			int factorIndex = DimpleRandomGenerator.rand.nextInt(_numFactors);
+			int factorIndex = DimpleRandomGenerator.rand().nextInt(_numFactors);
 			Factor f = ((ArrayList<Factor>)_factors.values()).get(factorIndex);
 			for (INode v : f.getSiblings())
 			{
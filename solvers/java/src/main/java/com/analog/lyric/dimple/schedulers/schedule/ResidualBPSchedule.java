@@ -0,0 +1,453 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.schedulers.schedule;
+
+import static java.util.Objects.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.collect.BinaryHeap;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.INode;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.schedulers.ResidualBPScheduler;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.EdgeScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.IScheduleEntry;
+import com.analog.lyric.dimple.solvers.core.MessageConvergenceTracker;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.IParameterizedMessage;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
+
+/**
+ * Dynamic schedule for residual belief propagation.
+ * <p>
+ * Every directed edge in the graph is kept in a priority queue keyed by an estimate of the
+ * residual of its outgoing message, i.e. how much that message would change if it were recomputed.
+ * The edge with the largest residual is always updated next. After an edge is updated, the actual
+ * change in its output message is measured and added to the residual of every edge that consumes
+ * that message (all of the outgoing edges of the sibling node other than the one leading back),
+ * and the residual of the updated edge is cleared.
+ * <p>
+ * Each iteration updates each edge at most once, so it never performs more updates than a flooding
+ * schedule would, and ends as soon as no remaining edge has a residual larger than the
+ * {@linkplain #getTolerance() tolerance}. The first iteration after construction or {@link #reset()}
+ * updates every edge once. The number of updates avoided relative to flooding is available from
+ * {@link #getSavedUpdateCount()}.
+ * <p>
+ * Changes to discrete messages are measured by the largest absolute difference between the old
+ * and new values. Changes to {@link IParameterizedMessage}s are measured by KL divergence. Changes
+ * in messages of any other type are considered to be infinite.
+ * <p>
+ * WARNING: This schedule DOES NOT respect any existing sub-graph scheduler associations. That is,
+ * if any sub-graph already has an associated scheduler, that scheduler is ignored in creating this
+ * schedule.
+ * <p>
+ * @since 0.08
+ * @see ResidualBPScheduler
+ */
+public class ResidualBPSchedule extends ScheduleBase
+{
+	/*-----------
+	 * Constants
+	 */
+
+	/**
+	 * Default value for {@link #getTolerance()}.
+	 */
+	public static final double DEFAULT_TOLERANCE = 1e-9;
+
+	/*-------
+	 * State
+	 */
+
+	private final double _tolerance;
+
+	/**
+	 * Priority queue of edges not yet updated in the current iteration. Since the heap returns
+	 * the lowest priority first, the priority of each entry is the negated residual.
+	 */
+	private final BinaryHeap<ResidualEdgeEntry> _queue = new BinaryHeap<ResidualEdgeEntry>();
+
+	private final ArrayList<ResidualEdgeEntry> _edges = new ArrayList<ResidualEdgeEntry>();
+
+	/**
+	 * Edges removed from {@link #_queue} by the current iteration.
+	 */
+	private final ArrayList<ResidualEdgeEntry> _visited = new ArrayList<ResidualEdgeEntry>();
+
+	/**
+	 * Scratch space used to save the previous value of discrete messages.
+	 */
+	private double[] _savedMessage = new double[0];
+
+	private long _iterationCount;
+	private long _updateCount;
+
+	/*---------------
+	 * Schedule entry
+	 */
+
+	/**
+	 * Edge entry that maintains the residuals of its dependent edges when it is updated.
+	 */
+	private final class ResidualEdgeEntry extends EdgeScheduleEntry
+	{
+		private double _residual = Double.POSITIVE_INFINITY;
+		private @Nullable BinaryHeap.Entry<ResidualEdgeEntry> _queueEntry;
+		private ResidualEdgeEntry[] _dependents = new ResidualEdgeEntry[0];
+
+		private ResidualEdgeEntry(INode node, int portNum)
+		{
+			super(node, portNum);
+		}
+
+		@Override
+		public void update()
+		{
+			final ISolverNode snode = requireNonNull(getNode().getSolver());
+			final int portNum = getPortNum();
+			final Object oldMsg = snode.getOutputMsg(portNum);
+
+			double residual = Double.POSITIVE_INFINITY;
+
+			if (oldMsg instanceof double[])
+			{
+				final double[] oldValues = (double[])oldMsg;
+				final int length = oldValues.length;
+				double[] saved = _savedMessage;
+				if (saved.length < length)
+				{
+					_savedMessage = saved = new double[length];
+				}
+				System.arraycopy(oldValues, 0, saved, 0, length);
+
+				super.update();
+
+				final Object newMsg = snode.getOutputMsg(portNum);
+				if (newMsg instanceof double[] && ((double[])newMsg).length == length)
+				{
+					residual = MessageConvergenceTracker.maxDifference(saved, (double[])newMsg, length);
+				}
+			}
+			else if (oldMsg instanceof IParameterizedMessage)
+			{
+				final IParameterizedMessage saved = ((IParameterizedMessage)oldMsg).clone();
+
+				super.update();
+
+				final Object newMsg = snode.getOutputMsg(portNum);
+				if (newMsg instanceof IParameterizedMessage)
+				{
+					final double divergence = Math.abs(saved.computeKLDivergence((IParameterizedMessage)newMsg));
+					if (!Double.isNaN(divergence))
+					{
+						residual = divergence;
+					}
+				}
+			}
+			else
+			{
+				super.update();
+			}
+
+			++_updateCount;
+
+			setResidual(0.0);
+			if (residual > 0)
+			{
+				for (ResidualEdgeEntry dependent : _dependents)
+				{
+					dependent.setResidual(dependent._residual + residual);
+				}
+			}
+		}
+
+		private void setResidual(double residual)
+		{
+			_residual = residual;
+			final BinaryHeap.Entry<ResidualEdgeEntry> entry = _queueEntry;
+			if (entry != null)
+			{
+				_queue.changePriority(entry, -residual);
+			}
+		}
+	}
+
+	/*--------------
+	 * Construction
+	 */
+
+	public ResidualBPSchedule(FactorGraph factorGraph)
+	{
+		this(factorGraph, DEFAULT_TOLERANCE);
+	}
+
+	/**
+	 * Constructs schedule for given graph.
+	 * <p>
+	 * @param tolerance is the residual at or below which edges will not be updated.
+	 */
+	public ResidualBPSchedule(FactorGraph factorGraph, double tolerance)
+	{
+		_factorGraph = factorGraph;
+		_tolerance = tolerance;
+		initialize();
+	}
+
+	/*------------------
+	 * ISchedule methods
+	 */
+
+	@Override
+	public void attach(FactorGraph factorGraph)
+	{
+		super.attach(factorGraph);
+		initialize();
+	}
+
+	@Override
+	public FactorGraph getFactorGraph()
+	{
+		return requireNonNull(_factorGraph);
+	}
+
+	/**
+	 * Returns an iterator over the edges to be updated in the next iteration.
+	 * <p>
+	 * The iterator chooses each edge lazily based on the residuals at the time {@link Iterator#next()}
+	 * is invoked, so the returned entries should be updated as they are produced. An iteration that
+	 * produces entries none of which are updated (e.g. one that merely visits the schedule) is not
+	 * counted by {@link #getIterationCount()}.
+	 */
+	@Override
+	public Iterator<IScheduleEntry> iterator()
+	{
+		requeueVisited();
+		++_iterationCount;
+
+		return new Iterator<IScheduleEntry>() {
+			private final long _updateCountAtStart = _updateCount;
+			private boolean _done = false;
+
+			@Override
+			public boolean hasNext()
+			{
+				if (!_done)
+				{
+					final BinaryHeap.Entry<ResidualEdgeEntry> entry = _queue.peekEntry();
+					if (entry != null && entry.getElement()._residual > _tolerance)
+					{
+						return true;
+					}
+
+					_done = true;
+					if (!_visited.isEmpty() && _updateCount == _updateCountAtStart)
+					{
+						--_iterationCount;
+					}
+					requeueVisited();
+				}
+				return false;
+			}
+
+			@Override
+			public IScheduleEntry next()
+			{
+				if (!hasNext())
+				{
+					throw new NoSuchElementException();
+				}
+				final ResidualEdgeEntry edge = requireNonNull(_queue.poll());
+				edge._queueEntry = null;
+				_visited.add(edge);
+				return edge;
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException("remove");
+			}
+		};
+	}
+
+	/*-----------------------------
+	 * ResidualBPSchedule methods
+	 */
+
+	/**
+	 * Number of edge updates that a flooding schedule would have performed over the
+	 * iterations run since the last {@link #reset()}.
+	 */
+	public long getFloodingUpdateCount()
+	{
+		return _iterationCount * _edges.size();
+	}
+
+	/**
+	 * Number of iterations run since the last {@link #reset()}.
+	 */
+	public long getIterationCount()
+	{
+		return _iterationCount;
+	}
+
+	/**
+	 * The current largest edge residual.
+	 * <p>
+	 * Returns zero if there are no edges and {@link Double#POSITIVE_INFINITY} if there are
+	 * edges that have not yet been updated since the last {@link #reset()}.
+	 */
+	public double getMaxResidual()
+	{
+		double max = 0.0;
+		for (ResidualEdgeEntry edge : _edges)
+		{
+			max = Math.max(max, edge._residual);
+		}
+		return max;
+	}
+
+	/**
+	 * Number of edge updates avoided relative to a flooding schedule since the last {@link #reset()}.
+	 * <p>
+	 * This is simply {@link #getFloodingUpdateCount()} - {@link #getUpdateCount()}.
+	 */
+	public long getSavedUpdateCount()
+	{
+		return getFloodingUpdateCount() - _updateCount;
+	}
+
+	/**
+	 * The residual at or below which edges will not be updated.
+	 */
+	public double getTolerance()
+	{
+		return _tolerance;
+	}
+
+	/**
+	 * Number of edge updates performed since the last {@link #reset()}.
+	 */
+	public long getUpdateCount()
+	{
+		return _updateCount;
+	}
+
+	/**
+	 * Marks every edge as needing to be updated and clears the update counts.
+	 * <p>
+	 * This is invoked automatically when the solver graph is initialized, since that
+	 * resets all of the messages.
+	 */
+	@Override
+	public void reset()
+	{
+		requeueVisited();
+		final BinaryHeap<ResidualEdgeEntry> queue = _queue;
+		queue.deferOrderingForBulkChange(_edges.size());
+		for (ResidualEdgeEntry edge : _edges)
+		{
+			edge.setResidual(Double.POSITIVE_INFINITY);
+		}
+		_iterationCount = 0;
+		_updateCount = 0;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void initialize()
+	{
+		_queue.clear();
+		_edges.clear();
+		_visited.clear();
+		_iterationCount = 0;
+		_updateCount = 0;
+
+		// Outgoing edge entries for each node, indexed by port number.
+		final Map<INode, ResidualEdgeEntry[]> nodeEdges = new HashMap<INode, ResidualEdgeEntry[]>();
+
+		for (Factor factor : getFactorGraph().getNonGraphFactors())
+		{
+			for (int i = 0, n = factor.getSiblingCount(); i < n; ++i)
+			{
+				final INode variable = factor.getSibling(i);
+				addEdge(nodeEdges, factor, i);
+				addEdge(nodeEdges, variable, factor.getSiblingPortIndex(i));
+			}
+		}
+
+		for (ResidualEdgeEntry edge : _edges)
+		{
+			final INode node = edge.getNode();
+			final int portNum = edge.getPortNum();
+			final INode sibling = node.getSibling(portNum);
+			final int reversePortNum = node.getSiblingPortIndex(portNum);
+
+			final ArrayList<ResidualEdgeEntry> dependents = new ArrayList<ResidualEdgeEntry>();
+			for (ResidualEdgeEntry siblingEdge : requireNonNull(nodeEdges.get(sibling)))
+			{
+				if (siblingEdge != null && siblingEdge.getPortNum() != reversePortNum)
+				{
+					dependents.add(siblingEdge);
+				}
+			}
+			edge._dependents = dependents.toArray(edge._dependents);
+		}
+
+		final BinaryHeap<ResidualEdgeEntry> queue = _queue;
+		queue.deferOrderingForBulkAdd(_edges.size());
+		for (ResidualEdgeEntry edge : _edges)
+		{
+			edge._queueEntry = queue.offer(edge, -edge._residual);
+		}
+	}
+
+	/**
+	 * Puts edges removed from the queue by the last iteration back in the queue.
+	 */
+	private void requeueVisited()
+	{
+		final ArrayList<ResidualEdgeEntry> visited = _visited;
+		final BinaryHeap<ResidualEdgeEntry> queue = _queue;
+		queue.deferOrderingForBulkAdd(visited.size());
+		for (ResidualEdgeEntry edge : visited)
+		{
+			edge._queueEntry = queue.offer(edge, -edge._residual);
+		}
+		visited.clear();
+	}
+
+	private void addEdge(Map<INode, ResidualEdgeEntry[]> nodeEdges, INode node, int portNum)
+	{
+		ResidualEdgeEntry[] edges = nodeEdges.get(node);
+		if (edges == null)
+		{
+			nodeEdges.put(node, edges = new ResidualEdgeEntry[node.getSiblingCount()]);
+		}
+		final ResidualEdgeEntry edge = new ResidualEdgeEntry(node, portNum);
+		edges[portNum] = edge;
+		_edges.add(edge);
+	}
+}
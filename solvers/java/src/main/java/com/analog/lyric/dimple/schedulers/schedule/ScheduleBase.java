@@ -52,4 +52,14 @@ public abstract class ScheduleBase implements ISchedule
 	{
 		return null;
 	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Does nothing by default.
+	 */
+	@Override
+	public void reset()
+	{
+	}
 }
@@ -0,0 +1,97 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core;
+
+import java.io.PrintStream;
+
+import com.analog.lyric.dimple.events.SolverGraphEvent;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph;
+
+/**
+ * Event raised by a BP solver graph at the end of a run of iterations when
+ * convergence testing is enabled.
+ * <p>
+ * @since 0.08
+ * @see com.analog.lyric.dimple.options.BPOptions#convergenceTolerance
+ */
+public class MessageConvergenceEvent extends SolverGraphEvent
+{
+	private static final long serialVersionUID = 1L;
+
+	/*-------
+	 * State
+	 */
+	
+	private final int _iterations;
+	private final double _residual;
+	private final boolean _converged;
+	
+	/*--------------
+	 * Construction
+	 */
+	
+	MessageConvergenceEvent(ISolverFactorGraph source, int iterations, double residual, boolean converged)
+	{
+		super(source);
+		_iterations = iterations;
+		_residual = residual;
+		_converged = converged;
+	}
+
+	/*---------------------
+	 * DimpleEvent methods
+	 */
+	
+	@Override
+	protected void printDetails(PrintStream out, int verbosity)
+	{
+		out.format("%s after %d iterations", _converged ? "converged" : "not converged", _iterations);
+		if (verbosity > 0)
+		{
+			out.format(", residual %g", _residual);
+		}
+	}
+	
+	/*---------------------------------
+	 * MessageConvergenceEvent methods
+	 */
+
+	/**
+	 * True if the graph converged, causing iteration to stop early.
+	 */
+	public boolean converged()
+	{
+		return _converged;
+	}
+	
+	/**
+	 * The number of iterations run since the solver graph was initialized.
+	 */
+	public int iterations()
+	{
+		return _iterations;
+	}
+	
+	/**
+	 * The residual computed for the last iteration.
+	 * @see MessageConvergenceTracker#getResidual()
+	 */
+	public double residual()
+	{
+		return _residual;
+	}
+}
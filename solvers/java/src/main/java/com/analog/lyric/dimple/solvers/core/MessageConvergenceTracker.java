@@ -0,0 +1,308 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core;
+
+import static java.util.Objects.*;
+
+import java.util.ArrayList;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.IParameterizedMessage;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
+
+/**
+ * Measures how much the messages of a graph change from one iteration to the next.
+ * <p>
+ * Keeps a copy of the messages in both directions on every edge of the graph as of the end of the
+ * previous iteration. When an iteration completes, computes the change in each message and combines
+ * them into a single residual using the {@linkplain #getNorm() norm}. The graph is considered to
+ * have converged when at least {@linkplain #getMinIterations() the minimum number} of iterations
+ * have been run and the residual is no larger than the {@linkplain #getTolerance() tolerance}.
+ * <p>
+ * The change in a discrete message (represented as a {@code double[]}) is the largest absolute
+ * difference between its old and new values. The change in an {@link IParameterizedMessage} is the
+ * KL divergence between its old and new values. Messages of other types are ignored.
+ * <p>
+ * @since 0.08
+ * @see com.analog.lyric.dimple.options.BPOptions#convergenceTolerance
+ */
+public final class MessageConvergenceTracker
+{
+	/*-------
+	 * State
+	 */
+	
+	private final double _tolerance;
+	private final ConvergenceNorm _norm;
+	private final int _minIterations;
+	
+	private final ISolverFactor[] _factors;
+	
+	/**
+	 * Copies of messages from previous iteration indexed by factor and then by edge,
+	 * with the output message at 2*edge and the input message at 2*edge+1. Null until
+	 * {@link #start()} is first invoked.
+	 */
+	private @Nullable Object[][] _savedMessages = null;
+	
+	private int _iterations = 0;
+	private double _residual = Double.NaN;
+	private boolean _converged = false;
+	
+	/*--------------
+	 * Construction
+	 */
+	
+	/**
+	 * Constructs tracker for messages of all factors in {@code graph} and its subgraphs.
+	 * <p>
+	 * The graph must already have its solver set.
+	 */
+	public MessageConvergenceTracker(FactorGraph graph, double tolerance, ConvergenceNorm norm, int minIterations)
+	{
+		_tolerance = tolerance;
+		_norm = norm;
+		_minIterations = minIterations;
+		
+		final ArrayList<ISolverFactor> factors = new ArrayList<ISolverFactor>();
+		for (Factor factor : graph.getNonGraphFactors())
+		{
+			factors.add(requireNonNull(factor.getSolver()));
+		}
+		_factors = factors.toArray(new ISolverFactor[factors.size()]);
+	}
+	
+	/*-----------------------------------
+	 * MessageConvergenceTracker methods
+	 */
+	
+	/**
+	 * Records the current value of the messages if they have not already been recorded.
+	 * <p>
+	 * Should be invoked before running a series of iterations.
+	 */
+	public void start()
+	{
+		if (_savedMessages == null)
+		{
+			final ISolverFactor[] factors = _factors;
+			final Object[][] savedMessages = new Object[factors.length][];
+			for (int i = 0; i < factors.length; ++i)
+			{
+				final ISolverFactor factor = factors[i];
+				final int nEdges = factor.getSiblingCount();
+				final Object[] saved = savedMessages[i] = new Object[nEdges * 2];
+				for (int edge = 0; edge < nEdges; ++edge)
+				{
+					saved[edge * 2] = copyMessage(factor.getOutputMsg(edge), null);
+					saved[edge * 2 + 1] = copyMessage(factor.getInputMsg(edge), null);
+				}
+			}
+			_savedMessages = savedMessages;
+		}
+	}
+	
+	/**
+	 * Computes the residual for the iteration that just completed and records the new message values.
+	 * <p>
+	 * Invokes {@link #start()} if necessary.
+	 * <p>
+	 * @return true if graph has converged, in which case no further iterations need to be run.
+	 */
+	public boolean endIteration()
+	{
+		start();
+		
+		final ISolverFactor[] factors = _factors;
+		final Object[][] savedMessages = requireNonNull(_savedMessages);
+		
+		double max = 0.0, sum = 0.0;
+		int count = 0;
+		
+		for (int i = 0; i < factors.length; ++i)
+		{
+			final ISolverFactor factor = factors[i];
+			final Object[] saved = savedMessages[i];
+			for (int j = 0; j < saved.length; ++j)
+			{
+				final int edge = j >> 1;
+				final Object msg = (j & 1) == 0 ? factor.getOutputMsg(edge) : factor.getInputMsg(edge);
+				final Object oldMsg = saved[j];
+				if (oldMsg != null || isSupportedMessage(msg))
+				{
+					final double delta = messageDelta(oldMsg, msg);
+					max = Math.max(max, delta);
+					sum += delta;
+					++count;
+					saved[j] = copyMessage(msg, oldMsg);
+				}
+			}
+		}
+		
+		++_iterations;
+		
+		switch (_norm)
+		{
+		case AVERAGE:
+			_residual = count > 0 ? sum / count : 0.0;
+			break;
+		case MAXIMUM:
+		default:
+			_residual = max;
+			break;
+		}
+		
+		return _converged = _iterations >= _minIterations && _residual <= _tolerance;
+	}
+
+	/**
+	 * The number of iterations completed since construction.
+	 */
+	public int getIterations()
+	{
+		return _iterations;
+	}
+	
+	/**
+	 * Minimum number of iterations that must be run before {@link #isConverged()} can be true.
+	 */
+	public int getMinIterations()
+	{
+		return _minIterations;
+	}
+	
+	/**
+	 * Method used to combine changes in individual messages into a single residual.
+	 */
+	public ConvergenceNorm getNorm()
+	{
+		return _norm;
+	}
+	
+	/**
+	 * The residual for the most recently completed iteration, or NaN if no iterations have completed.
+	 */
+	public double getResidual()
+	{
+		return _residual;
+	}
+	
+	/**
+	 * Residual at or below which graph is considered to have converged.
+	 */
+	public double getTolerance()
+	{
+		return _tolerance;
+	}
+	
+	/**
+	 * True if most recent invocation of {@link #endIteration()} returned true.
+	 */
+	public boolean isConverged()
+	{
+		return _converged;
+	}
+	
+	/**
+	 * Returns the largest absolute difference between the first {@code length} elements of
+	 * two arrays.
+	 * <p>
+	 * Equal elements are treated as having no difference even if they are infinite. Returns
+	 * {@link Double#POSITIVE_INFINITY} if any difference is not a number.
+	 */
+	public static double maxDifference(double[] oldValues, double[] newValues, int length)
+	{
+		double max = 0.0;
+		for (int i = 0; i < length; ++i)
+		{
+			final double oldValue = oldValues[i], newValue = newValues[i];
+			if (oldValue != newValue)
+			{
+				// The equality test above avoids computing infinity minus infinity.
+				final double diff = Math.abs(newValue - oldValue);
+				if (diff > max)
+				{
+					max = diff;
+				}
+				else if (Double.isNaN(diff))
+				{
+					return Double.POSITIVE_INFINITY;
+				}
+			}
+		}
+		return max;
+	}
+	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	/**
+	 * Returns copy of {@code msg}, reusing {@code previous} copy if possible, or null if
+	 * {@code msg} is not a supported message type.
+	 */
+	private static @Nullable Object copyMessage(@Nullable Object msg, @Nullable Object previous)
+	{
+		if (msg instanceof double[])
+		{
+			final double[] values = (double[])msg;
+			if (previous instanceof double[] && ((double[])previous).length == values.length)
+			{
+				System.arraycopy(values, 0, previous, 0, values.length);
+				return previous;
+			}
+			return values.clone();
+		}
+		else if (msg instanceof IParameterizedMessage)
+		{
+			return ((IParameterizedMessage)msg).clone();
+		}
+		
+		return null;
+	}
+	
+	private static boolean isSupportedMessage(@Nullable Object msg)
+	{
+		return msg instanceof double[] || msg instanceof IParameterizedMessage;
+	}
+	
+	private static double messageDelta(@Nullable Object oldMsg, @Nullable Object msg)
+	{
+		if (msg instanceof double[])
+		{
+			final double[] values = (double[])msg;
+			if (oldMsg instanceof double[] && ((double[])oldMsg).length == values.length)
+			{
+				return maxDifference((double[])oldMsg, values, values.length);
+			}
+		}
+		else if (msg instanceof IParameterizedMessage)
+		{
+			if (oldMsg instanceof IParameterizedMessage)
+			{
+				final double divergence = Math.abs(((IParameterizedMessage)oldMsg).computeKLDivergence((IParameterizedMessage)msg));
+				return Double.isNaN(divergence) ? Double.POSITIVE_INFINITY : divergence;
+			}
+		}
+		
+		// Message type changed
+		return Double.POSITIVE_INFINITY;
+	}
+}
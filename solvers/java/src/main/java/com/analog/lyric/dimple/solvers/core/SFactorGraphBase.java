@@ -24,6 +24,7 @@ import java.util.Objects;
 import org.eclipse.jdt.annotation.Nullable;
 
 import com.analog.lyric.dimple.environment.DimpleThread;
+import com.analog.lyric.dimple.events.IDimpleEventListener;
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
 import com.analog.lyric.dimple.model.core.FactorGraph;
@@ -56,6 +57,15 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 	protected int _numIterations = 1;		// Default number of iterations unless otherwise specified
 	private @Nullable MultiThreadingManager _multithreader; // = new MultiThreadingManager();
 	private boolean _useMultithreading = false;
+	private int _numIterationsUsed = 0;
+	private @Nullable MessageConvergenceTracker _convergenceTracker = null;
+	
+	/*
+	 * Cached by getMoveFactors() and getMoveVariables()
+	 */
+	private @Nullable Factor[] _moveFactors = null;
+	private @Nullable Variable[] _moveVariables = null;
+	private long _moveNodesVersion = -1;
 
 	/*--------------
 	 * Construction
@@ -135,29 +145,64 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 	public void moveMessages(ISolverNode other)
 	{
 		SFactorGraphBase sother = (SFactorGraphBase)other;
-		FactorList otherFactors = sother._factorGraph.getFactors();
-		FactorList myFactors = _factorGraph.getFactors();
+		final Factor[] otherFactors = sother.getMoveFactors();
+		final Factor[] myFactors = getMoveFactors();
 		
-		if (otherFactors.size() != myFactors.size())
+		if (otherFactors.length != myFactors.length)
 			throw new DimpleException("Graphs dont' match");
 		
-		for (int i = 0; i < myFactors.size(); i++)
+		for (int i = 0; i < myFactors.length; i++)
 		{
-			ISolverFactor sf = requireNonNull(myFactors.getByIndex(i).getSolver());
-			sf.moveMessages(Objects.requireNonNull(otherFactors.getByIndex(i).getSolver()));
+			ISolverFactor sf = requireNonNull(myFactors[i].getSolver());
+			sf.moveMessages(Objects.requireNonNull(otherFactors[i].getSolver()));
 		}
 		
-		VariableList myVars = _factorGraph.getVariablesFlat();
-		VariableList otherVars = sother._factorGraph.getVariablesFlat();
+		final Variable[] myVars = getMoveVariables();
+		final Variable[] otherVars = sother.getMoveVariables();
 		
-		for (int i = 0; i < myVars.size(); i++)
+		for (int i = 0; i < myVars.length; i++)
 		{
-			ISolverVariable sv = requireNonNull(myVars.getByIndex(i).getSolver());
-			sv.moveNonEdgeSpecificState(Objects.requireNonNull(otherVars.getByIndex(i).getSolver()));
+			ISolverVariable sv = requireNonNull(myVars[i].getSolver());
+			sv.moveNonEdgeSpecificState(Objects.requireNonNull(otherVars[i].getSolver()));
 		}
 		
 	}
 
+	/**
+	 * Factors in the order used by {@link #moveMessages(ISolverNode)}.
+	 * <p>
+	 * Rolled-up graphs move messages between every pair of adjacent nested graphs in the buffer
+	 * on each step, so this is cached until the graph structure changes instead of rebuilding
+	 * the graph's factor list on each call.
+	 */
+	private Factor[] getMoveFactors()
+	{
+		updateMoveNodes();
+		return requireNonNull(_moveFactors);
+	}
+	
+	/**
+	 * Variables in the order used by {@link #moveMessages(ISolverNode)}.
+	 * @see #getMoveFactors()
+	 */
+	private Variable[] getMoveVariables()
+	{
+		updateMoveNodes();
+		return requireNonNull(_moveVariables);
+	}
+	
+	private void updateMoveNodes()
+	{
+		final long version = _factorGraph.structureVersion();
+		if (_moveFactors == null || _moveNodesVersion != version)
+		{
+			final FactorList factors = _factorGraph.getFactors();
+			_moveFactors = factors.toArray(new Factor[factors.size()]);
+			final VariableList variables = _factorGraph.getVariablesFlat();
+			_moveVariables = variables.toArray(new Variable[variables.size()]);
+			_moveNodesVersion = version;
+		}
+	}
 
 	@Override
 	public boolean customFactorExists(String funcName)
@@ -191,6 +236,48 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 	{
 		return _numIterations;
 	}
+	
+	/**
+	 * Number of iterations actually run since the solver graph was last initialized.
+	 * <p>
+	 * This may be less than {@link #getNumIterations()} if iteration stopped early because
+	 * the messages converged.
+	 * <p>
+	 * @since 0.08
+	 * @see BPOptions#convergenceTolerance
+	 */
+	public int getNumIterationsUsed()
+	{
+		return _numIterationsUsed;
+	}
+	
+	/**
+	 * The residual computed for the most recent iteration.
+	 * <p>
+	 * This is only computed when {@link BPOptions#convergenceTolerance} is positive. Returns NaN
+	 * if not computed or if no iterations have been run since the solver graph was initialized.
+	 * <p>
+	 * @since 0.08
+	 * @see MessageConvergenceTracker#getResidual()
+	 */
+	public double getConvergenceResidual()
+	{
+		final MessageConvergenceTracker tracker = _convergenceTracker;
+		return tracker != null ? tracker.getResidual() : Double.NaN;
+	}
+	
+	/**
+	 * True if convergence testing is enabled and the residual for the most recent iteration
+	 * was within tolerance.
+	 * <p>
+	 * @since 0.08
+	 * @see BPOptions#convergenceTolerance
+	 */
+	public boolean hasConverged()
+	{
+		final MessageConvergenceTracker tracker = _convergenceTracker;
+		return tracker != null && tracker.isConverged();
+	}
 
 	@Override
 	public void update()
@@ -214,9 +301,20 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 	}
 
 
+	/**
+	 * Runs up to {@code numIters} iterations.
+	 * <p>
+	 * When {@link BPOptions#convergenceTolerance} is positive, this will stop early once the messages
+	 * have converged.
+	 * <p>
+	 * @see #getNumIterationsUsed()
+	 * @see #getConvergenceResidual()
+	 */
 	@Override
 	public void iterate(int numIters)
 	{
+		beginIterations();
+		
 		final MultiThreadingManager multithreader = _multithreader;
 		if (multithreader == null || ! _useMultithreading)
 		{
@@ -225,16 +323,33 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 			{
 				update();
 				
+				if (endIteration())
+					break;
+				
 				// Allow interruption (if the solver is run as a thread); currently interruption is allowed only between iterations, not within a single iteration
 				if (Thread.interrupted())
 					return;
 			}
 		}
-		else
+		else if (_convergenceTracker == null)
 		{
 			// *** Multiple threads
 			multithreader.iterate(numIters);
+			_numIterationsUsed += numIters;
+		}
+		else
+		{
+			// *** Multiple threads, testing for convergence after each iteration
+			for (int iterNum = 0; iterNum < numIters; iterNum++)
+			{
+				multithreader.iterate(1);
+				
+				if (endIteration())
+					break;
+			}
 		}
+		
+		endIterations();
 	}
 	
 	@Override
@@ -576,6 +691,68 @@ public abstract class SFactorGraphBase  extends SNode implements ISolverFactorGr
 			f.requireSolver("initialize").initialize();
 		for (FactorGraph g : fg.getOwnedGraphs())
 			g.requireSolver("initialize").initialize();
+		
+		_numIterationsUsed = 0;
+		final double convergenceTolerance = getOptionOrDefault(BPOptions.convergenceTolerance);
+		_convergenceTracker = convergenceTolerance > 0 && !fg.hasParentGraph() ?
+			new MessageConvergenceTracker(fg, convergenceTolerance, getOptionOrDefault(BPOptions.convergenceNorm),
+				getOptionOrDefault(BPOptions.minIterations)) : null;
+		
+		// Let the schedule know that the messages have been reset.
+		if (fg.isUpToDateSchedulePresent())
+		{
+			fg.getSchedule().reset();
+		}
+	}
+	
+	/*------------------------------
+	 * Protected iteration methods
+	 */
+	
+	/**
+	 * Should be invoked at the start of a run of iterations by subclasses that override {@link #iterate(int)}.
+	 * @since 0.08
+	 */
+	protected void beginIterations()
+	{
+		final MessageConvergenceTracker tracker = _convergenceTracker;
+		if (tracker != null)
+		{
+			tracker.start();
+		}
+	}
+	
+	/**
+	 * Should be invoked after each iteration by subclasses that override {@link #iterate(int)}.
+	 * <p>
+	 * @return true if messages have converged and no further iterations should be run.
+	 * @since 0.08
+	 */
+	protected boolean endIteration()
+	{
+		++_numIterationsUsed;
+		final MessageConvergenceTracker tracker = _convergenceTracker;
+		return tracker != null && tracker.endIteration();
+	}
+	
+	/**
+	 * Should be invoked at the end of a run of iterations by subclasses that override {@link #iterate(int)}.
+	 * <p>
+	 * Raises {@link MessageConvergenceEvent} if convergence testing is enabled.
+	 * @since 0.08
+	 */
+	protected void endIterations()
+	{
+		final MessageConvergenceTracker tracker = _convergenceTracker;
+		if (tracker != null)
+		{
+			final IDimpleEventListener listener = getEventListener();
+			if (listener != null && listener.isListeningFor(MessageConvergenceEvent.class, this))
+			{
+				raiseEvent(new MessageConvergenceEvent(this, _numIterationsUsed, tracker.getResidual(),
+					tracker.isConverged()));
+			}
+		}
 	}
 	
 	/***********************************************
@@ -39,5 +39,19 @@ public interface IKBestFactor
 	double evalFactorFunction(Object [] inputs);
 	void initMsg(double [] msg);
 	double getFactorTableValue(int index);
-	int [] findKBestForMsg(double [] msg,int k);
+	/**
+	 * Writes the indices of the {@code k} best entries of {@code msg} into {@code indices}
+	 * without allocating.
+	 * <p>
+	 * @param scratch has length at least {@code msg.length} and may be used as working storage.
+	 * @since 0.08
+	 */
+	void findKBestForMsg(double[] msg, int k, int[] indices, double[] scratch);
+	
+	/**
+	 * Converts a factor function energy to the representation used in this factor's messages
+	 * (and returned by {@link #evalFactorFunction}).
+	 * @since 0.08
+	 */
+	double factorValueFromEnergy(double energy);
 }
@@ -16,9 +16,15 @@
 
 package com.analog.lyric.dimple.solvers.core.kbest;
 
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.Nullable;
+
 import com.analog.lyric.collect.ArrayUtil;
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.model.variables.Discrete;
-import com.analog.lyric.util.misc.IndexCounter;
+import com.analog.lyric.dimple.options.BPOptions;
 
 /*
  * This class provides an implementation for update and updateEdge that can
@@ -28,42 +34,89 @@ import com.analog.lyric.util.misc.IndexCounter;
  * 
  * updateEdge(outPort)
  *	For each input msg
- *		sort by probability and pick the k most likely
+ *		select the k most likely (in linear time, without sorting)
+ *
+ *	For the n^k combinations of inputs (where n is number of input edges)
+ *		comboValue = combine all of the input probabilities for those values
  *
  *	initialize outputMsg to zero (or equivalent) for all values
  *
  *	For every single value of the output message (not just the kbset)
  *	
- *		For the n^k combinations of inputs (where n is number of input edges)
+ *		For the n^k combinations of inputs
  *			prod = calculate factor function (or equivalent for minsum)
- *			prod *= all of the input probabilities for those values
+ *			prod *= comboValue
  *	
  *			sum the prod with the current value for the output message at this value (or equivalent for minsum)
  *
  *	Normalize outputmsg (subtract smallest value)
  *
+ * The factor function values for all of the combinations are computed together and, if there
+ * are not too many of them (see BPOptions.maxKBestMemoSize), remembered along with the selected
+ * input indices. When the same
+ * indices are selected on the next update of the same edge, which is common once messages
+ * start to converge, the factor function is not evaluated again.
+ * 
+ * All working storage is allocated when the factor's messages are created, so updates do
+ * not allocate.
+ *
  * There is no optimization for update(all)
  */
 public class KBestFactorEngine
 {
+	/*-------
+	 * State
+	 */
+	
+	/**
+	 * Maximum number of rows passed to {@link FactorFunction#evalEnergies} at once.
+	 */
+	private static final int MAX_BATCH_SIZE = 1 << 10;
+	
 	private int _k;
+	/**
+	 * Maximum number of factor values that will be remembered between updates over all edges.
+	 */
+	private int _maxMemoSize = BPOptions.maxKBestMemoSize.defaultIntValue();
 	private IKBestFactor _kbestFactor;
 	private double [][] _outPortMsgs = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
 	private double [][] _inPortMsgs = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
 	
-	private void updateCache()
-	{
-		
-		_inPortMsgs = _kbestFactor.getInPortMsgs();
-		_outPortMsgs = _kbestFactor.getOutPortMsgs();
-			
-	}
+	// Working storage, reallocated when the factor's messages are recreated
+	private Object[][] _domains = ArrayUtil.EMPTY_OBJECT_ARRAY_ARRAY;
+	private int [][] _selectedIndices = ArrayUtil.EMPTY_INT_ARRAY_ARRAY;
+	private int [] _selectedLengths = ArrayUtil.EMPTY_INT_ARRAY;
+	private int [] _comboPositions = ArrayUtil.EMPTY_INT_ARRAY;
+	private int [] _inputIndices = ArrayUtil.EMPTY_INT_ARRAY;
+	private double [] _selectionScratch = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+	private double [] _comboValues = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+	private double [] _factorValues = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+	
+	// Factor function argument storage, created on first use
+	private @Nullable Value[][] _domainValues;	// Value for each domain element
+	private @Nullable Value[] _rowValues;
+	private @Nullable double[][] _domainDoubles;	// Only when every domain element is a Double and evalEnergies is overridden
+	private double[][] _columns = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
+	private double[] _energies = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+	private boolean _argumentsInitialized;
+	
+	// Factor values for the most recent selection of input indices for each output port
+	private @Nullable int[][] _memoKeys;
+	private double[][] _memoValues = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
+	
+	/*--------------
+	 * Construction
+	 */
 	
 	public KBestFactorEngine(IKBestFactor f)
 	{
 		_kbestFactor = f;
 	}
 	
+	/*-----------------------
+	 * KBestFactorEngine methods
+	 */
+	
 	public void update()
 	{
 		updateCache();
@@ -74,9 +127,39 @@ public class KBestFactorEngine
 	
 	public void setK(int k)
 	{
-		_k = k;
+		if (k != _k)
+		{
+			_k = k;
+			clearMemo();
+		}
+	}
+	
+	/**
+	 * Sets the maximum number of factor values that will be remembered between updates, which
+	 * is shared equally among the factor's edges.
+	 * <p>
+	 * @see BPOptions#maxKBestMemoSize
+	 * @since 0.08
+	 */
+	public void setMaxMemoSize(int size)
+	{
+		if (size != _maxMemoSize)
+		{
+			_maxMemoSize = size;
+			clearMemo();
+		}
 	}
 	
+	/**
+	 * Forget remembered factor values.
+	 * <p>
+	 * Should be invoked when the factor's function or table may have changed, e.g. on initialization.
+	 * @since 0.08
+	 */
+	public void reset()
+	{
+		clearMemo();
+	}
 	
 	/*
 	 * Code for updating given no factor table but java factor function
@@ -89,108 +172,341 @@ public class KBestFactorEngine
 	
 	protected void updateEdgeInternal(int outPortNum)
 	{
-		
-		
 		//Initialize the outputMsg to Infinite potentials.
-		double [] outputMsg = _outPortMsgs[outPortNum];
+		final double [] outputMsg = _outPortMsgs[outPortNum];
+		final int outputLength = outputMsg.length;
 		_kbestFactor.initMsg(outputMsg);
 
-		//Cache the input messages.
-		//Cache the domains
-		Object [][] domains = new Object[_inPortMsgs.length][];
-		for (int i = 0; i < _inPortMsgs.length; i++)
-			
-			domains[i] = ((Discrete)_kbestFactor.getFactor().getConnectedNodeFlat(i)).getDiscreteDomain().getElements();
-		
-		//We will store the kbest indices in this array
-		int [][] domainIndices = new int[_inPortMsgs.length][];
+		final IKBestFactor kbestFactor = _kbestFactor;
+		final double [][] inPortMsgs = _inPortMsgs;
+		final int numPorts = inPortMsgs.length;
+		final int [][] selectedIndices = _selectedIndices;
+		final int [] selectedLengths = _selectedLengths;
 		
-		//We will store the truncated domainlengths here.
-		int [] domainLengths = new int[_inPortMsgs.length];
-		
-		//For each port
-		for (int i = 0; i < _inPortMsgs.length; i++)
+		//Select the k best indices of each input message.
+		int numCombos = 1;
+		for (int i = 0; i < numPorts; i++)
 		{
-			double [] inPortMsg = _inPortMsgs[i];
-
 			//If this is the output port, we only store one value at a time.
 			if (i == outPortNum)
-				domainIndices[i] = new int[]{0};
-			else
 			{
-				//Here we check to see that k is actually less than the domain length
-				if (_k < inPortMsg.length)
-					domainIndices[i] = _kbestFactor.findKBestForMsg(inPortMsg,_k);
-				else
-				{
-					//If it's not, we just map indices one to one.
-					domainIndices[i] = new int[inPortMsg.length];
-					for (int j = 0; j < domainIndices[i].length; j++)
-						domainIndices[i][j] = j;
-				}
+				selectedLengths[i] = 1;
+				continue;
 			}
 			
-			domainLengths[i] = domainIndices[i].length;
+			final double [] inPortMsg = inPortMsgs[i];
+			final int [] selected = selectedIndices[i];
+			
+			//Here we check to see that k is actually less than the domain length
+			if (_k < inPortMsg.length)
+			{
+				kbestFactor.findKBestForMsg(inPortMsg, _k, selected, _selectionScratch);
+				selectedLengths[i] = _k;
+			}
+			else
+			{
+				//If it's not, we just map indices one to one.
+				for (int j = 0; j < inPortMsg.length; j++)
+					selected[j] = j;
+				selectedLengths[i] = inPortMsg.length;
+			}
+			numCombos *= selectedLengths[i];
 		}
 		
-		//cache the factor function.
-		//FactorFunction ff = _kbestFactor.getFactorFunction();
+		//Combine the input message values for each combination of selected indices. The
+		//first port varies fastest.
+		final double [] comboValues = _comboValues = ensureLength(_comboValues, numCombos);
+		final int [] positions = _comboPositions;
+		Arrays.fill(positions, 0);
+		for (int combo = 0; combo < numCombos; combo++)
+		{
+			double sum = kbestFactor.initAccumulator();
+			for (int i = 0; i < numPorts; i++)
+			{
+				//Don't count the output port
+				if (i != outPortNum)
+					sum = kbestFactor.accumulate(sum, inPortMsgs[i][selectedIndices[i][positions[i]]]);
+			}
+			comboValues[combo] = sum;
+			
+			for (int i = 0; i < numPorts; i++)
+			{
+				if (++positions[i] < selectedLengths[i])
+					break;
+				positions[i] = 0;
+			}
+		}
 		
-
-		//Used to iterate all combinations of truncated domains.
-		IndexCounter ic = new IndexCounter(domainLengths);
-
-		int [] inputIndices = new int[_inPortMsgs.length];
+		final double [] factorValues = getFactorValues(outPortNum, outputLength, numCombos);
 		
 		//We fill out a value for every value for the output message (no truncating to k)
-		for (int outputIndex = 0; outputIndex < outputMsg.length; outputIndex++)
+		for (int outputIndex = 0, row = 0; outputIndex < outputLength; outputIndex++)
 		{
-			//Here we set the output port's index appropriately
-			domainIndices[outPortNum][0] = outputIndex;
-		
+			double out = outputMsg[outputIndex];
+			for (int combo = 0; combo < numCombos; combo++, row++)
+				out = kbestFactor.combine(out, kbestFactor.accumulate(comboValues[combo], factorValues[row]));
+			outputMsg[outputIndex] = out;
+		}
 
-			//For all elements of cartesian product
-			for (int [] indices : ic)
+		kbestFactor.normalize(outputMsg);
+	}
+	
+	/**
+	 * Computes factor values for every combination of output index and selected input indices.
+	 * <p>
+	 * The value for output index {@code i} and combination {@code c} is written to
+	 * {@code values[i * numCombos + c]}. The default implementation evaluates the factor function,
+	 * using {@link FactorFunction#evalEnergies} when every domain element is a Double and the
+	 * function provides its own implementation of that method.
+	 * <p>
+	 * @see #inputIndicesForRow
+	 * @since 0.08
+	 */
+	protected void computeFactorValues(int outPortNum, int outputLength, int numCombos, double[] values)
+	{
+		initializeArguments();
+		
+		final IKBestFactor kbestFactor = _kbestFactor;
+		final FactorFunction function = kbestFactor.getFactorFunction();
+		final int numPorts = _inPortMsgs.length;
+		final int numRows = outputLength * numCombos;
+		final double[][] domainDoubles = _domainDoubles;
+		
+		if (domainDoubles != null)
+		{
+			final double[][] columns = _columns;
+			final double[] energies = _energies;
+			for (int start = 0; start < numRows; start += MAX_BATCH_SIZE)
 			{
-				//initialize the sum
-				double sum = _kbestFactor.initAccumulator();
-				
-				for (int i = 0; i < indices.length; i++)
+				final int count = Math.min(MAX_BATCH_SIZE, numRows - start);
+				for (int j = 0; j < count; j++)
 				{
-					//Don't count the output port
-					if (i != outPortNum)
-						//i == port index, indices[i] == which of the truncated domain indices to retrieve
-						//domainIndices[i][indices[i]] == the actual index of the input msg.
-						sum = _kbestFactor.accumulate(sum, _inPortMsgs[i][domainIndices[i][indices[i]]]);
-
-					//Here we set the input value for this port
-					inputIndices[i] = domainIndices[i][indices[i]];
-					//ffInput[i] =  domains[i][domainIndices[i][indices[i]]];
+					final int row = start + j;
+					final int[] inputIndices = inputIndicesForRow(outPortNum, row / numCombos, row % numCombos);
+					for (int i = 0; i < numPorts; i++)
+						columns[i][j] = domainDoubles[i][inputIndices[i]];
 				}
-				
-				//Evaluate the factor function and add that potential to the sum.
-				double result = getFactorFunctionValueForIndices(inputIndices,domains);
-				sum = _kbestFactor.accumulate(sum, result);
-
-				outputMsg[outputIndex] = _kbestFactor.combine(outputMsg[outputIndex] , sum);
+				function.evalEnergies(columns, count, energies);
+				for (int j = 0; j < count; j++)
+					values[start + j] = kbestFactor.factorValueFromEnergy(energies[j]);
+			}
+		}
+		else
+		{
+			final Value[][] domainValues = _domainValues;
+			final Value[] rowValues = _rowValues;
+			if (domainValues == null || rowValues == null)
+				throw new IllegalStateException();
+			for (int row = 0; row < numRows; row++)
+			{
+				final int[] inputIndices = inputIndicesForRow(outPortNum, row / numCombos, row % numCombos);
+				for (int i = 0; i < numPorts; i++)
+					rowValues[i] = domainValues[i][inputIndices[i]];
+				double energy = function.evalEnergy(rowValues);
+				if (energy != energy)	// Faster isNaN
+					energy = Double.POSITIVE_INFINITY;
+				values[row] = kbestFactor.factorValueFromEnergy(energy);
 			}
 		}
-
-		_kbestFactor.normalize(outputMsg);
-		
 	}
 	
-	protected double getFactorFunctionValueForIndices(int [] inputIndices, Object [][] domains)
+	/**
+	 * Returns the domain indices of the arguments for the given output index and combination of
+	 * selected input indices.
+	 * <p>
+	 * The returned array is reused by subsequent calls.
+	 * @since 0.08
+	 */
+	protected final int[] inputIndicesForRow(int outPortNum, int outputIndex, int combo)
 	{
-		Object [] ffInput = new Object[inputIndices.length];
-		for (int i = 0; i < ffInput.length; i++)
-			ffInput[i] = domains[i][inputIndices[i]];
-		return _kbestFactor.evalFactorFunction(ffInput);
+		final int[] inputIndices = _inputIndices;
+		for (int i = 0, n = inputIndices.length; i < n; i++)
+		{
+			if (i == outPortNum)
+				inputIndices[i] = outputIndex;
+			else
+			{
+				final int length = _selectedLengths[i];
+				inputIndices[i] = _selectedIndices[i][combo % length];
+				combo /= length;
+			}
+		}
+		return inputIndices;
 	}
-
+	
 	protected IKBestFactor getIKBestFactor()
 	{
 		return _kbestFactor;
 	}
 
+	/*-----------------
+	 * Private methods
+	 */
+	
+	private void updateCache()
+	{
+		final double[][] inPortMsgs = _kbestFactor.getInPortMsgs();
+		_outPortMsgs = _kbestFactor.getOutPortMsgs();
+		
+		if (inPortMsgs != _inPortMsgs)
+		{
+			// Messages have been recreated, so domains may have changed
+			_inPortMsgs = inPortMsgs;
+			final int numPorts = inPortMsgs.length;
+			_domains = new Object[numPorts][];
+			_selectedIndices = new int[numPorts][];
+			_selectedLengths = new int[numPorts];
+			_comboPositions = new int[numPorts];
+			_inputIndices = new int[numPorts];
+			int maxLength = 0;
+			for (int i = 0; i < numPorts; i++)
+			{
+				_domains[i] = ((Discrete)_kbestFactor.getFactor().getConnectedNodeFlat(i)).getDiscreteDomain().getElements();
+				_selectedIndices[i] = new int[Math.max(1, inPortMsgs[i].length)];
+				maxLength = Math.max(maxLength, inPortMsgs[i].length);
+			}
+			_selectionScratch = new double[maxLength];
+			_argumentsInitialized = false;
+			clearMemo();
+		}
+	}
+	
+	private void initializeArguments()
+	{
+		if (_argumentsInitialized)
+			return;
+		
+		final Object[][] domains = _domains;
+		final int numPorts = domains.length;
+		
+		// The default evalEnergies just calls evalEnergy for each row, so it is only worth using
+		// when it has been overridden.
+		boolean allDoubles = overridesEvalEnergies(_kbestFactor.getFactorFunction());
+		for (Object[] domain : domains)
+			for (Object element : domain)
+				allDoubles &= element instanceof Double;
+		
+		if (allDoubles)
+		{
+			final double[][] domainDoubles = new double[numPorts][];
+			for (int i = 0; i < numPorts; i++)
+			{
+				domainDoubles[i] = new double[domains[i].length];
+				for (int j = 0; j < domainDoubles[i].length; j++)
+					domainDoubles[i][j] = (Double)domains[i][j];
+			}
+			_domainDoubles = domainDoubles;
+			_columns = new double[numPorts][MAX_BATCH_SIZE];
+			_energies = new double[MAX_BATCH_SIZE];
+			_domainValues = null;
+			_rowValues = null;
+		}
+		else
+		{
+			// Same representation as FactorFunction.evalEnergy(Object...)
+			final Value[][] domainValues = new Value[numPorts][];
+			for (int i = 0; i < numPorts; i++)
+			{
+				domainValues[i] = new Value[domains[i].length];
+				for (int j = 0; j < domainValues[i].length; j++)
+					domainValues[i][j] = Value.create(domains[i][j]);
+			}
+			_domainValues = domainValues;
+			_rowValues = new Value[numPorts];
+			_domainDoubles = null;
+		}
+		
+		_argumentsInitialized = true;
+	}
+	
+	// Returns factor values for the current selection, reusing those from the previous update
+	// of the same edge if the same indices were selected.
+	private double[] getFactorValues(int outPortNum, int outputLength, int numCombos)
+	{
+		final int numValues = outputLength * numCombos;
+		
+		final int numPorts = _inPortMsgs.length;
+		int[][] memoKeys = _memoKeys;
+		if (numValues > _maxMemoSize / numPorts)
+		{
+			final double[] values = _factorValues = ensureLength(_factorValues, numValues);
+			computeFactorValues(outPortNum, outputLength, numCombos, values);
+			return values;
+		}
+		
+		if (memoKeys == null)
+		{
+			_memoKeys = memoKeys = new int[numPorts][];
+			_memoValues = new double[numPorts][];
+		}
+		
+		final int[] key = memoKeys[outPortNum];
+		if (key != null && memoKeyMatches(key, outPortNum))
+			return _memoValues[outPortNum];
+		
+		// Key consists of the selected indices of each input port preceded by their count
+		int keyLength = 0;
+		for (int i = 0; i < numPorts; i++)
+			if (i != outPortNum)
+				keyLength += 1 + _selectedLengths[i];
+		final int[] newKey = key != null && key.length == keyLength ? key : new int[keyLength];
+		for (int i = 0, k = 0; i < numPorts; i++)
+		{
+			if (i != outPortNum)
+			{
+				final int length = _selectedLengths[i];
+				newKey[k++] = length;
+				System.arraycopy(_selectedIndices[i], 0, newKey, k, length);
+				k += length;
+			}
+		}
+		
+		final double[] values = _memoValues[outPortNum] = ensureLength(_memoValues[outPortNum], numValues);
+		memoKeys[outPortNum] = null;	// In case computation fails
+		computeFactorValues(outPortNum, outputLength, numCombos, values);
+		memoKeys[outPortNum] = newKey;
+		return values;
+	}
+	
+	private boolean memoKeyMatches(int[] key, int outPortNum)
+	{
+		for (int i = 0, k = 0, numPorts = _inPortMsgs.length; i < numPorts; i++)
+		{
+			if (i != outPortNum)
+			{
+				final int length = _selectedLengths[i];
+				if (k >= key.length || key[k++] != length)
+					return false;
+				final int[] selected = _selectedIndices[i];
+				for (int j = 0; j < length; j++)
+					if (key[k++] != selected[j])
+						return false;
+			}
+		}
+		return true;
+	}
+	
+	private void clearMemo()
+	{
+		_memoKeys = null;
+		_memoValues = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
+	}
+	
+	private static boolean overridesEvalEnergies(FactorFunction function)
+	{
+		try
+		{
+			return function.getClass().getMethod("evalEnergies", double[][].class, int.class, double[].class)
+				.getDeclaringClass() != FactorFunction.class;
+		}
+		catch (NoSuchMethodException ex)
+		{
+			return false;
+		}
+	}
+	
+	private static double[] ensureLength(@Nullable double[] array, int length)
+	{
+		return array != null && array.length >= length ? array : new double[length];
+	}
 }
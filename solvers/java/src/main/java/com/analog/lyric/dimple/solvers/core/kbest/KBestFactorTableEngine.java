@@ -16,6 +16,8 @@
 
 package com.analog.lyric.dimple.solvers.core.kbest;
 
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+
 public class KBestFactorTableEngine extends KBestFactorEngine 
 {
 	public KBestFactorTableEngine(IKBestFactor f) 
@@ -26,13 +28,22 @@ public class KBestFactorTableEngine extends KBestFactorEngine
 	/*
 	 * retrieves weights from the factor table
 	 */
-	protected double getFactorFunctionValueForIndices(int [] inputIndices, Object [][] domains)
+	@Override
+	protected void computeFactorValues(int outPortNum, int outputLength, int numCombos, double[] values)
 	{
+		final IKBestFactor kbestFactor = getIKBestFactor();
+		final IFactorTable table = kbestFactor.getFactorTable();
+		
+		// Entries missing from a sparse table have zero weight
+		final double missingValue = kbestFactor.factorValueFromEnergy(Double.POSITIVE_INFINITY);
 
-		int index = getIKBestFactor().getFactorTable().sparseIndexFromIndices(inputIndices);
-		if (index < 0)
-			return Double.POSITIVE_INFINITY;
-		else
-			return getIKBestFactor().getFactorTableValue(index);
+		for (int outputIndex = 0, row = 0; outputIndex < outputLength; outputIndex++)
+		{
+			for (int combo = 0; combo < numCombos; combo++, row++)
+			{
+				int index = table.sparseIndexFromIndices(inputIndicesForRow(outPortNum, outputIndex, combo));
+				values[row] = index < 0 ? missingValue : kbestFactor.getFactorTableValue(index);
+			}
+		}
 	}
 }
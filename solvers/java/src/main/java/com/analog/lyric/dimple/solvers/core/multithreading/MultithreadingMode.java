@@ -17,12 +17,19 @@
 package com.analog.lyric.dimple.solvers.core.multithreading;
 
 /**
- * Provides two multithreading options.
+ * Provides the available multithreading options.
+ * <p>
+ * <ul>
+ * <li>Phase - updates independent phases of the dependency graph, submitting new tasks for each phase.
+ * <li>SingleQueue - pulls entries from a single queue as their dependencies are satisfied.
+ * <li>PersistentPhase - like Phase, but workers persist for the duration of the iterate call and
+ * synchronize between phases using a barrier.
+ * </ul>
  * 
  * @author shershey
  *
  */
 public enum MultithreadingMode 
 {
-	Phase, SingleQueue;	
+	Phase, SingleQueue, PersistentPhase;	
 }
@@ -0,0 +1,288 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core.multithreading;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
+import com.analog.lyric.dimple.exceptions.DimpleException;
+
+/**
+ * Runs a fixed number of workers that persist across a sequence of steps, synchronizing
+ * at a {@link SpinParkBarrier} between steps.
+ * <p>
+ * Subclasses implement {@link #doStep(int, int)}, which performs one worker's share of a
+ * step, and {@link #startStep(int)}, which sets up the shared state for a step. The latter
+ * is invoked by the last worker to arrive at the barrier while all of the others are waiting,
+ * so state written there is safely published to all workers by the barrier.
+ * <p>
+ * Because every worker must be running for the barrier to trip, the workers other than the
+ * calling thread are not run on the shared {@link ThreadPool}, where they could wait behind
+ * other tasks (or behind the calling thread itself when that is a pool thread) and never start.
+ * Instead they are run on a dedicated cached pool of daemon threads, which always starts a
+ * thread for each worker and reuses idle threads across calls. Each worker runs with the
+ * calling thread's {@linkplain DimpleEnvironment#active() active environment}.
+ * <p>
+ * If any worker throws, the barrier is broken, the remaining workers stop at the end of their
+ * current step, and the first exception is rethrown by {@link #execute()}.
+ * <p>
+ * @since 0.08
+ */
+public abstract class PersistentWorkers
+{
+	/*-------
+	 * State
+	 */
+
+	private static final ExecutorService _executor = Executors.newCachedThreadPool(new WorkerThreadFactory());
+
+	private final int _numWorkers;
+	private final int _numSteps;
+	private final SpinParkBarrier _barrier;
+	private final AtomicReference<Throwable> _error = new AtomicReference<Throwable>();
+	private final DimpleEnvironment _environment;
+
+	/**
+	 * The current step. Only written by the barrier action.
+	 */
+	private int _step;
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * @param numWorkers is the number of workers, including the calling thread. Must be positive.
+	 * @param numSteps is the number of steps each worker will perform.
+	 */
+	protected PersistentWorkers(int numWorkers, int numSteps)
+	{
+		_numWorkers = numWorkers;
+		_numSteps = numSteps;
+		_environment = DimpleEnvironment.active();
+		_barrier = new SpinParkBarrier(numWorkers, new Runnable() {
+			@Override
+			public void run()
+			{
+				if (++_step < _numSteps)
+				{
+					startStep(_step);
+				}
+			}
+		});
+	}
+
+	/*---------------------------
+	 * PersistentWorkers methods
+	 */
+
+	/**
+	 * Runs all of the steps, using the calling thread as worker zero, and returns when all of
+	 * the workers have finished.
+	 * <p>
+	 * Should only be invoked once per instance.
+	 * <p>
+	 * @throws DimpleException wrapping any checked exception thrown by a worker or if the calling
+	 * thread is interrupted while waiting for the other workers. Unchecked exceptions thrown by a worker
+	 * are rethrown as is.
+	 */
+	public final void execute()
+	{
+		if (_numSteps <= 0)
+		{
+			return;
+		}
+
+		startStep(0);
+
+		final int numWorkers = _numWorkers;
+		final List<Future<?>> futures = new ArrayList<Future<?>>(numWorkers - 1);
+		try
+		{
+			for (int i = 1; i < numWorkers; ++i)
+			{
+				futures.add(_executor.submit(new Worker(this, i)));
+			}
+		}
+		catch (RuntimeException ex)
+		{
+			// E.g. RejectedExecutionException: release any workers that did start.
+			_barrier.breakBarrier();
+			throw ex;
+		}
+
+		work(0);
+
+		for (Future<?> future : futures)
+		{
+			try
+			{
+				future.get();
+			}
+			catch (InterruptedException ex)
+			{
+				_barrier.breakBarrier();
+				throw new DimpleException(ex);
+			}
+			catch (ExecutionException ex)
+			{
+				_error.compareAndSet(null, ex.getCause());
+			}
+		}
+
+		final Throwable error = _error.get();
+		if (error instanceof RuntimeException)
+		{
+			throw (RuntimeException)error;
+		}
+		else if (error instanceof Error)
+		{
+			throw (Error)error;
+		}
+		else if (error != null)
+		{
+			throw new DimpleException((Exception)error);
+		}
+	}
+
+	/**
+	 * The number of workers, including the calling thread.
+	 */
+	public final int getNumWorkers()
+	{
+		return _numWorkers;
+	}
+
+	/**
+	 * The number of steps performed by each worker.
+	 */
+	public final int getNumSteps()
+	{
+		return _numSteps;
+	}
+
+	/*-------------------
+	 * Protected methods
+	 */
+
+	/**
+	 * Sets up the state shared by the workers for the given step.
+	 * <p>
+	 * Invoked for step zero by {@link #execute()} before any worker starts, and for subsequent
+	 * steps by the last worker to finish the previous step while the others wait at the barrier.
+	 */
+	protected abstract void startStep(int step);
+
+	/**
+	 * Performs the given worker's share of the given step.
+	 * <p>
+	 * @param worker is the index of the worker in the range [0, {@link #getNumWorkers()}-1], where zero
+	 * is the thread that invoked {@link #execute()}.
+	 */
+	protected abstract void doStep(int worker, int step);
+
+	/**
+	 * Runs all of the steps for the given worker.
+	 * <p>
+	 * Subclasses may override this to set up and restore per-thread state around the call
+	 * to the super method, which must be invoked.
+	 */
+	protected void runWorker(int worker)
+	{
+		for (int step = 0; step < _numSteps; ++step)
+		{
+			doStep(worker, step);
+
+			if (!_barrier.await(worker))
+			{
+				break;
+			}
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void work(int worker)
+	{
+		final DimpleEnvironment prevEnvironment = DimpleEnvironment.active();
+		DimpleEnvironment.setActive(_environment);
+		try
+		{
+			runWorker(worker);
+		}
+		catch (Throwable ex)
+		{
+			_error.compareAndSet(null, ex);
+			_barrier.breakBarrier();
+		}
+		finally
+		{
+			DimpleEnvironment.setActive(prevEnvironment);
+		}
+	}
+
+	/*---------------
+	 * Inner classes
+	 */
+
+	private static final class Worker implements Callable<Object>
+	{
+		private final PersistentWorkers _workers;
+		private final int _which;
+
+		private Worker(PersistentWorkers workers, int which)
+		{
+			_workers = workers;
+			_which = which;
+		}
+
+		@Override
+		public @Nullable Object call()
+		{
+			_workers.work(_which);
+			return null;
+		}
+	}
+
+	private static final class WorkerThreadFactory implements ThreadFactory
+	{
+		private final AtomicInteger _count = new AtomicInteger();
+
+		@NonNullByDefault(false)
+		@Override
+		public Thread newThread(Runnable target)
+		{
+			final Thread thread = new Thread(target, "dimple-persistent-worker-" + _count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core.multithreading;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+
+/**
+ * Reusable barrier for a fixed set of parties that busy-waits briefly before parking.
+ * <p>
+ * Intended for use by worker threads that synchronize many times in quick succession, where
+ * most waits are short enough that spinning avoids the cost of parking and waking threads,
+ * but where parking is still needed to avoid burning cycles during long waits.
+ * <p>
+ * Unlike {@link java.util.concurrent.CyclicBarrier}, each party is identified by a fixed index,
+ * which allows the last thread to arrive to wake up only those threads that actually parked.
+ * The barrier can be broken, for instance when one of the parties fails, which releases all
+ * waiting parties.
+ * <p>
+ * @since 0.08
+ */
+public final class SpinParkBarrier
+{
+	/*-----------
+	 * Constants
+	 */
+	
+	/**
+	 * Default number of times a waiting thread checks for release before parking.
+	 */
+	public static final int DEFAULT_SPINS = 1 << 12;
+	
+	/*-------
+	 * State
+	 */
+	
+	private final int _parties;
+	private final int _spins;
+	private final @Nullable Runnable _action;
+	
+	private final AtomicInteger _arrived = new AtomicInteger();
+	private final AtomicReferenceArray<Thread> _parked;
+	private volatile int _generation = 0;
+	private volatile boolean _broken = false;
+	
+	/*--------------
+	 * Construction
+	 */
+	
+	/**
+	 * Constructs barrier with {@link #DEFAULT_SPINS}.
+	 * 
+	 * @see #SpinParkBarrier(int, int, Runnable)
+	 */
+	public SpinParkBarrier(int parties, @Nullable Runnable action)
+	{
+		this(parties, DEFAULT_SPINS, action);
+	}
+	
+	/**
+	 * Constructs barrier.
+	 * 
+	 * @param parties is the number of parties that must invoke {@link #await(int)} to trip the barrier.
+	 * @param spins is the number of times a waiting party will check for release before parking.
+	 * @param action if non-null will be run by the last party to arrive before the other parties are
+	 * released.
+	 */
+	public SpinParkBarrier(int parties, int spins, @Nullable Runnable action)
+	{
+		if (parties < 1)
+		{
+			throw new DimpleException("Barrier must have at least one party");
+		}
+		_parties = parties;
+		_spins = Math.max(0, spins);
+		_action = action;
+		_parked = new AtomicReferenceArray<Thread>(parties);
+	}
+	
+	/*-------------------------
+	 * SpinParkBarrier methods
+	 */
+	
+	/**
+	 * Waits until all parties have invoked this method.
+	 * <p>
+	 * @param party is the index of the calling party in the range [0, {@link #getParties()}-1]. Each
+	 * party must use a distinct index.
+	 * @return false if the barrier is broken. The barrier will be broken if a waiting thread
+	 * is interrupted.
+	 */
+	public boolean await(int party)
+	{
+		if (_broken)
+		{
+			return false;
+		}
+		
+		final int generation = _generation;
+		
+		if (_arrived.incrementAndGet() == _parties)
+		{
+			_arrived.set(0);
+			final Runnable action = _action;
+			if (action != null)
+			{
+				try
+				{
+					action.run();
+				}
+				catch (RuntimeException | Error ex)
+				{
+					breakBarrier();
+					throw ex;
+				}
+			}
+			_generation = generation + 1;
+			unparkAll();
+			return !_broken;
+		}
+		
+		for (int i = _spins; --i >= 0;)
+		{
+			if (_generation != generation || _broken)
+			{
+				return !_broken;
+			}
+		}
+		
+		// Record thread before checking generation again, so that the releasing thread either
+		// sees it and unparks it or this thread sees the new generation.
+		final Thread thread = Thread.currentThread();
+		_parked.set(party, thread);
+		while (_generation == generation && !_broken)
+		{
+			LockSupport.park(this);
+			if (Thread.interrupted())
+			{
+				// Preserve interrupt status but do not leave the other parties waiting forever.
+				breakBarrier();
+				thread.interrupt();
+			}
+		}
+		_parked.compareAndSet(party, thread, null);
+		
+		return !_broken;
+	}
+	
+	/**
+	 * Breaks the barrier, releasing any waiting parties.
+	 * <p>
+	 * All current and subsequent invocations of {@link #await(int)} will return false.
+	 */
+	public void breakBarrier()
+	{
+		_broken = true;
+		unparkAll();
+	}
+	
+	/**
+	 * The number of parties that must arrive to trip the barrier.
+	 */
+	public int getParties()
+	{
+		return _parties;
+	}
+	
+	/**
+	 * True if {@link #breakBarrier()} has been called.
+	 */
+	public boolean isBroken()
+	{
+		return _broken;
+	}
+	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	private void unparkAll()
+	{
+		final AtomicReferenceArray<Thread> parked = _parked;
+		for (int i = 0, n = parked.length(); i < n; ++i)
+		{
+			final Thread thread = parked.getAndSet(i, null);
+			if (thread != null)
+			{
+				LockSupport.unpark(thread);
+			}
+		}
+	}
+}
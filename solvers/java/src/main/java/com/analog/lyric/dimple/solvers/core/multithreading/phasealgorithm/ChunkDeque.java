@@ -0,0 +1,107 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core.multithreading.phasealgorithm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Lock-free deque of integer indices over a contiguous range, used to hand out chunks
+ * of schedule entries to persistent workers.
+ * 
+ * The owning worker takes indices from the front and other workers steal from the back.
+ * Both ends are packed into a single atomic long (head in the high 32 bits, tail in the low 32 bits)
+ * so that each take is a single compare-and-set and the two ends can never cross.
+ * 
+ * Package protected
+ */
+final class ChunkDeque
+{
+	private final AtomicLong _range = new AtomicLong();
+	
+	/*
+	 * Resets deque to contain indices from first (inclusive) to end (exclusive).
+	 * Must not be invoked concurrently with other methods.
+	 */
+	void reset(int first, int end)
+	{
+		_range.set(pack(first, end));
+	}
+	
+	/*
+	 * Removes and returns the first index in the deque, or -1 if empty.
+	 */
+	int pollFirst()
+	{
+		while (true)
+		{
+			final long range = _range.get();
+			final int head = head(range), tail = tail(range);
+			if (head >= tail)
+			{
+				return -1;
+			}
+			if (_range.compareAndSet(range, pack(head + 1, tail)))
+			{
+				return head;
+			}
+		}
+	}
+	
+	/*
+	 * Removes and returns the last index in the deque, or -1 if empty.
+	 */
+	int pollLast()
+	{
+		while (true)
+		{
+			final long range = _range.get();
+			final int head = head(range), tail = tail(range);
+			if (head >= tail)
+			{
+				return -1;
+			}
+			if (_range.compareAndSet(range, pack(head, tail - 1)))
+			{
+				return tail - 1;
+			}
+		}
+	}
+	
+	/*
+	 * The number of indices currently in the deque.
+	 */
+	int size()
+	{
+		final long range = _range.get();
+		return Math.max(0, tail(range) - head(range));
+	}
+	
+	private static long pack(int head, int tail)
+	{
+		return ((long)head << 32) | (tail & 0xFFFFFFFFL);
+	}
+	
+	private static int head(long range)
+	{
+		return (int)(range >>> 32);
+	}
+	
+	private static int tail(long range)
+	{
+		return (int)range;
+	}
+}
@@ -0,0 +1,228 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core.multithreading.phasealgorithm;
+
+import java.util.ArrayList;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.schedulers.dependencyGraph.StaticDependencyGraph;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.IScheduleEntry;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultiThreadingManager;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultithreadingAlgorithm;
+import com.analog.lyric.dimple.solvers.core.multithreading.PersistentWorkers;
+import com.analog.lyric.dimple.solvers.core.multithreading.SpinParkBarrier;
+
+/**
+ * Phase-based multithreading using workers that persist across phases and iterations.
+ * <p>
+ * Like {@link PhaseMultithreadingAlgorithm}, this updates the schedule one phase of the
+ * dependency graph at a time, where the entries in each phase are independent of each other.
+ * But rather than submitting a new set of tasks to the executor for every phase, the workers
+ * persist for the entire {@link #iterate(int)} call and synchronize between phases using a
+ * {@link SpinParkBarrier}, as implemented by {@link PersistentWorkers}. The calling thread acts
+ * as one of the workers.
+ * <p>
+ * Each phase is divided into contiguous chunks of schedule entries, a few per worker, and
+ * each worker is given a deque of chunks. Workers take chunks from the front of their own
+ * deque and when it is empty steal chunks from the back of the other workers' deques. Because
+ * the initial assignment of chunks to workers is the same in every iteration, a worker tends
+ * to update the same entries each time, which improves cache locality.
+ * <p>
+ * Since all workers must be running at the same time, they do not use the manager's executor
+ * service but threads dedicated to persistent workers, so that they cannot be held up by other
+ * graphs using the shared pool. This mode is best suited for graphs with many small phases,
+ * where the per-phase task submission overhead of {@link PhaseMultithreadingAlgorithm}
+ * dominates.
+ * <p>
+ * @since 0.08
+ */
+public class PersistentPhaseMultithreadingAlgorithm extends MultithreadingAlgorithm
+{
+	/*-----------
+	 * Constants
+	 */
+	
+	/**
+	 * Target number of chunks into which each phase is divided per worker.
+	 */
+	public static final int CHUNKS_PER_WORKER = 4;
+	
+	/*-------
+	 * State
+	 */
+	
+	private @Nullable StaticDependencyGraph _cachedDependencyGraph;
+	private IScheduleEntry[][] _phases = new IScheduleEntry[0][];
+	
+	/*--------------
+	 * Construction
+	 */
+	
+	public PersistentPhaseMultithreadingAlgorithm(MultiThreadingManager manager)
+	{
+		super(manager);
+	}
+	
+	/*---------------------------------
+	 * MultithreadingAlgorithm methods
+	 */
+	
+	@Override
+	public void iterate(int numIters)
+	{
+		final IScheduleEntry[][] phases = getPhases();
+		if (numIters <= 0 || phases.length == 0)
+		{
+			return;
+		}
+		
+		final int numWorkers = getNumWorkers();
+
+		if (numWorkers == 1)
+		{
+			for (int i = 0; i < numIters; ++i)
+			{
+				for (IScheduleEntry[] phase : phases)
+				{
+					for (IScheduleEntry entry : phase)
+					{
+						entry.update();
+					}
+				}
+			}
+			return;
+		}
+		
+		new Run(phases, numIters, numWorkers).execute();
+	}
+	
+	/*-----------------------------------------------
+	 * PersistentPhaseMultithreadingAlgorithm methods
+	 */
+	
+	/**
+	 * The number of workers that will be used by {@link #iterate(int)}, including the calling thread.
+	 * <p>
+	 * This is the manager's {@linkplain MultiThreadingManager#getNumWorkers() number of workers}. It is not
+	 * limited by the size of the manager's executor service, since persistent workers do not run on it.
+	 */
+	public int getNumWorkers()
+	{
+		return getManager().getNumWorkers();
+	}
+	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	private IScheduleEntry[][] getPhases()
+	{
+		final StaticDependencyGraph dependencyGraph = getManager().getDependencyGraph();
+		if (dependencyGraph != _cachedDependencyGraph)
+		{
+			final ArrayList<ArrayList<IScheduleEntry>> phaseLists = dependencyGraph.getPhases();
+			final IScheduleEntry[][] phases = new IScheduleEntry[phaseLists.size()][];
+			for (int i = 0; i < phases.length; ++i)
+			{
+				final ArrayList<IScheduleEntry> phase = phaseLists.get(i);
+				phases[i] = phase.toArray(new IScheduleEntry[phase.size()]);
+			}
+			_phases = phases;
+			_cachedDependencyGraph = dependencyGraph;
+		}
+		return _phases;
+	}
+	
+	/*---------------
+	 * Inner classes
+	 */
+	
+	/*
+	 * State shared by the workers for a single call to iterate. Each step is one phase.
+	 */
+	private static final class Run extends PersistentWorkers
+	{
+		private final IScheduleEntry[][] _phases;
+		private final ChunkDeque[] _deques;
+		
+		private IScheduleEntry[] _entries;
+		private int _chunkSize;
+		
+		private Run(IScheduleEntry[][] phases, int numIters, int numWorkers)
+		{
+			super(numWorkers, numIters * phases.length);
+			_phases = phases;
+			_deques = new ChunkDeque[numWorkers];
+			for (int i = 0; i < numWorkers; ++i)
+			{
+				_deques[i] = new ChunkDeque();
+			}
+			_entries = phases[0];
+		}
+		
+		@Override
+		protected void startStep(int step)
+		{
+			final IScheduleEntry[] entries = _entries = _phases[step % _phases.length];
+			final int numWorkers = _deques.length;
+			final int size = entries.length;
+			final int chunkSize = _chunkSize = Math.max(1, (size + numWorkers * CHUNKS_PER_WORKER - 1) / (numWorkers * CHUNKS_PER_WORKER));
+			final int numChunks = (size + chunkSize - 1) / chunkSize;
+			for (int i = 0; i < numWorkers; ++i)
+			{
+				_deques[i].reset(i * numChunks / numWorkers, (i + 1) * numChunks / numWorkers);
+			}
+		}
+		
+		@Override
+		protected void doStep(int worker, int step)
+		{
+			final ChunkDeque[] deques = _deques;
+			final int numWorkers = deques.length;
+			final ChunkDeque myDeque = deques[worker];
+			final IScheduleEntry[] entries = _entries;
+			final int chunkSize = _chunkSize;
+			
+			for (int chunk; (chunk = myDeque.pollFirst()) >= 0;)
+			{
+				updateChunk(entries, chunk, chunkSize);
+			}
+			
+			// Out of work: steal from the other workers, starting after this one
+			// so that not everyone steals from the same deque.
+			for (int i = 1; i < numWorkers; ++i)
+			{
+				final ChunkDeque deque = deques[(worker + i) % numWorkers];
+				for (int chunk; (chunk = deque.pollLast()) >= 0;)
+				{
+					updateChunk(entries, chunk, chunkSize);
+				}
+			}
+		}
+		
+		private static void updateChunk(IScheduleEntry[] entries, int chunk, int chunkSize)
+		{
+			final int start = chunk * chunkSize;
+			final int end = Math.min(start + chunkSize, entries.length);
+			for (int i = start; i < end; ++i)
+			{
+				entries[i].update();
+			}
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.gibbs;
+
+import static java.util.Objects.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
+import com.analog.lyric.dimple.environment.DimpleEnvironment.ThreadRandomState;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.Node;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.options.SolverOptions;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
+import com.analog.lyric.math.DimpleRandom;
+import com.analog.lyric.options.IOption;
+import com.analog.lyric.options.IOptionHolder;
+import com.analog.lyric.options.Option;
+
+/**
+ * An independent Gibbs chain run on a copy of a graph.
+ * <p>
+ * Used by {@link GibbsSolverGraph} to implement {@link GibbsOptions#numChains}.
+ * <p>
+ * @since 0.08
+ */
+final class GibbsChain implements Callable<Object>
+{
+	/*-------
+	 * State
+	 */
+	
+	private final Map<Node,Node> _old2new = new HashMap<Node,Node>();
+	private final GibbsSolverGraph _solverGraph;
+	private final DimpleEnvironment _environment;
+	private final DimpleRandom _random;
+	
+	/*--------------
+	 * Construction
+	 */
+	
+	/**
+	 * Creates and initializes a copy of the model for {@code original} with a Gibbs solver using
+	 * the same local options as the original model and solver objects. The chain will be run
+	 * in the environment that is active on the constructing thread using the given {@code random} stream.
+	 */
+	GibbsChain(GibbsSolverGraph original, DimpleRandom random)
+	{
+		_environment = DimpleEnvironment.active();
+		_random = random;
+		
+		final FactorGraph fg = original.getModelObject();
+		final FactorGraph copy = fg.copyRoot(_old2new);
+		_old2new.put(fg, copy);
+		
+		_solverGraph = requireNonNull(copy.setSolverFactory(new GibbsSolver()));
+		
+		for (Map.Entry<Node,Node> entry : _old2new.entrySet())
+		{
+			final Node from = entry.getKey(), to = entry.getValue();
+			if (from instanceof FactorGraph)
+			{
+				// Variables and factors copy their own options when cloned, but graphs do not.
+				copyLocalOptions(from, to);
+			}
+			final ISolverNode fromSolver = from.getSolver(), toSolver = to.getSolver();
+			if (fromSolver != null && toSolver != null)
+			{
+				copyLocalOptions(fromSolver, toSolver);
+			}
+		}
+		
+		_solverGraph.setOption(GibbsOptions.numChains, 1);
+		// The chains already occupy the thread pool.
+		_solverGraph.setOption(SolverOptions.enableMultithreading, false);
+		copy.initialize();
+	}
+	
+	/*------------------
+	 * Callable methods
+	 */
+	
+	@Override
+	public @Nullable Object call()
+	{
+		final DimpleEnvironment prevEnvironment = DimpleEnvironment.active();
+		DimpleEnvironment.setActive(_environment);
+		final ThreadRandomState savedRandom = _environment.saveThreadRandom();
+		_environment.setThreadRandom(_random);
+		try
+		{
+			_solverGraph.solveOneStep();
+		}
+		finally
+		{
+			_environment.restoreThreadRandom(savedRandom);
+			DimpleEnvironment.setActive(prevEnvironment);
+		}
+		return null;
+	}
+	
+	/*--------------------
+	 * GibbsChain methods
+	 */
+	
+	GibbsSolverGraph getSolverGraph()
+	{
+		return _solverGraph;
+	}
+	
+	/**
+	 * The solver variable in this chain corresponding to {@code variable} in the original graph.
+	 */
+	ISolverVariableGibbs getSolverVariable(Variable variable)
+	{
+		return requireNonNull(_solverGraph.getSolverVariable((Variable)requireNonNull(_old2new.get(variable))));
+	}
+	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	private static void copyLocalOptions(IOptionHolder from, IOptionHolder to)
+	{
+		if (from.supportsLocalOptions() && to.supportsLocalOptions())
+		{
+			Option.setOptions(to, from.getLocalOptions().toArray(new IOption<?>[0]));
+		}
+	}
+}
@@ -0,0 +1,291 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.gibbs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
+import com.analog.lyric.dimple.environment.DimpleEnvironment.ThreadRandomState;
+import com.analog.lyric.dimple.schedulers.schedule.GibbsChromaticSchedule;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.IScheduleEntry;
+import com.analog.lyric.dimple.solvers.core.multithreading.PersistentWorkers;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
+import com.analog.lyric.math.DimpleRandom;
+import com.analog.lyric.math.DimpleRandomGenerator;
+
+/**
+ * Performs Gibbs updates for a {@link GibbsChromaticSchedule}, updating the entries of each
+ * color concurrently.
+ * <p>
+ * Used by {@link GibbsSolverGraph} to implement multithreaded sampling for chromatic schedules.
+ * <p>
+ * Each color is divided into chunks of contiguous entries, which the workers take in turn, and the
+ * workers wait for each other before moving on to the next color, as implemented by
+ * {@link PersistentWorkers}. The calling thread acts as one of the workers. Each chunk index has its own random stream that is
+ * split from the calling thread's stream on first use and that is installed while updating that
+ * chunk. Since the chunks depend only on the schedule, the samples produced for a given seed do not
+ * depend on the number of threads or on which thread happens to update which chunk.
+ * <p>
+ * Only whole colors are updated concurrently. When the requested number of updates starts or ends
+ * in the middle of a color, those updates are done sequentially by the calling thread using its
+ * own random stream.
+ * <p>
+ * @since 0.08
+ */
+final class GibbsColorSweeper
+{
+	/*-----------
+	 * Constants
+	 */
+
+	/**
+	 * Minimum number of entries in a chunk, to amortize the cost of taking a chunk.
+	 */
+	static final int MIN_CHUNK_SIZE = 4;
+
+	/**
+	 * Maximum number of chunks into which a color is divided.
+	 */
+	static final int MAX_CHUNKS = 64;
+
+	/*-------
+	 * State
+	 */
+
+	/**
+	 * Schedule entries in color order.
+	 */
+	private final IScheduleEntry[] _entries;
+
+	/**
+	 * Offset of the first entry of each color in {@link #_entries} followed by the total number of entries.
+	 */
+	private final int[] _colorStarts;
+
+	/**
+	 * Number of entries in each chunk of each color.
+	 */
+	private final int[] _chunkSizes;
+
+	/**
+	 * Random stream for each chunk index. Lazily created.
+	 */
+	private @Nullable DimpleRandom[] _streams = null;
+	private final int _maxChunks;
+
+	/*--------------
+	 * Construction
+	 */
+
+	GibbsColorSweeper(GibbsChromaticSchedule schedule)
+	{
+		final int nColors = schedule.getColorCount();
+		final ArrayList<IScheduleEntry> entries = new ArrayList<IScheduleEntry>(schedule.size());
+		_colorStarts = new int[nColors + 1];
+		_chunkSizes = new int[nColors];
+
+		int maxChunks = 1;
+		for (int color = 0; color < nColors; ++color)
+		{
+			final List<IScheduleEntry> colorEntries = schedule.getColor(color);
+			final int size = colorEntries.size();
+			_colorStarts[color] = entries.size();
+			entries.addAll(colorEntries);
+
+			final int chunkSize = _chunkSizes[color] = Math.max(MIN_CHUNK_SIZE, (size + MAX_CHUNKS - 1) / MAX_CHUNKS);
+			maxChunks = Math.max(maxChunks, (size + chunkSize - 1) / chunkSize);
+		}
+		_colorStarts[nColors] = entries.size();
+		_maxChunks = maxChunks;
+
+		_entries = entries.toArray(new IScheduleEntry[entries.size()]);
+	}
+
+	/*---------------------------
+	 * GibbsColorSweeper methods
+	 */
+
+	/**
+	 * The schedule entries in the order in which they are updated.
+	 */
+	IScheduleEntry[] getEntries()
+	{
+		return _entries;
+	}
+
+	/**
+	 * Performs {@code numUpdates} entry updates in schedule order, wrapping around at the end of
+	 * the schedule.
+	 * <p>
+	 * @param entryIndex is the index into {@link #getEntries()} of the first entry to update.
+	 * @return index of the next entry to update.
+	 */
+	int iterate(int entryIndex, int numUpdates)
+	{
+		final IScheduleEntry[] entries = _entries;
+		final int[] colorStarts = _colorStarts;
+		final int nEntries = entries.length;
+		final int nColors = colorStarts.length - 1;
+
+		if (nEntries == 0)
+		{
+			return entryIndex;
+		}
+
+		while (numUpdates > 0)
+		{
+			if (entryIndex == nEntries)
+				entryIndex = 0;		// Wrap-around the schedule if reached the end
+
+			int color = Arrays.binarySearch(colorStarts, entryIndex);
+			if (color >= 0)
+			{
+				// At the start of a color: update as many whole colors as possible concurrently.
+				int steps = 0, updates = 0;
+				for (int c = color; ; c = (c + 1) % nColors)
+				{
+					final int size = colorStarts[c + 1] - colorStarts[c];
+					if (updates + size > numUpdates)
+						break;
+					updates += size;
+					++steps;
+				}
+
+				if (steps > 0)
+				{
+					sweep(color, steps);
+					numUpdates -= updates;
+					entryIndex = colorStarts[(color + steps) % nColors];
+					continue;
+				}
+			}
+			else
+			{
+				color = -color - 2;
+			}
+
+			// Update the rest of the color or the remaining updates, whichever is fewer.
+			final int end = Math.min(colorStarts[color + 1], entryIndex + numUpdates);
+			for (int i = entryIndex; i < end; ++i)
+			{
+				entries[i].update();
+			}
+			numUpdates -= end - entryIndex;
+			entryIndex = end;
+		}
+
+		return entryIndex;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Updates {@code steps} whole colors starting with {@code firstColor}.
+	 */
+	private void sweep(int firstColor, int steps)
+	{
+		DimpleRandom[] streams = _streams;
+		if (streams == null)
+		{
+			// Split the chunk streams from this thread's stream, so that results are repeatable using setSeed.
+			final DimpleRandom random = DimpleRandomGenerator.current();
+			streams = _streams = new DimpleRandom[_maxChunks];
+			for (int i = 0; i < streams.length; ++i)
+			{
+				streams[i] = random.split();
+			}
+		}
+
+		final int numWorkers = Math.max(1, ThreadPool.getNumThreads());
+
+		new Sweep(this, streams, firstColor, steps, numWorkers).execute();
+	}
+
+	/*---------------
+	 * Inner classes
+	 */
+
+	/*
+	 * State shared by the workers for a single call to sweep. Each step is one color.
+	 */
+	private static final class Sweep extends PersistentWorkers
+	{
+		private final GibbsColorSweeper _sweeper;
+		private final DimpleRandom[] _streams;
+		private final int _firstColor;
+		private final AtomicInteger _nextChunk = new AtomicInteger();
+
+		private int _color;
+
+		private Sweep(GibbsColorSweeper sweeper, DimpleRandom[] streams, int firstColor, int numSteps, int numWorkers)
+		{
+			super(numWorkers, numSteps);
+			_sweeper = sweeper;
+			_streams = streams;
+			_firstColor = firstColor;
+		}
+
+		@Override
+		protected void startStep(int step)
+		{
+			_color = (_firstColor + step) % _sweeper._chunkSizes.length;
+			_nextChunk.set(0);
+		}
+
+		@Override
+		protected void runWorker(int worker)
+		{
+			final DimpleEnvironment environment = DimpleEnvironment.active();
+			final ThreadRandomState savedRandom = environment.saveThreadRandom();
+			try
+			{
+				super.runWorker(worker);
+			}
+			finally
+			{
+				environment.restoreThreadRandom(savedRandom);
+			}
+		}
+
+		@Override
+		protected void doStep(int worker, int step)
+		{
+			final DimpleEnvironment environment = DimpleEnvironment.active();
+			final IScheduleEntry[] entries = _sweeper._entries;
+			final int color = _color;
+			final int start = _sweeper._colorStarts[color], end = _sweeper._colorStarts[color + 1];
+			final int chunkSize = _sweeper._chunkSizes[color];
+			final int numChunks = (end - start + chunkSize - 1) / chunkSize;
+
+			for (int chunk; (chunk = _nextChunk.getAndIncrement()) < numChunks;)
+			{
+				environment.setThreadRandom(_streams[chunk]);
+				for (int i = start + chunk * chunkSize, chunkEnd = Math.min(i + chunkSize, end); i < chunkEnd; ++i)
+				{
+					entries[i].update();
+				}
+			}
+		}
+	}
+}
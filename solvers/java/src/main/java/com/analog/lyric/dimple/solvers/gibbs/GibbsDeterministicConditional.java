@@ -0,0 +1,618 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.gibbs;
+
+import static java.util.Objects.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.collect.ReleasableIterator;
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.values.DiscreteValue;
+import com.analog.lyric.dimple.model.values.IndexedValue;
+import com.analog.lyric.dimple.model.values.RealJointValue;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
+import com.google.common.primitives.Doubles;
+
+/**
+ * Computes the conditional energies of all of the values of a {@link GibbsDiscrete} variable that is an
+ * input to one or more deterministic directed factors.
+ * <p>
+ * Used by {@link GibbsDiscrete#update()} instead of setting each value in turn, which propagates the
+ * value through {@link GibbsSolverGraph}'s queue of deferred deterministic updates, and then rescoring all
+ * of the variable's {@linkplain GibbsNeighbors neighbors}.
+ * <p>
+ * The deterministic factors that depend on the variable, directly or through the outputs of other such
+ * factors, are found once on construction and put in topological order. For each value of the variable,
+ * a factor is only evaluated if one of its inputs differs from the previous value, using
+ * {@link FactorFunction#updateDeterministic} when the number of changed inputs is within the function's
+ * {@linkplain FactorFunction#updateDeterministicLimit limit}, and only the neighbors that are
+ * adjacent to a changed value are rescored, using {@link FactorFunction#updateEnergy} when the function
+ * supports it. The values are propagated directly through the argument values that are shared by the
+ * factors and variables, using buffers that are allocated once on construction.
+ * <p>
+ * Afterwards the variable is left set to its last value with its dependents consistent with that value.
+ * <p>
+ * @since 0.08
+ */
+final class GibbsDeterministicConditional
+{
+	/*-------
+	 * State
+	 */
+
+	private final DiscreteValue _source;
+
+	/**
+	 * The values that may change when the source variable changes: the source value followed by the outputs
+	 * of the dependent factors. These are the value objects shared by the variables and their factors.
+	 */
+	private final Value[] _values;
+
+	/**
+	 * Copies of {@link #_values} before the current change. Only meaningful where {@link #_changed} is set.
+	 */
+	private final Value[] _oldValues;
+
+	private final boolean[] _changed;
+
+	/**
+	 * The solver variables for {@link #_values}.
+	 */
+	private final ISolverVariableGibbs[] _variables;
+
+	/**
+	 * The dependent factors in topological order.
+	 */
+	private final Step[] _steps;
+
+	/**
+	 * The nodes whose potentials make up the conditional, in the same order as the source variable's
+	 * {@link GibbsNeighbors}.
+	 */
+	private final Term[] _terms;
+
+	/**
+	 * Evaluation of one dependent deterministic factor.
+	 */
+	private static final class Step
+	{
+		private final FactorFunction _function;
+		private final Value[] _arguments;
+
+		/**
+		 * The indexes into {@link GibbsDeterministicConditional#_values} of the factor's inputs that may change.
+		 */
+		private final int[] _inputs;
+
+		/**
+		 * The edge and old value of each of {@link #_inputs}.
+		 */
+		private final IndexedValue[] _oldInputs;
+
+		/**
+		 * The indexes into {@link GibbsDeterministicConditional#_values} of the factor's outputs.
+		 */
+		private final int[] _outputs;
+
+		private final int _incrementalLimit;
+		private final ArrayList<IndexedValue> _changedInputs;
+		private final AtomicReference<int[]> _changedOutputs = new AtomicReference<int[]>();
+
+		/**
+		 * False until the outputs have been computed by a full evaluation.
+		 */
+		private boolean _outputsValid = false;
+
+		private Step(FactorFunction function, Value[] arguments, int[] inputs, IndexedValue[] oldInputs, int[] outputs)
+		{
+			_function = function;
+			_arguments = arguments;
+			_inputs = inputs;
+			_oldInputs = oldInputs;
+			_outputs = outputs;
+			_incrementalLimit = function.updateDeterministicLimit(arguments.length);
+			_changedInputs = new ArrayList<IndexedValue>(inputs.length);
+		}
+	}
+
+	/**
+	 * The potential of one neighbor.
+	 */
+	private static final class Term
+	{
+		private final ISolverNodeGibbs _node;
+
+		/**
+		 * The indexes into {@link GibbsDeterministicConditional#_values} of the values on which the potential depends.
+		 */
+		private final int[] _inputs;
+
+		/**
+		 * If the potential is the energy of a factor function that can be updated using
+		 * {@link FactorFunction#updateEnergy}, the function, its arguments and the edge and old value
+		 * of each of {@link #_inputs}. Otherwise null.
+		 */
+		private final @Nullable FactorFunction _function;
+		private final @Nullable Value[] _arguments;
+		private final @Nullable IndexedValue[] _oldInputs;
+
+		private double _potential;
+
+		private Term(ISolverNodeGibbs node, int[] inputs, @Nullable FactorFunction function,
+			@Nullable Value[] arguments, @Nullable IndexedValue[] oldInputs)
+		{
+			_node = node;
+			_inputs = inputs;
+			_function = function;
+			_arguments = arguments;
+			_oldInputs = oldInputs;
+		}
+	}
+
+	/*--------------
+	 * Construction
+	 */
+
+	private GibbsDeterministicConditional(DiscreteValue source, Value[] values, Value[] oldValues,
+		ISolverVariableGibbs[] variables, Step[] steps, Term[] terms)
+	{
+		_source = source;
+		_values = values;
+		_oldValues = oldValues;
+		_changed = new boolean[values.length];
+		_variables = variables;
+		_steps = steps;
+		_terms = terms;
+	}
+
+	/**
+	 * Creates an instance for {@code svar} given its {@code neighbors}.
+	 *
+	 * @return null if the variable has no deterministic dependents or if any of the dependent factors
+	 * or their outputs are not of a supported type, in which case the caller must set each value of the
+	 * variable in turn.
+	 */
+	static @Nullable GibbsDeterministicConditional create(GibbsDiscrete svar, @Nullable GibbsNeighbors neighbors)
+	{
+		if (neighbors == null || !neighbors.hasDeterministicDependents())
+		{
+			return null;
+		}
+
+		final Map<ISolverVariableGibbs, Integer> valueIndexes = new IdentityHashMap<ISolverVariableGibbs, Integer>();
+		final ArrayList<Value> values = new ArrayList<Value>();
+		final ArrayList<ISolverVariableGibbs> variables = new ArrayList<ISolverVariableGibbs>();
+		valueIndexes.put(svar, 0);
+		values.add(svar.getCurrentSampleValue());
+		variables.add(svar);
+
+		// Find the dependent factors breadth first, assigning indexes to their outputs.
+		final ArrayList<ISolverFactorGibbs> factors = new ArrayList<ISolverFactorGibbs>();
+		final ArrayList<int[]> factorOutputs = new ArrayList<int[]>();
+		final Map<ISolverFactorGibbs, Integer> factorIndexes = new IdentityHashMap<ISolverFactorGibbs, Integer>();
+		for (int vi = 0; vi < variables.size(); ++vi)
+		{
+			final Variable var = requireNonNull(variables.get(vi).getModelObject());
+			for (int edge = 0, nEdges = var.getSiblingCount(); edge < nEdges; ++edge)
+			{
+				final Factor factor = var.getSibling(edge);
+				if (!factor.getFactorFunction().isDeterministicDirected() ||
+					factor.isDirectedTo(var.getSiblingPortIndex(edge)))
+				{
+					continue;
+				}
+
+				final ISolverFactor sfactor = factor.getSolver();
+				if (!(sfactor instanceof GibbsTableFactor || sfactor instanceof GibbsRealFactor))
+				{
+					return null;
+				}
+
+				final ISolverFactorGibbs gibbsFactor = (ISolverFactorGibbs)sfactor;
+				if (factorIndexes.containsKey(gibbsFactor))
+				{
+					continue;
+				}
+
+				final int[] directedTo = requireNonNull(factor.getDirectedTo());
+				final int[] outputs = new int[directedTo.length];
+				for (int i = 0; i < directedTo.length; ++i)
+				{
+					final ISolverNode output = factor.getSibling(directedTo[i]).getSolver();
+					if (!(output instanceof GibbsDiscrete || output instanceof GibbsReal || output instanceof GibbsRealJoint))
+					{
+						return null;
+					}
+					final ISolverVariableGibbs soutput = (ISolverVariableGibbs)output;
+					Integer index = valueIndexes.get(soutput);
+					if (index == null)
+					{
+						index = values.size();
+						valueIndexes.put(soutput, index);
+						values.add((Value)requireNonNull(gibbsFactor.getInputMsg(directedTo[i])));
+						variables.add(soutput);
+					}
+					outputs[i] = index;
+				}
+
+				factorIndexes.put(gibbsFactor, factors.size());
+				factors.add(gibbsFactor);
+				factorOutputs.add(outputs);
+			}
+		}
+
+		final int nValues = values.size();
+		final Value[] oldValues = new Value[nValues];
+		for (int vi = 0; vi < nValues; ++vi)
+		{
+			oldValues[vi] = values.get(vi).clone();
+		}
+
+		// The factor that computes each value, or -1 for the source.
+		final int[] producers = new int[nValues];
+		producers[0] = -1;
+		for (int fi = 0; fi < factors.size(); ++fi)
+		{
+			for (int vi : factorOutputs.get(fi))
+			{
+				producers[vi] = fi;
+			}
+		}
+
+		// Create the steps, ordered so that each factor follows the factors that compute its inputs.
+		final int nFactors = factors.size();
+		final int[][] factorInputs = new int[nFactors][];
+		final int[][] factorInputEdges = new int[nFactors][];
+		for (int fi = 0; fi < nFactors; ++fi)
+		{
+			final Factor factor = requireNonNull(factors.get(fi).getModelObject());
+			trackedEdges(factor, valueIndexes, factorOutputs.get(fi), factorInputs, factorInputEdges, fi);
+		}
+		final Step[] steps = new Step[nFactors];
+		final int[] nSorted = new int[1];
+		final boolean[] sorted = new boolean[nFactors];
+		for (int fi = 0; fi < nFactors; ++fi)
+		{
+			sortSteps(fi, factors, factorInputs, factorInputEdges, factorOutputs, producers, oldValues, sorted,
+				steps, nSorted);
+		}
+
+		// Create the terms for the neighbors.
+		final ArrayList<Term> terms = new ArrayList<Term>();
+		final ReleasableIterator<ISolverNodeGibbs> neighborIter = neighbors.iterator();
+		while (neighborIter.hasNext())
+		{
+			final ISolverNodeGibbs node = neighborIter.next();
+			if (node instanceof ISolverVariableGibbs)
+			{
+				final Integer index = valueIndexes.get(node);
+				terms.add(new Term(node, index != null ? new int[] { index } : new int[0], null, null, null));
+			}
+			else
+			{
+				final Factor factor = (Factor)requireNonNull(node.getModelObject());
+				final int[][] inputs = new int[1][], inputEdges = new int[1][];
+				trackedEdges(factor, valueIndexes, null, inputs, inputEdges, 0);
+
+				FactorFunction function = null;
+				Value[] arguments = null;
+				IndexedValue[] oldInputs = null;
+				final FactorFunction factorFunction = factor.getFactorFunction();
+				if ((node instanceof GibbsTableFactor || node instanceof GibbsRealFactor) &&
+					!factorFunction.isDeterministicDirected())
+				{
+					function = factorFunction;
+					arguments = arguments((ISolverFactorGibbs)node, factor);
+					oldInputs = oldInputs(inputs[0], inputEdges[0], oldValues);
+				}
+				terms.add(new Term(node, inputs[0], function, arguments, oldInputs));
+			}
+		}
+		neighborIter.release();
+
+		return new GibbsDeterministicConditional(svar.getCurrentSampleValue(),
+			values.toArray(new Value[nValues]),
+			oldValues,
+			variables.toArray(new ISolverVariableGibbs[variables.size()]),
+			steps,
+			terms.toArray(new Term[terms.size()]));
+	}
+
+	/*---------------------------------------
+	 * GibbsDeterministicConditional methods
+	 */
+
+	/**
+	 * Computes the conditional energy of each value of the variable.
+	 * <p>
+	 * @param input is the energy of each value from the variable's input.
+	 * @param beta is the tempering factor applied to each energy.
+	 * @param conditional is the output array, of the same length as {@code input}.
+	 * @return the minimum energy in {@code conditional}.
+	 */
+	double computeConditional(double[] input, double beta, double[] conditional)
+	{
+		final Term[] terms = _terms;
+		double minEnergy = Double.POSITIVE_INFINITY;
+
+		for (int index = 0, n = input.length; index < n; ++index)
+		{
+			setSourceIndex(index);
+			updatePotentials(index == 0);
+
+			double out = input[index];						// Sum of the input prior...
+			for (Term term : terms)
+			{
+				out += term._potential;						// Plus the potential of each neighbor
+			}
+			out *= beta;									// Apply tempering
+
+			if (out < minEnergy) minEnergy = out;			// For normalization
+
+			conditional[index] = out;
+		}
+
+		return minEnergy;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Sets the source value and propagates the change through the dependent factors.
+	 */
+	private void setSourceIndex(int index)
+	{
+		final Value[] values = _values;
+		final Value[] oldValues = _oldValues;
+		final boolean[] changed = _changed;
+
+		Arrays.fill(changed, false);
+		final DiscreteValue source = _source;
+		if (source.getIndex() != index)
+		{
+			oldValues[0].setFrom(source);
+			source.setIndex(index);
+			changed[0] = true;
+		}
+
+		for (Step step : _steps)
+		{
+			final ArrayList<IndexedValue> changedInputs = step._changedInputs;
+			changedInputs.clear();
+			final int[] inputs = step._inputs;
+			for (int i = 0; i < inputs.length; ++i)
+			{
+				if (changed[inputs[i]])
+				{
+					changedInputs.add(step._oldInputs[i]);
+				}
+			}
+
+			if (changedInputs.isEmpty() && step._outputsValid)
+			{
+				continue;
+			}
+
+			final int[] outputs = step._outputs;
+			for (int vi : outputs)
+			{
+				copyValue(values[vi], oldValues[vi]);
+			}
+
+			if (step._outputsValid && changedInputs.size() <= step._incrementalLimit)
+			{
+				step._function.updateDeterministic(step._arguments, changedInputs, step._changedOutputs);
+			}
+			else
+			{
+				step._function.evalDeterministic(step._arguments);
+				step._outputsValid = true;
+			}
+
+			for (int vi : outputs)
+			{
+				if (!values[vi].valueEquals(oldValues[vi]))
+				{
+					changed[vi] = true;
+					final ISolverVariableGibbs svar = _variables[vi];
+					if (svar instanceof GibbsReal)
+					{
+						((GibbsReal)svar).setCurrentSampleFromOutputValue();
+					}
+					else if (svar instanceof GibbsRealJoint)
+					{
+						((GibbsRealJoint)svar).setCurrentSampleFromOutputValue();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Updates the potentials of the terms whose inputs have changed, or of all of them if {@code all}.
+	 */
+	private void updatePotentials(boolean all)
+	{
+		final boolean[] changed = _changed;
+
+		for (Term term : _terms)
+		{
+			if (all)
+			{
+				term._potential = term._node.getPotential();
+				continue;
+			}
+
+			int nChanged = 0;
+			for (int vi : term._inputs)
+			{
+				if (changed[vi])
+					++nChanged;
+			}
+			if (nChanged > 0)
+			{
+				term._potential = updatePotential(term, nChanged);
+			}
+		}
+	}
+
+	private double updatePotential(Term term, int nChanged)
+	{
+		final FactorFunction function = term._function;
+		final Value[] arguments = term._arguments;
+		final double oldPotential = term._potential;
+
+		if (function == null || arguments == null || !Doubles.isFinite(oldPotential) ||
+			!function.useUpdateEnergy(arguments, nChanged) ||
+			term._node instanceof GibbsTableFactor && ((GibbsTableFactor)term._node).getFactorTableIfComputed() != null)
+		{
+			return term._node.getPotential();
+		}
+
+		final IndexedValue[] allOldInputs = requireNonNull(term._oldInputs);
+		IndexedValue[] oldInputs = allOldInputs;
+		if (nChanged < allOldInputs.length)
+		{
+			final boolean[] changed = _changed;
+			final int[] inputs = term._inputs;
+			oldInputs = new IndexedValue[nChanged];
+			for (int i = 0, j = 0; j < nChanged; ++i)
+			{
+				if (changed[inputs[i]])
+					oldInputs[j++] = allOldInputs[i];
+			}
+		}
+
+		final double potential = function.updateEnergy(arguments, oldInputs, oldPotential);
+		return potential != potential ? Double.POSITIVE_INFINITY : potential;	// Faster isNaN
+	}
+
+	/**
+	 * Copies {@code from} into {@code to} without sharing any mutable state.
+	 */
+	private static void copyValue(Value from, Value to)
+	{
+		if (to instanceof RealJointValue)
+		{
+			final RealJointValue joint = (RealJointValue)to;
+			final double[] source = from.getDoubleArray();
+			double[] target = joint.getValue();
+			if (target.length != source.length)
+			{
+				joint.setValue(target = new double[source.length]);
+			}
+			System.arraycopy(source, 0, target, 0, source.length);
+		}
+		else
+		{
+			to.setFrom(from);
+		}
+	}
+
+	/**
+	 * Returns the edge and old value of each of the given {@code inputs}.
+	 */
+	private static IndexedValue[] oldInputs(int[] inputs, int[] edges, Value[] oldValues)
+	{
+		final IndexedValue[] oldInputs = new IndexedValue[inputs.length];
+		for (int i = 0; i < inputs.length; ++i)
+		{
+			oldInputs[i] = new IndexedValue(edges[i], oldValues[inputs[i]]);
+		}
+		return oldInputs;
+	}
+
+	/**
+	 * Returns the argument values of {@code sfactor}, which are shared with its variables.
+	 */
+	private static Value[] arguments(ISolverFactorGibbs sfactor, Factor factor)
+	{
+		final Value[] arguments = new Value[factor.getSiblingCount()];
+		for (int edge = 0; edge < arguments.length; ++edge)
+		{
+			arguments[edge] = (Value)requireNonNull(sfactor.getInputMsg(edge));
+		}
+		return arguments;
+	}
+
+	/**
+	 * Sets {@code inputs[i]} and {@code edges[i]} to the value indexes and edges of the variables of
+	 * {@code factor} that are in {@code valueIndexes}, excluding those in {@code outputs}.
+	 */
+	private static void trackedEdges(Factor factor, Map<ISolverVariableGibbs, Integer> valueIndexes,
+		@Nullable int[] outputs, int[][] inputs, int[][] edges, int i)
+	{
+		final int nEdges = factor.getSiblingCount();
+		final int[] factorInputs = new int[nEdges], factorEdges = new int[nEdges];
+		int n = 0;
+		edgeLoop:
+		for (int edge = 0; edge < nEdges; ++edge)
+		{
+			final Integer index = valueIndexes.get(factor.getSibling(edge).getSolver());
+			if (index == null)
+				continue;
+			if (outputs != null)
+				for (int output : outputs)
+					if (output == index)
+						continue edgeLoop;
+			factorInputs[n] = index;
+			factorEdges[n] = edge;
+			++n;
+		}
+		inputs[i] = Arrays.copyOf(factorInputs, n);
+		edges[i] = Arrays.copyOf(factorEdges, n);
+	}
+
+	/**
+	 * Appends the step for factor {@code fi} to {@code steps} after those of the factors that compute its inputs.
+	 */
+	private static void sortSteps(int fi, ArrayList<ISolverFactorGibbs> factors, int[][] factorInputs,
+		int[][] factorInputEdges, ArrayList<int[]> factorOutputs, int[] producers, Value[] oldValues,
+		boolean[] sorted, Step[] steps, int[] nSorted)
+	{
+		if (sorted[fi])
+			return;
+		sorted[fi] = true;
+
+		final int[] inputs = factorInputs[fi];
+		for (int vi : inputs)
+		{
+			final int producer = producers[vi];
+			if (producer >= 0)
+				sortSteps(producer, factors, factorInputs, factorInputEdges, factorOutputs, producers, oldValues,
+					sorted, steps, nSorted);
+		}
+
+		final ISolverFactorGibbs sfactor = factors.get(fi);
+		final Factor factor = requireNonNull(sfactor.getModelObject());
+		steps[nSorted[0]++] = new Step(factor.getFactorFunction(), arguments(sfactor, factor), inputs,
+			oldInputs(inputs, factorInputEdges[fi], oldValues), factorOutputs.get(fi));
+	}
+}
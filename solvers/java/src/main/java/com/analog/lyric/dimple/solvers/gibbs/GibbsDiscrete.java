@@ -27,6 +27,8 @@ import org.eclipse.jdt.annotation.Nullable;
 import cern.colt.list.IntArrayList;
 
 import com.analog.lyric.collect.ArrayUtil;
+import com.analog.lyric.collect.IntArrayIterator;
+import com.analog.lyric.collect.PrimitiveIterator;
 import com.analog.lyric.collect.ReleasableIterator;
 import com.analog.lyric.dimple.environment.DimpleEnvironment;
 import com.analog.lyric.dimple.exceptions.DimpleException;
@@ -77,10 +79,23 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 
 	private double[][] _inPortMsgs = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
 	private DiscreteValue _outputMsg;
+	/**
+	 * Reusable copy of {@link #_outputMsg} passed to the sampler by {@link #update()}.
+	 */
+	private @Nullable DiscreteValue _samplerValue = null;
 	private @Nullable long[] _beliefHistogram;
 	private double[] _input;
 	private double[] _conditional;
 	private @Nullable IntArrayList _sampleIndexArray;
+	/**
+	 * Saved sample indices when using a {@link GibbsSampleStore}, in which case {@link #_sampleIndexArray} is null.
+	 */
+	private @Nullable GibbsSampleStore.IntColumn _sampleIndexColumn;
+	private @Nullable GibbsSampleStatistics _sampleStatistics;
+	/**
+	 * True if {@link #_sampleStatistics} uses the value of the sample rather than its index.
+	 */
+	private boolean _numericSampleStatistics = false;
 	private int _bestSampleIndex;
 	private @Nullable DiscreteValue _initialSampleValue = null;
 	private double _beta = 1;
@@ -96,6 +111,13 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 	 * List of neighbors for sample scoring. Instantiated during initialization.
 	 */
 	private @Nullable GibbsNeighbors _neighbors = null;
+	
+	/**
+	 * Computes the conditional distribution when the variable has deterministic dependents. Created on
+	 * the first update after initialization, and null if not supported for the dependents.
+	 */
+	private @Nullable GibbsDeterministicConditional _deterministicConditional = null;
+	private boolean _deterministicConditionalCreated = false;
 
 	/*--------------
 	 * Construction
@@ -145,6 +167,10 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 			oldValue = _outputMsg.clone();
 			break;
 		}
+		
+		final GibbsSolverGraph rootGraph = (GibbsSolverGraph)requireNonNull(getRootGraph());
+		final boolean trackScore = rootGraph.isTrackingSampleScore();
+		final int oldIndex = _outputMsg.getIndex();
 
 		final int messageLength = _input.length;
 		final int numPorts = _var.getSiblingCount();
@@ -180,23 +206,37 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 		}
 		else	// There are deterministic dependents, so must account for these
 		{
-			// TODO: SPEED UP
-			for (int index = 0; index < messageLength; index++)
+			GibbsDeterministicConditional deterministicConditional = _deterministicConditional;
+			if (!_deterministicConditionalCreated)
 			{
-				setCurrentSampleIndex(index);
-				double out = _input[index];						// Sum of the input prior...
-				ReleasableIterator<ISolverNodeGibbs> scoreNodes = getSampleScoreNodes();
-				while (scoreNodes.hasNext())
+				_deterministicConditional = deterministicConditional = GibbsDeterministicConditional.create(this, _neighbors);
+				_deterministicConditionalCreated = true;
+			}
+			
+			if (deterministicConditional != null)
+			{
+				// Propagates each value through the dependents and only rescores the affected neighbors
+				minEnergy = deterministicConditional.computeConditional(_input, _beta, _conditional);
+			}
+			else
+			{
+				for (int index = 0; index < messageLength; index++)
 				{
-					out += scoreNodes.next().getPotential();
+					setCurrentSampleIndex(index);
+					double out = _input[index];						// Sum of the input prior...
+					ReleasableIterator<ISolverNodeGibbs> scoreNodes = getSampleScoreNodes();
+					while (scoreNodes.hasNext())
+					{
+						out += scoreNodes.next().getPotential();
+					}
+					scoreNodes.release();
+					
+					out *= _beta;									// Apply tempering
+	
+					if (out < minEnergy) minEnergy = out;			// For normalization
+	
+					_conditional[index] = out;						// Save in log domain representation
 				}
-				scoreNodes.release();
-				
-				out *= _beta;									// Apply tempering
-
-				if (out < minEnergy) minEnergy = out;			// For normalization
-
-				_conditional[index] = out;						// Save in log domain representation
 			}
 		}
 		
@@ -208,12 +248,12 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 		{
 			if (_sampler instanceof IDiscreteDirectSampler)
 			{
-				((IDiscreteDirectSampler)Objects.requireNonNull(_sampler)).nextSample(_outputMsg.clone(),
+				((IDiscreteDirectSampler)Objects.requireNonNull(_sampler)).nextSample(samplerValue(),
 					_conditional, minEnergy, this);
 			}
 			else if (_sampler instanceof IMCMCSampler)
 			{
-				rejected = !((IMCMCSampler)Objects.requireNonNull(_sampler)).nextSample(_outputMsg.clone(), this);
+				rejected = !((IMCMCSampler)Objects.requireNonNull(_sampler)).nextSample(samplerValue(), this);
 			}
 		}
 		else
@@ -223,6 +263,14 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 		
 		if (rejected) _rejectCount++;
 		
+		if (trackScore)
+		{
+			// The conditional holds the tempered score of each value given the rest of the sample
+			final int newIndex = _outputMsg.getIndex();
+			if (newIndex != oldIndex)
+				rootGraph.addSampleScoreDelta((_conditional[newIndex] - _conditional[oldIndex]) / _beta);
+		}
+		
 		switch (updateEventFlags)
 		{
 		case UPDATE_EVENT_SCORED:
@@ -237,6 +285,26 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 		}
 	}
 	
+	/**
+	 * Returns a copy of the current sample value for passing to the sampler.
+	 * <p>
+	 * The copy is reused across calls so that {@link #update()} does not allocate.
+	 */
+	private DiscreteValue samplerValue()
+	{
+		final DiscreteValue outputMsg = _outputMsg;
+		DiscreteValue value = _samplerValue;
+		if (value == null || value.getDomain() != outputMsg.getDomain())
+		{
+			_samplerValue = value = outputMsg.clone();
+		}
+		else
+		{
+			value.setIndex(outputMsg.getIndex());
+		}
+		return value;
+	}
+	
 	/*---------------------------
 	 * SolverEventSource methods
 	 */
@@ -453,6 +521,7 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 	public final void saveAllSamples()
     {
     	_sampleIndexArray = new IntArrayList();
+    	_sampleIndexColumn = null;
     	setOption(GibbsOptions.saveAllSamples, true);
     }
     
@@ -464,6 +533,7 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 	public void disableSavingAllSamples()
     {
     	_sampleIndexArray = null;
+    	_sampleIndexColumn = null;
     	setOption(GibbsOptions.saveAllSamples, false);
     }
     
@@ -475,8 +545,28 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
     	{
     		sampleIndexArray.add(_outputMsg.getIndex());
     	}
+    	else
+    	{
+    		final GibbsSampleStore.IntColumn sampleIndexColumn = _sampleIndexColumn;
+    		if (sampleIndexColumn != null)
+    			sampleIndexColumn.add(_outputMsg.getIndex());
+    	}
     }
     
+	@Override
+	public final @Nullable GibbsSampleStatistics getSampleStatistics()
+	{
+		return _sampleStatistics;
+	}
+	
+	@Override
+	public final void updateSampleStatistics()
+	{
+		final GibbsSampleStatistics sampleStatistics = _sampleStatistics;
+		if (sampleStatistics != null)
+			sampleStatistics.add(_numericSampleStatistics ? _outputMsg.getDouble() : _outputMsg.getIndex());
+	}
+	
     @Override
 	public final void saveBestSample()
     {
@@ -613,29 +703,56 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
     @Override
 	public final Object[] getAllSamples()
     {
-    	final IntArrayList sampleIndexArray = _sampleIndexArray;
-    	
-		if (sampleIndexArray == null)
-		{
-			return ArrayUtil.EMPTY_OBJECT_ARRAY;
-		}
-		int length = sampleIndexArray.size();
+    	final int[] sampleIndices = getAllSampleIndices();
     	DiscreteDomain domain = _varDiscrete.getDiscreteDomain();
-    	Object[] retval = new Object[length];
+    	int length = sampleIndices.length;
+    	Object[] retval = length > 0 ? new Object[length] : ArrayUtil.EMPTY_OBJECT_ARRAY;
     	for (int i = 0; i < length; i++)
-    		retval[i] = domain.getElement(sampleIndexArray.get(i));
+    		retval[i] = domain.getElement(sampleIndices[i]);
     	return retval;
     }
     public final int[] getAllSampleIndices()
     {
     	final IntArrayList sampleIndexArray = _sampleIndexArray;
-
-    	if (sampleIndexArray == null)
+    	if (sampleIndexArray != null)
     	{
-    		return ArrayUtil.EMPTY_INT_ARRAY;
+    		return Arrays.copyOf(sampleIndexArray.elements(), sampleIndexArray.size());
     	}
     	
-    	return Arrays.copyOf(sampleIndexArray.elements(), sampleIndexArray.size());
+    	final GibbsSampleStore.IntColumn sampleIndexColumn = _sampleIndexColumn;
+    	if (sampleIndexColumn != null)
+    	{
+    		return sampleIndexColumn.toArray();
+    	}
+    	
+    	return ArrayUtil.EMPTY_INT_ARRAY;
+    }
+    
+    /**
+     * Iterates over the saved sample indices without copying them.
+     * <p>
+     * Unlike {@link #getAllSampleIndices()}, this does not require memory proportional to the number of
+     * samples when they are saved in a {@link GibbsSampleStore}. Samples saved after the iterator is
+     * created will not be visited.
+     * <p>
+     * @since 0.08
+     * @see GibbsOptions#sampleStoreDirectory
+     */
+    public final PrimitiveIterator.OfInt getAllSampleIndexIterator()
+    {
+    	final IntArrayList sampleIndexArray = _sampleIndexArray;
+    	if (sampleIndexArray != null)
+    	{
+    		return new IntArrayIterator(sampleIndexArray.elements(), 0, sampleIndexArray.size());
+    	}
+    	
+    	final GibbsSampleStore.IntColumn sampleIndexColumn = _sampleIndexColumn;
+    	if (sampleIndexColumn != null)
+    	{
+    		return sampleIndexColumn.iterator();
+    	}
+    	
+    	return new IntArrayIterator(ArrayUtil.EMPTY_INT_ARRAY);
     }
     
 	@Override
@@ -670,6 +787,38 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 	{
 		return _rejectCount;
 	}
+	
+	@Override
+	public void mergeChainSamples(ISolverVariableGibbs other, boolean takeBestSample)
+	{
+		final GibbsDiscrete ovar = (GibbsDiscrete)other;
+		
+		final long[] histogram = requireNonNull(_beliefHistogram);
+		final long[] otherHistogram = requireNonNull(ovar._beliefHistogram);
+		for (int i = 0; i < histogram.length; ++i)
+			histogram[i] += otherHistogram[i];
+		
+		final IntArrayList sampleIndexArray = _sampleIndexArray;
+		final IntArrayList otherSampleIndexArray = ovar._sampleIndexArray;
+		if (sampleIndexArray != null && otherSampleIndexArray != null)
+			sampleIndexArray.addAllOfFromTo(otherSampleIndexArray, 0, otherSampleIndexArray.size() - 1);
+		final GibbsSampleStore.IntColumn sampleIndexColumn = _sampleIndexColumn;
+		final GibbsSampleStore.IntColumn otherSampleIndexColumn = ovar._sampleIndexColumn;
+		if (sampleIndexColumn != null && otherSampleIndexColumn != null)
+			sampleIndexColumn.addAll(otherSampleIndexColumn);
+		
+		final GibbsSampleStatistics sampleStatistics = _sampleStatistics;
+		final GibbsSampleStatistics otherSampleStatistics = ovar._sampleStatistics;
+		if (sampleStatistics != null && otherSampleStatistics != null)
+			sampleStatistics.merge(otherSampleStatistics);
+		
+		if (takeBestSample)
+			_bestSampleIndex = ovar._bestSampleIndex;
+		
+		_updateCount += ovar._updateCount;
+		_rejectCount += ovar._rejectCount;
+		_scoreCount += ovar._scoreCount;
+	}
 
 	public final void setAndHoldSampleValue(Object value)
 	{
@@ -808,7 +957,7 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 		_outputMsg = Value.create(domain);
 		_outputMsg = (DiscreteValue)resetOutputMessage(_outputMsg);
 
-		if (_sampleIndexArray != null)
+		if (_sampleIndexArray != null || _sampleIndexColumn != null)
 			saveAllSamples();
 
 		_beliefHistogram = new long[domain.size()];
@@ -900,6 +1049,8 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 		GibbsDiscrete ovar = ((GibbsDiscrete)other);
 		_outputMsg = ovar._outputMsg;
 		_sampleIndexArray = ovar._sampleIndexArray;
+		_sampleIndexColumn = ovar._sampleIndexColumn;
+		_sampleStatistics = ovar._sampleStatistics;
 		_beliefHistogram = ovar._beliefHistogram;
 		_outputMsg = ovar._outputMsg;
 		_conditional = ovar._conditional;
@@ -921,23 +1072,51 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 		// We actually only need to change this if the model has changed in the vicinity of this variable,
 		// but that may not be worth the trouble to figure out.
 		_neighbors = GibbsNeighbors.create(this);
+		_deterministicConditional = null;
+		_deterministicConditionalCreated = false;
 		
 		// Clear out sample state
 		_bestSampleIndex = -1;
 		IntArrayList sampleIndexArray = null;
+		GibbsSampleStore.IntColumn sampleIndexColumn = null;
 		if (saveAllSamples)
 		{
-			sampleIndexArray = _sampleIndexArray;
-			if (sampleIndexArray == null)
+			final GibbsSampleStore store = ((GibbsSolverGraph)requireNonNull(getRootGraph())).requireSampleStore();
+			if (store != null)
 			{
-				sampleIndexArray = new IntArrayList();
+				sampleIndexColumn = store.newIntColumn(_varDiscrete.getDomain().size());
 			}
 			else
 			{
-				sampleIndexArray.clear();
+				sampleIndexArray = _sampleIndexArray;
+				if (sampleIndexArray == null)
+				{
+					sampleIndexArray = new IntArrayList();
+				}
+				else
+				{
+					sampleIndexArray.clear();
+				}
 			}
 		}
 		_sampleIndexArray = sampleIndexArray;
+		_sampleIndexColumn = sampleIndexColumn;
+		
+		GibbsSampleStatistics sampleStatistics = null;
+		if (getOptionOrDefault(GibbsOptions.computeSampleStatistics))
+		{
+			sampleStatistics = _sampleStatistics;
+			if (sampleStatistics == null)
+			{
+				sampleStatistics = new GibbsSampleStatistics(1);
+			}
+			else
+			{
+				sampleStatistics.reset();
+			}
+		}
+		_sampleStatistics = sampleStatistics;
+		_numericSampleStatistics = _varDiscrete.getDomain().isNumber();
 		
 		Arrays.fill(_beliefHistogram, 0);
 		
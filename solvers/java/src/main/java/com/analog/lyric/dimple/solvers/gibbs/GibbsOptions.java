@@ -23,6 +23,7 @@ import com.analog.lyric.dimple.solvers.gibbs.samplers.generic.SliceSampler;
 import com.analog.lyric.options.BooleanOptionKey;
 import com.analog.lyric.options.DoubleOptionKey;
 import com.analog.lyric.options.IntegerOptionKey;
+import com.analog.lyric.options.StringOptionKey;
 
 /**
  * Options for Gibbs solver.
@@ -88,6 +89,31 @@ public class GibbsOptions extends SolverOptions
 	public static final IntegerOptionKey numRandomRestarts =
 		new IntegerOptionKey(GibbsOptions.class, "numRandomRestarts", 0, 0, Integer.MAX_VALUE);
 	
+	/**
+	 * The number of independent Markov chains to run concurrently during one round of Gibbs sampling.
+	 * <p>
+	 * When greater than one, {@linkplain GibbsSolverGraph#solveOneStep() solveOneStep} will run
+	 * this many independent chains on separate threads, each of which performs the full sequence of
+	 * random restarts, burn-in and sampling on its own copy of the graph using its own random number
+	 * stream. When all of the chains have finished, their sample statistics are merged into the
+	 * solver objects for the original graph, so that beliefs, sample moments, best sample values, saved
+	 * samples and saved scores reflect the samples from all chains. The first chain is run on the
+	 * original graph in the calling thread.
+	 * <p>
+	 * The total number of samples produced will be this number times the number of samples per chain
+	 * as determined by {@link #numSamples} and {@link #numRandomRestarts}.
+	 * <p>
+	 * Parallel chains are only supported on the root graph and may not be used with graphs
+	 * containing factor graph streams. Only state that is specified through options is copied to the
+	 * other chains.
+	 * <p>
+	 * Must be a positive integer. The default is one.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final IntegerOptionKey numChains =
+		new IntegerOptionKey(GibbsOptions.class, "numChains", 1, 1, Integer.MAX_VALUE);
+	
 	/**
 	 * Specifies whether to save sample values for variables in Gibbs solver.
 	 * <p>
@@ -98,6 +124,30 @@ public class GibbsOptions extends SolverOptions
 	public static final BooleanOptionKey saveAllSamples =
 		new BooleanOptionKey(GibbsOptions.class, "saveAllSamples", false);
 	
+	/**
+	 * Directory in which to store saved samples for variables in Gibbs solver.
+	 * <p>
+	 * If non-empty and {@link #saveAllSamples} is true, the samples will be written in compressed form
+	 * to a memory-mapped temporary file in this directory instead of being kept in memory, so that the
+	 * number of samples that can be saved is limited by disk space rather than by the size of the Java heap.
+	 * Discrete sample indices are bit-packed and real values are XOR-compressed against the previous
+	 * sample. The file is deleted when the graph is next initialized or, failing that, when the JVM exits. Saved samples
+	 * can be read back without copying them all into memory using
+	 * {@link GibbsDiscrete#getAllSampleIndexIterator()}, {@link GibbsReal#getAllSampleIterator()} and
+	 * {@link GibbsRealJoint#getAllSampleIterator()}.
+	 * <p>
+	 * This option is only looked up on the root graph, so a value set on a subgraph or on a variable is
+	 * ignored. The samples of all variables in the graph are written to a single file, which is created
+	 * when the first variable that saves its samples is initialized.
+	 * <p>
+	 * Defaults to the empty string, which means samples are saved in memory.
+	 * <p>
+	 * @since 0.08
+	 * @see GibbsSampleStore
+	 */
+	public static final StringOptionKey sampleStoreDirectory =
+		new StringOptionKey(GibbsOptions.class, "sampleStoreDirectory");
+	
 	/**
 	 * Specifies whether to save sample scores in Gibbs solver.
 	 * <p>
@@ -110,7 +160,28 @@ public class GibbsOptions extends SolverOptions
 	 */
 	public static final BooleanOptionKey saveAllScores =
 		new BooleanOptionKey(GibbsOptions.class, "saveAllScores", false);
-	
+
+	/**
+	 * The number of samples between full recomputations of the sample score in Gibbs solver.
+	 * <p>
+	 * When possible, the Gibbs solver maintains the total score of the current sample incrementally
+	 * from the changes in score computed by each variable or block update, which is used for tracking
+	 * the {@linkplain GibbsSolverGraph#getBestSampleScore() best sample} and for {@link #saveAllScores}.
+	 * To bound the accumulation of floating point error, the score is recomputed over the entire graph
+	 * once every this many samples. If set to one, the score will be recomputed for every sample.
+	 * <p>
+	 * Scores are always recomputed for every sample when the schedule contains entries other than
+	 * single variable updates and {@link com.analog.lyric.dimple.solvers.gibbs.samplers.block.BlockMHSampler
+	 * BlockMHSampler} block updates, when using a random scan schedule, or when the variables are being
+	 * updated concurrently.
+	 * <p>
+	 * Must be a positive integer. The default is 100.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final IntegerOptionKey scoreRecomputeInterval =
+		new IntegerOptionKey(GibbsOptions.class, "scoreRecomputeInterval", 100, 1, Integer.MAX_VALUE);
+
 	/**
 	 * Specifies which sampler to use for discrete variables in Gibbs solver.
 	 * <p>
@@ -138,6 +209,41 @@ public class GibbsOptions extends SolverOptions
 	public static final BooleanOptionKey enableAutomaticConjugateSampling =
 		new BooleanOptionKey(GibbsOptions.class, "enableAutomaticConjugateSampling", true);
 	
+	/**
+	 * Specifies whether to compute streaming summary statistics of the samples of each variable in Gibbs solver.
+	 * <p>
+	 * If true, each variable updates a {@link GibbsSampleStatistics} with every sample, which can be
+	 * retrieved using {@link ISolverVariableGibbs#getSampleStatistics()} at any time including while
+	 * sampling. This provides the mean, covariance, quantiles, effective sample size and potential scale
+	 * reduction across random restarts and chains of the samples without saving them.
+	 * <p>
+	 * Defaults to false.
+	 * <p>
+	 * @since 0.08
+	 * @see #targetEffectiveSampleSize
+	 */
+	public static final BooleanOptionKey computeSampleStatistics =
+		new BooleanOptionKey(GibbsOptions.class, "computeSampleStatistics", false);
+	
+	/**
+	 * Effective sample size at which to stop sampling in Gibbs solver.
+	 * <p>
+	 * If positive, {@link #numSamples} becomes the maximum number of samples per restart and sampling
+	 * stops early once the {@linkplain GibbsSampleStatistics#getMinEffectiveSampleSize() effective sample size}
+	 * of every variable computing {@linkplain #computeSampleStatistics sample statistics} reaches this value.
+	 * When using random restarts, the samples of each restart must reach a proportional share of the target.
+	 * Each {@linkplain #numChains chain} applies the target to its own samples. Convergence is checked
+	 * every 100 samples.
+	 * <p>
+	 * Has no effect if no variable computes sample statistics.
+	 * <p>
+	 * Must be non-negative. Defaults to zero, which means sampling does not stop early.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final DoubleOptionKey targetEffectiveSampleSize =
+		new DoubleOptionKey(GibbsOptions.class, "targetEffectiveSampleSize", 0.0, 0.0, Double.MAX_VALUE);
+	
 	/**
 	 * Specifies whether to compute belief moments for RealJoint variables in Gibbs solver.
 	 * <p>
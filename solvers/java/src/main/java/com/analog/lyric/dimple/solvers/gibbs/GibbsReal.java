@@ -31,6 +31,8 @@ import org.eclipse.jdt.annotation.Nullable;
 import cern.colt.list.DoubleArrayList;
 
 import com.analog.lyric.collect.ArrayUtil;
+import com.analog.lyric.collect.DoubleArrayIterator;
+import com.analog.lyric.collect.PrimitiveIterator;
 import com.analog.lyric.collect.ReleasableIterator;
 import com.analog.lyric.dimple.environment.DimpleEnvironment;
 import com.analog.lyric.dimple.exceptions.DimpleException;
@@ -108,6 +110,11 @@ public class GibbsReal extends SRealVariableBase
 	private @Nullable IRealConjugateSampler _conjugateSampler = null;
 	private boolean _samplerSpecificallySpecified = false;
 	private @Nullable DoubleArrayList _sampleArray;
+	/**
+	 * Saved samples when using a {@link GibbsSampleStore}, in which case {@link #_sampleArray} is null.
+	 */
+	private @Nullable GibbsSampleStore.DoubleColumn _sampleColumn;
+	private @Nullable GibbsSampleStatistics _sampleStatistics;
 	private double _sampleSum;
 	private double _sampleSumSquare;
 	private long _sampleCount;
@@ -118,6 +125,17 @@ public class GibbsReal extends SRealVariableBase
 	private long _updateCount;
 	private long _rejectCount;
 	private long _scoreCount;
+	
+	/*
+	 * Scores recorded by getCurrentSampleScore() during update() when the root graph is tracking
+	 * the sample score: the score of the value at the start of the update (NaN until computed), and
+	 * the most recently computed score and the value for which it was computed.
+	 */
+	private boolean _recordScores = false;
+	private double _updateStartValue;
+	private double _updateStartScore;
+	private double _lastScoredValue;
+	private double _lastScore;
 
 	/**
 	 * List of neighbors for sample scoring. Instantiated during initialization.
@@ -173,6 +191,11 @@ public class GibbsReal extends SRealVariableBase
 		// Also return if the variable is set to a fixed value
 		if (_var.hasFixedValue()) return;
 
+		final GibbsSolverGraph rootGraph = (GibbsSolverGraph)requireNonNull(getRootGraph());
+		final boolean trackScore = _recordScores = rootGraph.isTrackingSampleScore();
+		final double startValue = _updateStartValue = _sampleValue;
+		_updateStartScore = _lastScoredValue = Double.NaN;
+
 		final int updateEventFlags = GibbsSolverVariableEvent.getVariableUpdateEventFlags(this);
 		Value oldValue = null;
 		double oldSampleScore = 0.0;
@@ -201,6 +224,10 @@ public class GibbsReal extends SRealVariableBase
 		}
 		else
 		{
+			// Conjugate samplers do not compute scores
+			if (trackScore && Double.isNaN(_updateStartScore))
+				getCurrentSampleScore();
+			
 			// Use conjugate sampler, first update the messages from all factors
 			// Factor messages represent the current distribution parameters from each factor
 			int numPorts = _var.getSiblingCount();
@@ -230,6 +257,17 @@ public class GibbsReal extends SRealVariableBase
 				RealValue.create(_sampleValue), rejected ? 1 : 0));
 			break;
 		}
+		
+		if (trackScore)
+		{
+			// Use the scores already computed by the sampler when possible
+			_recordScores = false;
+			if (_sampleValue != startValue)
+			{
+				final double newScore = _lastScoredValue == _sampleValue ? _lastScore : getCurrentSampleScore();
+				rootGraph.addSampleScoreDelta((newScore - _updateStartScore) / _beta);
+			}
+		}
 	}
 	
 	/*---------------------------
@@ -303,6 +341,14 @@ public class GibbsReal extends SRealVariableBase
 			sampleScore = potential * _beta;	// Incorporate current temperature
 		}
 		
+		if (_recordScores)
+		{
+			if (_sampleValue == _updateStartValue && Double.isNaN(_updateStartScore))
+				_updateStartScore = sampleScore;
+			_lastScoredValue = _sampleValue;
+			_lastScore = sampleScore;
+		}
+		
 		return sampleScore;
 	}
 	
@@ -423,7 +469,7 @@ public class GibbsReal extends SRealVariableBase
 		{
 			// No input or no available sampler, so if bounded, sample uniformly from the bounds
 			if (hi < Double.POSITIVE_INFINITY && lo > Double.NEGATIVE_INFINITY)
-				setCurrentSample(DimpleRandomGenerator.rand.nextDouble() * (hi - lo) + lo);
+				setCurrentSample(DimpleRandomGenerator.rand().nextDouble() * (hi - lo) + lo);
 			else if (hi < _sampleValue)
 				setCurrentSample(hi);
 			else if (lo > _sampleValue)
@@ -509,6 +555,7 @@ public class GibbsReal extends SRealVariableBase
 	public final void saveAllSamples()
 	{
 		_sampleArray = new DoubleArrayList();
+		_sampleColumn = null;
 		setOption(GibbsOptions.saveAllSamples, true);
 	}
 
@@ -520,6 +567,7 @@ public class GibbsReal extends SRealVariableBase
 	public void disableSavingAllSamples()
     {
     	_sampleArray = null;
+    	_sampleColumn = null;
 		setOption(GibbsOptions.saveAllSamples, false);
     }
     
@@ -528,9 +576,31 @@ public class GibbsReal extends SRealVariableBase
 	{
 		final DoubleArrayList sampleArray = _sampleArray;
 		if (sampleArray != null)
+		{
 			sampleArray.add(_sampleValue);
+		}
+		else
+		{
+			final GibbsSampleStore.DoubleColumn sampleColumn = _sampleColumn;
+			if (sampleColumn != null)
+				sampleColumn.add(_sampleValue);
+		}
 	}
 
+	@Override
+	public final @Nullable GibbsSampleStatistics getSampleStatistics()
+	{
+		return _sampleStatistics;
+	}
+	
+	@Override
+	public final void updateSampleStatistics()
+	{
+		final GibbsSampleStatistics sampleStatistics = _sampleStatistics;
+		if (sampleStatistics != null)
+			sampleStatistics.add(_sampleValue);
+	}
+	
 	@Override
 	public final void saveBestSample()
 	{
@@ -609,6 +679,19 @@ public class GibbsReal extends SRealVariableBase
 		}
 	}
 
+	/**
+	 * Updates the sample from {@link #getCurrentSampleValue()} after it has been set directly by the
+	 * deterministic factor of which this variable is an output, without updating deterministic dependents.
+	 * <p>
+	 * For use by {@link GibbsDeterministicConditional}, which updates the dependents itself.
+	 */
+	final void setCurrentSampleFromOutputValue()
+	{
+		if (_holdSampleValue || _var.hasFixedValue()) return;
+		
+		_sampleValue = _outputMsg.getDouble();
+	}
+
 	public final double getCurrentSample()
 	{
 		return _sampleValue;
@@ -623,12 +706,45 @@ public class GibbsReal extends SRealVariableBase
 	public final double[] getAllSamples()
 	{
 		final DoubleArrayList sampleArray = _sampleArray;
-		if (sampleArray == null)
+		if (sampleArray != null)
+		{
+			return Arrays.copyOf(sampleArray.elements(), sampleArray.size());
+		}
+		
+		final GibbsSampleStore.DoubleColumn sampleColumn = _sampleColumn;
+		if (sampleColumn != null)
+		{
+			return sampleColumn.toArray();
+		}
+		
+		return ArrayUtil.EMPTY_DOUBLE_ARRAY;
+	}
+	
+	/**
+	 * Iterates over the saved samples without copying them.
+	 * <p>
+	 * Unlike {@link #getAllSamples()}, this does not require memory proportional to the number of
+	 * samples when they are saved in a {@link GibbsSampleStore}. Samples saved after the iterator is
+	 * created will not be visited.
+	 * <p>
+	 * @since 0.08
+	 * @see GibbsOptions#sampleStoreDirectory
+	 */
+	public final PrimitiveIterator.OfDouble getAllSampleIterator()
+	{
+		final DoubleArrayList sampleArray = _sampleArray;
+		if (sampleArray != null)
+		{
+			return new DoubleArrayIterator(sampleArray.elements(), 0, sampleArray.size());
+		}
+		
+		final GibbsSampleStore.DoubleColumn sampleColumn = _sampleColumn;
+		if (sampleColumn != null)
 		{
-			return ArrayUtil.EMPTY_DOUBLE_ARRAY;
+			return sampleColumn.iterator();
 		}
 		
-		return Arrays.copyOf(sampleArray.elements(), sampleArray.size());
+		return new DoubleArrayIterator(ArrayUtil.EMPTY_DOUBLE_ARRAY);
 	}
 	
 	@Override
@@ -662,11 +778,48 @@ public class GibbsReal extends SRealVariableBase
 	{
 		return _rejectCount;
 	}
+	
+	@Override
+	public void mergeChainSamples(ISolverVariableGibbs other, boolean takeBestSample)
+	{
+		final GibbsReal ovar = (GibbsReal)other;
+		
+		_sampleSum += ovar._sampleSum;
+		_sampleSumSquare += ovar._sampleSumSquare;
+		_sampleCount += ovar._sampleCount;
+		
+		final DoubleArrayList sampleArray = _sampleArray;
+		final DoubleArrayList otherSampleArray = ovar._sampleArray;
+		if (sampleArray != null && otherSampleArray != null)
+			sampleArray.addAllOfFromTo(otherSampleArray, 0, otherSampleArray.size() - 1);
+		final GibbsSampleStore.DoubleColumn sampleColumn = _sampleColumn;
+		final GibbsSampleStore.DoubleColumn otherSampleColumn = ovar._sampleColumn;
+		if (sampleColumn != null && otherSampleColumn != null)
+			sampleColumn.addAll(otherSampleColumn);
+		
+		final GibbsSampleStatistics sampleStatistics = _sampleStatistics;
+		final GibbsSampleStatistics otherSampleStatistics = ovar._sampleStatistics;
+		if (sampleStatistics != null && otherSampleStatistics != null)
+			sampleStatistics.merge(otherSampleStatistics);
+		
+		if (takeBestSample)
+			_bestSampleValue = ovar._bestSampleValue;
+		
+		_updateCount += ovar._updateCount;
+		_rejectCount += ovar._rejectCount;
+		_scoreCount += ovar._scoreCount;
+	}
 
 	// This is meant for internal use, not as a user accessible method
+	// Samples saved in a GibbsSampleStore are copied into a new list.
 	@Internal
 	public final @Nullable DoubleArrayList _getSampleArrayUnsafe()
 	{
+		final GibbsSampleStore.DoubleColumn sampleColumn = _sampleColumn;
+		if (sampleColumn != null)
+		{
+			return new DoubleArrayList(sampleColumn.toArray());
+		}
 		return _sampleArray;
 	}
 
@@ -943,19 +1096,44 @@ public class GibbsReal extends SRealVariableBase
 		// Clear out sample state
 		_bestSampleValue = _sampleValue;
 		DoubleArrayList sampleArray = null;
+		GibbsSampleStore.DoubleColumn sampleColumn = null;
 		if (saveAllSamples)
 		{
-			sampleArray = _sampleArray;
-			if (sampleArray == null)
+			final GibbsSampleStore store = ((GibbsSolverGraph)requireNonNull(getRootGraph())).requireSampleStore();
+			if (store != null)
 			{
-				sampleArray = new DoubleArrayList();
+				sampleColumn = store.newDoubleColumn();
 			}
 			else
 			{
-				sampleArray.clear();
+				sampleArray = _sampleArray;
+				if (sampleArray == null)
+				{
+					sampleArray = new DoubleArrayList();
+				}
+				else
+				{
+					sampleArray.clear();
+				}
 			}
 		}
 		_sampleArray = sampleArray;
+		_sampleColumn = sampleColumn;
+		
+		GibbsSampleStatistics sampleStatistics = null;
+		if (getOptionOrDefault(GibbsOptions.computeSampleStatistics))
+		{
+			sampleStatistics = _sampleStatistics;
+			if (sampleStatistics == null)
+			{
+				sampleStatistics = new GibbsSampleStatistics(1);
+			}
+			else
+			{
+				sampleStatistics.reset();
+			}
+		}
+		_sampleStatistics = sampleStatistics;
 		
 		// Clear out the Belief statistics
 		_sampleSum = 0;
@@ -1022,7 +1200,7 @@ public class GibbsReal extends SRealVariableBase
 		_outputMsg = createDefaultMessage();
 		_sampleValue = _outputMsg.getDouble();
 	    _bestSampleValue = _sampleValue;
-	    if (_sampleArray != null)
+	    if (_sampleArray != null || _sampleColumn != null)
 			saveAllSamples();
 	}
 	
@@ -1036,6 +1214,8 @@ public class GibbsReal extends SRealVariableBase
 		_initialSampleValue = ovar._initialSampleValue;
 		_initialSampleValueSet = ovar._initialSampleValueSet;
 		_sampleArray = ovar._sampleArray;
+		_sampleColumn = ovar._sampleColumn;
+		_sampleStatistics = ovar._sampleStatistics;
 		_bestSampleValue = ovar._bestSampleValue;
 		_beta = ovar._beta;
 		_holdSampleValue = ovar._holdSampleValue;
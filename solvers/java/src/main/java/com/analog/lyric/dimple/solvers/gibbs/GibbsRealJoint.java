@@ -21,14 +21,18 @@ import static java.util.Objects.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
 
 import com.analog.lyric.collect.ArrayUtil;
+import com.analog.lyric.collect.PrimitiveIterator;
 import com.analog.lyric.collect.ReleasableIterator;
 import com.analog.lyric.dimple.environment.DimpleEnvironment;
 import com.analog.lyric.dimple.exceptions.DimpleException;
@@ -62,6 +66,7 @@ import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
 import com.analog.lyric.math.DimpleRandomGenerator;
 import com.analog.lyric.options.IOptionHolder;
+import com.google.common.collect.UnmodifiableIterator;
 import com.google.common.primitives.Doubles;
 
 /*
@@ -100,6 +105,12 @@ public class GibbsRealJoint extends SRealJointVariableBase
 	private @Nullable IRealJointConjugateSampler _conjugateSampler = null;
 	private boolean _samplerSpecificallySpecified = false;
 	private @Nullable ArrayList<double[]> _sampleArray;
+	/**
+	 * Saved samples for each dimension when using a {@link GibbsSampleStore}, in which case
+	 * {@link #_sampleArray} is null.
+	 */
+	private @Nullable GibbsSampleStore.DoubleColumn[] _sampleColumns;
+	private @Nullable GibbsSampleStatistics _sampleStatistics;
 	private @Nullable double[] _sampleSum;
 	private @Nullable double[][] _sampleSumSquare;
 	private long _sampleCount;
@@ -112,6 +123,17 @@ public class GibbsRealJoint extends SRealJointVariableBase
 	private long _updateCount;
 	private long _rejectCount;
 	private long _scoreCount;
+	
+	/*
+	 * Scores recorded by getCurrentSampleScore() during update() when the root graph is tracking
+	 * the sample score: the score of the value at the start of the update (NaN until computed), and
+	 * the most recently computed score and the value for which it was computed.
+	 */
+	private boolean _recordScores = false;
+	private double[] _updateStartValue = new double[0];
+	private double _updateStartScore;
+	private double[] _lastScoredValue = new double[0];
+	private double _lastScore;
 
 	/**
 	 * List of neighbors for sample scoring. Instantiated during initialization.
@@ -168,6 +190,20 @@ public class GibbsRealJoint extends SRealJointVariableBase
 		// Also return if the variable is set to a fixed value
 		if (_var.hasFixedValue()) return;
 
+		final GibbsSolverGraph rootGraph = (GibbsSolverGraph)requireNonNull(getRootGraph());
+		final boolean trackScore = _recordScores = rootGraph.isTrackingSampleScore();
+		if (trackScore)
+		{
+			if (_updateStartValue.length != _numRealVars)
+			{
+				_updateStartValue = new double[_numRealVars];
+				_lastScoredValue = new double[_numRealVars];
+			}
+			System.arraycopy(_sampleValue, 0, _updateStartValue, 0, _numRealVars);
+			Arrays.fill(_lastScoredValue, Double.NaN);
+			_updateStartScore = Double.NaN;
+		}
+
 		final int updateEventFlags = GibbsSolverVariableEvent.getVariableUpdateEventFlags(this);
 		Value oldValue = null;
 		double oldSampleScore = 0.0;
@@ -205,6 +241,10 @@ public class GibbsRealJoint extends SRealJointVariableBase
 		}
 		else
 		{
+			// Conjugate samplers do not compute scores
+			if (trackScore && Double.isNaN(_updateStartScore))
+				getCurrentSampleScore();
+			
 			// Use conjugate sampler, first update the messages from all factors
 			// Factor messages represent the current distribution parameters from each factor
 			int numPorts = _var.getSiblingCount();
@@ -233,6 +273,17 @@ public class GibbsRealJoint extends SRealJointVariableBase
 				_outputMsg.clone(),rejectCount));
 			break;
 		}
+		
+		if (trackScore)
+		{
+			// Use the scores already computed by the sampler when possible
+			_recordScores = false;
+			if (!Arrays.equals(_sampleValue, _updateStartValue))
+			{
+				final double newScore = Arrays.equals(_sampleValue, _lastScoredValue) ? _lastScore : getCurrentSampleScore();
+				rootGraph.addSampleScoreDelta((newScore - _updateStartScore) / _beta);
+			}
+		}
 	}
 	
 	/*---------------------------
@@ -319,6 +370,14 @@ public class GibbsRealJoint extends SRealJointVariableBase
 
 			sampleScore = potential * _beta;	// Incorporate current temperature
 		}
+		
+		if (_recordScores)
+		{
+			if (Double.isNaN(_updateStartScore) && Arrays.equals(_sampleValue, _updateStartValue))
+				_updateStartScore = sampleScore;
+			System.arraycopy(_sampleValue, 0, _lastScoredValue, 0, _numRealVars);
+			_lastScore = sampleScore;
+		}
 
 		return sampleScore;
 	}
@@ -452,7 +511,7 @@ public class GibbsRealJoint extends SRealJointVariableBase
 
 					// No available sampler, so if bounded, sample uniformly from the bounds
 					if (hi < Double.POSITIVE_INFINITY && lo > Double.NEGATIVE_INFINITY)
-						setCurrentSample(i, DimpleRandomGenerator.rand.nextDouble() * (hi - lo) + lo);
+						setCurrentSample(i, DimpleRandomGenerator.rand().nextDouble() * (hi - lo) + lo);
 					else if (hi < _sampleValue[i])
 						setCurrentSample(i, hi);
 					else if (lo > _sampleValue[i])
@@ -490,7 +549,7 @@ public class GibbsRealJoint extends SRealJointVariableBase
 				{
 					// No available sampler, so if bounded, sample uniformly from the bounds
 					if (hi < Double.POSITIVE_INFINITY && lo > Double.NEGATIVE_INFINITY)
-						setCurrentSample(i, DimpleRandomGenerator.rand.nextDouble() * (hi - lo) + lo);
+						setCurrentSample(i, DimpleRandomGenerator.rand().nextDouble() * (hi - lo) + lo);
 				}
 			}
 		}
@@ -505,7 +564,7 @@ public class GibbsRealJoint extends SRealJointVariableBase
 
 				// If bounded, sample uniformly from the bounds, otherwise leave current sample value
 				if (hi < Double.POSITIVE_INFINITY && lo > Double.NEGATIVE_INFINITY)
-					setCurrentSample(i, DimpleRandomGenerator.rand.nextDouble() * (hi - lo) + lo);
+					setCurrentSample(i, DimpleRandomGenerator.rand().nextDouble() * (hi - lo) + lo);
 			}
 		}
 	}
@@ -662,6 +721,7 @@ public class GibbsRealJoint extends SRealJointVariableBase
 	public final void saveAllSamples()
 	{
 		_sampleArray = new ArrayList<double[]>();
+		_sampleColumns = null;
 		setOption(GibbsOptions.saveAllSamples, true);
 	}
 
@@ -673,6 +733,7 @@ public class GibbsRealJoint extends SRealJointVariableBase
 	public void disableSavingAllSamples()
     {
     	_sampleArray = null;
+    	_sampleColumns = null;
 		setOption(GibbsOptions.saveAllSamples, false);
     }
     
@@ -681,9 +742,32 @@ public class GibbsRealJoint extends SRealJointVariableBase
 	{
 		final ArrayList<double[]> sampleArray = _sampleArray;
 		if (sampleArray != null)
+		{
 			sampleArray.add(_sampleValue.clone());
+		}
+		else
+		{
+			final GibbsSampleStore.DoubleColumn[] sampleColumns = _sampleColumns;
+			if (sampleColumns != null)
+				for (int i = 0; i < sampleColumns.length; i++)
+					sampleColumns[i].add(_sampleValue[i]);
+		}
 	}
 
+	@Override
+	public final @Nullable GibbsSampleStatistics getSampleStatistics()
+	{
+		return _sampleStatistics;
+	}
+	
+	@Override
+	public final void updateSampleStatistics()
+	{
+		final GibbsSampleStatistics sampleStatistics = _sampleStatistics;
+		if (sampleStatistics != null)
+			sampleStatistics.add(_sampleValue);
+	}
+	
 	@Override
 	public final void saveBestSample()
 	{
@@ -770,6 +854,22 @@ public class GibbsRealJoint extends SRealJointVariableBase
 		}
 	}
 	
+	/**
+	 * Updates the sample from {@link #getCurrentSampleValue()} after it has been set directly by the
+	 * deterministic factor of which this variable is an output, without updating deterministic dependents.
+	 * <p>
+	 * For use by {@link GibbsDeterministicConditional}, which updates the dependents itself.
+	 */
+	final void setCurrentSampleFromOutputValue()
+	{
+		if (_holdSampleValue || _var.hasFixedValue()) return;
+		
+		// Copy rather than share the output array, which the factor function may have set, and do not
+		// modify the previous array in place, since it may be referenced as the best sample.
+		_sampleValue = _outputMsg.getValue().clone();
+		_outputMsg.setValue(_sampleValue);
+	}
+	
 	// Set a specific element of the sample value
     public final void setCurrentSample(int index, Object value) {setCurrentSample(index, FactorFunctionUtilities.toDouble(value));}
 	public final void setCurrentSample(int index, double value)
@@ -815,15 +915,80 @@ public class GibbsRealJoint extends SRealJointVariableBase
 	public final double[][] getAllSamples()
 	{
 		final ArrayList<double[]> sampleArray = _sampleArray;
-		if (sampleArray == null)
+		if (sampleArray != null)
+		{
+			int length = sampleArray.size();
+			double[][] retval = new double[length][];
+			for (int i = 0; i < length; i++)
+				retval[i] = sampleArray.get(i);
+			return retval;
+		}
+		
+		if (_sampleColumns != null)
 		{
-			return ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
+			final ArrayList<double[]> samples = new ArrayList<double[]>();
+			for (Iterator<double[]> iter = getAllSampleIterator(); iter.hasNext(); )
+				samples.add(iter.next());
+			return samples.toArray(new double[samples.size()][]);
 		}
-		int length = sampleArray.size();
-		double[][] retval = new double[length][];
-		for (int i = 0; i < length; i++)
-			retval[i] = sampleArray.get(i);
-		return retval;
+		
+		return ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
+	}
+	
+	/**
+	 * Iterates over the saved samples without copying all of them.
+	 * <p>
+	 * Unlike {@link #getAllSamples()}, this does not require memory proportional to the number of
+	 * samples when they are saved in a {@link GibbsSampleStore}, in which case each sample is
+	 * returned in a new array. Samples saved after the iterator is created will not be visited.
+	 * <p>
+	 * @since 0.08
+	 * @see GibbsOptions#sampleStoreDirectory
+	 */
+	public final Iterator<double[]> getAllSampleIterator()
+	{
+		final ArrayList<double[]> sampleArray = _sampleArray;
+		if (sampleArray != null)
+		{
+			return Collections.unmodifiableList(sampleArray).iterator();
+		}
+		
+		final GibbsSampleStore.DoubleColumn[] sampleColumns = _sampleColumns;
+		if (sampleColumns != null)
+		{
+			final PrimitiveIterator.OfDouble[] iters = new PrimitiveIterator.OfDouble[sampleColumns.length];
+			int size = Integer.MAX_VALUE;
+			for (int i = 0; i < iters.length; i++)
+			{
+				size = Math.min(size, sampleColumns[i].size());
+				iters[i] = sampleColumns[i].iterator();
+			}
+			final int numSamples = iters.length > 0 ? size : 0;
+			
+			return new UnmodifiableIterator<double[]>() {
+				private int _index = 0;
+				
+				@Override
+				public boolean hasNext()
+				{
+					return _index < numSamples;
+				}
+				
+				@Override
+				public double[] next()
+				{
+					if (_index >= numSamples)
+						throw new NoSuchElementException();
+					++_index;
+					final double[] sample = new double[iters.length];
+					for (int i = 0; i < iters.length; i++)
+						sample[i] = iters[i].nextDouble();
+					return sample;
+				}
+			};
+		}
+		
+		return Collections.<double[]>emptyList().iterator();
 	}
 	
 	@Override
@@ -857,10 +1022,58 @@ public class GibbsRealJoint extends SRealJointVariableBase
 	{
 		return _rejectCount;
 	}
+	
+	@Override
+	public void mergeChainSamples(ISolverVariableGibbs other, boolean takeBestSample)
+	{
+		final GibbsRealJoint ovar = (GibbsRealJoint)other;
+		
+		final double[] sampleSum = _sampleSum;
+		final double[] otherSampleSum = ovar._sampleSum;
+		if (sampleSum != null && otherSampleSum != null)
+		{
+			final double[][] sampleSumSquare = requireNonNull(_sampleSumSquare);
+			final double[][] otherSampleSumSquare = requireNonNull(ovar._sampleSumSquare);
+			for (int i = 0; i < _numRealVars; i++)
+			{
+				sampleSum[i] += otherSampleSum[i];
+				for (int j = 0; j < _numRealVars; j++)
+					sampleSumSquare[i][j] += otherSampleSumSquare[i][j];
+			}
+		}
+		_sampleCount += ovar._sampleCount;
+		
+		final ArrayList<double[]> sampleArray = _sampleArray;
+		final ArrayList<double[]> otherSampleArray = ovar._sampleArray;
+		if (sampleArray != null && otherSampleArray != null)
+			sampleArray.addAll(otherSampleArray);
+		final GibbsSampleStore.DoubleColumn[] sampleColumns = _sampleColumns;
+		final GibbsSampleStore.DoubleColumn[] otherSampleColumns = ovar._sampleColumns;
+		if (sampleColumns != null && otherSampleColumns != null)
+			for (int i = 0; i < sampleColumns.length; i++)
+				sampleColumns[i].addAll(otherSampleColumns[i]);
+		
+		final GibbsSampleStatistics sampleStatistics = _sampleStatistics;
+		final GibbsSampleStatistics otherSampleStatistics = ovar._sampleStatistics;
+		if (sampleStatistics != null && otherSampleStatistics != null)
+			sampleStatistics.merge(otherSampleStatistics);
+		
+		if (takeBestSample)
+			_bestSampleValue = ovar._bestSampleValue.clone();
+		
+		_updateCount += ovar._updateCount;
+		_rejectCount += ovar._rejectCount;
+		_scoreCount += ovar._scoreCount;
+	}
 
 	// This is meant for internal use, not as a user accessible method
+	// Samples saved in a GibbsSampleStore are copied into a new list.
 	public final @Nullable List<double[]> _getSampleArrayUnsafe()
 	{
+		if (_sampleColumns != null)
+		{
+			return Arrays.asList(getAllSamples());
+		}
 		return _sampleArray;
 	}
 
@@ -1124,19 +1337,46 @@ public class GibbsRealJoint extends SRealJointVariableBase
 		// Clear out sample state
 		_bestSampleValue = _sampleValue;
 		ArrayList<double[]> sampleArray = null;
+		GibbsSampleStore.DoubleColumn[] sampleColumns = null;
 		if (saveAllSamples)
 		{
-			sampleArray = _sampleArray;
-			if (sampleArray == null)
+			final GibbsSampleStore store = ((GibbsSolverGraph)requireNonNull(getRootGraph())).requireSampleStore();
+			if (store != null)
 			{
-				sampleArray = new ArrayList<double[]>();
+				sampleColumns = new GibbsSampleStore.DoubleColumn[_numRealVars];
+				for (int i = 0; i < _numRealVars; i++)
+					sampleColumns[i] = store.newDoubleColumn();
 			}
 			else
 			{
-				sampleArray.clear();
+				sampleArray = _sampleArray;
+				if (sampleArray == null)
+				{
+					sampleArray = new ArrayList<double[]>();
+				}
+				else
+				{
+					sampleArray.clear();
+				}
 			}
 		}
 		_sampleArray = sampleArray;
+		_sampleColumns = sampleColumns;
+		
+		GibbsSampleStatistics sampleStatistics = null;
+		if (getOptionOrDefault(GibbsOptions.computeSampleStatistics))
+		{
+			sampleStatistics = _sampleStatistics;
+			if (sampleStatistics == null)
+			{
+				sampleStatistics = new GibbsSampleStatistics(_numRealVars);
+			}
+			else
+			{
+				sampleStatistics.reset();
+			}
+		}
+		_sampleStatistics = sampleStatistics;
 		
 		// Clear out the Belief statistics
 		if (getOptionOrDefault(GibbsOptions.computeRealJointBeliefMoments))
@@ -1217,7 +1457,7 @@ public class GibbsRealJoint extends SRealJointVariableBase
 		_outputMsg = createDefaultMessage();
 		_sampleValue = _outputMsg.getValue();
 	    _bestSampleValue = _sampleValue;
-	    if (_sampleArray != null)
+	    if (_sampleArray != null || _sampleColumns != null)
 			saveAllSamples();
 	}
 	
@@ -1231,6 +1471,8 @@ public class GibbsRealJoint extends SRealJointVariableBase
 		_initialSampleValue = ovar._initialSampleValue;
 		_initialSampleValueSet = ovar._initialSampleValueSet;
 		_sampleArray = ovar._sampleArray;
+		_sampleColumns = ovar._sampleColumns;
+		_sampleStatistics = ovar._sampleStatistics;
 		_bestSampleValue = ovar._bestSampleValue;
 		_beta = ovar._beta;
 		_holdSampleValue = ovar._holdSampleValue;
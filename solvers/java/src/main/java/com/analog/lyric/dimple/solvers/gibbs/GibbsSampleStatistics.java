@@ -0,0 +1,852 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.gibbs;
+
+import java.util.Arrays;
+
+/**
+ * Streaming summary statistics of the samples of a Gibbs solver variable.
+ * <p>
+ * Samples are vectors of a fixed {@linkplain #getDimension() dimension}: one for real variables, the
+ * number of elements for real joint variables. Discrete variables use the value of the sample if the
+ * domain is numeric and otherwise the index of the value in the domain. The statistics are updated
+ * as each sample is generated and use memory that does not depend on the number of samples:
+ * <ul>
+ * <li>The {@linkplain #getMean() mean}, {@linkplain #getVariance() variance} and
+ * {@linkplain #getCovariance() covariance} are computed using Welford's method.
+ * <li>{@linkplain #getQuantile(int, double) Quantiles} of each element are estimated using a
+ * merging t-digest with a bounded number of centroids, which is most accurate in the tails.
+ * <li>The {@linkplain #getEffectiveSampleSize(int) effective sample size} of each element is estimated
+ * using batch means. Whenever {@value #MAX_BATCHES} batches are full, adjacent batches are combined,
+ * doubling the batch size. When the estimate is computed, consecutive batches are grouped so that
+ * each batch holds at least the square root of the number of samples.
+ * <li>The {@linkplain #getPotentialScaleReduction(int) potential scale reduction} (R-hat) of each element
+ * compares the means and variances of the samples in each segment, where the Gibbs solver starts
+ * a new segment on each random restart. This uses memory proportional to the number of restarts.
+ * </ul>
+ * Methods are synchronized, so the statistics may be queried from another thread while sampling.
+ * <p>
+ * @since 0.08
+ * @see GibbsOptions#computeSampleStatistics
+ * @see ISolverVariableGibbs#getSampleStatistics()
+ */
+public final class GibbsSampleStatistics
+{
+	/*-------
+	 * State
+	 */
+
+	/**
+	 * Maximum number of full batches used to estimate the effective sample size. Must be even.
+	 */
+	public static final int MAX_BATCHES = 64;
+
+	/**
+	 * The compression parameter of the quantile digests, which bounds the number of centroids.
+	 */
+	static final int DIGEST_COMPRESSION = 100;
+
+	private final int _dimension;
+
+	private long _count = 0;
+	private final double[] _mean;
+	/** Sums of products of deviations from the mean, indexed by {@code i * _dimension + j}. */
+	private final double[] _comoment;
+	private final double[] _delta;
+
+	private final TDigest[] _digests;
+
+	/** Sums of the samples in each batch, indexed by {@code i * MAX_BATCHES + batch}. */
+	private final double[] _batchSums;
+	private long _batchSize = 1;
+	private int _batchCount = 0;
+	/** The number of samples in the incomplete batch at {@link #_batchCount}. */
+	private long _batchFill = 0;
+
+	/*
+	 * Count for each segment, and mean and sum of squared deviations for each element in each segment
+	 * indexed by {@code segment * _dimension + i}. The last segment is the current one.
+	 */
+	private int _segmentCount = 0;
+	private long[] _segmentN = new long[0];
+	private double[] _segmentMean = new double[0];
+	private double[] _segmentM2 = new double[0];
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Constructs empty statistics for samples with given {@code dimension}.
+	 */
+	public GibbsSampleStatistics(int dimension)
+	{
+		_dimension = dimension;
+		_mean = new double[dimension];
+		_comoment = new double[dimension * dimension];
+		_delta = new double[dimension];
+		_digests = new TDigest[dimension];
+		for (int i = 0; i < dimension; ++i)
+		{
+			_digests[i] = new TDigest(DIGEST_COMPRESSION);
+		}
+		_batchSums = new double[dimension * MAX_BATCHES];
+	}
+
+	/*-------------------------------
+	 * GibbsSampleStatistics methods
+	 */
+
+	/**
+	 * Adds a sample with dimension one.
+	 */
+	public synchronized void add(double sample)
+	{
+		_delta[0] = sample;
+		addDelta();
+	}
+
+	/**
+	 * Adds a sample whose length must equal the {@linkplain #getDimension() dimension}.
+	 */
+	public synchronized void add(double[] sample)
+	{
+		System.arraycopy(sample, 0, _delta, 0, _dimension);
+		addDelta();
+	}
+
+	/**
+	 * Starts a new segment of samples, following a random restart.
+	 * <p>
+	 * Samples in different segments are assumed to come from independent chains. The
+	 * incomplete batch, if any, is discarded from the batch means.
+	 */
+	public synchronized void startSegment()
+	{
+		if (_segmentCount > 0 && _segmentN[_segmentCount - 1] == 0)
+		{
+			// Current segment is still empty
+			return;
+		}
+
+		final int dimension = _dimension;
+		if (_segmentCount == _segmentN.length)
+		{
+			final int capacity = Math.max(4, _segmentCount * 2);
+			_segmentN = Arrays.copyOf(_segmentN, capacity);
+			_segmentMean = Arrays.copyOf(_segmentMean, capacity * dimension);
+			_segmentM2 = Arrays.copyOf(_segmentM2, capacity * dimension);
+		}
+		_segmentN[_segmentCount] = 0;
+		Arrays.fill(_segmentMean, _segmentCount * dimension, (_segmentCount + 1) * dimension, 0.0);
+		Arrays.fill(_segmentM2, _segmentCount * dimension, (_segmentCount + 1) * dimension, 0.0);
+		++_segmentCount;
+
+		clearIncompleteBatch();
+	}
+
+	/**
+	 * Adds the samples summarized by {@code other}, which must have the same dimension, and which are
+	 * assumed to come from an independent chain.
+	 * <p>
+	 * The segments of {@code other} are added after those of these statistics. The incomplete batches
+	 * of both are discarded from the batch means.
+	 */
+	public synchronized void merge(GibbsSampleStatistics other)
+	{
+		if (other == this)
+		{
+			throw new IllegalArgumentException("Cannot merge statistics with themselves");
+		}
+
+		synchronized (other)
+		{
+			final int dimension = _dimension;
+			final long count = _count + other._count;
+			if (other._count > 0)
+			{
+				// Parallel update of the moments by Chan et al.
+				final double[] delta = _delta;
+				for (int i = 0; i < dimension; ++i)
+				{
+					delta[i] = other._mean[i] - _mean[i];
+				}
+				final double scale = (double)_count * other._count / count;
+				for (int i = 0; i < dimension; ++i)
+				{
+					for (int j = 0; j < dimension; ++j)
+					{
+						_comoment[i * dimension + j] += other._comoment[i * dimension + j] + delta[i] * delta[j] * scale;
+					}
+					_mean[i] += delta[i] * other._count / count;
+				}
+				_count = count;
+			}
+
+			for (int i = 0; i < dimension; ++i)
+			{
+				_digests[i].merge(other._digests[i]);
+			}
+
+			mergeBatches(other);
+
+			for (int s = 0; s < other._segmentCount; ++s)
+			{
+				if (other._segmentN[s] > 0)
+				{
+					startSegment();
+					final int to = (_segmentCount - 1) * dimension, from = s * dimension;
+					_segmentN[_segmentCount - 1] = other._segmentN[s];
+					System.arraycopy(other._segmentMean, from, _segmentMean, to, dimension);
+					System.arraycopy(other._segmentM2, from, _segmentM2, to, dimension);
+				}
+			}
+			// Further samples do not continue the other's last segment.
+			startSegment();
+		}
+	}
+
+	/**
+	 * Removes all samples.
+	 */
+	public synchronized void reset()
+	{
+		_count = 0;
+		Arrays.fill(_mean, 0.0);
+		Arrays.fill(_comoment, 0.0);
+		for (TDigest digest : _digests)
+		{
+			digest.reset();
+		}
+		Arrays.fill(_batchSums, 0.0);
+		_batchSize = 1;
+		_batchCount = 0;
+		_batchFill = 0;
+		_segmentCount = 0;
+	}
+
+	/**
+	 * The number of elements of each sample.
+	 */
+	public int getDimension()
+	{
+		return _dimension;
+	}
+
+	/**
+	 * The number of samples that have been added.
+	 */
+	public synchronized long getCount()
+	{
+		return _count;
+	}
+
+	/**
+	 * The number of non-empty segments of samples.
+	 * @see #startSegment()
+	 */
+	public synchronized int getSegmentCount()
+	{
+		int count = 0;
+		for (int s = 0; s < _segmentCount; ++s)
+		{
+			if (_segmentN[s] > 0)
+			{
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * The mean of each element of the samples, or NaN if there are none.
+	 */
+	public synchronized double[] getMean()
+	{
+		if (_count == 0)
+		{
+			return nanArray(_dimension);
+		}
+		return _mean.clone();
+	}
+
+	/**
+	 * The unbiased sample variance of each element, or NaN if there are fewer than two samples.
+	 */
+	public synchronized double[] getVariance()
+	{
+		final double[] variance = new double[_dimension];
+		for (int i = 0; i < _dimension; ++i)
+		{
+			variance[i] = variance(i);
+		}
+		return variance;
+	}
+
+	/**
+	 * The unbiased sample covariance matrix of the elements, or NaNs if there are fewer than two samples.
+	 */
+	public synchronized double[][] getCovariance()
+	{
+		final int dimension = _dimension;
+		final double[][] covariance = new double[dimension][dimension];
+		for (int i = 0; i < dimension; ++i)
+		{
+			for (int j = 0; j < dimension; ++j)
+			{
+				covariance[i][j] = _count > 1 ? _comoment[i * dimension + j] / (_count - 1) : Double.NaN;
+			}
+		}
+		return covariance;
+	}
+
+	/**
+	 * Estimates the {@code p}th quantile of the given element of the samples.
+	 * <p>
+	 * The minimum and maximum are exact, as are all quantiles when there are few samples.
+	 * Returns NaN if there are no samples.
+	 * <p>
+	 * @param element index of the element, which must be less than the {@linkplain #getDimension() dimension}
+	 * @param p must be in the range [0,1]
+	 */
+	public synchronized double getQuantile(int element, double p)
+	{
+		if (!(p >= 0.0 && p <= 1.0))
+		{
+			throw new IllegalArgumentException(String.format("Quantile %g not in range [0,1]", p));
+		}
+		return _digests[element].quantile(p);
+	}
+
+	/**
+	 * Estimates the effective sample size of the given element of the samples using batch means.
+	 * <p>
+	 * This is the number of independent samples that would estimate the mean of the element with
+	 * the same variance. The batches used for the estimate hold at least the square root of the number
+	 * of samples each, since smaller batches of correlated samples greatly overestimate the effective
+	 * sample size. Returns NaN if there are fewer than two such batches, which requires at least four
+	 * samples. If the element has no variance, returns the number of samples.
+	 */
+	public synchronized double getEffectiveSampleSize(int element)
+	{
+		// Group consecutive batches so that there are about sqrt(n) batches of about sqrt(n) samples.
+		final long minBatchSize = (long)Math.ceil(Math.sqrt(_count));
+		final int group = (int)Math.max(1, (minBatchSize + _batchSize - 1) / _batchSize);
+		final int batches = _batchCount / group;
+		if (batches < 2)
+		{
+			return Double.NaN;
+		}
+		final long batchSize = _batchSize * group;
+
+		final double variance = variance(element);
+		final int offset = element * MAX_BATCHES;
+		final double[] sums = new double[batches];
+		double mean = 0;
+		for (int b = 0; b < batches; ++b)
+		{
+			double sum = 0;
+			for (int g = 0, from = offset + b * group; g < group; ++g)
+			{
+				sum += _batchSums[from + g];
+			}
+			sums[b] = sum;
+			mean += sum;
+		}
+		mean /= batches;
+		double batchVariance = 0;
+		for (int b = 0; b < batches; ++b)
+		{
+			final double d = sums[b] - mean;
+			batchVariance += d * d;
+		}
+		// Variance of the batch means, whose sums are divided by the batch size
+		batchVariance /= (batches - 1) * (double)batchSize * batchSize;
+
+		if (variance == 0 || batchVariance == 0)
+		{
+			return _count;
+		}
+
+		// The variance of the mean of n samples is approximately batchSize * batchVariance / n
+		return _count * variance / (batchSize * batchVariance);
+	}
+
+	/**
+	 * The minimum {@linkplain #getEffectiveSampleSize(int) effective sample size} over all of the elements.
+	 */
+	public synchronized double getMinEffectiveSampleSize()
+	{
+		double min = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < _dimension; ++i)
+		{
+			min = Math.min(min, getEffectiveSampleSize(i));
+		}
+		return min;
+	}
+
+	/**
+	 * The integrated autocorrelation time of the given element of the samples, which is the number of
+	 * samples divided by the {@linkplain #getEffectiveSampleSize(int) effective sample size}.
+	 */
+	public synchronized double getAutocorrelationTime(int element)
+	{
+		return _count / getEffectiveSampleSize(element);
+	}
+
+	/**
+	 * The Gelman-Rubin potential scale reduction factor, R-hat, of the given element over the segments.
+	 * <p>
+	 * Values close to one indicate that the segments, which follow different random restarts or come
+	 * from different chains, have converged to the same distribution. Uses the mean length of the
+	 * segments when they are of different lengths. Returns NaN if there are fewer than two segments
+	 * with at least two samples.
+	 */
+	public synchronized double getPotentialScaleReduction(int element)
+	{
+		final int dimension = _dimension;
+		int m = 0;
+		double meanLength = 0, meanOfMeans = 0, within = 0;
+		for (int s = 0; s < _segmentCount; ++s)
+		{
+			final long n = _segmentN[s];
+			if (n > 1)
+			{
+				++m;
+				meanLength += n;
+				meanOfMeans += _segmentMean[s * dimension + element];
+				within += _segmentM2[s * dimension + element] / (n - 1);
+			}
+		}
+		if (m < 2)
+		{
+			return Double.NaN;
+		}
+		meanLength /= m;
+		meanOfMeans /= m;
+		within /= m;
+
+		double between = 0;
+		for (int s = 0; s < _segmentCount; ++s)
+		{
+			if (_segmentN[s] > 1)
+			{
+				final double d = _segmentMean[s * dimension + element] - meanOfMeans;
+				between += d * d;
+			}
+		}
+		between /= m - 1;
+
+		if (within == 0)
+		{
+			return between == 0 ? 1.0 : Double.POSITIVE_INFINITY;
+		}
+
+		final double pooled = (meanLength - 1) / meanLength * within + between;
+		return Math.sqrt(pooled / within);
+	}
+
+	/**
+	 * The maximum {@linkplain #getPotentialScaleReduction(int) potential scale reduction} over all of
+	 * the elements.
+	 */
+	public synchronized double getMaxPotentialScaleReduction()
+	{
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < _dimension; ++i)
+		{
+			max = Math.max(max, getPotentialScaleReduction(i));
+		}
+		return max;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Adds the sample in {@link #_delta}, which is overwritten with the deviations from the old mean.
+	 */
+	private void addDelta()
+	{
+		if (_segmentCount == 0)
+		{
+			startSegment();
+		}
+
+		final int dimension = _dimension;
+		final double[] delta = _delta;
+		final long count = ++_count;
+
+		// Segment moments, batches and digests use the sample itself
+		final int segment = _segmentCount - 1;
+		final long segmentCount = ++_segmentN[segment];
+		for (int i = 0; i < dimension; ++i)
+		{
+			final double x = delta[i];
+			final int s = segment * dimension + i;
+			final double d = x - _segmentMean[s];
+			_segmentMean[s] += d / segmentCount;
+			_segmentM2[s] += d * (x - _segmentMean[s]);
+
+			_batchSums[i * MAX_BATCHES + _batchCount] += x;
+			_digests[i].add(x);
+		}
+		if (++_batchFill == _batchSize)
+		{
+			_batchFill = 0;
+			if (++_batchCount == MAX_BATCHES)
+			{
+				combineBatches();
+			}
+		}
+
+		// Welford update of the mean and covariance
+		for (int i = 0; i < dimension; ++i)
+		{
+			delta[i] -= _mean[i];
+			_mean[i] += delta[i] / count;
+		}
+		for (int i = 0; i < dimension; ++i)
+		{
+			final double di = delta[i];
+			for (int j = 0; j < dimension; ++j)
+			{
+				_comoment[i * dimension + j] += di * (delta[j] * (count - 1) / count);
+			}
+		}
+	}
+
+	private double variance(int element)
+	{
+		return _count > 1 ? _comoment[element * _dimension + element] / (_count - 1) : Double.NaN;
+	}
+
+	/**
+	 * Halves the number of full batches by adding adjacent pairs, doubling the batch size. There must
+	 * be no samples in the incomplete batch. If the number of full batches is odd, the last is discarded.
+	 */
+	private void combineBatches()
+	{
+		_batchCount = combineBatches(_batchSums, _dimension, _batchCount);
+		_batchSize *= 2;
+	}
+
+	/**
+	 * Adds adjacent pairs of the first {@code count} batches in {@code sums}, clearing the rest, and
+	 * returns the new number of batches. If {@code count} is odd, the last batch is discarded.
+	 */
+	private static int combineBatches(double[] sums, int dimension, int count)
+	{
+		final int half = count / 2;
+		for (int i = 0; i < dimension; ++i)
+		{
+			final int offset = i * MAX_BATCHES;
+			for (int b = 0; b < half; ++b)
+			{
+				sums[offset + b] = sums[offset + 2 * b] + sums[offset + 2 * b + 1];
+			}
+			Arrays.fill(sums, offset + half, offset + MAX_BATCHES, 0.0);
+		}
+		return half;
+	}
+
+	private void clearIncompleteBatch()
+	{
+		if (_batchCount < MAX_BATCHES)
+		{
+			for (int i = 0; i < _dimension; ++i)
+			{
+				_batchSums[i * MAX_BATCHES + _batchCount] = 0.0;
+			}
+		}
+		_batchFill = 0;
+	}
+
+	/**
+	 * Appends the full batches of {@code other}, after combining the batches of whichever has the
+	 * smaller batch size until they are the same. If there are too many batches to append them all,
+	 * the batches of both are combined first, so that all of the batches end up the same size.
+	 */
+	private void mergeBatches(GibbsSampleStatistics other)
+	{
+		clearIncompleteBatch();
+
+		final int dimension = _dimension;
+		final double[] otherSums = other._batchSums.clone();
+		int otherCount = other._batchCount;
+		long otherSize = other._batchSize;
+
+		while (_batchSize < otherSize && _batchCount > 1)
+		{
+			combineBatches();
+		}
+		while (otherSize < _batchSize && otherCount > 1)
+		{
+			otherCount = combineBatches(otherSums, dimension, otherCount);
+			otherSize *= 2;
+		}
+		if (otherSize != _batchSize)
+		{
+			// Too few batches in one of them to match batch sizes, so keep the larger one.
+			if (otherCount * otherSize <= _batchCount * _batchSize)
+			{
+				return;
+			}
+			System.arraycopy(otherSums, 0, _batchSums, 0, otherSums.length);
+			_batchCount = otherCount;
+			_batchSize = otherSize;
+			clearIncompleteBatch();
+			return;
+		}
+
+		// Combining while appending would leave the remaining batches of other at half the size.
+		while (_batchCount + otherCount >= MAX_BATCHES)
+		{
+			combineBatches();
+			otherCount = combineBatches(otherSums, dimension, otherCount);
+		}
+		for (int i = 0; i < dimension; ++i)
+		{
+			final int offset = i * MAX_BATCHES;
+			System.arraycopy(otherSums, offset, _batchSums, offset + _batchCount, otherCount);
+		}
+		_batchCount += otherCount;
+		clearIncompleteBatch();
+	}
+
+	private static double[] nanArray(int length)
+	{
+		final double[] array = new double[length];
+		Arrays.fill(array, Double.NaN);
+		return array;
+	}
+
+	/*---------------
+	 * Inner classes
+	 */
+
+	/**
+	 * Merging t-digest for estimating quantiles of a stream of values in bounded memory.
+	 * <p>
+	 * Values are buffered and periodically merged into a sorted list of weighted centroids whose
+	 * sizes are limited by the arcsine scale function, so that centroids near the tails are small.
+	 */
+	static final class TDigest
+	{
+		private final double _compression;
+
+		private int _centroidCount = 0;
+		private final double[] _means;
+		private final double[] _weights;
+		private double _totalWeight = 0;
+
+		private int _bufferCount = 0;
+		private final double[] _buffer;
+
+		private double _min = Double.POSITIVE_INFINITY;
+		private double _max = Double.NEGATIVE_INFINITY;
+
+		/** Scratch space for merging with capacity for the centroids and the buffer. */
+		private final double[] _mergeMeans;
+		private final double[] _mergeWeights;
+
+		TDigest(int compression)
+		{
+			_compression = compression;
+			// Adjacent pairs of centroids span at least one unit of the scale function, which has a range
+			// of compression / 2, so there can be no more than about compression centroids.
+			final int maxCentroids = 2 * compression;
+			_means = new double[maxCentroids];
+			_weights = new double[maxCentroids];
+			_buffer = new double[5 * compression];
+			_mergeMeans = new double[maxCentroids + _buffer.length];
+			_mergeWeights = new double[maxCentroids + _buffer.length];
+		}
+
+		void add(double x)
+		{
+			if (Double.isNaN(x))
+			{
+				return;
+			}
+			if (x < _min) _min = x;
+			if (x > _max) _max = x;
+			_buffer[_bufferCount++] = x;
+			if (_bufferCount == _buffer.length)
+			{
+				flush();
+			}
+		}
+
+		void merge(TDigest other)
+		{
+			other.flush();
+			if (other._centroidCount == 0)
+			{
+				return;
+			}
+			flush();
+			_min = Math.min(_min, other._min);
+			_max = Math.max(_max, other._max);
+
+			// Merge the two sorted centroid lists
+			final double[] means = _mergeMeans, weights = _mergeWeights;
+			int n = 0, a = 0, b = 0;
+			while (a < _centroidCount || b < other._centroidCount)
+			{
+				if (b == other._centroidCount || (a < _centroidCount && _means[a] <= other._means[b]))
+				{
+					means[n] = _means[a];
+					weights[n++] = _weights[a++];
+				}
+				else
+				{
+					means[n] = other._means[b];
+					weights[n++] = other._weights[b++];
+				}
+			}
+			compress(n, _totalWeight + other._totalWeight);
+		}
+
+		void reset()
+		{
+			_centroidCount = 0;
+			_totalWeight = 0;
+			_bufferCount = 0;
+			_min = Double.POSITIVE_INFINITY;
+			_max = Double.NEGATIVE_INFINITY;
+		}
+
+		double quantile(double p)
+		{
+			flush();
+			final int n = _centroidCount;
+			if (n == 0)
+			{
+				return Double.NaN;
+			}
+			if (p <= 0.0)
+			{
+				return _min;
+			}
+			if (p >= 1.0)
+			{
+				return _max;
+			}
+			if (n == 1)
+			{
+				return _means[0];
+			}
+
+			// Each centroid's mean is taken to be at the middle of its weight.
+			final double target = p * _totalWeight;
+			final double[] means = _means, weights = _weights;
+			if (target < weights[0] / 2)
+			{
+				return _min + (means[0] - _min) * target / (weights[0] / 2);
+			}
+			double cumulative = weights[0] / 2;
+			for (int i = 1; i < n; ++i)
+			{
+				final double next = cumulative + (weights[i - 1] + weights[i]) / 2;
+				if (target < next)
+				{
+					return means[i - 1] + (means[i] - means[i - 1]) * (target - cumulative) / (next - cumulative);
+				}
+				cumulative = next;
+			}
+			final double last = weights[n - 1] / 2;
+			return means[n - 1] + (_max - means[n - 1]) * Math.min(1.0, (target - cumulative) / last);
+		}
+
+		/**
+		 * Merges the buffered values into the centroids.
+		 */
+		private void flush()
+		{
+			if (_bufferCount == 0)
+			{
+				return;
+			}
+
+			Arrays.sort(_buffer, 0, _bufferCount);
+			final double[] means = _mergeMeans, weights = _mergeWeights;
+			int n = 0, a = 0, b = 0;
+			while (a < _centroidCount || b < _bufferCount)
+			{
+				if (b == _bufferCount || (a < _centroidCount && _means[a] <= _buffer[b]))
+				{
+					means[n] = _means[a];
+					weights[n++] = _weights[a++];
+				}
+				else
+				{
+					means[n] = _buffer[b++];
+					weights[n++] = 1.0;
+				}
+			}
+			final double totalWeight = _totalWeight + _bufferCount;
+			_bufferCount = 0;
+			compress(n, totalWeight);
+		}
+
+		/**
+		 * Greedily combines the first {@code n} sorted entries of the merge arrays into the centroids.
+		 */
+		private void compress(int n, double totalWeight)
+		{
+			final double[] means = _mergeMeans, weights = _mergeWeights;
+			int count = 0;
+			double mean = means[0], weight = weights[0];
+			double weightSoFar = 0;
+			double weightLimit = totalWeight * inverseScale(scale(0.0) + 1.0);
+			for (int i = 1; i < n; ++i)
+			{
+				if (weightSoFar + weight + weights[i] <= weightLimit)
+				{
+					weight += weights[i];
+					mean += (means[i] - mean) * weights[i] / weight;
+				}
+				else
+				{
+					_means[count] = mean;
+					_weights[count++] = weight;
+					weightSoFar += weight;
+					weightLimit = totalWeight * inverseScale(scale(weightSoFar / totalWeight) + 1.0);
+					mean = means[i];
+					weight = weights[i];
+				}
+			}
+			_means[count] = mean;
+			_weights[count++] = weight;
+			_centroidCount = count;
+			_totalWeight = totalWeight;
+		}
+
+		private double scale(double q)
+		{
+			return _compression / (2 * Math.PI) * Math.asin(2 * q - 1);
+		}
+
+		private double inverseScale(double k)
+		{
+			final double angle = k * 2 * Math.PI / _compression;
+			return angle >= Math.PI / 2 ? 1.0 : (Math.sin(angle) + 1) / 2;
+		}
+	}
+}
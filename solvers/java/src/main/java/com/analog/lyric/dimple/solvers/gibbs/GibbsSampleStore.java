@@ -0,0 +1,728 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.gibbs;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.collect.PrimitiveIterator;
+import com.analog.lyric.dimple.exceptions.DimpleException;
+
+/**
+ * Compressed storage for saved Gibbs samples in a memory-mapped file.
+ * <p>
+ * Used instead of in-memory sample lists when {@link GibbsOptions#saveAllSamples} is true and
+ * {@link GibbsOptions#sampleStoreDirectory} is set, so that the number of samples that can be saved
+ * is limited by disk space rather than by the size of the Java heap.
+ * <p>
+ * Each variable appends its samples to its own column, which buffers {@value #CHUNK_BYTES} bytes of
+ * uncompressed samples in memory and then writes them to the file as one compressed chunk:
+ * <ul>
+ * <li>{@link IntColumn} bit-packs discrete sample indices using only as many bits as required
+ * for the size of the domain.
+ * <li>{@link DoubleColumn} encodes each real sample as the XOR of its bits with those of the previous
+ * sample, storing only the bits that differ. In particular, a repeated value, as produced by a rejected
+ * Metropolis-Hastings proposal, takes a single bit.
+ * </ul>
+ * Samples are read back through iterators, which decode one chunk at a time.
+ * <p>
+ * The file is created in the specified directory and is deleted when the store is {@linkplain #close() closed}
+ * or, failing that, when the JVM exits. Files are tracked for deletion on exit only until they have been
+ * deleted, so creating and closing many stores does not accumulate state for the life of the JVM, as
+ * {@link File#deleteOnExit()} would. The Gibbs solver uses one store for each root graph, which is
+ * closed when the graph is next initialized.
+ * <p>
+ * @since 0.08
+ * @see GibbsSolverGraph#getSampleStore()
+ */
+public final class GibbsSampleStore implements Closeable
+{
+	/*-------
+	 * State
+	 */
+
+	/**
+	 * Size in bytes of each region of the file that is mapped into memory.
+	 */
+	static final int WINDOW_SIZE = 1 << 22;
+
+	/**
+	 * Size in bytes of the buffer each column uses for samples that have not yet been written to the file,
+	 * which determines the number of samples in each chunk from the number of bits per uncompressed sample.
+	 * This is the only memory used by a column other than its list of chunks, so that a store with columns
+	 * for many variables does not use more of the heap than saving the samples in memory would.
+	 */
+	static final int CHUNK_BYTES = 2048;
+
+	/**
+	 * Files that have not yet been deleted, which are deleted by a shutdown hook when the JVM exits.
+	 */
+	private static final Set<File> _undeletedFiles =
+		Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+	static
+	{
+		Runtime.getRuntime().addShutdownHook(new Thread("dimple-sample-store-cleanup") {
+			@Override
+			public void run()
+			{
+				for (File file : _undeletedFiles)
+				{
+					file.delete();
+				}
+			}
+		});
+	}
+
+	private final File _file;
+	private final RandomAccessFile _raf;
+	private final FileChannel _channel;
+
+	/**
+	 * The currently mapped region of the file, whose position is that of the next chunk to be written.
+	 */
+	private @Nullable ByteBuffer _window = null;
+	private long _windowCount = 0;
+	private long _size = 0;
+	private boolean _closed = false;
+
+	/**
+	 * Scratch space used to encode a chunk of a {@link DoubleColumn} while holding the store's lock.
+	 */
+	private final long[] _encodeWords = new long[DoubleColumn.MAX_WORDS];
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Creates a store backed by a new temporary file in {@code directory}, which will be created
+	 * if it does not already exist.
+	 * <p>
+	 * @throws DimpleException if the file cannot be created.
+	 */
+	public GibbsSampleStore(File directory)
+	{
+		try
+		{
+			directory.mkdirs();
+			_file = File.createTempFile("dimple-samples", ".dat", directory);
+			_undeletedFiles.add(_file);
+			_raf = new RandomAccessFile(_file, "rw");
+			_channel = _raf.getChannel();
+		}
+		catch (IOException ex)
+		{
+			throw new DimpleException(ex);
+		}
+	}
+
+	/*-------------------
+	 * Closeable methods
+	 */
+
+	/**
+	 * Closes and deletes the underlying file.
+	 * <p>
+	 * Columns of a closed store may no longer be used.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		if (!_closed)
+		{
+			_closed = true;
+			_window = null;
+			try
+			{
+				_channel.close();
+				_raf.close();
+			}
+			catch (IOException ex)
+			{
+				throw new DimpleException(ex);
+			}
+			finally
+			{
+				// May fail on some platforms while regions are still mapped, in which case the file will
+				// be deleted on exit.
+				if (_file.delete())
+				{
+					_undeletedFiles.remove(_file);
+				}
+			}
+		}
+	}
+
+	/*--------------------------
+	 * GibbsSampleStore methods
+	 */
+
+	/**
+	 * The file in which the samples are stored.
+	 */
+	public File getFile()
+	{
+		return _file;
+	}
+
+	/**
+	 * The total size in bytes of the compressed chunks written to the file so far.
+	 */
+	public synchronized long getSize()
+	{
+		return _size;
+	}
+
+	public synchronized boolean isClosed()
+	{
+		return _closed;
+	}
+
+	/**
+	 * Creates a new empty column for sample indices in the range [0, {@code cardinality}-1].
+	 */
+	public IntColumn newIntColumn(int cardinality)
+	{
+		return new IntColumn(cardinality);
+	}
+
+	/**
+	 * Creates a new empty column for real sample values.
+	 */
+	public DoubleColumn newDoubleColumn()
+	{
+		return new DoubleColumn();
+	}
+
+	/*---------------
+	 * Inner classes
+	 */
+
+	/**
+	 * Common base for column iterators over a fixed number of samples.
+	 */
+	private static abstract class ColumnIterator<T> implements PrimitiveIterator<T>
+	{
+		private final int _size;
+		int _index = 0;
+
+		ColumnIterator(int size)
+		{
+			_size = size;
+		}
+
+		@Override
+		public final boolean hasNext()
+		{
+			return _index < _size;
+		}
+
+		@Override
+		public final void remove()
+		{
+			throw new UnsupportedOperationException("PrimitiveIterator.remove");
+		}
+
+		/**
+		 * The offset of the next sample within its chunk.
+		 */
+		final int nextOffset(int chunkSize)
+		{
+			if (_index >= _size)
+			{
+				throw new NoSuchElementException();
+			}
+			return _index % chunkSize;
+		}
+	}
+
+	/**
+	 * Column of bit-packed discrete sample indices.
+	 * <p>
+	 * @since 0.08
+	 */
+	public final class IntColumn
+	{
+		private final int _bits;
+		private final long _mask;
+		/**
+		 * The number of samples in each chunk, which fit in {@value GibbsSampleStore#CHUNK_BYTES} bytes.
+		 */
+		private final int _chunkSize;
+		private final ArrayList<ByteBuffer> _chunks = new ArrayList<ByteBuffer>();
+		/**
+		 * Samples of the incomplete chunk, which are bit-packed as they are added.
+		 */
+		private final long[] _buffer = new long[CHUNK_BYTES / 8];
+		private int _bufferSize = 0;
+
+		private IntColumn(int cardinality)
+		{
+			_bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(cardinality - 1));
+			_mask = (1L << _bits) - 1;
+			_chunkSize = CHUNK_BYTES * 8 / _bits;
+		}
+
+		/**
+		 * The number of bits used to store each sample.
+		 */
+		public int bitsPerSample()
+		{
+			return _bits;
+		}
+
+		/**
+		 * The number of samples in the column.
+		 */
+		public synchronized int size()
+		{
+			return _chunks.size() * _chunkSize + _bufferSize;
+		}
+
+		/**
+		 * Appends {@code index} to the column.
+		 */
+		public synchronized void add(int index)
+		{
+			writeBits(_buffer, (long)_bufferSize * _bits, index & _mask, _bits);
+			if (++_bufferSize == _chunkSize)
+			{
+				flush();
+			}
+		}
+
+		/**
+		 * Appends all of the samples in {@code other} to this column.
+		 */
+		public void addAll(IntColumn other)
+		{
+			for (PrimitiveIterator.OfInt iter = other.iterator(); iter.hasNext(); )
+			{
+				add(iter.nextInt());
+			}
+		}
+
+		/**
+		 * The sample with given {@code index}.
+		 */
+		public synchronized int get(int index)
+		{
+			if (index < 0 || index >= size())
+			{
+				throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for size %d", index, size()));
+			}
+
+			final int chunk = index / _chunkSize, offset = index % _chunkSize;
+			if (chunk == _chunks.size())
+			{
+				return (int)readBits(_buffer, (long)offset * _bits, _bits);
+			}
+
+			final ByteBuffer bytes = _chunks.get(chunk);
+			final long bitPos = (long)offset * _bits;
+			final int word = (int)(bitPos >>> 6), shift = (int)(bitPos & 63);
+			long value = bytes.getLong(word * 8) >>> shift;
+			if (shift + _bits > 64)
+			{
+				value |= bytes.getLong(word * 8 + 8) << (64 - shift);
+			}
+			return (int)(value & _mask);
+		}
+
+		/**
+		 * Iterates over the samples in the order they were added, up to the current size of the column.
+		 */
+		public PrimitiveIterator.OfInt iterator()
+		{
+			return new IntIterator(size());
+		}
+
+		/**
+		 * Copies the samples into a new array.
+		 */
+		public int[] toArray()
+		{
+			final int size = size();
+			final int[] array = new int[size];
+			final PrimitiveIterator.OfInt iter = new IntIterator(size);
+			for (int i = 0; i < size; ++i)
+			{
+				array[i] = iter.nextInt();
+			}
+			return array;
+		}
+
+		/**
+		 * The number of words used by the samples of a full chunk.
+		 */
+		private int chunkWords()
+		{
+			return (int)(((long)_chunkSize * _bits + 63) >>> 6);
+		}
+
+		private void flush()
+		{
+			_chunks.add(writeChunk(_buffer, chunkWords()));
+			Arrays.fill(_buffer, 0L);
+			_bufferSize = 0;
+		}
+
+		/**
+		 * Copies the samples of the given chunk into {@code values}.
+		 */
+		private synchronized void readChunk(int chunk, long[] words, int[] values)
+		{
+			final int size;
+			if (chunk == _chunks.size())
+			{
+				System.arraycopy(_buffer, 0, words, 0, _buffer.length);
+				size = _bufferSize;
+			}
+			else
+			{
+				_chunks.get(chunk).asLongBuffer().get(words, 0, chunkWords());
+				size = _chunkSize;
+			}
+
+			long pos = 0;
+			for (int i = 0; i < size; ++i, pos += _bits)
+			{
+				values[i] = (int)readBits(words, pos, _bits);
+			}
+		}
+
+		private final class IntIterator extends ColumnIterator<Integer> implements PrimitiveIterator.OfInt
+		{
+			private final long[] _iterWords = new long[_buffer.length];
+			private final int[] _values = new int[_chunkSize];
+
+			private IntIterator(int size)
+			{
+				super(size);
+			}
+
+			@Override
+			public Integer next()
+			{
+				return nextInt();
+			}
+
+			@Override
+			public int nextInt()
+			{
+				final int offset = nextOffset(_chunkSize);
+				if (offset == 0)
+				{
+					readChunk(_index / _chunkSize, _iterWords, _values);
+				}
+				++_index;
+				return _values[offset];
+			}
+		}
+	}
+
+	/**
+	 * Column of XOR-compressed real sample values.
+	 * <p>
+	 * Values are stored exactly, including their sign, NaNs and infinities.
+	 * <p>
+	 * @since 0.08
+	 */
+	public final class DoubleColumn
+	{
+		/**
+		 * The number of samples in each chunk, whose uncompressed values fit in {@value GibbsSampleStore#CHUNK_BYTES}
+		 * bytes.
+		 */
+		static final int CHUNK_SIZE = CHUNK_BYTES / 8;
+
+		/**
+		 * Maximum number of words required to encode a chunk: the first value uncompressed, and then at
+		 * most two control bits, the number of leading zeros and the length, and the meaningful bits for each
+		 * of the others.
+		 */
+		private static final int MAX_WORDS = (64 + (CHUNK_SIZE - 1) * (2 + 6 + 6 + 64) + 63) >>> 6;
+
+		private final ArrayList<ByteBuffer> _chunks = new ArrayList<ByteBuffer>();
+		private final double[] _buffer = new double[CHUNK_SIZE];
+		private int _bufferSize = 0;
+
+		private DoubleColumn()
+		{
+		}
+
+		/**
+		 * The number of samples in the column.
+		 */
+		public synchronized int size()
+		{
+			return _chunks.size() * CHUNK_SIZE + _bufferSize;
+		}
+
+		/**
+		 * Appends {@code value} to the column.
+		 */
+		public synchronized void add(double value)
+		{
+			_buffer[_bufferSize++] = value;
+			if (_bufferSize == CHUNK_SIZE)
+			{
+				flush();
+			}
+		}
+
+		/**
+		 * Appends all of the samples in {@code other} to this column.
+		 */
+		public void addAll(DoubleColumn other)
+		{
+			for (PrimitiveIterator.OfDouble iter = other.iterator(); iter.hasNext(); )
+			{
+				add(iter.nextDouble());
+			}
+		}
+
+		/**
+		 * Iterates over the samples in the order they were added, up to the current size of the column.
+		 */
+		public PrimitiveIterator.OfDouble iterator()
+		{
+			return new DoubleIterator(size());
+		}
+
+		/**
+		 * Copies the samples into a new array.
+		 */
+		public double[] toArray()
+		{
+			final int size = size();
+			final double[] array = new double[size];
+			final PrimitiveIterator.OfDouble iter = new DoubleIterator(size);
+			for (int i = 0; i < size; ++i)
+			{
+				array[i] = iter.nextDouble();
+			}
+			return array;
+		}
+
+		private void flush()
+		{
+			_chunks.add(writeDoubleChunk(_buffer));
+			_bufferSize = 0;
+		}
+
+		/**
+		 * Decodes the samples of the given chunk into {@code values}.
+		 */
+		private synchronized void readChunk(int chunk, long[] words, double[] values)
+		{
+			if (chunk == _chunks.size())
+			{
+				System.arraycopy(_buffer, 0, values, 0, _bufferSize);
+				return;
+			}
+
+			final ByteBuffer bytes = _chunks.get(chunk);
+			bytes.asLongBuffer().get(words, 0, bytes.capacity() >>> 3);
+
+			long prev = readBits(words, 0, 64);
+			long pos = 64;
+			values[0] = Double.longBitsToDouble(prev);
+			int prevLeading = 0, prevTrailing = 0;
+			for (int i = 1; i < CHUNK_SIZE; ++i)
+			{
+				if (readBits(words, pos++, 1) != 0)
+				{
+					if (readBits(words, pos++, 1) != 0)
+					{
+						prevLeading = (int)readBits(words, pos, 6);
+						final int length = (int)readBits(words, pos + 6, 6) + 1;
+						pos += 12;
+						prevTrailing = 64 - prevLeading - length;
+					}
+					final int length = 64 - prevLeading - prevTrailing;
+					prev ^= readBits(words, pos, length) << prevTrailing;
+					pos += length;
+				}
+				values[i] = Double.longBitsToDouble(prev);
+			}
+		}
+
+		private final class DoubleIterator extends ColumnIterator<Double> implements PrimitiveIterator.OfDouble
+		{
+			private final long[] _iterWords = new long[MAX_WORDS];
+			private final double[] _values = new double[CHUNK_SIZE];
+
+			private DoubleIterator(int size)
+			{
+				super(size);
+			}
+
+			@Override
+			public Double next()
+			{
+				return nextDouble();
+			}
+
+			@Override
+			public double nextDouble()
+			{
+				final int offset = nextOffset(CHUNK_SIZE);
+				if (offset == 0)
+				{
+					readChunk(_index / CHUNK_SIZE, _iterWords, _values);
+				}
+				++_index;
+				return _values[offset];
+			}
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Writes the first {@code nWords} of {@code words} to a new chunk in the file.
+	 */
+	private synchronized ByteBuffer writeChunk(long[] words, int nWords)
+	{
+		if (_closed)
+		{
+			throw new DimpleException("Cannot write to closed sample store %s", _file);
+		}
+
+		final int nBytes = nWords * 8;
+		ByteBuffer window = _window;
+		if (window == null || window.remaining() < nBytes)
+		{
+			try
+			{
+				window = _window = _channel.map(FileChannel.MapMode.READ_WRITE, _windowCount * WINDOW_SIZE, WINDOW_SIZE);
+			}
+			catch (IOException ex)
+			{
+				throw new DimpleException(ex);
+			}
+			++_windowCount;
+		}
+
+		final ByteBuffer chunk = window.slice();
+		chunk.limit(nBytes);
+		window.position(window.position() + nBytes);
+		_size += nBytes;
+
+		final ByteBuffer result = chunk.slice().order(ByteOrder.nativeOrder());
+		result.asLongBuffer().put(words, 0, nWords);
+		return result;
+	}
+
+	/**
+	 * Encodes a full chunk of {@code values} into the scratch space and writes it to a new chunk in the file.
+	 */
+	private synchronized ByteBuffer writeDoubleChunk(double[] values)
+	{
+		final long[] words = _encodeWords;
+		Arrays.fill(words, 0L);
+
+		long prev = Double.doubleToRawLongBits(values[0]);
+		long pos = writeBits(words, 0, prev, 64);
+		int prevLeading = -1, prevTrailing = 0;
+		for (int i = 1; i < DoubleColumn.CHUNK_SIZE; ++i)
+		{
+			final long bits = Double.doubleToRawLongBits(values[i]);
+			final long xor = bits ^ prev;
+			prev = bits;
+
+			if (xor == 0)
+			{
+				// 0: same as previous value
+				pos = writeBits(words, pos, 0, 1);
+				continue;
+			}
+
+			pos = writeBits(words, pos, 1, 1);
+			final int leading = Long.numberOfLeadingZeros(xor), trailing = Long.numberOfTrailingZeros(xor);
+			if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing)
+			{
+				// 10: differing bits fit within those of the last explicit block
+				pos = writeBits(words, pos, 0, 1);
+				pos = writeBits(words, pos, xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+			}
+			else
+			{
+				// 11: number of leading zeros, length minus one, and the differing bits
+				final int length = 64 - leading - trailing;
+				pos = writeBits(words, pos, 1, 1);
+				pos = writeBits(words, pos, leading, 6);
+				pos = writeBits(words, pos, length - 1, 6);
+				pos = writeBits(words, pos, xor >>> trailing, length);
+				prevLeading = leading;
+				prevTrailing = trailing;
+			}
+		}
+
+		return writeChunk(words, (int)((pos + 63) >>> 6));
+	}
+
+	/**
+	 * Writes the low {@code nBits} of {@code value} to {@code words} starting at bit {@code pos}, which must
+	 * not already have any bits set, and returns the position following the last bit written.
+	 */
+	private static long writeBits(long[] words, long pos, long value, int nBits)
+	{
+		if (nBits < 64)
+		{
+			value &= (1L << nBits) - 1;
+		}
+		final int word = (int)(pos >>> 6), shift = (int)(pos & 63);
+		words[word] |= value << shift;
+		if (shift + nBits > 64)
+		{
+			words[word + 1] |= value >>> (64 - shift);
+		}
+		return pos + nBits;
+	}
+
+	/**
+	 * Reads {@code nBits} from {@code words} starting at bit {@code pos}.
+	 */
+	private static long readBits(long[] words, long pos, int nBits)
+	{
+		final int word = (int)(pos >>> 6), shift = (int)(pos & 63);
+		long value = words[word] >>> shift;
+		if (shift + nBits > 64)
+		{
+			value |= words[word + 1] << (64 - shift);
+		}
+		return nBits < 64 ? value & ((1L << nBits) - 1) : value;
+	}
+}
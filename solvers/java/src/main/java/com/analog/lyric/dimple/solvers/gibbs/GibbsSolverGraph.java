@@ -18,11 +18,16 @@ package com.analog.lyric.dimple.solvers.gibbs;
 
 import static java.util.Objects.*;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.eclipse.jdt.annotation.Nullable;
 
@@ -30,6 +35,7 @@ import cern.colt.list.DoubleArrayList;
 
 import com.analog.lyric.collect.ArrayUtil;
 import com.analog.lyric.collect.KeyedPriorityQueue;
+import com.analog.lyric.dimple.events.SolverEventSource;
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.factorfunctions.Bernoulli;
 import com.analog.lyric.dimple.factorfunctions.Beta;
@@ -55,6 +61,7 @@ import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
 import com.analog.lyric.dimple.model.core.DirectedNodeSorter;
 import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.model.core.FactorGraphIterables;
+import com.analog.lyric.dimple.model.core.INode;
 import com.analog.lyric.dimple.model.core.Node;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.repeated.BlastFromThePastFactor;
@@ -63,13 +70,19 @@ import com.analog.lyric.dimple.model.values.IndexedValue;
 import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.model.variables.Discrete;
 import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.options.SolverOptions;
+import com.analog.lyric.dimple.schedulers.GibbsChromaticScheduler;
 import com.analog.lyric.dimple.schedulers.GibbsDefaultScheduler;
+import com.analog.lyric.dimple.schedulers.schedule.FixedSchedule;
+import com.analog.lyric.dimple.schedulers.schedule.GibbsChromaticSchedule;
 import com.analog.lyric.dimple.schedulers.schedule.IGibbsSchedule;
 import com.analog.lyric.dimple.schedulers.schedule.ISchedule;
 import com.analog.lyric.dimple.schedulers.scheduleEntry.BlockScheduleEntry;
 import com.analog.lyric.dimple.schedulers.scheduleEntry.IBlockUpdater;
 import com.analog.lyric.dimple.schedulers.scheduleEntry.IScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.NodeScheduleEntry;
 import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
 import com.analog.lyric.dimple.solvers.gibbs.customFactors.CustomBernoulli;
 import com.analog.lyric.dimple.solvers.gibbs.customFactors.CustomBeta;
 import com.analog.lyric.dimple.solvers.gibbs.customFactors.CustomBinomial;
@@ -94,7 +107,10 @@ import com.analog.lyric.dimple.solvers.interfaces.ISolverBlastFromThePastFactor;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
+import com.analog.lyric.math.DimpleRandom;
 import com.analog.lyric.math.DimpleRandomGenerator;
+import com.analog.lyric.util.misc.Internal;
+import com.google.common.primitives.Doubles;
 
 /**
  * Solver-specific factor graph for Gibbs solver.
@@ -111,6 +127,11 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 	
 	private static final double LOG2 = Math.log(2);
 	
+	/**
+	 * Number of samples between checks of {@link GibbsOptions#targetEffectiveSampleSize}.
+	 */
+	private static final int CONVERGENCE_CHECK_INTERVAL = 100;
+	
 	/**
 	 * Bits in {@link #_flags} reserved by this class and its superclasses.
 	 * @see GibbsSolverGraphEvent
@@ -131,6 +152,8 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 	private int _scansPerSample = 1;
 	private int _burnInScans = GibbsOptions.burnInScans.defaultIntValue();
 	private int _numRandomRestarts = GibbsOptions.numRandomRestarts.defaultIntValue();
+	private int _numChains = GibbsOptions.numChains.defaultIntValue();
+	private double _targetEffectiveSampleSize = GibbsOptions.targetEffectiveSampleSize.defaultDoubleValue();
 	private boolean _temper = false;
 	private double _initialTemperature;
 	private double _temperingDecayConstant;
@@ -139,6 +162,47 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 	private boolean _firstSample = true;
 	private @Nullable DoubleArrayList _scoreArray;
 	
+	/*
+	 * Store for saved samples when GibbsOptions.sampleStoreDirectory is set. Only used on the
+	 * root graph, where it is lazily created by requireSampleStore() and closed on the next initialization.
+	 * The directory is looked up when the store is first required after initialization, and is null
+	 * until then.
+	 */
+	private @Nullable String _sampleStoreDirectory = null;
+	private @Nullable GibbsSampleStore _sampleStore = null;
+	
+	/*
+	 * Incrementally maintained value of getSampleScore() for the current sample values, or NaN if it
+	 * is not known and must be recomputed. Only maintained when _trackSampleScore is true, in which
+	 * case every schedule entry reports the change in score it makes via addSampleScoreDelta.
+	 */
+	private double _sampleScore = Double.NaN;
+	private boolean _trackSampleScore = false;
+	private int _scoreRecomputeInterval = GibbsOptions.scoreRecomputeInterval.defaultIntValue();
+	private int _samplesUntilScoreRecompute = 0;
+	
+	/*
+	 * Precompiled sampling plan used by oneSample() so that the inner sampling loop does not
+	 * need to walk the graph hierarchy. The variable and factor arrays are rebuilt when the global
+	 * structure version changes; the schedule entries are rebuilt on initialization.
+	 */
+	private ISolverVariableGibbs[] _sampleVariables = new ISolverVariableGibbs[0];
+	private ISolverFactorGibbs[] _sampleFactors = new ISolverFactorGibbs[0];
+	private long _samplingPlanVersion = -1;
+	
+	/**
+	 * Flattened entries of a {@link FixedSchedule}, or null if the schedule must be traversed using
+	 * {@link #_scheduleIterator} (e.g. for random scan schedules).
+	 */
+	private @Nullable IScheduleEntry[] _scheduleEntries = null;
+	private int _scheduleEntryIndex = 0;
+	
+	/**
+	 * Performs the updates for {@link #_scheduleEntries} when sampling the colors of a
+	 * {@link GibbsChromaticSchedule} concurrently, otherwise null.
+	 */
+	private @Nullable GibbsColorSweeper _colorSweeper = null;
+	
 	/**
 	 * Priority queue of deterministic factors whose outputs should be
 	 * reevaluated. Lazily created.
@@ -254,18 +318,45 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 		return (ISolverVariableGibbs)super.getSolverVariable(variable);
 	}
 	
+	/*---------------------------
+	 * SolverEventSource methods
+	 */
+	
+	@Override
+	protected int getEventMask()
+	{
+		return GibbsSolverGraphEvent.GRAPH_EVENT_MASK | super.getEventMask();
+	}
+	
+	/*---------------------
+	 * ISolverNode methods
+	 */
+	
 	@Override
 	public void initialize()
 	{
+		// Recompute which graph events to raise, since the listener may have changed.
+		clearFlags(GibbsSolverGraphEvent.GRAPH_EVENT_MASK);
+		
 		_numSamples = getOptionOrDefault(GibbsOptions.numSamples);
 		_numRandomRestarts = getOptionOrDefault(GibbsOptions.numRandomRestarts);
+		_numChains = getOptionOrDefault(GibbsOptions.numChains);
+		_targetEffectiveSampleSize = getOptionOrDefault(GibbsOptions.targetEffectiveSampleSize);
 		_scansPerSample = getOptionOrDefault(GibbsOptions.scansPerSample);
 		_burnInScans = getOptionOrDefault(GibbsOptions.burnInScans);
 		final boolean saveAllScores = getOptionOrDefault(GibbsOptions.saveAllScores);
+		_scoreRecomputeInterval = getOptionOrDefault(GibbsOptions.scoreRecomputeInterval);
 		_temper = getOptionOrDefault(GibbsOptions.enableAnnealing);
 		_initialTemperature = getOptionOrDefault(GibbsOptions.initialTemperature);
 		_temperingDecayConstant = 1 - LOG2/getOptionOrDefault(GibbsOptions.annealingHalfLife);
 		
+		// Samples saved by the variables during the previous run are discarded when they are initialized.
+		if (!_factorGraph.hasParentGraph())
+		{
+			closeSampleStore();
+			_sampleStoreDirectory = null;
+		}
+		
 		// Make sure the schedule is created before factor initialization to allow custom factors to modify the schedule if needed
 		final IGibbsSchedule schedule = _schedule = (IGibbsSchedule)_factorGraph.getSchedule();
 
@@ -301,6 +392,27 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 		processDeferredDeterministicUpdates();
 
 		_scheduleIterator = schedule.iterator();
+		_scheduleEntries = null;
+		_scheduleEntryIndex = 0;
+		if (schedule instanceof FixedSchedule)
+		{
+			final FixedSchedule fixedSchedule = (FixedSchedule)schedule;
+			if (fixedSchedule.size() > 0)
+			{
+				_scheduleEntries = fixedSchedule.getSchedule().toArray(new IScheduleEntry[fixedSchedule.size()]);
+			}
+		}
+		_colorSweeper = null;
+		if (schedule instanceof GibbsChromaticSchedule && useMultithreading() && _numChains == 1 && !raisesVariableUpdateEvents())
+		{
+			final GibbsColorSweeper colorSweeper = _colorSweeper = new GibbsColorSweeper((GibbsChromaticSchedule)schedule);
+			_scheduleEntries = colorSweeper.getEntries();
+		}
+		// Concurrent updates would race to update the tracked score.
+		_trackSampleScore = _scoreRecomputeInterval > 1 && _colorSweeper == null && !fg.hasParentGraph() &&
+			supportsScoreTracking(_scheduleEntries);
+		_sampleScore = Double.NaN;
+		_samplingPlanVersion = -1;
 		_minPotential = Double.POSITIVE_INFINITY;
 		_firstSample = true;
 		
@@ -342,6 +454,8 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 	 * </pre>
 	 * </blockquote>
 	 * </ol>
+	 * If {@link #getNumChains()} is greater than one, then the above will be run concurrently in
+	 * that many independent chains and the resulting sample statistics will be merged.
 	 */
 	@Override
 	public void solveOneStep()
@@ -349,12 +463,175 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 		_minPotential = Double.POSITIVE_INFINITY;
 		_firstSample = true;
 		
+		if (_numChains > 1)
+		{
+			runParallelChains();
+		}
+		else
+		{
+			runChain();
+		}
+	}
+	
+	private void runChain()
+	{
 		for (int restartCount = 0; restartCount <= _numRandomRestarts; restartCount++)
 		{
 			burnIn(restartCount);
+			// Each restart must reach its share of the target effective sample size, if any.
+			final double targetEffectiveSampleSize =
+				_targetEffectiveSampleSize * (restartCount + 1) / (_numRandomRestarts + 1);
 			for (int iter = 0; iter < _numSamples; iter++)
+			{
 				oneSample();
+				if (targetEffectiveSampleSize > 0 && (iter + 1) % CONVERGENCE_CHECK_INTERVAL == 0 &&
+					hasEffectiveSampleSize(targetEffectiveSampleSize))
+				{
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * True if the sample statistics of every variable computing them have at least the given
+	 * effective sample size, and there is at least one such variable.
+	 */
+	private boolean hasEffectiveSampleSize(double target)
+	{
+		boolean hasStatistics = false;
+		for (ISolverVariableGibbs vs : _sampleVariables)
+		{
+			final GibbsSampleStatistics statistics = vs.getSampleStatistics();
+			if (statistics != null)
+			{
+				// Also false if the effective sample size is not yet known (NaN).
+				if (!(statistics.getMinEffectiveSampleSize() >= target))
+					return false;
+				hasStatistics = true;
+			}
+		}
+		return hasStatistics;
+	}
+	
+	/**
+	 * Runs this graph as the first chain in the calling thread and the remaining chains on copies
+	 * of the graph in the {@link ThreadPool}, then merges the results from the copies in chain order.
+	 */
+	private void runParallelChains()
+	{
+		final FactorGraph fg = _factorGraph;
+		if (fg.hasParentGraph())
+			throw new DimpleException("Parallel Gibbs chains are only supported on the root graph");
+		if (!fg.getFactorGraphStreams().isEmpty())
+			throw new DimpleException("Parallel Gibbs chains are not supported for graphs with factor graph streams");
+		
+		// Split the other chains' streams from this thread's stream, so that results are repeatable using setSeed.
+		// The copies are created and initialized sequentially before sampling in parallel.
+		final DimpleRandom random = DimpleRandomGenerator.current();
+		final List<GibbsChain> chains = new ArrayList<GibbsChain>(_numChains - 1);
+		for (int i = 1; i < _numChains; ++i)
+			chains.add(new GibbsChain(this, random.split()));
+		
+		final ExecutorService service = ThreadPool.getThreadPool();
+		final List<Future<Object>> futures = new ArrayList<Future<Object>>(chains.size());
+		for (GibbsChain chain : chains)
+			futures.add(service.submit(chain));
+		
+		try
+		{
+			runChain();
+		}
+		finally
+		{
+			RuntimeException error = null;
+			for (Future<Object> future : futures)
+			{
+				try
+				{
+					future.get();
+				}
+				catch (InterruptedException ex)
+				{
+					for (Future<Object> f : futures)
+						f.cancel(true);
+					Thread.currentThread().interrupt();
+					if (error == null)
+						error = new DimpleException(ex);
+				}
+				catch (ExecutionException ex)
+				{
+					if (error == null)
+					{
+						final Throwable cause = ex.getCause();
+						error = cause instanceof RuntimeException ? (RuntimeException)cause : new DimpleException(ex);
+					}
+				}
+			}
+			if (error != null)
+				throw error;
 		}
+		
+		for (GibbsChain chain : chains)
+			mergeChain(chain);
+	}
+	
+	/**
+	 * Closes the sample store, if any, deleting its samples.
+	 */
+	private void closeSampleStore()
+	{
+		final GibbsSampleStore store = _sampleStore;
+		if (store != null)
+		{
+			_sampleStore = null;
+			store.close();
+		}
+	}
+	
+	/**
+	 * True if any variable in the graph will raise {@link GibbsVariableUpdateEvent}s, whose listeners
+	 * may not expect to be invoked concurrently.
+	 */
+	private boolean raisesVariableUpdateEvents()
+	{
+		for (Variable v : _factorGraph.getVariables())
+		{
+			final ISolverVariableGibbs svar = getSolverVariable(v);
+			if (svar instanceof SolverEventSource &&
+				GibbsSolverVariableEvent.getVariableUpdateEventFlags((SolverEventSource)svar) !=
+				GibbsSolverVariableEvent.UPDATE_EVENT_NONE)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Merges sample statistics, best sample and saved scores from another chain into this graph.
+	 */
+	private void mergeChain(GibbsChain chain)
+	{
+		final GibbsSolverGraph other = chain.getSolverGraph();
+		final boolean takeBestSample = !other._firstSample && (_firstSample || other._minPotential < _minPotential);
+		
+		for (Variable v : _factorGraph.getVariables())
+			requireNonNull(getSolverVariable(v)).mergeChainSamples(chain.getSolverVariable(v), takeBestSample);
+		
+		if (takeBestSample)
+		{
+			_minPotential = other._minPotential;
+			_firstSample = false;
+		}
+		
+		final DoubleArrayList scoreArray = _scoreArray;
+		final DoubleArrayList otherScoreArray = other._scoreArray;
+		if (scoreArray != null && otherScoreArray != null)
+			scoreArray.addAllOfFromTo(otherScoreArray, 0, otherScoreArray.size() - 1);
+		
+		// The other chain's samples have been copied into this graph's store.
+		other.closeSampleStore();
 	}
 	
 	/**
@@ -412,6 +689,9 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 	 */
 	public void sample(int numSamples)
 	{
+		// Sample values may have been changed since the last sample.
+		_sampleScore = Double.NaN;
+		
 		for (int sample = 0; sample < numSamples; sample++)
 			oneSample();
 	}
@@ -423,11 +703,43 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 	 * specified number of single-variable updates, regardless of other parameter settings.
 	 * The iterate() method behaves differently than for other solvers due to the fact that the
 	 * {@link #update()} method for Gibbs-specific schedules will update only a single variable.
-	 * Also, multithreaded operation for Gibbs is not supported
+	 * <p>
+	 * If the schedule was created by the {@link GibbsChromaticScheduler} and {@link #useMultithreading()}
+	 * is true, then the variables of each color will be updated concurrently when the updates span
+	 * the entire color.
 	 */
 	@Override
 	public void iterate(int numUpdates)
 	{
+		final GibbsColorSweeper colorSweeper = _colorSweeper;
+		if (colorSweeper != null)
+		{
+			_scheduleEntryIndex = colorSweeper.iterate(_scheduleEntryIndex, numUpdates);
+			
+			try {interruptCheck();}
+			catch (InterruptedException e) {return;}
+			return;
+		}
+		
+		final IScheduleEntry[] scheduleEntries = _scheduleEntries;
+		if (scheduleEntries != null)
+		{
+			final int nEntries = scheduleEntries.length;
+			int entryIndex = _scheduleEntryIndex;
+			for (int iterNum = 0; iterNum < numUpdates; iterNum++)
+			{
+				if (entryIndex == nEntries)
+					entryIndex = 0;		// Wrap-around the schedule if reached the end
+
+				scheduleEntries[entryIndex++].update();
+			}
+			_scheduleEntryIndex = entryIndex;
+			
+			try {interruptCheck();}
+			catch (InterruptedException e) {return;}
+			return;
+		}
+		
 		Iterator<IScheduleEntry> scheduleIterator = Objects.requireNonNull(_scheduleIterator);
 		final ISchedule schedule = Objects.requireNonNull(_schedule);
 		
@@ -445,24 +757,25 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 	}
 
 	
-	@SuppressWarnings("null")
 	protected void oneSample()
 	{
 		iterate(_updatesPerSample);
-		for (Variable v : _factorGraph.getVariables())
+		updateSamplingPlan();
+		final ISolverVariableGibbs[] sampleVariables = _sampleVariables;
+		for (ISolverVariableGibbs vs : sampleVariables)
 		{
-			ISolverVariableGibbs vs = getSolverVariable(v);
 			vs.updateBelief();
+			vs.updateSampleStatistics();
 			vs.saveCurrentSample();		// Note that the first sample saved is one full sample after burn in, not immediately after burn in (in case the burn in is zero)
 		}
 		
 		// Save the best sample value seen so far
-		final double totalPotential = getSampleScore();
+		final double totalPotential = currentSampleScore();
 		final boolean wasMininum = totalPotential < _minPotential || _firstSample;
 		if (wasMininum)
 		{
-			for (Variable v : _factorGraph.getVariables())
-				getSolverVariable(v).saveBestSample();
+			for (ISolverVariableGibbs vs : sampleVariables)
+				vs.saveBestSample();
 			_minPotential = totalPotential;
 			_firstSample = false;
 		}
@@ -494,6 +807,8 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 	@Override
 	public void postAdvance()
 	{
+		_sampleScore = Double.NaN;
+		
 		//In the case of rolled up graphs, we make sure we randomly restart
 		//the variables that are added to the end of the chain.
 		for (FactorGraphStream fgs : getModel().getFactorGraphStreams())
@@ -510,10 +825,19 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 	@SuppressWarnings("null")
 	public void randomRestart(int restartCount)
 	{
+		_sampleScore = Double.NaN;
 		deferDeterministicUpdates();
 		
 		for (Variable v : _factorGraph.getVariables())
-			getSolverVariable(v).randomRestart(restartCount);
+		{
+			final ISolverVariableGibbs svar = getSolverVariable(v);
+			svar.randomRestart(restartCount);
+			
+			// Samples following a restart are summarized as an independent segment.
+			final GibbsSampleStatistics statistics = svar.getSampleStatistics();
+			if (statistics != null)
+				statistics.startSegment();
+		}
 		
 		final ArrayList<IBlockInitializer> blockInitializers = _blockInitializers;
 		if (blockInitializers != null)
@@ -545,14 +869,122 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 	 */
 	public double getSampleScore()
 	{
+		updateSamplingPlan();
 		double totalPotential = 0;
-		for (Factor f : _factorGraph.getNonGraphFactors())
-			totalPotential += requireNonNull(getSolverFactor(f)).getPotential();
-		for (Variable v : _factorGraph.getVariables())		// Variables contribute too because they have inputs, which are factors
-			totalPotential += requireNonNull(getSolverVariable(v)).getPotential();
+		for (ISolverFactorGibbs sf : _sampleFactors)
+			totalPotential += sf.getPotential();
+		for (ISolverVariableGibbs sv : _sampleVariables)		// Variables contribute too because they have inputs, which are factors
+			totalPotential += sv.getPotential();
 		return totalPotential;
 	}
 	
+	/**
+	 * True if the score of the current sample is being maintained incrementally, in which case
+	 * variable and block updates should report the change in score they make by calling
+	 * {@link #addSampleScoreDelta(double)}.
+	 * <p>
+	 * This is only true on the root graph while sampling, when all of the entries in the schedule
+	 * are known to report their changes, and only after the score has been computed.
+	 * <p>
+	 * @since 0.08
+	 */
+	@Internal
+	public final boolean isTrackingSampleScore()
+	{
+		return !Double.isNaN(_sampleScore);
+	}
+	
+	/**
+	 * Adds the change in {@link #getSampleScore()} caused by a variable or block update.
+	 * <p>
+	 * Should only be invoked by updates when {@link #isTrackingSampleScore()} is true. A
+	 * change that is not finite causes the score to be recomputed for the next sample.
+	 * <p>
+	 * @since 0.08
+	 */
+	@Internal
+	public final void addSampleScoreDelta(double delta)
+	{
+		_sampleScore = Doubles.isFinite(delta) ? _sampleScore + delta : Double.NaN;
+	}
+	
+	/**
+	 * Returns the score of the current sample for {@link #oneSample()}, using the incrementally
+	 * maintained value unless it is time to recompute it.
+	 */
+	private double currentSampleScore()
+	{
+		double score = _sampleScore;
+		if (Double.isNaN(score) || --_samplesUntilScoreRecompute <= 0)
+		{
+			score = getSampleScore();
+			_sampleScore = _trackSampleScore && Doubles.isFinite(score) ? score : Double.NaN;
+			_samplesUntilScoreRecompute = _scoreRecomputeInterval;
+		}
+		return score;
+	}
+	
+	/**
+	 * True if all of the schedule entries report the change in score they make. Variable updates of the
+	 * standard Gibbs variable types and {@link BlockMHSampler} block updates do so.
+	 */
+	private boolean supportsScoreTracking(@Nullable IScheduleEntry[] entries)
+	{
+		if (entries == null)
+		{
+			return false;
+		}
+		
+		for (IScheduleEntry entry : entries)
+		{
+			if (entry instanceof NodeScheduleEntry)
+			{
+				final INode node = ((NodeScheduleEntry)entry).getNode();
+				if (node instanceof Variable)
+				{
+					final ISolverVariableGibbs svar = getSolverVariable((Variable)node);
+					if (svar instanceof GibbsDiscrete || svar instanceof GibbsReal || svar instanceof GibbsRealJoint)
+					{
+						continue;
+					}
+				}
+			}
+			else if (entry instanceof BlockScheduleEntry)
+			{
+				if (((BlockScheduleEntry)entry).getBlockUpdater() instanceof BlockMHSampler)
+				{
+					continue;
+				}
+			}
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Rebuilds the solver variable and factor arrays used by {@link #oneSample()} and
+	 * {@link #getSampleScore()} if the graph structure has changed since they were last built.
+	 */
+	private void updateSamplingPlan()
+	{
+		final long version = _factorGraph.globalStructureVersion();
+		if (_samplingPlanVersion != version)
+		{
+			final ArrayList<ISolverVariableGibbs> variables = new ArrayList<ISolverVariableGibbs>();
+			for (Variable v : _factorGraph.getVariables())
+				variables.add(requireNonNull(getSolverVariable(v)));
+			_sampleVariables = variables.toArray(new ISolverVariableGibbs[variables.size()]);
+			
+			final ArrayList<ISolverFactorGibbs> factors = new ArrayList<ISolverFactorGibbs>();
+			for (Factor f : _factorGraph.getNonGraphFactors())
+				factors.add(requireNonNull(getSolverFactor(f)));
+			_sampleFactors = factors.toArray(new ISolverFactorGibbs[factors.size()]);
+			
+			_samplingPlanVersion = version;
+		}
+	}
+	
 	/**
 	 * Returns the lowest value of {@link #getSampleScore()} discovered since initialization.
 	 * <p>
@@ -618,6 +1050,44 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 			return null;
 	}
 	
+	/**
+	 * The store in which variables have saved their samples, or null if samples are saved in memory.
+	 * <p>
+	 * Only non-null for the root graph when {@link GibbsOptions#sampleStoreDirectory} is set on it
+	 * and some variable is saving its samples. The store is closed,
+	 * deleting the samples, when the graph is next initialized.
+	 * <p>
+	 * @since 0.08
+	 */
+	public final @Nullable GibbsSampleStore getSampleStore()
+	{
+		return _sampleStore;
+	}
+	
+	/**
+	 * The store in which variables should save their samples, or null if they should be saved in memory.
+	 * <p>
+	 * Must be invoked on the root graph. On first use after initialization, looks up
+	 * {@link GibbsOptions#sampleStoreDirectory} on this graph and creates the store if it is non-empty.
+	 */
+	@Nullable GibbsSampleStore requireSampleStore()
+	{
+		GibbsSampleStore store = _sampleStore;
+		if (store == null)
+		{
+			String directory = _sampleStoreDirectory;
+			if (directory == null)
+			{
+				directory = _sampleStoreDirectory = getOptionOrDefault(GibbsOptions.sampleStoreDirectory);
+			}
+			if (!directory.isEmpty())
+			{
+				store = _sampleStore = new GibbsSampleStore(new File(directory));
+			}
+		}
+		return store;
+	}
+	
 	/**
 	 * Get the rejection rate of the sampler for variables and block entries for which it applies
 	 * @return rejection rate
@@ -722,6 +1192,18 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 		return _numSamples;
 	}
 	
+	/**
+	 * Number of independent chains to run concurrently during solve.
+	 * <p>
+	 * Set automatically from the {@link GibbsOptions#numChains} option during {@link #initialize}.
+	 * <p>
+	 * @since 0.08
+	 */
+	public int getNumChains()
+	{
+		return _numChains;
+	}
+	
 	/**
 	 * @deprecated This method will be removed in a future release.
 	 */
@@ -764,6 +1246,19 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 		setUpdatesPerSampleFromScans();
 	}
 	
+	/**
+	 * The number of single variable updates in one scan of the graph.
+	 * <p>
+	 * This is the size of the schedule, if it has been created, or else the number of variables.
+	 * <p>
+	 * @since 0.08
+	 */
+	public int getUpdatesPerScan()
+	{
+		final IGibbsSchedule schedule = _schedule;
+		return schedule != null ? schedule.size() : _factorGraph.getVariableCount();
+	}
+	
 	/**
 	 * Updates the value of {@link _updatesPerSample} based on {@link _scansPerSample} and
 	 * the current number of variables in the graph.
@@ -772,8 +1267,7 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 	{
 		if (_scansPerSample > 0)
 		{
-			final IGibbsSchedule schedule = _schedule;
-			_updatesPerSample = _scansPerSample * (schedule != null ? schedule.size() : _factorGraph.getVariableCount());
+			_updatesPerSample = _scansPerSample * getUpdatesPerScan();
 		}
 	}
 	
@@ -825,8 +1319,7 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 	{
 		if (_burnInScans > 0)
 		{
-			final IGibbsSchedule schedule = _schedule;
-			_burnInUpdates = _burnInScans * (schedule != null ? schedule.size() : _factorGraph.getVariableCount());
+			_burnInUpdates = _burnInScans * getUpdatesPerScan();
 		}
 	}
 
@@ -1157,6 +1650,32 @@ public class GibbsSolverGraph extends SFactorGraphBase //implements ISolverFacto
 		return false;
 	}
 	
+	/**
+	 * Sets {@link SolverOptions#enableMultithreading} option on this object.
+	 * <p>
+	 * The Gibbs solver only makes use of multiple threads when using the {@link GibbsChromaticScheduler}.
+	 * Takes effect on next initialization.
+	 * <p>
+	 * @since 0.08
+	 */
+	@Override
+	public void useMultithreading(boolean use)
+	{
+		setOption(SolverOptions.enableMultithreading, use);
+	}
+	
+	/**
+	 * The value of the {@link SolverOptions#enableMultithreading} option for this object.
+	 * <p>
+	 * @since 0.08
+	 * @see #useMultithreading(boolean)
+	 */
+	@Override
+	public boolean useMultithreading()
+	{
+		return getOptionOrDefault(SolverOptions.enableMultithreading);
+	}
+	
 	public void addBlockInitializer(IBlockInitializer blockInitializer)
 	{
 		ArrayList<IBlockInitializer> blockInitializers = _blockInitializers;
@@ -34,10 +34,10 @@ public abstract class GibbsSolverGraphEvent extends SolverGraphEvent
 	
 	private static final long serialVersionUID = 1L;
 	
-	final static int GRAPH_EVENT_MASK   = 0xFFFF7000;
-	final static int GRAPH_EVENTS_KNOWN = 0xFFFF1000;
-	final static int GRAPH_BURNIN       = 0xFFFF2000;
-	final static int GRAPH_SAMPLE_STATS = 0xFFFF4000;
+	final static int GRAPH_EVENT_MASK   = 0x00007000;
+	final static int GRAPH_EVENTS_KNOWN = 0x00001000;
+	final static int GRAPH_BURNIN       = 0x00002000;
+	final static int GRAPH_SAMPLE_STATS = 0x00004000;
 
 	/*--------------
 	 * Construction
@@ -52,6 +52,17 @@ public class GibbsTableFactor extends STableFactorBase implements ISolverFactorG
     protected double[][] _outPortMsgs = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
     protected boolean _isDeterministicDirected;
     private boolean _visited = false;
+    
+    /**
+     * Reusable buffer for current sample indices, sized to the number of ports.
+     */
+    private int[] _indices = ArrayUtil.EMPTY_INT_ARRAY;
+    
+    /**
+     * Reusable argument for {@link FactorFunction#updateEnergy} for each port, created by {@link #initialize()}
+     * when the factor table has not been computed.
+     */
+    private @Nullable IndexedValue[][] _changedValues = null;
 	private int _topologicalOrder = 0;
     
     /*--------------
@@ -100,7 +111,7 @@ public class GibbsTableFactor extends STableFactorBase implements ISolverFactorG
 		final IFactorTable factorTable = getFactorTableIfComputed();
 		if (factorTable != null)
 		{
-			int[] inPortMsgs = new int[numPorts];
+			final int[] inPortMsgs = _indices;
 			for (int port = 0; port < numPorts; port++)
 				inPortMsgs[port] = _inPortMsgs[port].getIndex();
 
@@ -120,8 +131,14 @@ public class GibbsTableFactor extends STableFactorBase implements ISolverFactorG
 
 			if (function.useUpdateEnergy(_inPortMsgs, 1))
 			{
-				final Value prevValue = changedValue.clone();
-				final IndexedValue[] changedValues = new IndexedValue[] { new IndexedValue(outPortNum, prevValue) };
+				IndexedValue[][] changedValuesByPort = _changedValues;
+				if (changedValuesByPort == null)
+				{
+					// Messages were recreated since initialization
+					_changedValues = changedValuesByPort = createChangedValues();
+				}
+				final IndexedValue[] changedValues = changedValuesByPort[outPortNum];
+				final Value prevValue = changedValues[0].getValue();
 
 				double energy = outMessage[0];
 				for (int i = 1; i < sliceLength; ++i)
@@ -161,7 +178,7 @@ public class GibbsTableFactor extends STableFactorBase implements ISolverFactorG
 		}
 		
 		final int size = _inPortMsgs.length;
-		int[] inPortMsgs = new int[size];
+		final int[] inPortMsgs = _indices;
 		for (int port = 0; port < size; port++)
 			inPortMsgs[port] = _inPortMsgs[port].getIndex();
 
@@ -225,6 +242,8 @@ public class GibbsTableFactor extends STableFactorBase implements ISolverFactorG
     	
 	    _inPortMsgs = new DiscreteValue[size];
 	    _outPortMsgs = new double[size][];
+	    _indices = new int[size];
+	    _changedValues = null;
 	    
 	    for (int port = 0; port < size; port++)
 	    {
@@ -241,6 +260,7 @@ public class GibbsTableFactor extends STableFactorBase implements ISolverFactorG
 	{
 		super.initialize();
 		_isDeterministicDirected = _factor.getFactorFunction().isDeterministicDirected();
+		_changedValues = !_isDeterministicDirected && getFactorTableIfComputed() == null ? createChangedValues() : null;
 	}
 	
 	@Override
@@ -296,4 +316,23 @@ public class GibbsTableFactor extends STableFactorBase implements ISolverFactorG
 		_visited = visited;
 		return changed;
 	}
+
+	/*-----------------
+	 * Private methods
+	 */
+	
+	/**
+	 * Creates an argument for {@link FactorFunction#updateEnergy} for each port, holding a copy of
+	 * the port's current value.
+	 */
+	private IndexedValue[][] createChangedValues()
+	{
+		final int numPorts = _inPortMsgs.length;
+		final IndexedValue[][] changedValues = new IndexedValue[numPorts][];
+		for (int port = 0; port < numPorts; ++port)
+		{
+			changedValues[port] = new IndexedValue[] { new IndexedValue(port, _inPortMsgs[port].clone()) };
+		}
+		return changedValues;
+	}
 }
@@ -46,6 +46,14 @@ public interface ISolverVariableGibbs extends ISolverNodeGibbs, ISolverVariable,
 	 */
 	public Object getAllSamples();
 	
+	/**
+	 * Streaming summary statistics of the samples of this variable, or null if they are not being computed.
+	 * <p>
+	 * @since 0.08
+	 * @see GibbsOptions#computeSampleStatistics
+	 */
+	public @Nullable GibbsSampleStatistics getSampleStatistics();
+	
 	/**
 	 * Sampler instance for generating samples for this variable.
 	 * 
@@ -88,6 +96,12 @@ public interface ISolverVariableGibbs extends ISolverNodeGibbs, ISolverVariable,
 	// Internal methods
 	@Internal
 	public void updateBelief();
+	/**
+	 * Adds the current sample to the {@linkplain #getSampleStatistics() sample statistics}, if any.
+	 * @since 0.08
+	 */
+	@Internal
+	public void updateSampleStatistics();
 	@Internal
 	public void randomRestart(int restartCount);
 	@Internal
@@ -97,4 +111,19 @@ public interface ISolverVariableGibbs extends ISolverNodeGibbs, ISolverVariable,
 	public long getUpdateCount();
 	@Internal
 	public long getRejectionCount();
+	
+	/**
+	 * Adds sample statistics from the corresponding variable in an independent chain.
+	 * <p>
+	 * Adds the belief statistics, saved samples, sample statistics and sampler update statistics accumulated by
+	 * {@code other}, which must be the same type of solver variable for a copy of this
+	 * variable's model object.
+	 * <p>
+	 * @param takeBestSample if true, the best sample value of {@code other} will replace this variable's
+	 * best sample value.
+	 * @since 0.08
+	 * @see GibbsOptions#numChains
+	 */
+	@Internal
+	public void mergeChainSamples(ISolverVariableGibbs other, boolean takeBestSample);
 }
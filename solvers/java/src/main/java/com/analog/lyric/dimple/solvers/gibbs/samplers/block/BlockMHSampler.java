@@ -135,9 +135,14 @@ public class BlockMHSampler implements IBlockMCMCSampler, IBlockInitializer
 			else
 				rejectionThreshold = 0;
 		}
-		if (DimpleRandomGenerator.rand.nextDouble() < rejectionThreshold)
+		if (DimpleRandomGenerator.rand().nextDouble() < rejectionThreshold)
 		{
 			setNextSampleValue(proposalValue);		// Accept
+			
+			// Scores of the block variables and their neighbors account for the entire change in graph score
+			final GibbsSolverGraph sRootGraph = _sRootGraph;
+			if (sRootGraph != null && sRootGraph.isTrackingSampleScore())
+				sRootGraph.addSampleScoreDelta(LProposed - LPrevious);
 		}
 		else
 		{
@@ -72,7 +72,7 @@ public class BetaSampler implements IRealConjugateSampler
 	{
 		double alphaMinusOne = parameters.getAlphaMinusOne();
 		double betaMinusOne = parameters.getBetaMinusOne();
-		return DimpleRandomGenerator.randBeta.nextDouble(alphaMinusOne + 1, betaMinusOne + 1);
+		return DimpleRandomGenerator.randBeta().nextDouble(alphaMinusOne + 1, betaMinusOne + 1);
 	}
 	
 	@Override
@@ -44,7 +44,7 @@ public class CDFSampler extends AbstractGenericSampler implements IDiscreteDirec
 	@Override
 	public void nextSample(DiscreteValue sampleValue, double[] energy, double minEnergy, IDiscreteSamplerClient samplerClient)
 	{
-		final RandomGenerator rand = DimpleRandomGenerator.rand;
+		final RandomGenerator rand = DimpleRandomGenerator.rand();
 		final int length = energy.length;
 		int sampleIndex;
 
@@ -19,6 +19,7 @@ package com.analog.lyric.dimple.solvers.gibbs.samplers.generic;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.apache.commons.math3.random.RandomGenerator;
 import org.eclipse.jdt.annotation.Nullable;
 
 import com.analog.lyric.dimple.model.domains.Domain;
@@ -95,14 +96,16 @@ public class SliceSampler extends AbstractGenericSampler implements IMCMCSampler
 	public double sampleVerticalSlice(ISamplerClient samplerClient)
 	{
 		final double yValue = samplerClient.getCurrentSampleScore();
-		return yValue - Math.log(DimpleRandomGenerator.rand.nextDouble());
+		return yValue - Math.log(DimpleRandomGenerator.rand().nextDouble());
 	}
 
 	// Sample horizontal slice using doubling method
 	public double sampleHorizontalSlice(double x, double y, IRealSamplerClient samplerClient)
 	{
+		final RandomGenerator rand = DimpleRandomGenerator.rand();
+		
 		// First finding slice using doubling method
-		double L = x - _initialSliceWidth * DimpleRandomGenerator.rand.nextDouble();
+		double L = x - _initialSliceWidth * rand.nextDouble();
 		double R = L + _initialSliceWidth;
 		double fL = samplerClient.getSampleScore(L);
 		double fR = samplerClient.getSampleScore(R);
@@ -110,7 +113,7 @@ public class SliceSampler extends AbstractGenericSampler implements IMCMCSampler
 		{
 			if (y <= fL && y <= fR)
 				break;
-			if (DimpleRandomGenerator.rand.nextBoolean())	// Flip a coin
+			if (rand.nextBoolean())	// Flip a coin
 			{
 				L -= (R - L);
 				fL = samplerClient.getSampleScore(L);
@@ -128,7 +131,7 @@ public class SliceSampler extends AbstractGenericSampler implements IMCMCSampler
 		double Rs = R;
 		while (true)
 		{
-			xSample = Ls + (Rs - Ls) * DimpleRandomGenerator.rand.nextDouble();
+			xSample = Ls + (Rs - Ls) * rand.nextDouble();
 			double fSample = samplerClient.getSampleScore(xSample);
 			
 			if (y >= fSample && accept(xSample, x, y, L, R, samplerClient))
@@ -43,7 +43,7 @@ public class SuwaTodoSampler extends AbstractGenericSampler implements IDiscrete
 	@Override
 	public void nextSample(DiscreteValue sampleValue, double[] energy, double minEnergy, IDiscreteSamplerClient samplerClient)
 	{
-		RandomGenerator rand = DimpleRandomGenerator.rand;
+		RandomGenerator rand = DimpleRandomGenerator.rand();
 		final int length = energy.length;
 		int sampleIndex;
 
@@ -0,0 +1,1056 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.junctiontree;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.Node;
+import com.analog.lyric.dimple.model.domains.JointDomainIndexer;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.factors.FactorList;
+import com.analog.lyric.dimple.model.transform.JunctionTreeTransformMap;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.model.variables.VariableList;
+import com.analog.lyric.dimple.solvers.core.STableFactorDoubleArray;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph;
+import com.analog.lyric.dimple.solvers.minsum.MessageConverter;
+import com.analog.lyric.dimple.solvers.minsum.MinSumSolverGraph;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
+
+/**
+ * Calibrates the tree produced by a {@link JunctionTreeTransformMap} using Hugin propagation over
+ * flat potential arrays.
+ * <p>
+ * Every factor of the transformed graph is a clique and every variable a separator. Variables are
+ * also given a potential of their own, holding their input, so that a variable shared by more than
+ * two cliques needs no special treatment. All potentials live in one contiguous array and all separator
+ * messages in another. A clique whose table has an entry for every joint index is marginalized and
+ * extended using the {@linkplain JointDomainIndexer#getStride strides} of its domain indexer. Otherwise
+ * an index map from each sparse table entry to the element index of each variable is precomputed from
+ * the table's sparse indices. Either way a propagation pass streams through the clique arrays in order
+ * without visiting any model or solver objects.
+ * <p>
+ * Calibration is incremental. Each {@link #run} compares the variable inputs and factor tables against
+ * the values used previously and only marks the messages leading away from nodes that changed as stale.
+ * Stale messages are then either all recomputed, or, for lazy propagation, left until
+ * {@link #propagateTo(Node)} is asked for the messages into a particular node, at which point only the
+ * stale messages on the paths between the changed nodes and that node (via the root of the tree) are
+ * recomputed.
+ * <p>
+ * Sum-product delegates are calibrated using weights and min-sum delegates using energies. Each
+ * recomputed message is copied to the delegate's solver factor, so beliefs, scores and other results
+ * are obtained from the delegate as usual.
+ * <p>
+ * @since 0.08
+ */
+final class CliqueTreeEngine
+{
+	/*-------
+	 * State
+	 */
+
+	private final JunctionTreeTransformMap _transformMap;
+	private final boolean _minSum;
+
+	private final Discrete[] _variables;
+	private final STableFactorDoubleArray[] _factors;
+
+	/**
+	 * Index of each node of the target graph. Nodes [0, nVariables) are the variables, followed by the
+	 * factors.
+	 */
+	private final Map<Node,Integer> _nodeIndices;
+
+	/**
+	 * Offset of each node's potential in {@link #_potentials} and {@link #_base}. The last entry is the
+	 * total length.
+	 */
+	private final int[] _potentialOffsets;
+
+	/**
+	 * Potential of each node as loaded from the variable inputs and factor tables.
+	 */
+	private final double[] _base;
+
+	/**
+	 * Working potential of each node: the base potential combined with the messages from the node's children
+	 * if {@link #_collected}, and also with the message from its parent if {@link #_calibrated}.
+	 */
+	private final double[] _potentials;
+	private final boolean[] _collected;
+	private final boolean[] _calibrated;
+
+	/**
+	 * Edges of each factor are contiguous, starting at {@code _factorEdges[factor]}.
+	 */
+	private final int[] _factorEdges;
+	private final int[] _edgeFactor;
+	private final int[] _edgeVariable;
+
+	/**
+	 * Edges of each variable are listed in {@link #_variableEdges} starting at
+	 * {@code _variableEdgeStarts[variable]}.
+	 */
+	private final int[] _variableEdgeStarts;
+	private final int[] _variableEdges;
+
+	/**
+	 * Stride of the edge's variable in the factor's joint index or zero if {@link #_edgeIndexMaps}
+	 * is used instead.
+	 */
+	private final int[] _edgeStrides;
+	private final int[] _edgeSizes;
+	private final int[][] _edgeIndexMaps;
+
+	/**
+	 * Offset of the message from child to parent in {@link #_messages}. The message from parent to child
+	 * immediately follows it.
+	 */
+	private final int[] _messageOffsets;
+	private final double[] _messages;
+
+	/**
+	 * Whether the message from child to parent (at index {@code 2*edge}) or from parent to child (at
+	 * {@code 2*edge+1}) needs to be recomputed. If a message is stale, so are all messages leading
+	 * further away from its sender.
+	 */
+	private final boolean[] _stale;
+
+	/**
+	 * Edges in breadth-first order from the root of each tree.
+	 */
+	private final int[] _schedule;
+	private final boolean[] _childIsFactor;
+
+	/**
+	 * Edge connecting each node to its parent, or -1 for roots.
+	 */
+	private final int[] _parentEdge;
+
+	/**
+	 * Scratch space for {@link #marginalize} with room for four messages of the largest domain.
+	 */
+	private final double[] _partials;
+
+	/**
+	 * Scratch space for tree traversals.
+	 */
+	private final int[] _stack;
+	private final int[] _path;
+
+	private boolean _loaded = false;
+	private int _messagesComputed = 0;
+
+	/*--------------
+	 * Construction
+	 */
+
+	private CliqueTreeEngine(JunctionTreeTransformMap transformMap, boolean minSum, Map<Node,Integer> nodeIndices,
+		Discrete[] variables, STableFactorDoubleArray[] factors, int[] factorEdges, int[] edgeVariable)
+	{
+		_transformMap = transformMap;
+		_minSum = minSum;
+		_nodeIndices = nodeIndices;
+		_variables = variables;
+		_factors = factors;
+		_factorEdges = factorEdges;
+		_edgeVariable = edgeVariable;
+
+		final int nVariables = variables.length;
+		final int nFactors = factors.length;
+		final int nNodes = nVariables + nFactors;
+		final int nEdges = edgeVariable.length;
+
+		_edgeFactor = new int[nEdges];
+		_edgeStrides = new int[nEdges];
+		_edgeSizes = new int[nEdges];
+		_edgeIndexMaps = new int[nEdges][];
+		_messageOffsets = new int[nEdges];
+		_potentialOffsets = new int[nNodes + 1];
+
+		// Compressed lists of edges by variable
+		_variableEdgeStarts = new int[nVariables + 1];
+		for (int e = 0; e < nEdges; ++e)
+		{
+			++_variableEdgeStarts[edgeVariable[e] + 1];
+		}
+		for (int v = 0; v < nVariables; ++v)
+		{
+			_variableEdgeStarts[v + 1] += _variableEdgeStarts[v];
+		}
+		_variableEdges = new int[nEdges];
+		final int[] fill = Arrays.copyOf(_variableEdgeStarts, nVariables);
+		for (int e = 0; e < nEdges; ++e)
+		{
+			_variableEdges[fill[edgeVariable[e]]++] = e;
+		}
+
+		int potentialSize = 0;
+		for (int v = 0; v < nVariables; ++v)
+		{
+			_potentialOffsets[v] = potentialSize;
+			potentialSize += variables[v].getDomain().size();
+		}
+
+		int messageSize = 0, maxSize = 0;
+		for (int f = 0; f < nFactors; ++f)
+		{
+			final IFactorTable table = factors[f].getFactorTable();
+			final JointDomainIndexer indexer = table.getDomainIndexer();
+			final int nEntries = sparseValues(table).length;
+			final boolean dense = table.supportsJointIndexing() && nEntries == indexer.getCardinality();
+			final @Nullable int[][] indices = dense ? null : table.getIndicesSparseUnsafe();
+
+			_potentialOffsets[nVariables + f] = potentialSize;
+			potentialSize += nEntries;
+
+			for (int e = factorEdges[f], end = factorEdges[f + 1]; e < end; ++e)
+			{
+				final int port = e - factorEdges[f];
+				final int size = indexer.getDomainSize(port);
+				_edgeFactor[e] = f;
+				_edgeSizes[e] = size;
+				maxSize = Math.max(maxSize, size);
+				_messageOffsets[e] = messageSize;
+				messageSize += 2 * size;
+
+				if (indices == null)
+				{
+					_edgeStrides[e] = indexer.getStride(port);
+				}
+				else
+				{
+					final int[] map = new int[nEntries];
+					for (int i = 0; i < nEntries; ++i)
+					{
+						map[i] = indices[i][port];
+					}
+					_edgeIndexMaps[e] = map;
+				}
+			}
+		}
+		_potentialOffsets[nNodes] = potentialSize;
+
+		_base = new double[potentialSize];
+		_potentials = new double[potentialSize];
+		_collected = new boolean[nNodes];
+		_calibrated = new boolean[nNodes];
+		_messages = new double[messageSize];
+		_stale = new boolean[2 * nEdges];
+		Arrays.fill(_stale, true);
+		_schedule = new int[nEdges];
+		_childIsFactor = new boolean[nEdges];
+		_parentEdge = new int[nNodes];
+		_partials = new double[4 * maxSize];
+		_stack = new int[2 * nNodes];
+		_path = new int[nNodes];
+	}
+
+	/**
+	 * Creates engine for the target of {@code transformMap}, or returns null if the target graph cannot
+	 * be handled.
+	 * <p>
+	 * The target must be a forest whose variables are all discrete, whose factors all have table
+	 * factors with no repeated variables, and whose solver is either sum-product or min-sum.
+	 */
+	static @Nullable CliqueTreeEngine create(JunctionTreeTransformMap transformMap)
+	{
+		final FactorGraph graph = transformMap.target();
+
+		final ISolverFactorGraph sgraph = graph.getSolver();
+		final boolean minSum;
+		if (sgraph instanceof SumProductSolverGraph)
+		{
+			minSum = false;
+		}
+		else if (sgraph instanceof MinSumSolverGraph)
+		{
+			minSum = true;
+		}
+		else
+		{
+			return null;
+		}
+
+		final VariableList variableList = graph.getVariables();
+		final FactorList factorList = graph.getFactors();
+		final int nVariables = variableList.size();
+		final int nFactors = factorList.size();
+		final Map<Node,Integer> nodeIndices = new HashMap<Node,Integer>((nVariables + nFactors) * 2);
+		final Discrete[] variables = new Discrete[nVariables];
+		for (int v = 0; v < nVariables; ++v)
+		{
+			final Variable variable = variableList.getByIndex(v);
+			if (!(variable instanceof Discrete))
+			{
+				return null;
+			}
+			nodeIndices.put(variable, v);
+			variables[v] = (Discrete)variable;
+		}
+
+		final STableFactorDoubleArray[] factors = new STableFactorDoubleArray[nFactors];
+		final int[] factorEdges = new int[nFactors + 1];
+		for (int f = 0; f < nFactors; ++f)
+		{
+			final Factor factor = factorList.getByIndex(f);
+			final ISolverFactor sfactor = factor.getSolver();
+			if (!(sfactor instanceof STableFactorDoubleArray))
+			{
+				return null;
+			}
+			nodeIndices.put(factor, nVariables + f);
+			factors[f] = (STableFactorDoubleArray)sfactor;
+			factorEdges[f + 1] = factorEdges[f] + factor.getSiblingCount();
+		}
+		final int nEdges = factorEdges[nFactors];
+
+		final int[] edgeVariable = new int[nEdges];
+		for (int f = 0; f < nFactors; ++f)
+		{
+			final Factor factor = factors[f].getFactor();
+			for (int e = factorEdges[f], end = factorEdges[f + 1]; e < end; ++e)
+			{
+				final Integer v = nodeIndices.get(factor.getSibling(e - factorEdges[f]));
+				if (v == null || v >= nVariables)
+				{
+					return null;
+				}
+				edgeVariable[e] = v;
+			}
+			for (int e = factorEdges[f], end = factorEdges[f + 1]; e < end; ++e)
+			{
+				for (int e2 = e + 1; e2 < end; ++e2)
+				{
+					if (edgeVariable[e] == edgeVariable[e2])
+					{
+						return null;
+					}
+				}
+			}
+		}
+
+		final CliqueTreeEngine engine = new CliqueTreeEngine(transformMap, minSum, nodeIndices, variables, factors,
+			factorEdges, edgeVariable);
+		return engine.buildSchedule() ? engine : null;
+	}
+
+	/**
+	 * Fills in {@link #_schedule} with edges in breadth-first order starting from the first
+	 * variable of each connected component. Returns false if the graph has a cycle.
+	 */
+	private boolean buildSchedule()
+	{
+		final int nNodes = _parentEdge.length;
+		final boolean[] visited = new boolean[nNodes];
+		final int[] queue = new int[nNodes];
+		int nScheduled = 0;
+
+		for (int root = 0; root < nNodes; ++root)
+		{
+			if (visited[root])
+			{
+				continue;
+			}
+			visited[root] = true;
+			_parentEdge[root] = -1;
+			int head = 0, tail = 0;
+			queue[tail++] = root;
+
+			while (head < tail)
+			{
+				final int node = queue[head++];
+				final boolean isFactor = node >= _variables.length;
+
+				for (int i = edgesStart(node), end = edgesEnd(node); i < end; ++i)
+				{
+					final int e = isFactor ? i : _variableEdges[i];
+					if (e == _parentEdge[node])
+					{
+						continue;
+					}
+					final int child = isFactor ? _edgeVariable[e] : _variables.length + _edgeFactor[e];
+					if (visited[child])
+					{
+						return false;
+					}
+					visited[child] = true;
+					_parentEdge[child] = e;
+					queue[tail++] = child;
+					_schedule[nScheduled++] = e;
+					_childIsFactor[e] = !isFactor;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/*---------
+	 * Methods
+	 */
+
+	JunctionTreeTransformMap getTransformMap()
+	{
+		return _transformMap;
+	}
+
+	/**
+	 * The number of messages computed since the start of the most recent {@link #run}, including those
+	 * computed lazily by {@link #propagateTo(Node)} and {@link #propagateAll()}.
+	 */
+	int getMessagesComputed()
+	{
+		return _messagesComputed;
+	}
+
+	/**
+	 * Updates the tree using the current variable inputs and factor tables and copies the messages
+	 * to the delegate solver.
+	 * <p>
+	 * Only messages affected by inputs or tables that changed since the previous run are recomputed.
+	 * If {@code lazy} is true, even those are left stale until requested using {@link #propagateTo(Node)}
+	 * or {@link #propagateAll()}.
+	 * <p>
+	 * Returns false without updating the delegate if a factor table no longer has the same number
+	 * of entries as when the engine was created, in which case a new engine should be created.
+	 */
+	boolean run(boolean lazy)
+	{
+		_messagesComputed = 0;
+
+		if (!loadPotentials())
+		{
+			return false;
+		}
+
+		if (!lazy)
+		{
+			propagateAll();
+		}
+
+		// The delegate's messages are reset whenever it is initialized, so copy all of them.
+		storeMessages();
+
+		return true;
+	}
+
+	/**
+	 * Recomputes all stale messages.
+	 */
+	void propagateAll()
+	{
+		final int[] schedule = _schedule;
+		final boolean[] stale = _stale;
+
+		// Collect from leaves to roots
+		for (int i = schedule.length; --i >= 0;)
+		{
+			final int e = schedule[i];
+			if (stale[2 * e])
+			{
+				sendUp(e);
+			}
+		}
+
+		// Distribute from roots to leaves
+		for (int e : schedule)
+		{
+			if (stale[2 * e + 1])
+			{
+				sendDown(e);
+			}
+		}
+	}
+
+	/**
+	 * Recomputes any stale messages needed to compute the messages into the given node of the target
+	 * graph. Does nothing if the node does not belong to the target graph.
+	 */
+	void propagateTo(Node node)
+	{
+		final Integer index = _nodeIndices.get(node);
+		if (index != null)
+		{
+			propagateTo(index.intValue());
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Loads the base potential of every node, marking the messages leading away from any node whose
+	 * potential has changed as stale.
+	 */
+	private boolean loadPotentials()
+	{
+		final double[] base = _base;
+		final int nVariables = _variables.length;
+
+		for (int node = 0, nNodes = _parentEdge.length; node < nNodes; ++node)
+		{
+			final double[] values;
+			if (node < nVariables)
+			{
+				final double[] input = _variables[node].getInput();
+				values = _minSum ? MessageConverter.fromProb(input) : input;
+			}
+			else
+			{
+				values = sparseValues(_factors[node - nVariables].getFactorTable());
+			}
+
+			final int offset = _potentialOffsets[node];
+			final int size = values.length;
+			if (size != _potentialOffsets[node + 1] - offset)
+			{
+				return false;
+			}
+
+			boolean changed = !_loaded;
+			for (int i = 0; i < size && !changed; ++i)
+			{
+				// Compare bit patterns so that a NaN input is still considered unchanged
+				changed = Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(base[offset + i]);
+			}
+			if (changed)
+			{
+				System.arraycopy(values, 0, base, offset, size);
+				invalidate(node);
+			}
+		}
+
+		_loaded = true;
+		return true;
+	}
+
+	/**
+	 * Marks all messages leading away from {@code node} as stale, stopping at any message that is already
+	 * stale since those beyond it must already be stale as well.
+	 */
+	private void invalidate(int node)
+	{
+		final int[] stack = _stack;
+		final boolean[] stale = _stale;
+
+		_collected[node] = _calibrated[node] = false;
+
+		int top = 0;
+		stack[top++] = node;
+		stack[top++] = -1;
+		while (top > 0)
+		{
+			final int from = stack[--top];
+			final int sender = stack[--top];
+			final boolean isFactor = sender >= _variables.length;
+
+			for (int i = edgesStart(sender), end = edgesEnd(sender); i < end; ++i)
+			{
+				final int e = isFactor ? i : _variableEdges[i];
+				if (e == from)
+				{
+					continue;
+				}
+				final boolean toParent = e == _parentEdge[sender];
+				final int message = toParent ? 2 * e : 2 * e + 1;
+				if (!stale[message])
+				{
+					stale[message] = true;
+					stack[top++] = toParent ? parentNode(e) : childNode(e);
+					stack[top++] = e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Recomputes any stale messages into {@code node}. Stale messages from the node's parent are
+	 * recomputed from the top down, after the stale messages in each parent's subtree that they
+	 * depend on.
+	 */
+	private void propagateTo(int node)
+	{
+		final int[] path = _path;
+		final boolean[] stale = _stale;
+
+		int nPath = 0;
+		for (int n = node, e; (e = _parentEdge[n]) >= 0 && stale[2 * e + 1]; n = parentNode(e))
+		{
+			path[nPath++] = e;
+		}
+
+		while (--nPath >= 0)
+		{
+			final int e = path[nPath];
+			collectTo(parentNode(e));
+			sendDown(e);
+		}
+
+		collectTo(node);
+	}
+
+	/**
+	 * Recomputes any stale messages from children in the subtree rooted at {@code node}.
+	 */
+	private void collectTo(int node)
+	{
+		final int[] edges = _stack;
+		final boolean[] stale = _stale;
+
+		// Stale upward messages lead to the root, so only follow those.
+		int head = 0, tail = 0;
+		for (int n = node; ; n = childNode(edges[head++]))
+		{
+			final boolean isFactor = n >= _variables.length;
+			for (int i = edgesStart(n), end = edgesEnd(n); i < end; ++i)
+			{
+				final int e = isFactor ? i : _variableEdges[i];
+				if (e != _parentEdge[n] && stale[2 * e])
+				{
+					edges[tail++] = e;
+				}
+			}
+			if (head == tail)
+			{
+				break;
+			}
+		}
+
+		// Breadth-first order reversed visits children before parents.
+		while (--tail >= 0)
+		{
+			sendUp(edges[tail]);
+		}
+	}
+
+	/**
+	 * Computes message from child to parent across edge {@code e}. The messages into the child from its
+	 * own children must be current.
+	 */
+	private void sendUp(int e)
+	{
+		final int child = childNode(e), parent = parentNode(e);
+		final int offset = _messageOffsets[e];
+
+		if (!_collected[child])
+		{
+			collect(child);
+		}
+		send(child, e, offset);
+		normalize(offset, _edgeSizes[e]);
+
+		_stale[2 * e] = false;
+		_collected[parent] = _calibrated[parent] = false;
+		++_messagesComputed;
+		storeMessage(e);
+	}
+
+	/**
+	 * Computes message from parent to child across edge {@code e}. The messages into the parent from
+	 * its children and its own parent must be current.
+	 */
+	private void sendDown(int e)
+	{
+		final int child = childNode(e), parent = parentNode(e);
+		final double[] messages = _messages;
+		final int size = _edgeSizes[e];
+		final int upOffset = _messageOffsets[e];
+		final int offset = upOffset + size;
+
+		if (!_calibrated[parent])
+		{
+			calibrate(parent);
+		}
+		send(parent, e, offset);
+
+		// The parent's potential already includes the message from the child, so divide it out.
+		for (int i = 0; i < size; ++i)
+		{
+			final double up = messages[upOffset + i];
+			final double down = messages[offset + i];
+			if (_minSum)
+			{
+				messages[offset + i] = up == Double.POSITIVE_INFINITY ? up : down - up;
+			}
+			else
+			{
+				messages[offset + i] = up == 0.0 ? 0.0 : down / up;
+			}
+		}
+		normalize(offset, size);
+
+		_stale[2 * e + 1] = false;
+		_calibrated[child] = false;
+		++_messagesComputed;
+		storeMessage(e);
+	}
+
+	/**
+	 * Sets the node's working potential to its base potential combined with the messages from its children.
+	 */
+	private void collect(int node)
+	{
+		final int offset = _potentialOffsets[node];
+		System.arraycopy(_base, offset, _potentials, offset, _potentialOffsets[node + 1] - offset);
+
+		final boolean isFactor = node >= _variables.length;
+		for (int i = edgesStart(node), end = edgesEnd(node); i < end; ++i)
+		{
+			final int e = isFactor ? i : _variableEdges[i];
+			if (e != _parentEdge[node])
+			{
+				absorb(node, e, _messageOffsets[e]);
+			}
+		}
+
+		_collected[node] = true;
+		_calibrated[node] = false;
+	}
+
+	/**
+	 * Sets the node's working potential to its base potential combined with all of its incoming messages.
+	 */
+	private void calibrate(int node)
+	{
+		if (!_collected[node])
+		{
+			collect(node);
+		}
+
+		final int e = _parentEdge[node];
+		if (e >= 0)
+		{
+			absorb(node, e, _messageOffsets[e] + _edgeSizes[e]);
+		}
+
+		_collected[node] = false;
+		_calibrated[node] = true;
+	}
+
+	/**
+	 * Writes the node's working potential marginalized onto edge {@code e} at {@code offset} in
+	 * {@link #_messages}.
+	 */
+	private void send(int node, int e, int offset)
+	{
+		if (node < _variables.length)
+		{
+			System.arraycopy(_potentials, _potentialOffsets[node], _messages, offset, _edgeSizes[e]);
+		}
+		else
+		{
+			marginalize(e, offset);
+		}
+	}
+
+	/**
+	 * Combines the message at {@code offset} in {@link #_messages} into the node's working potential.
+	 */
+	private void absorb(int node, int e, int offset)
+	{
+		if (node < _variables.length)
+		{
+			final double[] potentials = _potentials;
+			final double[] messages = _messages;
+			final int potentialOffset = _potentialOffsets[node];
+			for (int i = 0, size = _edgeSizes[e]; i < size; ++i)
+			{
+				if (_minSum)
+				{
+					potentials[potentialOffset + i] += messages[offset + i];
+				}
+				else
+				{
+					potentials[potentialOffset + i] *= messages[offset + i];
+				}
+			}
+		}
+		else
+		{
+			extend(e, offset);
+		}
+	}
+
+	/**
+	 * Start of the node's edges in {@link #_variableEdges} for variables or the node's first edge for
+	 * factors.
+	 */
+	private int edgesStart(int node)
+	{
+		final int nVariables = _variables.length;
+		return node < nVariables ? _variableEdgeStarts[node] : _factorEdges[node - nVariables];
+	}
+
+	/**
+	 * End of the node's edges corresponding to {@link #edgesStart}.
+	 */
+	private int edgesEnd(int node)
+	{
+		final int nVariables = _variables.length;
+		return node < nVariables ? _variableEdgeStarts[node + 1] : _factorEdges[node - nVariables + 1];
+	}
+
+	private int childNode(int e)
+	{
+		return _childIsFactor[e] ? _variables.length + _edgeFactor[e] : _edgeVariable[e];
+	}
+
+	private int parentNode(int e)
+	{
+		return _childIsFactor[e] ? _edgeVariable[e] : _variables.length + _edgeFactor[e];
+	}
+
+	/**
+	 * The table's sparse energies for min-sum, otherwise its sparse weights.
+	 */
+	private double[] sparseValues(IFactorTable table)
+	{
+		return _minSum ? table.getEnergiesSparseUnsafe() : table.getWeightsSparseUnsafe();
+	}
+
+	/**
+	 * Marginalizes potential of edge's factor onto edge's variable and writes it at {@code offset}
+	 * in {@link #_messages}.
+	 */
+	private void marginalize(int e, int offset)
+	{
+		final double[] potentials = _potentials;
+		final double[] messages = _messages;
+		final boolean minSum = _minSum;
+		final int node = _variables.length + _edgeFactor[e];
+		final int start = _potentialOffsets[node], end = _potentialOffsets[node + 1];
+		final int size = _edgeSizes[e];
+
+		Arrays.fill(messages, offset, offset + size, minSum ? Double.POSITIVE_INFINITY : 0.0);
+
+		final int[] map = _edgeIndexMaps[e];
+		if (map != null)
+		{
+			// Consecutive entries often map to the same value, so accumulate into interleaved partial
+			// results to avoid a dependency between each entry and the next.
+			final double[] partials = _partials;
+			Arrays.fill(partials, 0, size * 4, minSum ? Double.POSITIVE_INFINITY : 0.0);
+			if (minSum)
+			{
+				for (int i = start; i < end; ++i)
+				{
+					final int j = ((i & 3) * size) + map[i - start];
+					final double p = potentials[i], q = partials[j];
+					partials[j] = p < q ? p : q;
+				}
+			}
+			else
+			{
+				for (int i = start; i < end; ++i)
+				{
+					partials[((i & 3) * size) + map[i - start]] += potentials[i];
+				}
+			}
+			for (int value = 0; value < size; ++value)
+			{
+				final double p0 = partials[value], p1 = partials[value + size];
+				final double p2 = partials[value + 2 * size], p3 = partials[value + 3 * size];
+				if (minSum)
+				{
+					final double p01 = p0 < p1 ? p0 : p1, p23 = p2 < p3 ? p2 : p3;
+					messages[offset + value] = p01 < p23 ? p01 : p23;
+				}
+				else
+				{
+					messages[offset + value] = (p0 + p1) + (p2 + p3);
+				}
+			}
+		}
+		else if (_edgeStrides[e] == 1)
+		{
+			for (int block = start; block < end; block += size)
+			{
+				for (int value = 0; value < size; ++value)
+				{
+					final double p = potentials[block + value], q = messages[offset + value];
+					messages[offset + value] = minSum ? (p < q ? p : q) : p + q;
+				}
+			}
+		}
+		else
+		{
+			final int stride = _edgeStrides[e];
+			final int blockSize = stride * size;
+			for (int block = start; block < end; block += blockSize)
+			{
+				for (int value = 0, i = block; value < size; ++value)
+				{
+					double acc = messages[offset + value];
+					final int blockEnd = i + stride;
+					if (minSum)
+					{
+						for (; i < blockEnd; ++i)
+						{
+							final double p = potentials[i];
+							acc = p < acc ? p : acc;
+						}
+					}
+					else
+					{
+						for (; i < blockEnd; ++i)
+						{
+							acc += potentials[i];
+						}
+					}
+					messages[offset + value] = acc;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Combines the message at {@code offset} in {@link #_messages} into the potential of the
+	 * edge's factor.
+	 */
+	private void extend(int e, int offset)
+	{
+		final double[] potentials = _potentials;
+		final double[] messages = _messages;
+		final boolean minSum = _minSum;
+		final int node = _variables.length + _edgeFactor[e];
+		final int start = _potentialOffsets[node], end = _potentialOffsets[node + 1];
+		final int size = _edgeSizes[e];
+
+		final int[] map = _edgeIndexMaps[e];
+		if (map != null)
+		{
+			for (int i = start; i < end; ++i)
+			{
+				final double m = messages[offset + map[i - start]];
+				if (minSum)
+				{
+					potentials[i] += m;
+				}
+				else
+				{
+					potentials[i] *= m;
+				}
+			}
+		}
+		else
+		{
+			final int stride = _edgeStrides[e];
+			final int blockSize = stride * size;
+			for (int block = start; block < end; block += blockSize)
+			{
+				for (int value = 0, i = block; value < size; ++value)
+				{
+					final double m = messages[offset + value];
+					for (int blockEnd = i + stride; i < blockEnd; ++i)
+					{
+						if (minSum)
+						{
+							potentials[i] += m;
+						}
+						else
+						{
+							potentials[i] *= m;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Normalizes message to sum to one for sum-product or to have a minimum of zero for min-sum.
+	 * Messages that are identically zero (or infinite) are left alone.
+	 */
+	private void normalize(int offset, int size)
+	{
+		final double[] messages = _messages;
+		final int end = offset + size;
+
+		if (_minSum)
+		{
+			double min = Double.POSITIVE_INFINITY;
+			for (int i = offset; i < end; ++i)
+			{
+				final double m = messages[i];
+				min = m < min ? m : min;
+			}
+			if (min != Double.POSITIVE_INFINITY)
+			{
+				for (int i = offset; i < end; ++i)
+				{
+					messages[i] -= min;
+				}
+			}
+		}
+		else
+		{
+			double sum = 0.0;
+			for (int i = offset; i < end; ++i)
+			{
+				sum += messages[i];
+			}
+			if (sum > 0.0)
+			{
+				for (int i = offset; i < end; ++i)
+				{
+					messages[i] /= sum;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Copies messages in both directions of every edge to the corresponding delegate solver factor.
+	 */
+	private void storeMessages()
+	{
+		for (int e = 0, nEdges = _edgeVariable.length; e < nEdges; ++e)
+		{
+			storeMessage(e);
+		}
+	}
+
+	/**
+	 * Copies messages in both directions of edge {@code e} to the corresponding delegate solver factor.
+	 */
+	private void storeMessage(int e)
+	{
+		final int f = _edgeFactor[e];
+		final STableFactorDoubleArray sfactor = _factors[f];
+		final int port = e - _factorEdges[f];
+		final int size = _edgeSizes[e];
+		final int upOffset = _messageOffsets[e];
+		final int downOffset = upOffset + size;
+		final boolean childIsFactor = _childIsFactor[e];
+
+		final double[] toVariable = (double[])sfactor.getOutputMsg(port);
+		final double[] toFactor = (double[])sfactor.getInputMsg(port);
+		System.arraycopy(_messages, childIsFactor ? upOffset : downOffset, toVariable, 0, size);
+		System.arraycopy(_messages, childIsFactor ? downOffset : upOffset, toFactor, 0, size);
+	}
+}
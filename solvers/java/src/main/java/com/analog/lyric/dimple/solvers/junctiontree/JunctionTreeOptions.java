@@ -17,12 +17,15 @@
 package com.analog.lyric.dimple.solvers.junctiontree;
 
 import com.analog.lyric.dimple.model.transform.JunctionTreeTransform;
+import com.analog.lyric.dimple.model.transform.JunctionTreeTransformCache;
 import com.analog.lyric.dimple.model.transform.VariableEliminator;
 import com.analog.lyric.dimple.model.transform.VariableEliminator.VariableCost;
 import com.analog.lyric.dimple.model.transform.VariableEliminatorCostListOptionKey;
 import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.options.SolverOptions;
 import com.analog.lyric.options.BooleanOptionKey;
 import com.analog.lyric.options.IntegerOptionKey;
+import com.analog.lyric.options.StringOptionKey;
 
 /**
  * Options for the junction tree solvers.
@@ -58,6 +61,8 @@ public class JunctionTreeOptions extends BPOptions
 	 * variables that have equivalent costs. A higher number of iterations may produce a better
 	 * ordering.
 	 * <p>
+	 * When {@link SolverOptions#enableMultithreading} is true, the iterations are run concurrently.
+	 * <p>
 	 * Must be a positive value. Default value is specified by
 	 * {@link JunctionTreeTransform#DEFAULT_MAX_TRANSFORMATION_ATTEMPTS}.
 	 * <p>
@@ -79,4 +84,58 @@ public class JunctionTreeOptions extends BPOptions
 	 */
 	public static final VariableEliminatorCostListOptionKey variableEliminatorCostFunctions =
 		new VariableEliminatorCostListOptionKey(JunctionTreeOptions.class, "variableEliminatorCostFunctions");
+	
+	/**
+	 * If true, then inference on the transformed graph will be done by a dedicated clique tree
+	 * engine that propagates over flat potential arrays instead of by generic message passing in the
+	 * delegate solver. The resulting messages are copied back to the delegate, so results are
+	 * obtained in the same way in either case. When solving again, the engine only recomputes the
+	 * messages affected by inputs, fixed values or factor tables that have changed.
+	 * <p>
+	 * The engine is not used if the transformed graph has any non-discrete variables or factors
+	 * without a factor table, in which case the delegate solver is used as before.
+	 * <p>
+	 * True by default.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final BooleanOptionKey useCliqueTreeEngine =
+		new BooleanOptionKey(JunctionTreeOptions.class, "useCliqueTreeEngine", true);
+	
+	/**
+	 * If true, then when the {@linkplain #useCliqueTreeEngine clique tree engine} is used, solving
+	 * will only determine which messages have been invalidated by changes to inputs, fixed values or
+	 * factor tables since the previous solve. Those messages will not be recomputed until a result
+	 * that depends on them, such as the belief of a variable, is requested, and then only along the
+	 * paths between the changed nodes and the requested one.
+	 * <p>
+	 * This is useful when only a few marginals are needed after changing a few inputs of an
+	 * otherwise unchanged graph. Messages in the delegate solver graph are only brought up to date
+	 * for nodes whose results have been requested through the junction tree solver.
+	 * <p>
+	 * False by default.
+	 * <p>
+	 * @see JunctionTreeSolverGraphBase#getNumMessagesComputed()
+	 * @since 0.08
+	 */
+	public static final BooleanOptionKey useLazyPropagation =
+		new BooleanOptionKey(JunctionTreeOptions.class, "useLazyPropagation", false);
+	
+	/**
+	 * Directory in which to cache variable elimination orderings across runs. If empty, no cache is used.
+	 * <p>
+	 * When set, the junction tree transformation of a model will first look for an ordering stored by an
+	 * earlier run for a structurally identical model and will only search for a new ordering when none is
+	 * found, storing the result for later runs. Only the search is skipped: the transformed graph and its
+	 * joint factor tables are still built from the ordering. The cache entry also depends on
+	 * {@link #maxTransformationAttempts} and {@link #variableEliminatorCostFunctions}. Each lookup raises a
+	 * {@link JunctionTreeTransformCacheEvent}.
+	 * <p>
+	 * The empty string by default.
+	 * <p>
+	 * @see JunctionTreeTransformCache
+	 * @since 0.08
+	 */
+	public static final StringOptionKey transformCacheDirectory =
+		new StringOptionKey(JunctionTreeOptions.class, "transformCacheDirectory");
 }
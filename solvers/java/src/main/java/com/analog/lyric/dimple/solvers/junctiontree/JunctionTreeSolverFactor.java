@@ -227,17 +227,18 @@ public class JunctionTreeSolverFactor extends SFactorBase
 	
 	private @Nullable ISolverFactor getDelegate()
 	{
-		final ISolverFactor delegate = _delegate;
-		if (delegate != null)
-		{
-			return delegate;
-		}
-		else
+		ISolverFactor delegate = _delegate;
+		if (delegate == null)
 		{
 			final Factor sourceFactor = getFactor();
 			final Factor targetFactor = requireNonNull(_root.getTransformMap()).sourceToTargetFactor(sourceFactor);
-			return _delegate = targetFactor.getSolver();
+			delegate = _delegate = targetFactor.getSolver();
+		}
+		if (delegate != null)
+		{
+			_root.propagateTo(requireNonNull(delegate.getModelObject()));
 		}
+		return delegate;
 	}
 
 	private @Nullable JointDomainReindexer getDelegateReindexer()
@@ -18,22 +18,27 @@ package com.analog.lyric.dimple.solvers.junctiontree;
 
 import static java.util.Objects.*;
 
+import java.io.File;
 import java.util.Map.Entry;
 
 import org.eclipse.jdt.annotation.Nullable;
 
 import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.Node;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.repeated.BlastFromThePastFactor;
 import com.analog.lyric.dimple.model.transform.JunctionTreeTransform;
+import com.analog.lyric.dimple.model.transform.JunctionTreeTransformCache;
 import com.analog.lyric.dimple.model.transform.JunctionTreeTransformMap;
 import com.analog.lyric.dimple.model.transform.OptionVariableEliminatorCostList;
 import com.analog.lyric.dimple.model.transform.VariableEliminator;
 import com.analog.lyric.dimple.model.transform.VariableEliminator.CostFunction;
+import com.analog.lyric.dimple.model.transform.VariableEliminator.Ordering;
 import com.analog.lyric.dimple.model.transform.VariableEliminator.VariableCost;
 import com.analog.lyric.dimple.model.variables.Discrete;
 import com.analog.lyric.dimple.model.variables.Variable;
 import com.analog.lyric.dimple.options.DimpleOptions;
+import com.analog.lyric.dimple.options.SolverOptions;
 import com.analog.lyric.dimple.solvers.core.proxy.ProxySolverFactorGraph;
 import com.analog.lyric.dimple.solvers.interfaces.IFactorGraphFactory;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverBlastFromThePastFactor;
@@ -60,6 +65,7 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 	private final @Nullable IFactorGraphFactory<?> _solverFactory;
 	
 	private @Nullable JunctionTreeTransformMap _transformMap = null;
+	private @Nullable CliqueTreeEngine _engine = null;
 	
 	/*--------------
 	 * Construction
@@ -113,6 +119,8 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 			return Double.NaN;
 		}
 
+		propagateAll();
+		
 		double energy = 0;
 		
 		//Sum up factor internal energy
@@ -142,6 +150,7 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 			return Double.NaN;
 		}
 
+		propagateAll();
 		transformMap.updateGuesses();
 		
 		double energy = 0.0;
@@ -254,6 +263,7 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 		// Configure settings from options.
 		_transformer.useConditioning(getOptionOrDefault(JunctionTreeOptions.useConditioning));
 		_transformer.maxTransformationAttempts(getOptionOrDefault(JunctionTreeOptions.maxTransformationAttempts));
+		_transformer.useMultithreading(useMultithreading() || getOptionOrDefault(SolverOptions.enableMultithreading));
 		OptionVariableEliminatorCostList costFunctions =
 			getOptionOrDefault(JunctionTreeOptions.variableEliminatorCostFunctions);
 		_transformer.variableEliminatorCostFunctions(costFunctions.toArray(new CostFunction[costFunctions.size()]));
@@ -299,7 +309,10 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 	public void iterate()
 	{
 		updateDelegate();
-		requireDelegate("iterate").iterate();
+		if (!runEngine())
+		{
+			requireDelegate("iterate").iterate();
+		}
 	}
 	
 	@Override
@@ -307,14 +320,20 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 	{
 		getModelObject().initialize();
 		updateDelegate();
-		requireDelegate("solve").solve();
+		if (!runEngine())
+		{
+			requireDelegate("solve").solve();
+		}
 	}
 	
 	@Override
 	public void solveOneStep()
 	{
 		updateDelegate();
-		requireDelegate("solveOneStep").solveOneStep();
+		if (!runEngine())
+		{
+			requireDelegate("solveOneStep").solveOneStep();
+		}
 	}
 	
 	@Override
@@ -328,6 +347,25 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 	 * JunctionTreeSolverGraph methods
 	 */
 	
+	/**
+	 * The number of messages on the transformed graph computed by the {@linkplain
+	 * JunctionTreeOptions#useCliqueTreeEngine clique tree engine} for the most recent solve, including
+	 * messages computed afterward on demand when {@linkplain JunctionTreeOptions#useLazyPropagation
+	 * lazy propagation} is enabled.
+	 * <p>
+	 * Calibrating the whole tree computes two messages per edge. Solving again after changing a single
+	 * input computes fewer, and none if nothing has changed.
+	 * <p>
+	 * Returns -1 if the engine was not used.
+	 * <p>
+	 * @since 0.08
+	 */
+	public int getNumMessagesComputed()
+	{
+		final CliqueTreeEngine engine = _engine;
+		return engine != null ? engine.getMessagesComputed() : -1;
+	}
+	
 	public @Nullable IFactorGraphFactory<?> getDelegateSolverFactory()
 	{
 		return _solverFactory;
@@ -464,11 +502,26 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 		final JunctionTreeTransformMap transformMap = _transformMap;
 		if (transformMap != null)
 		{
-			return transformMap.sourceToTargetVariable(var.getModelObject()).getSolver();
+			final Variable targetVar = transformMap.sourceToTargetVariable(var.getModelObject());
+			propagateTo(targetVar);
+			return targetVar.getSolver();
 		}
 		return null;
 	}
 	
+	/**
+	 * Brings messages into {@code targetNode} in the transformed graph up to date when using
+	 * {@linkplain JunctionTreeOptions#useLazyPropagation lazy propagation}.
+	 */
+	void propagateTo(Node targetNode)
+	{
+		final CliqueTreeEngine engine = _engine;
+		if (engine != null)
+		{
+			engine.propagateTo(targetNode);
+		}
+	}
+	
 	/*-----------------
 	 * Private methods
 	 */
@@ -479,16 +532,94 @@ public abstract class JunctionTreeSolverGraphBase<Delegate extends ISolverFactor
 		return transformMap != null && transformMap.isValid();
 	}
 	
+	/**
+	 * Runs {@link CliqueTreeEngine} on the transformed graph if {@link JunctionTreeOptions#useCliqueTreeEngine}
+	 * is enabled and the graph is supported by the engine. Returns false if the delegate should be run instead.
+	 */
+	private boolean runEngine()
+	{
+		if (!getOptionOrDefault(JunctionTreeOptions.useCliqueTreeEngine))
+		{
+			_engine = null;
+			return false;
+		}
+		
+		final boolean lazy = getOptionOrDefault(JunctionTreeOptions.useLazyPropagation);
+		final JunctionTreeTransformMap transformMap = requireNonNull(_transformMap);
+		CliqueTreeEngine engine = _engine;
+		if (engine != null && engine.getTransformMap() == transformMap && engine.run(lazy))
+		{
+			return true;
+		}
+		
+		engine = _engine = CliqueTreeEngine.create(transformMap);
+		return engine != null && engine.run(lazy);
+	}
+	
+	/**
+	 * Brings all messages in the transformed graph up to date when using
+	 * {@linkplain JunctionTreeOptions#useLazyPropagation lazy propagation}.
+	 */
+	private void propagateAll()
+	{
+		final CliqueTreeEngine engine = _engine;
+		if (engine != null)
+		{
+			engine.propagateAll();
+		}
+	}
+	
 	private @Nullable ISolverFactorGraph updateDelegate()
 	{
 		if (!isTransformValid())
 		{
-			final JunctionTreeTransformMap transformMap = _transformMap = _transformer.transform(getModelObject());
+			final JunctionTreeTransformMap transformMap = _transformMap = transform(getModelObject());
 			transformMap.target().setSolverFactory(_solverFactory);
 		}
 		return notifyNewDelegate(getDelegate());
 	}
+	
+	/**
+	 * Transforms the model, using the elimination ordering from the
+	 * {@linkplain JunctionTreeOptions#transformCacheDirectory transform cache} if enabled. The transformed
+	 * graph itself is always rebuilt from the ordering.
+	 */
+	private JunctionTreeTransformMap transform(FactorGraph model)
+	{
+		final String cacheDirectory = getOptionOrDefault(JunctionTreeOptions.transformCacheDirectory);
+		if (cacheDirectory.isEmpty())
+		{
+			return _transformer.transform(model);
+		}
+		
+		final JunctionTreeTransformCache cache = new JunctionTreeTransformCache(new File(cacheDirectory));
+		final String key = cache.key(model, _transformer);
+		Ordering ordering = cache.load(model, key);
+		final boolean hit = ordering != null;
+		if (ordering == null)
+		{
+			ordering = _transformer.buildEliminationOrder(model);
+			cache.store(model, key, ordering);
+		}
+		
+		if (JunctionTreeTransformCacheEvent.raiseEvent(this))
+		{
+			raiseEvent(new JunctionTreeTransformCacheEvent(this, key, cache.file(key), hit));
+		}
+		
+		return _transformer.transform(model, ordering);
+	}
 
+	/*---------------------------
+	 * SolverEventSource methods
+	 */
+	
+	@Override
+	protected int getEventMask()
+	{
+		return JunctionTreeTransformCacheEvent.GRAPH_EVENT_MASK | super.getEventMask();
+	}
+	
 	@Override
 	public boolean checkAllEdgesAreIncludedInSchedule()
 	{
@@ -0,0 +1,147 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.junctiontree;
+
+import java.io.File;
+import java.io.PrintStream;
+
+import com.analog.lyric.dimple.events.IDimpleEventListener;
+import com.analog.lyric.dimple.events.SolverEventSource;
+import com.analog.lyric.dimple.events.SolverGraphEvent;
+import com.analog.lyric.dimple.model.transform.JunctionTreeTransformCache;
+
+/**
+ * Event raised when a junction tree solver graph looks up its transformation in the
+ * {@linkplain JunctionTreeOptions#transformCacheDirectory transform cache}.
+ * <p>
+ * Applicable to junction tree solver graphs.
+ * <p>
+ * @since 0.08
+ * @see JunctionTreeTransformCache
+ */
+public class JunctionTreeTransformCacheEvent extends SolverGraphEvent
+{
+	private static final long serialVersionUID = 1L;
+
+	/*-----------
+	 * Constants
+	 */
+
+	final static int GRAPH_EVENT_MASK   = 0x00003000;
+	final static int GRAPH_EVENTS_KNOWN = 0x00001000;
+	final static int GRAPH_CACHE        = 0x00002000;
+
+	/*-------
+	 * State
+	 */
+
+	private final String _key;
+	private final File _file;
+	private final boolean _hit;
+
+	/*--------------
+	 * Construction
+	 */
+
+	JunctionTreeTransformCacheEvent(JunctionTreeSolverGraphBase<?> source, String key, File file, boolean hit)
+	{
+		super(source);
+		_key = key;
+		_file = file;
+		_hit = hit;
+	}
+
+	/*--------------------------
+	 * SolverGraphEvent methods
+	 */
+
+	@Override
+	public JunctionTreeSolverGraphBase<?> getSource()
+	{
+		return (JunctionTreeSolverGraphBase<?>) source;
+	}
+
+	@Override
+	public JunctionTreeSolverGraphBase<?> getSolverObject()
+	{
+		return (JunctionTreeSolverGraphBase<?>) source;
+	}
+
+	@Override
+	protected void printDetails(PrintStream out, int verbosity)
+	{
+		out.format("Junction tree transform cache %s", _hit ? "hit" : "miss");
+		if (verbosity > 0)
+		{
+			out.format(" for '%s'", _file);
+		}
+	}
+
+	/*-----------------------------------------
+	 * JunctionTreeTransformCacheEvent methods
+	 */
+
+	/**
+	 * The file holding the cache entry.
+	 */
+	public File file()
+	{
+		return _file;
+	}
+
+	/**
+	 * True if the elimination ordering was found in the cache, false if it had to be computed
+	 * (and was then stored in the cache).
+	 */
+	public boolean isHit()
+	{
+		return _hit;
+	}
+
+	/**
+	 * The structural key of the model.
+	 * @see JunctionTreeTransformCache#key
+	 */
+	public String key()
+	{
+		return _key;
+	}
+
+	static boolean raiseEvent(JunctionTreeSolverGraphBase<?> source)
+	{
+		return (getEventFlags(source) & GRAPH_CACHE) != 0;
+	}
+
+	private static int getEventFlags(SolverEventSource source)
+	{
+		int eventFlags = source.getFlagValue(GRAPH_EVENT_MASK);
+
+		if ((eventFlags & GRAPH_EVENTS_KNOWN) == 0)
+		{
+			eventFlags = GRAPH_EVENTS_KNOWN;
+			final IDimpleEventListener listener = source.getEventListener();
+			if (listener != null && listener.isListeningFor(JunctionTreeTransformCacheEvent.class, source))
+			{
+				eventFlags |= GRAPH_CACHE;
+			}
+
+			source.setFlagValue(GRAPH_EVENT_MASK, eventFlags);
+		}
+
+		return eventFlags;
+	}
+}
@@ -17,6 +17,8 @@
 package com.analog.lyric.dimple.solvers.lp;
 
 import com.analog.lyric.dimple.options.SolverOptions;
+import com.analog.lyric.options.BooleanOptionKey;
+import com.analog.lyric.options.IntegerOptionKey;
 import com.analog.lyric.options.StringOptionKey;
 
 /**
@@ -39,6 +41,9 @@ public class LPOptions extends SolverOptions
 	 * <dt>"matlab"</dt>
 	 * <dd>Only works when using Dimple from MATLAB front-end. This solver uses the LP solver configured
 	 * in MATLAB, which is described by the {@link #MatlabLPSolver} option.</dd>
+	 * <dt>"Simplex"</dt>
+	 * <dd>Uses the sparse simplex solver built into Dimple (see {@link SparseSimplex}). This does not require
+	 * any external software. Use the {@link #BranchAndBound} option to find integral solutions.</dd>
 	 * <dt>"CPLEX"</dt>
 	 * <dt>"GLPK"</dt>
 	 * <dt>"Gurobi"</dt>
@@ -48,7 +53,7 @@ public class LPOptions extends SolverOptions
 	 * <dt>"SAT4J"</dt>
 	 * </dl>
 	 * 
-	 * The chosen solver must be separately installed and configured for use in Java.
+	 * Except for "Simplex", the chosen solver must be separately installed and configured for use in Java.
 	 * <p>
 	 * @see <a href="http://javailp.sourceforge.net/">Java ILP - Java Interface to ILP Solvers</a>
 	 */
@@ -74,4 +79,30 @@ public class LPOptions extends SolverOptions
 	 */
 	public static final StringOptionKey MatlabLPSolver =
 		new StringOptionKey(LPOptions.class, "MatlabLPSolver");
+	
+	/**
+	 * Whether the "Simplex" {@link #LPSolver} should search for an integral solution.
+	 * <p>
+	 * The LP relaxation of the MAP problem is not guaranteed to have an integral solution when the graph
+	 * has loops. When this is true, the built-in solver will use branch-and-bound to find the MAP solution,
+	 * which may take time exponential in the number of variables in the worst case.
+	 * <p>
+	 * Ignored by other LP solvers.
+	 * <p>
+	 * @since 0.08
+	 * @see #MaxBranchAndBoundNodes
+	 */
+	public static final BooleanOptionKey BranchAndBound =
+		new BooleanOptionKey(LPOptions.class, "BranchAndBound", false);
+	
+	/**
+	 * Limits the number of nodes visited when {@link #BranchAndBound} is enabled.
+	 * <p>
+	 * If the limit is reached, the best integral solution found so far will be used, or the
+	 * solution of the LP relaxation if none was found.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final IntegerOptionKey MaxBranchAndBoundNodes =
+		new IntegerOptionKey(LPOptions.class, "MaxBranchAndBoundNodes", 10000, 1, Integer.MAX_VALUE);
 }
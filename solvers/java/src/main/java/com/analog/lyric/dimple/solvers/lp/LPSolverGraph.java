@@ -25,6 +25,7 @@ import java.util.List;
 import net.jcip.annotations.NotThreadSafe;
 import net.sf.javailp.Linear;
 import net.sf.javailp.Operator;
+import net.sf.javailp.OptType;
 import net.sf.javailp.Problem;
 import net.sf.javailp.Result;
 import net.sf.javailp.SolverFactory;
@@ -106,6 +107,15 @@ public class LPSolverGraph extends SFactorGraphBase
 	private String _lpSolverName = "";
 	private String _lpMatlabSolver = ""; // TODO: merge lpSolverName and lpSolver.
 	
+	private boolean _branchAndBound = false;
+	private int _maxBranchAndBoundNodes = LPOptions.MaxBranchAndBoundNodes.defaultValue();
+	
+	/**
+	 * Built-in solver used when {@link #getLPSolverName()} is "Simplex". Retained between solves
+	 * so that it can start from the previous basis.
+	 */
+	private @Nullable SparseSimplex _simplex = null;
+	
 	
 	/*--------------
 	 * Construction
@@ -134,6 +144,8 @@ public class LPSolverGraph extends SFactorGraphBase
 		super.initialize();
 		_lpSolverName = getOptionOrDefault(LPOptions.LPSolver);
 		_lpMatlabSolver = getOptionOrDefault(LPOptions.MatlabLPSolver);
+		_branchAndBound = getOptionOrDefault(LPOptions.BranchAndBound);
+		_maxBranchAndBoundNodes = getOptionOrDefault(LPOptions.MaxBranchAndBoundNodes);
 	}
 
 	/**
@@ -357,6 +369,11 @@ public class LPSolverGraph extends SFactorGraphBase
 		return _lpSolverName.isEmpty() || _lpSolverName.equalsIgnoreCase("matlab");
 	}
 	
+	private boolean useSimplexSolver()
+	{
+		return _lpSolverName.equalsIgnoreCase("simplex");
+	}
+	
 	@Override
 	public void iterate(int numIters)
 	{
@@ -365,6 +382,12 @@ public class LPSolverGraph extends SFactorGraphBase
 			throw new DimpleException("Java solve() not supported for LP solver using 'MATLAB' as underlying solver");
 		}
 		
+		if (useSimplexSolver())
+		{
+			solveWithSimplex();
+			return;
+		}
+		
 		net.sf.javailp.Solver solver = null;
 		
 		try
@@ -379,6 +402,26 @@ public class LPSolverGraph extends SFactorGraphBase
 			throw new DimpleException("Cannot load underlying LP solver '%s': %s'", _lpSolverName, ex.toString());
 		}
 		
+		Result result = solver.solve(createJavaILPProblem());
+		
+		double[] solution = new double[getNumberOfLPVariables()];
+		for (int i = 0, end = solution.length; i < end; ++i)
+		{
+			solution[i] = result.get(i).doubleValue();
+		}
+		setSolution(solution);
+	}
+
+	/**
+	 * Builds the LP state and translates it into a javailp problem, as solved by {@link #iterate(int)}
+	 * when the {@linkplain #getLPSolverName() LP solver} is one of the javailp solvers.
+	 * <p>
+	 * The objective function is maximized, since it is the log of the graph's weights.
+	 * <p>
+	 * @since 0.08
+	 */
+	public Problem createJavaILPProblem()
+	{
 		buildLPState(); // computes object function and constraints
 
 		Problem problem = new Problem();
@@ -390,7 +433,7 @@ public class LPSolverGraph extends SFactorGraphBase
 			objective.add(objectiveCoefficients[i], i);
 			problem.setVarBounds(0.0, i, 1.0);
 		}
-		problem.setObjective(objective);
+		problem.setObjective(objective, OptType.MAX);
 		
 		for (IntegerEquation constraint : requireNonNull(getConstraints()))
 		{
@@ -404,14 +447,7 @@ public class LPSolverGraph extends SFactorGraphBase
 			problem.add(linear, Operator.EQ, constraint.getRHS());
 		}
 		
-		Result result = solver.solve(problem);
-		
-		double[] solution = new double[getNumberOfLPVariables()];
-		for (int i = 0, end = solution.length; i < end; ++i)
-		{
-			solution[i] = result.get(i).doubleValue();
-		}
-		setSolution(solution);
+		return problem;
 	}
 
 	/**
@@ -714,6 +750,49 @@ public class LPSolverGraph extends SFactorGraphBase
 	 * Private methods
 	 */
 	
+	private void solveWithSimplex()
+	{
+		buildLPState();
+		
+		SparseSimplex simplex = _simplex;
+		if (simplex == null)
+		{
+			simplex = _simplex = new SparseSimplex();
+		}
+		
+		final List<IntegerEquation> constraints = requireNonNull(getConstraints());
+		simplex.setProblem(requireNonNull(getObjectiveFunction()), constraints);
+		
+		final double[] solution;
+		if (_branchAndBound)
+		{
+			// Only need to branch on the variable values, since the marginal constraints force the
+			// factor entries to be integral once all of their variables are.
+			int nBranchVars = 0;
+			for (IntegerEquation constraint : constraints.subList(0, _nVariableConstraints))
+			{
+				nBranchVars += constraint.size();
+			}
+			final int[] branchVars = new int[nBranchVars];
+			int i = 0;
+			for (IntegerEquation constraint : constraints.subList(0, _nVariableConstraints))
+			{
+				TermIterator iter = constraint.getTerms();
+				while (iter.advance())
+				{
+					branchVars[i++] = iter.getVariable();
+				}
+			}
+			solution = simplex.solveInteger(branchVars, _maxBranchAndBoundNodes);
+		}
+		else
+		{
+			solution = simplex.solve();
+		}
+		
+		setSolution(solution);
+	}
+	
 	private DimpleException unsupported(String methodName)
 	{
 		return DimpleException.unsupportedBySolver("LP", methodName);
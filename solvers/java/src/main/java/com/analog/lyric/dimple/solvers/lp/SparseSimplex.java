@@ -0,0 +1,1091 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.dimple.solvers.lp;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.solvers.lp.IntegerEquation.TermIterator;
+
+/**
+ * Pure Java linear program solver for the problems built by {@link LPSolverGraph#buildLPState()}.
+ * <p>
+ * Solves problems of the form:
+ * <pre>
+ *     maximize    c'x
+ *     subject to  Ax = b, 0 &lt;= x &lt;= 1
+ * </pre>
+ * using a bounded revised simplex method. The constraint matrix is kept in sparse row and column
+ * form, and the basis inverse is kept in product form as a file of sparse eta vectors that is
+ * periodically rebuilt from the current basis. A feasible basis is found by first minimizing the sum
+ * of artificial variables (phase one) before optimizing the objective (phase two).
+ * <p>
+ * If {@link #setProblem} is given the same constraints as the previous call, then only the objective
+ * has changed and the previous optimal basis is still feasible, so solving will skip phase one and
+ * start from that basis. This is the case when variable inputs or factor weights change without
+ * adding or removing zero weights.
+ * <p>
+ * {@link #solveInteger} additionally searches for an integral solution using depth-first
+ * branch-and-bound, reoptimizing each node from its parent's basis using the dual simplex method.
+ * <p>
+ * @since 0.08
+ * @see LPOptions#LPSolver
+ */
+@NotThreadSafe
+public final class SparseSimplex
+{
+	/*-----------
+	 * Constants
+	 */
+	
+	private static final double PIVOT_TOLERANCE = 1e-9;
+	private static final double PRIMAL_TOLERANCE = 1e-9;
+	private static final double DUAL_TOLERANCE = 1e-9;
+	private static final double INTEGER_TOLERANCE = 1e-6;
+	
+	/**
+	 * Minimum number of pivots before the eta file is rebuilt from scratch. Rebuilding
+	 * takes time quadratic in the number of rows, so the actual interval is scaled
+	 * by the number of rows.
+	 */
+	private static final int MIN_REFACTOR_INTERVAL = 100;
+	
+	/**
+	 * Switch to Bland's rule after this many consecutive degenerate pivots to avoid cycling.
+	 */
+	private static final int DEGENERATE_LIMIT = 50;
+	
+	/*-------
+	 * State
+	 */
+	
+	private int _nRows = 0;
+	private int _nCols = 0;
+	
+	// Constraint matrix in compressed sparse row and column form. Artificial variable
+	// n + i has the implicit column e_i.
+	private int[] _rowStart = new int[1];
+	private int[] _rowCols = new int[0];
+	private double[] _rowValues = new double[0];
+	private int[] _colStart = new int[1];
+	private int[] _colRows = new int[0];
+	private double[] _colValues = new double[0];
+	private double[] _rhs = new double[0];
+	
+	private double[] _objective = new double[0];
+
+	// Per-variable state, indexed by structural variables followed by artificials.
+	private double[] _cost = new double[0];
+	private double[] _lower = new double[0];
+	private double[] _upper = new double[0];
+	private double[] _x = new double[0];
+	private double[] _reducedCost = new double[0];
+	private boolean[] _atUpper = new boolean[0];
+	private int[] _basisRow = new int[0];
+	
+	/**
+	 * Basic variable for each row.
+	 */
+	private int[] _head = new int[0];
+	
+	// Eta file: eta k replaces column _etaRow[k] of the identity with the entries
+	// _etaValues[_etaStart[k].._etaStart[k+1]) at rows _etaRows and pivot _etaPivot[k].
+	private int _nEtas = 0;
+	private int _nFactorEtas = 0;
+	private int _refactorInterval = MIN_REFACTOR_INTERVAL;
+	private int[] _etaRow = new int[16];
+	private double[] _etaPivot = new double[16];
+	private int[] _etaStart = new int[17];
+	private int[] _etaRows = new int[64];
+	private double[] _etaValues = new double[64];
+	
+	// Work arrays
+	private double[] _alpha = new double[0];
+	private double[] _rho = new double[0];
+	private double[] _rowAlpha = new double[0];
+	private int[] _rowAlphaIndices = new int[0];
+	private int _nRowAlpha = 0;
+	
+	private boolean _hasBasis = false;
+	private boolean _warmStarted = false;
+	private int _iterations = 0;
+	private int _iterationLimit = 0;
+	private int _nodes = 0;
+	
+	private @Nullable double[] _incumbent = null;
+	private double _incumbentValue;
+	
+	/*--------------
+	 * Construction
+	 */
+	
+	public SparseSimplex()
+	{
+	}
+	
+	/*-----------------------
+	 * SparseSimplex methods
+	 */
+	
+	/**
+	 * Sets the objective and constraints for the next solve.
+	 * <p>
+	 * @param objective contains the objective coefficient for each LP variable.
+	 * @param constraints are equality constraints over the LP variables, such as returned by
+	 * {@link LPSolverGraph#getConstraints()}.
+	 * @return true if the constraints are the same as the previous problem, in which case the next
+	 * solve will start from the previous basis.
+	 */
+	public boolean setProblem(double[] objective, List<IntegerEquation> constraints)
+	{
+		final int nCols = objective.length;
+		final int nRows = constraints.size();
+		
+		int nnz = 0;
+		for (IntegerEquation constraint : constraints)
+		{
+			nnz += constraint.size();
+		}
+		
+		final int[] rowStart = new int[nRows + 1];
+		final int[] rowCols = new int[nnz];
+		final double[] rowValues = new double[nnz];
+		final double[] rhs = new double[nRows];
+		
+		int row = 0, k = 0;
+		for (IntegerEquation constraint : constraints)
+		{
+			// Keep the right-hand side non-negative so that the artificial basis is feasible.
+			final double sign = constraint.getRHS() < 0 ? -1 : 1;
+			rhs[row] = sign * constraint.getRHS();
+			final TermIterator terms = constraint.getTerms();
+			while (terms.advance())
+			{
+				rowCols[k] = terms.getVariable();
+				rowValues[k] = sign * terms.getCoefficient();
+				++k;
+			}
+			rowStart[++row] = k;
+		}
+		
+		_objective = objective.clone();
+		
+		final boolean sameConstraints = _hasBasis && nCols == _nCols && Arrays.equals(rowStart, _rowStart) &&
+			Arrays.equals(rowCols, _rowCols) && Arrays.equals(rowValues, _rowValues) && Arrays.equals(rhs, _rhs);
+		
+		if (!sameConstraints)
+		{
+			_hasBasis = false;
+			_nRows = nRows;
+			_nCols = nCols;
+			_rowStart = rowStart;
+			_rowCols = rowCols;
+			_rowValues = rowValues;
+			_rhs = rhs;
+			buildColumns();
+			
+			final int nVars = nCols + nRows;
+			_cost = new double[nVars];
+			_lower = new double[nVars];
+			_upper = new double[nVars];
+			_x = new double[nVars];
+			_reducedCost = new double[nVars];
+			_atUpper = new boolean[nVars];
+			_basisRow = new int[nVars];
+			_head = new int[nRows];
+			_alpha = new double[nRows];
+			_rho = new double[nRows];
+			_rowAlpha = new double[nVars];
+			_rowAlphaIndices = new int[nVars];
+			_nRowAlpha = 0;
+			_refactorInterval = Math.max(MIN_REFACTOR_INTERVAL, nRows / 4);
+		}
+		
+		return sameConstraints;
+	}
+
+	/**
+	 * Solves the linear program most recently specified by {@link #setProblem}.
+	 * <p>
+	 * @return the optimal value of each LP variable.
+	 * @throws DimpleException if the problem is infeasible or the solver fails to converge.
+	 */
+	public double[] solve()
+	{
+		final int n = _nCols, m = _nRows;
+		
+		_iterations = 0;
+		_iterationLimit = 50 * (n + m) + 1000;
+		_warmStarted = false;
+		_incumbent = null;
+		
+		if (_hasBasis)
+		{
+			// Restore bounds changed by branch-and-bound, keeping nonbasic variables where they were.
+			for (int j = 0; j < n; ++j)
+			{
+				_lower[j] = 0;
+				_upper[j] = 1;
+				if (_basisRow[j] < 0)
+				{
+					_x[j] = _atUpper[j] ? 1 : 0;
+				}
+			}
+			computePrimal();
+			_warmStarted = maxInfeasibility() <= PRIMAL_TOLERANCE;
+		}
+		
+		if (!_warmStarted)
+		{
+			// Phase one: start from basis of artificial variables and minimize their sum
+			_hasBasis = false;
+			for (int j = 0; j < n; ++j)
+			{
+				_lower[j] = 0;
+				_upper[j] = 1;
+				_x[j] = 0;
+				_atUpper[j] = false;
+				_basisRow[j] = -1;
+				_cost[j] = 0;
+			}
+			for (int i = 0; i < m; ++i)
+			{
+				final int j = n + i;
+				_lower[j] = 0;
+				_upper[j] = Double.POSITIVE_INFINITY;
+				_x[j] = _rhs[i];
+				_atUpper[j] = false;
+				_basisRow[j] = i;
+				_head[i] = j;
+				_cost[j] = -1;
+			}
+			_nEtas = _nFactorEtas = 0;
+			
+			computeReducedCosts();
+			primal();
+			
+			double infeasibility = 0;
+			for (int i = 0; i < m; ++i)
+			{
+				final int j = n + i;
+				infeasibility += _x[j];
+				_upper[j] = 0;
+				_cost[j] = 0;
+			}
+			if (infeasibility > PRIMAL_TOLERANCE * Math.max(1, m))
+			{
+				throw new DimpleException("Linear program is infeasible");
+			}
+		}
+		
+		// Phase two
+		System.arraycopy(_objective, 0, _cost, 0, n);
+		computeReducedCosts();
+		primal();
+		
+		_hasBasis = true;
+		
+		return Arrays.copyOf(_x, n);
+	}
+	
+	/**
+	 * Solves the linear program most recently specified by {@link #setProblem} requiring
+	 * the given variables to take integer values.
+	 * <p>
+	 * Starts from the solution of the relaxed problem computed by {@link #solve()} and searches
+	 * for integer solutions using depth-first branch-and-bound.
+	 * <p>
+	 * @param integerVars are the indexes of the LP variables that must be either zero or one.
+	 * @param maxNodes is the maximum number of branch-and-bound nodes to visit. If the limit is
+	 * reached, the best integer solution found so far will be returned, or the relaxed solution if
+	 * none has been found.
+	 * @see #getNodeCount()
+	 */
+	public double[] solveInteger(int[] integerVars, int maxNodes)
+	{
+		final double[] relaxed = solve();
+		
+		_nodes = 0;
+		_incumbentValue = Double.NEGATIVE_INFINITY;
+		branch(integerVars, maxNodes);
+		
+		final double[] incumbent = _incumbent;
+		return incumbent != null ? incumbent.clone() : relaxed;
+	}
+	
+	/**
+	 * The number of simplex iterations used by the most recent solve, including
+	 * those used by the branch-and-bound search.
+	 */
+	public int getIterationCount()
+	{
+		return _iterations;
+	}
+	
+	/**
+	 * The number of branch-and-bound nodes visited by the most recent {@link #solveInteger}.
+	 */
+	public int getNodeCount()
+	{
+		return _nodes;
+	}
+	
+	/**
+	 * True if the most recent solve started from the basis left by the previous one.
+	 */
+	public boolean wasWarmStarted()
+	{
+		return _warmStarted;
+	}
+	
+	/*-------------------
+	 * Primal simplex
+	 */
+	
+	private void primal()
+	{
+		final int m = _nRows;
+		final double[] x = _x, lower = _lower, upper = _upper, alpha = _alpha;
+		final int[] head = _head;
+		
+		int nDegenerate = 0;
+		
+		while (true)
+		{
+			if (_nEtas - _nFactorEtas >= _refactorInterval)
+			{
+				refreshBasis();
+			}
+			
+			final boolean bland = nDegenerate > DEGENERATE_LIMIT;
+			
+			final int q = chooseEntering(bland);
+			if (q < 0)
+			{
+				return;
+			}
+			
+			countIteration();
+			ftranColumn(q);
+			
+			final double dir = _atUpper[q] ? -1 : 1;
+			final double flipStep = upper[q] - lower[q];
+			
+			// Harris ratio test: first find largest step allowed by relaxed bounds...
+			double maxStep = flipStep;
+			for (int r = 0; r < m; ++r)
+			{
+				final double a = dir * alpha[r];
+				if (a > PIVOT_TOLERANCE)
+				{
+					final int j = head[r];
+					maxStep = Math.min(maxStep, (x[j] - lower[j] + PRIMAL_TOLERANCE) / a);
+				}
+				else if (a < -PIVOT_TOLERANCE)
+				{
+					final int j = head[r];
+					maxStep = Math.min(maxStep, (upper[j] - x[j] + PRIMAL_TOLERANCE) / -a);
+				}
+			}
+			
+			if (maxStep == Double.POSITIVE_INFINITY)
+			{
+				throw new DimpleException("Linear program is unbounded");
+			}
+			
+			// ...then choose the largest pivot among the rows that block within that step.
+			int p = -1;
+			double pivot = 0, step = flipStep;
+			for (int r = 0; r < m; ++r)
+			{
+				final double a = dir * alpha[r];
+				final int j = head[r];
+				final double t;
+				if (a > PIVOT_TOLERANCE)
+				{
+					t = (x[j] - lower[j]) / a;
+				}
+				else if (a < -PIVOT_TOLERANCE)
+				{
+					t = (upper[j] - x[j]) / -a;
+				}
+				else
+				{
+					continue;
+				}
+				if (t <= maxStep)
+				{
+					final double absa = Math.abs(a);
+					if (bland ? (p < 0 || j < head[p]) : absa > pivot)
+					{
+						p = r;
+						pivot = absa;
+						step = Math.max(0, t);
+					}
+				}
+			}
+			
+			for (int r = 0; r < m; ++r)
+			{
+				final double a = alpha[r];
+				if (a != 0)
+				{
+					x[head[r]] -= dir * step * a;
+				}
+			}
+
+			if (p < 0)
+			{
+				// Entering variable moves to its opposite bound without a basis change
+				_atUpper[q] = !_atUpper[q];
+				x[q] = _atUpper[q] ? upper[q] : lower[q];
+				nDegenerate = 0;
+				continue;
+			}
+			
+			x[q] += dir * step;
+			
+			final int leaving = head[p];
+			final boolean leavesAtUpper = dir * alpha[p] < 0;
+			
+			nDegenerate = step <= PRIMAL_TOLERANCE ? nDegenerate + 1 : 0;
+			
+			computeRowAlpha(p);
+			pivot(p, q);
+			
+			_atUpper[leaving] = leavesAtUpper;
+			x[leaving] = leavesAtUpper ? upper[leaving] : lower[leaving];
+			if (leaving >= _nCols)
+			{
+				// Artificial variables never reenter the basis once they leave.
+				lower[leaving] = upper[leaving] = x[leaving] = 0;
+				_atUpper[leaving] = false;
+			}
+		}
+	}
+	
+	/**
+	 * Chooses nonbasic variable with the most improving reduced cost, or the first improving
+	 * variable if {@code bland} is true. Returns -1 if there is none.
+	 */
+	private int chooseEntering(boolean bland)
+	{
+		final double[] d = _reducedCost, lower = _lower, upper = _upper;
+		final int[] basisRow = _basisRow;
+		
+		int q = -1;
+		double best = DUAL_TOLERANCE;
+		for (int j = 0, end = d.length; j < end; ++j)
+		{
+			if (basisRow[j] >= 0 || upper[j] <= lower[j])
+			{
+				continue;
+			}
+			final double score = _atUpper[j] ? -d[j] : d[j];
+			if (score > best)
+			{
+				q = j;
+				if (bland)
+				{
+					break;
+				}
+				best = score;
+			}
+		}
+		return q;
+	}
+	
+	/*-----------------
+	 * Dual simplex
+	 */
+
+	/**
+	 * Restores primal feasibility starting from a dual feasible basis.
+	 * <p>
+	 * @return false if problem was found to be infeasible.
+	 */
+	private boolean dual()
+	{
+		final int m = _nRows;
+		final double[] x = _x, lower = _lower, upper = _upper, alpha = _alpha, d = _reducedCost;
+		final int[] head = _head;
+		
+		while (true)
+		{
+			if (_nEtas - _nFactorEtas >= _refactorInterval)
+			{
+				refreshBasis();
+			}
+			
+			// Choose most infeasible basic variable to leave.
+			int p = -1;
+			double worst = PRIMAL_TOLERANCE;
+			for (int r = 0; r < m; ++r)
+			{
+				final int j = head[r];
+				final double infeasibility = Math.max(lower[j] - x[j], x[j] - upper[j]);
+				if (infeasibility > worst)
+				{
+					worst = infeasibility;
+					p = r;
+				}
+			}
+			
+			if (p < 0)
+			{
+				return true;
+			}
+			
+			countIteration();
+			computeRowAlpha(p);
+			
+			final int leaving = head[p];
+			final boolean toLower = x[leaving] < lower[leaving];
+			final double sign = toLower ? -1 : 1;
+			
+			// Harris ratio test on reduced costs of variables that can move the leaving variable
+			// toward its violated bound.
+			double maxRatio = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < _nRowAlpha; ++i)
+			{
+				final int j = _rowAlphaIndices[i];
+				final double a = _rowAlpha[j];
+				if (_basisRow[j] < 0 && upper[j] > lower[j] && (_atUpper[j] ? -sign : sign) * a > PIVOT_TOLERANCE)
+				{
+					final double dj = Math.max(0, _atUpper[j] ? d[j] : -d[j]);
+					maxRatio = Math.min(maxRatio, (dj + DUAL_TOLERANCE) / Math.abs(a));
+				}
+			}
+			
+			int q = -1;
+			double pivot = 0;
+			for (int i = 0; i < _nRowAlpha; ++i)
+			{
+				final int j = _rowAlphaIndices[i];
+				final double a = _rowAlpha[j];
+				if (_basisRow[j] < 0 && upper[j] > lower[j] && (_atUpper[j] ? -sign : sign) * a > PIVOT_TOLERANCE)
+				{
+					final double absa = Math.abs(a);
+					final double dj = Math.max(0, _atUpper[j] ? d[j] : -d[j]);
+					if (dj / absa <= maxRatio && absa > pivot)
+					{
+						q = j;
+						pivot = absa;
+					}
+				}
+			}
+			
+			if (q < 0)
+			{
+				return false;
+			}
+			
+			ftranColumn(q);
+			
+			final double bound = toLower ? lower[leaving] : upper[leaving];
+			final double delta = (x[leaving] - bound) / alpha[p];
+			for (int r = 0; r < m; ++r)
+			{
+				final double a = alpha[r];
+				if (a != 0)
+				{
+					x[head[r]] -= a * delta;
+				}
+			}
+			x[q] += delta;
+			
+			pivot(p, q);
+			
+			x[leaving] = bound;
+			_atUpper[leaving] = !toLower;
+		}
+	}
+	
+	/*--------------------
+	 * Branch and bound
+	 */
+	
+	private void branch(int[] integerVars, int maxNodes)
+	{
+		if (_nodes >= maxNodes)
+		{
+			return;
+		}
+		++_nodes;
+		
+		final double value = objectiveValue();
+		if (_incumbent != null && value <= _incumbentValue + DUAL_TOLERANCE * (1 + Math.abs(_incumbentValue)))
+		{
+			return;
+		}
+		
+		// Branch on the variable whose value is closest to one half.
+		int branchVar = -1;
+		double bestDistance = .5 - INTEGER_TOLERANCE;
+		for (int j : integerVars)
+		{
+			final double distance = Math.abs(_x[j] - .5);
+			if (distance < bestDistance)
+			{
+				bestDistance = distance;
+				branchVar = j;
+			}
+		}
+		
+		if (branchVar < 0)
+		{
+			_incumbent = Arrays.copyOf(_x, _nCols);
+			_incumbentValue = value;
+			return;
+		}
+		
+		final double first = _x[branchVar] >= .5 ? 1 : 0;
+		for (double fixedValue : new double[] { first, 1 - first })
+		{
+			setBounds(branchVar, fixedValue, fixedValue);
+			computePrimal();
+			if (dual())
+			{
+				branch(integerVars, maxNodes);
+			}
+		}
+		setBounds(branchVar, 0, 1);
+	}
+	
+	/**
+	 * Sets bounds for variable {@code j}. If the variable is not basic, it will be placed at the
+	 * bound that keeps the basis dual feasible, but the values of the basic variables are not
+	 * updated.
+	 */
+	private void setBounds(int j, double lower, double upper)
+	{
+		_lower[j] = lower;
+		_upper[j] = upper;
+		if (_basisRow[j] < 0)
+		{
+			final boolean atUpper = upper > lower && _reducedCost[j] > 0;
+			_atUpper[j] = atUpper;
+			_x[j] = atUpper ? upper : lower;
+		}
+	}
+	
+	/*------------------
+	 * Basis operations
+	 */
+	
+	private void countIteration()
+	{
+		if (++_iterations > _iterationLimit)
+		{
+			throw new DimpleException("Simplex solver did not converge after %d iterations", _iterationLimit);
+		}
+	}
+	
+	/**
+	 * Replaces basic variable in row {@code p} with {@code q}, updating the reduced costs and
+	 * basis inverse. Requires that {@link #_alpha} holds the transformed column for {@code q}
+	 * and {@link #_rowAlpha} holds row {@code p} of the transformed constraint matrix.
+	 */
+	private void pivot(int p, int q)
+	{
+		final double[] d = _reducedCost;
+		final int leaving = _head[p];
+		
+		final double ratio = d[q] / _alpha[p];
+		for (int i = 0; i < _nRowAlpha; ++i)
+		{
+			final int j = _rowAlphaIndices[i];
+			if (_basisRow[j] < 0)
+			{
+				d[j] -= ratio * _rowAlpha[j];
+			}
+		}
+		d[leaving] = -ratio;
+		d[q] = 0;
+		
+		addEta(p, _alpha);
+		
+		_head[p] = q;
+		_basisRow[q] = p;
+		_basisRow[leaving] = -1;
+	}
+	
+	private void refreshBasis()
+	{
+		refactor();
+		computePrimal();
+		computeReducedCosts();
+	}
+	
+	/**
+	 * Rebuilds the eta file from scratch for the current basis.
+	 * <p>
+	 * Basic artificial variables are placed in their own rows. The structural columns are then added
+	 * in order of increasing density, each pivoting on its largest entry in a row that has not yet
+	 * been used. Columns that turn out to be linearly dependent are dropped from the basis and
+	 * replaced by the artificial variable for an unused row.
+	 */
+	private void refactor()
+	{
+		final int n = _nCols, m = _nRows;
+		final int[] head = _head, basisRow = _basisRow;
+		final double[] alpha = _alpha;
+		
+		_nEtas = 0;
+		
+		final int[] newHead = new int[m];
+		Arrays.fill(newHead, -1);
+		
+		final long[] order = new long[m];
+		int nStructural = 0;
+		for (int r = 0; r < m; ++r)
+		{
+			final int j = head[r];
+			basisRow[j] = -1;
+			if (j >= n)
+			{
+				newHead[j - n] = j;
+			}
+			else
+			{
+				order[nStructural++] = (long)(_colStart[j + 1] - _colStart[j]) << 32 | j;
+			}
+		}
+		Arrays.sort(order, 0, nStructural);
+		
+		for (int k = 0; k < nStructural; ++k)
+		{
+			final int j = (int)order[k];
+			ftranColumn(j);
+			
+			int p = -1;
+			double pivot = 1e-7;
+			for (int r = 0; r < m; ++r)
+			{
+				final double a = Math.abs(alpha[r]);
+				if (a > pivot && newHead[r] < 0)
+				{
+					pivot = a;
+					p = r;
+				}
+			}
+			
+			if (p < 0)
+			{
+				_atUpper[j] = _x[j] > .5 * (_lower[j] + _upper[j]);
+				_x[j] = _atUpper[j] ? _upper[j] : _lower[j];
+				continue;
+			}
+			
+			addEta(p, alpha);
+			newHead[p] = j;
+		}
+		
+		_nFactorEtas = _nEtas;
+		
+		for (int r = 0; r < m; ++r)
+		{
+			if (newHead[r] < 0)
+			{
+				newHead[r] = n + r;
+			}
+			head[r] = newHead[r];
+			basisRow[head[r]] = r;
+		}
+	}
+	
+	private void addEta(int p, double[] column)
+	{
+		final int m = _nRows;
+		final int k = _nEtas;
+		
+		if (k + 1 >= _etaRow.length)
+		{
+			final int size = 2 * _etaRow.length;
+			_etaRow = Arrays.copyOf(_etaRow, size);
+			_etaPivot = Arrays.copyOf(_etaPivot, size);
+			_etaStart = Arrays.copyOf(_etaStart, size + 1);
+		}
+		
+		int start = _etaStart[k];
+		for (int r = 0; r < m; ++r)
+		{
+			final double a = column[r];
+			if (a != 0 && r != p)
+			{
+				if (start >= _etaRows.length)
+				{
+					_etaRows = Arrays.copyOf(_etaRows, 2 * start);
+					_etaValues = Arrays.copyOf(_etaValues, 2 * start);
+				}
+				_etaRows[start] = r;
+				_etaValues[start] = a;
+				++start;
+			}
+		}
+		
+		_etaRow[k] = p;
+		_etaPivot[k] = column[p];
+		_etaStart[k + 1] = start;
+		_nEtas = k + 1;
+	}
+	
+	/**
+	 * Loads column for variable {@code j} into {@link #_alpha} and multiplies by basis inverse.
+	 */
+	private void ftranColumn(int j)
+	{
+		final double[] alpha = _alpha;
+		Arrays.fill(alpha, 0);
+		if (j < _nCols)
+		{
+			for (int k = _colStart[j], end = _colStart[j + 1]; k < end; ++k)
+			{
+				alpha[_colRows[k]] = _colValues[k];
+			}
+		}
+		else
+		{
+			alpha[j - _nCols] = 1;
+		}
+		ftran(alpha);
+	}
+	
+	/**
+	 * Replaces {@code v} with B<sup>-1</sup>v
+	 */
+	private void ftran(double[] v)
+	{
+		final int[] etaRows = _etaRows;
+		final double[] etaValues = _etaValues;
+		
+		for (int k = 0, n = _nEtas; k < n; ++k)
+		{
+			final int p = _etaRow[k];
+			final double vp = v[p];
+			if (vp != 0)
+			{
+				final double xp = vp / _etaPivot[k];
+				v[p] = xp;
+				for (int i = _etaStart[k], end = _etaStart[k + 1]; i < end; ++i)
+				{
+					v[etaRows[i]] -= etaValues[i] * xp;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Replaces {@code v} with v<sup>T</sup>B<sup>-1</sup>
+	 */
+	private void btran(double[] v)
+	{
+		final int[] etaRows = _etaRows;
+		final double[] etaValues = _etaValues;
+		
+		for (int k = _nEtas; --k >= 0;)
+		{
+			final int p = _etaRow[k];
+			double vp = v[p];
+			for (int i = _etaStart[k], end = _etaStart[k + 1]; i < end; ++i)
+			{
+				vp -= etaValues[i] * v[etaRows[i]];
+			}
+			v[p] = vp / _etaPivot[k];
+		}
+	}
+	
+	/**
+	 * Computes row {@code p} of B<sup>-1</sup>A into {@link #_rowAlpha}, recording the
+	 * indexes of its non-zero entries in {@link #_rowAlphaIndices}.
+	 */
+	private void computeRowAlpha(int p)
+	{
+		final int n = _nCols, m = _nRows;
+		final double[] rowAlpha = _rowAlpha, rho = _rho;
+		final int[] indices = _rowAlphaIndices;
+		
+		for (int i = 0; i < _nRowAlpha; ++i)
+		{
+			rowAlpha[indices[i]] = 0;
+		}
+		int count = 0;
+		
+		Arrays.fill(rho, 0);
+		rho[p] = 1;
+		btran(rho);
+		
+		for (int i = 0; i < m; ++i)
+		{
+			final double rhoi = rho[i];
+			if (rhoi == 0)
+			{
+				continue;
+			}
+			for (int k = _rowStart[i], end = _rowStart[i + 1]; k < end; ++k)
+			{
+				final int j = _rowCols[k];
+				if (rowAlpha[j] == 0)
+				{
+					indices[count++] = j;
+				}
+				rowAlpha[j] += rhoi * _rowValues[k];
+				if (rowAlpha[j] == 0)
+				{
+					// Keep entry recorded if it cancels to zero.
+					rowAlpha[j] = Double.MIN_VALUE;
+				}
+			}
+			rowAlpha[n + i] = rhoi;
+			indices[count++] = n + i;
+		}
+		
+		_nRowAlpha = count;
+	}
+	
+	/**
+	 * Recomputes values of basic variables from values of nonbasic variables.
+	 */
+	private void computePrimal()
+	{
+		final int n = _nCols, m = _nRows;
+		final double[] x = _x, w = _alpha;
+		
+		System.arraycopy(_rhs, 0, w, 0, m);
+		for (int j = 0; j < n; ++j)
+		{
+			final double xj = x[j];
+			if (_basisRow[j] < 0 && xj != 0)
+			{
+				for (int k = _colStart[j], end = _colStart[j + 1]; k < end; ++k)
+				{
+					w[_colRows[k]] -= _colValues[k] * xj;
+				}
+			}
+		}
+		for (int i = 0; i < m; ++i)
+		{
+			if (_basisRow[n + i] < 0)
+			{
+				w[i] -= x[n + i];
+			}
+		}
+		
+		ftran(w);
+		
+		for (int r = 0; r < m; ++r)
+		{
+			x[_head[r]] = w[r];
+		}
+	}
+	
+	/**
+	 * Recomputes reduced costs of all variables from {@link #_cost}.
+	 */
+	private void computeReducedCosts()
+	{
+		final int n = _nCols, m = _nRows;
+		final double[] y = _rho, cost = _cost, d = _reducedCost;
+		
+		for (int r = 0; r < m; ++r)
+		{
+			y[r] = cost[_head[r]];
+		}
+		btran(y);
+		
+		for (int j = 0; j < n; ++j)
+		{
+			double dj = 0;
+			if (_basisRow[j] < 0)
+			{
+				dj = cost[j];
+				for (int k = _colStart[j], end = _colStart[j + 1]; k < end; ++k)
+				{
+					dj -= y[_colRows[k]] * _colValues[k];
+				}
+			}
+			d[j] = dj;
+		}
+		for (int i = 0; i < m; ++i)
+		{
+			final int j = n + i;
+			d[j] = _basisRow[j] < 0 ? cost[j] - y[i] : 0;
+		}
+	}
+	
+	private double maxInfeasibility()
+	{
+		double max = 0;
+		for (int j = 0, end = _x.length; j < end; ++j)
+		{
+			max = Math.max(max, Math.max(_lower[j] - _x[j], _x[j] - _upper[j]));
+		}
+		return max;
+	}
+	
+	private double objectiveValue()
+	{
+		double value = 0;
+		for (int j = 0, n = _nCols; j < n; ++j)
+		{
+			value += _objective[j] * _x[j];
+		}
+		return value;
+	}
+	
+	/**
+	 * Builds compressed column form of constraint matrix from row form.
+	 */
+	private void buildColumns()
+	{
+		final int n = _nCols, m = _nRows;
+		final int nnz = _rowCols.length;
+		
+		final int[] colStart = new int[n + 1];
+		for (int k = 0; k < nnz; ++k)
+		{
+			++colStart[_rowCols[k] + 1];
+		}
+		for (int j = 0; j < n; ++j)
+		{
+			colStart[j + 1] += colStart[j];
+		}
+		
+		final int[] next = Arrays.copyOf(colStart, n);
+		final int[] colRows = new int[nnz];
+		final double[] colValues = new double[nnz];
+		for (int i = 0; i < m; ++i)
+		{
+			for (int k = _rowStart[i], end = _rowStart[i + 1]; k < end; ++k)
+			{
+				final int pos = next[_rowCols[k]]++;
+				colRows[pos] = i;
+				colValues[pos] = _rowValues[k];
+			}
+		}
+		
+		_colStart = colStart;
+		_colRows = colRows;
+		_colValues = colValues;
+	}
+}
@@ -39,6 +39,7 @@ import com.analog.lyric.dimple.solvers.optimizedupdate.CostType;
 import com.analog.lyric.dimple.solvers.optimizedupdate.Costs;
 import com.analog.lyric.dimple.solvers.optimizedupdate.FactorTableUpdateSettings;
 import com.analog.lyric.dimple.solvers.optimizedupdate.FactorUpdatePlan;
+import com.analog.lyric.dimple.solvers.optimizedupdate.FactorUpdatePlanCache;
 import com.analog.lyric.dimple.solvers.optimizedupdate.IMarginalizationStep;
 import com.analog.lyric.dimple.solvers.optimizedupdate.IMarginalizationStepEstimator;
 import com.analog.lyric.dimple.solvers.optimizedupdate.ISFactorGraphToOptimizedUpdateAdapter;
@@ -48,6 +49,7 @@ import com.analog.lyric.dimple.solvers.optimizedupdate.TableWrapper;
 import com.analog.lyric.dimple.solvers.optimizedupdate.UpdateApproach;
 import com.analog.lyric.dimple.solvers.optimizedupdate.UpdateCostOptimizer;
 import com.analog.lyric.options.IOptionKey;
+import com.analog.lyric.util.misc.Internal;
 
 /**
  * Solver-specific factor graph for min-sum solver.
@@ -71,7 +73,7 @@ public class MinSumSolverGraph extends SFactorGraphBase
 	{
 		_damping = getOptionOrDefault(BPOptions.damping);
 		super.initialize();
-		UpdateCostOptimizer optimizer = new UpdateCostOptimizer(_optimizedUpdateAdapter);
+		UpdateCostOptimizer optimizer = new UpdateCostOptimizer(_optimizedUpdateAdapter, _updatePlanCache);
 		optimizer.optimize(_factorGraph);
 		for (Factor f : getModelObject().getFactors())
 		{
@@ -167,6 +169,20 @@ public class MinSumSolverGraph extends SFactorGraphBase
 
 	private final ISFactorGraphToOptimizedUpdateAdapter _optimizedUpdateAdapter = new SFactorGraphToOptimizedUpdateAdapter(this);
 
+	private final FactorUpdatePlanCache _updatePlanCache = new FactorUpdatePlanCache();
+
+	/**
+	 * The cache of optimized update plans that lets {@link #initialize()} reuse the plans built by
+	 * earlier initializations for factor tables that have not changed.
+	 * 
+	 * @since 0.08
+	 */
+	@Internal
+	public FactorUpdatePlanCache getUpdatePlanCache()
+	{
+		return _updatePlanCache;
+	}
+
 	private static class SFactorGraphToOptimizedUpdateAdapter implements ISFactorGraphToOptimizedUpdateAdapter
 	{
 		final private MinSumSolverGraph _minSumSolverGraph;
@@ -82,6 +82,8 @@ public class MinSumTableFactor extends STableFactorDoubleArray
 		super.initialize();
 		configureDampingFromOptions();
 		updateK(getOptionOrDefault(BPOptions.maxMessageSize));
+		_kbestFactorEngine.setMaxMemoSize(getOptionOrDefault(BPOptions.maxKBestMemoSize));
+		_kbestFactorEngine.reset();
 	}
 
 	void setupTableFactorEngine()
@@ -96,6 +98,10 @@ public class MinSumTableFactor extends STableFactorDoubleArray
 		{
 			_tableFactorEngine = new TableFactorEngineOptimized(this, updatePlan);
 		}
+		else if (getOptionOrDefault(BPOptions.usePackedTableIndices))
+		{
+			_tableFactorEngine = new TableFactorEnginePacked(this);
+		}
 		else
 		{
 			_tableFactorEngine = new TableFactorEngine(this);
@@ -273,9 +279,15 @@ public class MinSumTableFactor extends STableFactorDoubleArray
 	}
 	
 	@Override
-	public int[] findKBestForMsg(double[] msg, int k)
+	public void findKBestForMsg(double[] msg, int k, int[] indices, double[] scratch)
+	{
+		Selection.findFirstKIndices(msg, k, indices, scratch);
+	}
+
+	@Override
+	public double factorValueFromEnergy(double energy)
 	{
-		return Selection.findFirstKIndices(msg, k);
+		return energy;
 	}
 
 
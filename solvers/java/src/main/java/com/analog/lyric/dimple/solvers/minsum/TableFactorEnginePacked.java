@@ -0,0 +1,170 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.minsum;
+
+import java.util.Arrays;
+
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+
+/**
+ * Min-sum table factor update that iterates over packed factor table indices.
+ * <p>
+ * Computes the same messages as {@link TableFactorEngine}, but reads the element indices of
+ * each table entry from the contiguous row-major array provided by
+ * {@link IFactorTable#getIndicesSparsePackedUnsafe()} instead of from a separate array object
+ * per entry.
+ * <p>
+ * @since 0.08
+ * @see com.analog.lyric.dimple.options.BPOptions#usePackedTableIndices
+ */
+public class TableFactorEnginePacked extends TableFactorEngine
+{
+	public TableFactorEnginePacked(MinSumTableFactor tableFactor)
+	{
+		super(tableFactor);
+	}
+
+	@Override
+	public void updateEdge(int outPortNum)
+	{
+		final IFactorTable factorTable = _tableFactor.getFactorTable();
+		final int[] indices = factorTable.getIndicesSparsePackedUnsafe();
+		final double[] values = factorTable.getEnergiesSparseUnsafe();
+		final int tableLength = values.length;
+		final int numPorts = _factor.getSiblingCount();
+
+		final double[] outputMsgs = _tableFactor.getOutPortMsgs()[outPortNum];
+		final double[][] inPortMsgs = _tableFactor.getInPortMsgs();
+		final int outputMsgLength = outputMsgs.length;
+
+		saveForDamping(outPortNum, outputMsgs);
+
+		Arrays.fill(outputMsgs, Double.POSITIVE_INFINITY);
+
+		// Run through each row of the function table
+		for (int tableIndex = 0, rowOffset = 0; tableIndex < tableLength; ++tableIndex, rowOffset += numPorts)
+		{
+			double L = values[tableIndex];
+
+			for (int inPortNum = 0; inPortNum < outPortNum; ++inPortNum)
+				L += inPortMsgs[inPortNum][indices[rowOffset + inPortNum]];
+			for (int inPortNum = outPortNum + 1; inPortNum < numPorts; ++inPortNum)
+				L += inPortMsgs[inPortNum][indices[rowOffset + inPortNum]];
+
+			final int outputIndex = indices[rowOffset + outPortNum];
+			if (L < outputMsgs[outputIndex])
+				outputMsgs[outputIndex] = L;				// Use the minimum value
+		}
+
+		// The minimum must be computed prior to damping, as in the unpacked engine.
+		double minPotential = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < outputMsgLength; i++)
+		{
+			final double msg = outputMsgs[i];
+			if (msg < minPotential)
+				minPotential = msg;
+		}
+
+		applyDamping(outPortNum, outputMsgs);
+
+		// Normalize min value
+		for (int i = 0; i < outputMsgLength; i++)
+			outputMsgs[i] -= minPotential;
+	}
+
+	@Override
+	public void update()
+	{
+		final IFactorTable factorTable = _tableFactor.getFactorTable();
+		final int[] indices = factorTable.getIndicesSparsePackedUnsafe();
+		final double[] values = factorTable.getEnergiesSparseUnsafe();
+		final int tableLength = values.length;
+		final int numPorts = _factor.getSiblingCount();
+		final double[][] outPortMsgs = _tableFactor.getOutPortMsgs();
+		final double[][] inPortMsgs = _tableFactor.getInPortMsgs();
+
+		for (int port = 0; port < numPorts; port++)
+		{
+			final double[] outputMsgs = outPortMsgs[port];
+			saveForDamping(port, outputMsgs);
+			Arrays.fill(outputMsgs, Double.POSITIVE_INFINITY);
+		}
+
+		// Run through each row of the function table
+		for (int tableIndex = 0, rowOffset = 0; tableIndex < tableLength; ++tableIndex, rowOffset += numPorts)
+		{
+			// Sum up the function value plus the messages on all ports
+			double L = values[tableIndex];
+			for (int port = 0; port < numPorts; port++)
+				L += inPortMsgs[port][indices[rowOffset + port]];
+
+			// Run through each output port
+			for (int outPortNum = 0; outPortNum < numPorts; outPortNum++)
+			{
+				final double[] outputMsgs = outPortMsgs[outPortNum];
+				final int outputIndex = indices[rowOffset + outPortNum];
+				final double LThisPort = L - inPortMsgs[outPortNum][outputIndex];	// Subtract out the message from this output port
+				if (LThisPort < outputMsgs[outputIndex])
+					outputMsgs[outputIndex] = LThisPort;	// Use the minimum value
+			}
+		}
+
+		for (int port = 0; port < numPorts; port++)
+		{
+			final double[] outputMsgs = outPortMsgs[port];
+			applyDamping(port, outputMsgs);
+
+			// Normalize the outputs
+			final int outputMsgLength = outputMsgs.length;
+			double minPotential = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < outputMsgLength; i++)
+			{
+				final double msg = outputMsgs[i];
+				if (msg < minPotential)
+					minPotential = msg;
+			}
+			for (int i = 0; i < outputMsgLength; i++)
+				outputMsgs[i] -= minPotential;			// Normalize min value
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void saveForDamping(int outPortNum, double[] outputMsgs)
+	{
+		if (_tableFactor._dampingInUse && _tableFactor._dampingParams[outPortNum] != 0)
+		{
+			System.arraycopy(outputMsgs, 0, _tableFactor._savedOutMsgArray[outPortNum], 0, outputMsgs.length);
+		}
+	}
+
+	private void applyDamping(int outPortNum, double[] outputMsgs)
+	{
+		if (_tableFactor._dampingInUse)
+		{
+			final double damping = _tableFactor._dampingParams[outPortNum];
+			if (damping != 0)
+			{
+				final double[] saved = _tableFactor._savedOutMsgArray[outPortNum];
+				for (int i = 0, n = outputMsgs.length; i < n; i++)
+					outputMsgs[i] = (1-damping)*outputMsgs[i] + damping*saved[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright 2015 Analog Devices, Inc. Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable
+ * law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License
+ * for the specific language governing permissions and limitations under the License.
+ ********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.optimizedupdate;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorTableRepresentation;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.domains.JointDomainIndexer;
+import com.analog.lyric.util.misc.Internal;
+
+/**
+ * Keeps the {@link FactorUpdatePlan}s and automatic update approach decisions made by
+ * {@link UpdateCostOptimizer} so that they can be reused by subsequent optimizations of the same
+ * solver graph.
+ * <p>
+ * A plan, including its auxiliary tables, is built once per factor table and shared by all of
+ * the factors that use that table. Without this cache, the plans are rebuilt every time the solver
+ * graph is initialized. Entries are keyed by factor table identity and are only reused while the
+ * table's domain indexer (which determines the port ordering), its representation, the identity of
+ * its index and value arrays, and the {@link FactorTableUpdateSettings} that affect the entry are all
+ * unchanged.
+ * Changes to individual weights or energies that are made in place do not invalidate a plan,
+ * because plans read the table's values when they are applied.
+ * <p>
+ * The plans refer to the adapter used to build them, so a cache should only be used with a single
+ * {@link ISFactorGraphToOptimizedUpdateAdapter}. This class is not thread-safe.
+ *
+ * @since 0.08
+ */
+@Internal
+public final class FactorUpdatePlanCache
+{
+	/*-------
+	 * State
+	 */
+
+	private final Map<IFactorTable, Entry> _entries = new IdentityHashMap<>();
+
+	private long _hits;
+	private long _misses;
+
+	private static final class Entry
+	{
+		private final JointDomainIndexer _domainIndexer;
+		private final FactorTableRepresentation _representation;
+		private final @Nullable int[][] _indices;
+
+		private @Nullable FactorUpdatePlan _plan;
+		private @Nullable double[] _planValues;
+		private double _planSparseThreshold;
+
+		private @Nullable UpdateApproach _decision;
+		private double _decisionSparseThreshold;
+		private double _executionTimeScalingFactor;
+		private double _memoryAllocationScalingFactor;
+		private int _count;
+		private int _workers;
+		private int _nonZeroWeights;
+
+		private Entry(IFactorTable factorTable)
+		{
+			_domainIndexer = factorTable.getDomainIndexer();
+			_representation = factorTable.getRepresentation();
+			_indices = indices(factorTable);
+		}
+
+		private boolean isCurrent(IFactorTable factorTable)
+		{
+			return _domainIndexer == factorTable.getDomainIndexer()
+				&& _representation == factorTable.getRepresentation()
+				&& _indices == indices(factorTable);
+		}
+
+		private static @Nullable int[][] indices(IFactorTable factorTable)
+		{
+			// Avoid implicitly adding sparse indices to the table's representation.
+			return factorTable.hasSparseIndices() ? factorTable.getIndicesSparseUnsafe() : null;
+		}
+	}
+
+	/*---------
+	 * Methods
+	 */
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear()
+	{
+		_entries.clear();
+	}
+
+	/**
+	 * The number of lookups that have been satisfied from the cache, including both plans and
+	 * automatic update approach decisions.
+	 */
+	public long getHits()
+	{
+		return _hits;
+	}
+
+	/**
+	 * The number of lookups that could not be satisfied from the cache, including both plans and
+	 * automatic update approach decisions.
+	 */
+	public long getMisses()
+	{
+		return _misses;
+	}
+
+	/**
+	 * The number of factor tables that currently have entries.
+	 */
+	public int size()
+	{
+		return _entries.size();
+	}
+
+	/**
+	 * Returns the update plan for {@code factorTable}, building it with
+	 * {@link FactorUpdatePlan#create} if there is no current plan for the table built with the same
+	 * {@code sparseThreshold}.
+	 */
+	public FactorUpdatePlan getPlan(IFactorTable factorTable,
+		ISFactorGraphToOptimizedUpdateAdapter adapter,
+		double sparseThreshold)
+	{
+		// Fetch the values first, as that may change the table's representation, just as it would
+		// when building the plan.
+		final double[] values = factorTable.hasSparseRepresentation() ?
+			adapter.getSparseValues(factorTable) : adapter.getDenseValues(factorTable);
+		final Entry entry = entry(factorTable);
+		FactorUpdatePlan plan = entry._plan;
+		if (plan != null && entry._planValues == values && entry._planSparseThreshold == sparseThreshold)
+		{
+			++_hits;
+		}
+		else
+		{
+			++_misses;
+			plan = entry._plan = FactorUpdatePlan.create(factorTable, adapter, sparseThreshold);
+			entry._planValues = values;
+			entry._planSparseThreshold = sparseThreshold;
+		}
+		return plan;
+	}
+
+	/**
+	 * Returns the automatic update approach previously {@linkplain #putAutomaticUpdateApproach
+	 * recorded} for {@code factorTable} with the same settings and worker count, or null if there
+	 * is none.
+	 */
+	public @Nullable UpdateApproach getAutomaticUpdateApproach(IFactorTable factorTable,
+		FactorTableUpdateSettings settings,
+		int workers)
+	{
+		final Entry entry = entry(factorTable);
+		final UpdateApproach decision = entry._decision;
+		if (decision != null
+			&& entry._decisionSparseThreshold == settings.getSparseThreshold()
+			&& entry._executionTimeScalingFactor == settings.getExecutionTimeScalingFactor()
+			&& entry._memoryAllocationScalingFactor == settings.getMemoryAllocationScalingFactor()
+			&& entry._count == settings.getCount()
+			&& entry._workers == workers
+			&& entry._nonZeroWeights == factorTable.countNonZeroWeights())
+		{
+			++_hits;
+			return decision;
+		}
+		++_misses;
+		return null;
+	}
+
+	/**
+	 * Records the automatic update approach chosen for {@code factorTable} with the given settings
+	 * and worker count.
+	 */
+	public void putAutomaticUpdateApproach(IFactorTable factorTable,
+		FactorTableUpdateSettings settings,
+		int workers,
+		UpdateApproach decision)
+	{
+		final Entry entry = entry(factorTable);
+		entry._decision = decision;
+		entry._decisionSparseThreshold = settings.getSparseThreshold();
+		entry._executionTimeScalingFactor = settings.getExecutionTimeScalingFactor();
+		entry._memoryAllocationScalingFactor = settings.getMemoryAllocationScalingFactor();
+		entry._count = settings.getCount();
+		entry._workers = workers;
+		entry._nonZeroWeights = factorTable.countNonZeroWeights();
+	}
+
+	/**
+	 * Removes the entries for all factor tables other than those in {@code factorTables}, which
+	 * is expected to be a collection that compares by identity.
+	 */
+	public void retainAll(Collection<IFactorTable> factorTables)
+	{
+		_entries.keySet().retainAll(factorTables);
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private Entry entry(IFactorTable factorTable)
+	{
+		Entry entry = _entries.get(factorTable);
+		if (entry == null || !entry.isCurrent(factorTable))
+		{
+			entry = new Entry(factorTable);
+			_entries.put(factorTable, entry);
+		}
+		return entry;
+	}
+}
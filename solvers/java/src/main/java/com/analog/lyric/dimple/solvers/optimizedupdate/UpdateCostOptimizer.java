@@ -42,6 +42,10 @@ import com.analog.lyric.util.misc.Internal;
  * For cost estimation, when multithreading is enabled on the graph, allocation costs are multiplied
  * by the lesser of the worker count or the quantity of factors sharing a factor table, and
  * execution time costs are divided by the same quantity.
+ * <p>
+ * When constructed with a {@link FactorUpdatePlanCache}, plans and automatic approach decisions
+ * are taken from the cache where possible, so that optimizing the same graph again does not rebuild
+ * the plans for factor tables that have not changed.
  * 
  * @since 0.07
  * @author jking
@@ -51,9 +55,24 @@ public final class UpdateCostOptimizer
 {
 	private final ISFactorGraphToOptimizedUpdateAdapter _sFactorGraphAdapter;
 	
+	private final @Nullable FactorUpdatePlanCache _planCache;
+	
 	public UpdateCostOptimizer(ISFactorGraphToOptimizedUpdateAdapter sFactorGraphAdapter)
+	{
+		this(sFactorGraphAdapter, null);
+	}
+	
+	/**
+	 * @param planCache if non-null, plans and automatic approach decisions will be reused from and
+	 * recorded in this cache. Entries for factor tables that are no longer used by the graph are
+	 * removed from the cache by {@link #optimize}.
+	 * @since 0.08
+	 */
+	public UpdateCostOptimizer(ISFactorGraphToOptimizedUpdateAdapter sFactorGraphAdapter,
+		@Nullable FactorUpdatePlanCache planCache)
 	{
 		_sFactorGraphAdapter = sFactorGraphAdapter;
+		_planCache = planCache;
 	}
 	
 	private class UpdateCollector implements IScheduledActivity
@@ -189,6 +208,11 @@ public final class UpdateCostOptimizer
 		final ISchedule schedule = factorGraph.getSchedule();
 		final IScheduledActivity updatesCollector = new UpdateCollector(settingsByFactorTable);
 		ScheduleVisitor.visit(schedule, ScheduleVisitorFactorFilter.create(updatesCollector));
+		final FactorUpdatePlanCache planCache = _planCache;
+		if (planCache != null)
+		{
+			planCache.retainAll(settingsByFactorTable.keySet());
+		}
 		for (Entry<IFactorTable, FactorTableUpdateSettings> entry : settingsByFactorTable.entrySet())
 		{
 			final IFactorTable factorTable = entry.getKey();
@@ -201,9 +225,10 @@ public final class UpdateCostOptimizer
 					|| (updateApproach == UpdateApproach.AUTOMATIC &&
 						chooseUpdateApproach(workers, factorTable, factorTableUpdateSettings)))
 				{
-					updatePlan =
-						FactorUpdatePlan.create(factorTable, _sFactorGraphAdapter,
-							factorTableUpdateSettings.getSparseThreshold());
+					final double sparseThreshold = factorTableUpdateSettings.getSparseThreshold();
+					updatePlan = planCache != null ?
+						planCache.getPlan(factorTable, _sFactorGraphAdapter, sparseThreshold) :
+						FactorUpdatePlan.create(factorTable, _sFactorGraphAdapter, sparseThreshold);
 				}
 				factorTableUpdateSettings.setOptimizedUpdatePlan(updatePlan);
 			}
@@ -215,7 +240,14 @@ public final class UpdateCostOptimizer
 		final FactorTableUpdateSettings factorTableUpdateSettings)
 	{
 		boolean createOptimizedUpdatePlan = false;
-		if (factorTable.getDimensions() > 1)
+		final FactorUpdatePlanCache planCache = _planCache;
+		final UpdateApproach cachedApproach = planCache != null ?
+			planCache.getAutomaticUpdateApproach(factorTable, factorTableUpdateSettings, workers) : null;
+		if (cachedApproach != null)
+		{
+			createOptimizedUpdatePlan = cachedApproach == UpdateApproach.OPTIMIZED;
+		}
+		else if (factorTable.getDimensions() > 1)
 		{
 			Costs optimizedCosts =
 				_sFactorGraphAdapter.estimateCostOfOptimizedUpdate(factorTable,
@@ -241,8 +273,12 @@ public final class UpdateCostOptimizer
 					factorTableUpdateSettings.getMemoryAllocationScalingFactor());
 			createOptimizedUpdatePlan = optimizedCost <= normalCost;
 		}
-		factorTableUpdateSettings.setAutomaticUpdateApproach(createOptimizedUpdatePlan ?
-			UpdateApproach.OPTIMIZED : UpdateApproach.NORMAL);
+		final UpdateApproach approach = createOptimizedUpdatePlan ? UpdateApproach.OPTIMIZED : UpdateApproach.NORMAL;
+		if (planCache != null && cachedApproach == null)
+		{
+			planCache.putAutomaticUpdateApproach(factorTable, factorTableUpdateSettings, workers, approach);
+		}
+		factorTableUpdateSettings.setAutomaticUpdateApproach(approach);
 		return createOptimizedUpdatePlan;
 	}
 
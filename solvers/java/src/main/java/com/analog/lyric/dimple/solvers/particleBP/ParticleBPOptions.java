@@ -127,4 +127,21 @@ public class ParticleBPOptions extends BPOptions
 	public static final DoubleOptionKey initialTemperature =
 		new DoubleOptionKey(ParticleBPOptions.class, "initialTemperature", 1.0, 0.0, Double.MAX_VALUE);
 	
+	/**
+	 * Specifies the maximum size of the cached factor weight table for real factors in particle BP solver.
+	 * <p>
+	 * Affects particle BP {@linkplain ParticleBPRealFactor solver factor} objects.
+	 * <p>
+	 * When the number of combinations of particle values of a real factor's variables is no larger than
+	 * this value, the factor caches the factor function's weight for every combination and only recomputes
+	 * them after one of its variables has been resampled. Otherwise the weights are recomputed on every update.
+	 * Set to zero to disable caching.
+	 * <p>
+	 * Defaults to 262144 (2<sup>18</sup>).
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final IntegerOptionKey maxCachedFactorWeights =
+		new IntegerOptionKey(ParticleBPOptions.class, "maxCachedFactorWeights", 1<<18, 0, Integer.MAX_VALUE);
+	
 }
@@ -318,7 +318,7 @@ public class ParticleBPReal extends SRealVariableBase
 						else
 							rejectionThreshold = 0;
 					}
-					if (DimpleRandomGenerator.rand.nextDouble() < rejectionThreshold)
+					if (DimpleRandomGenerator.rand().nextDouble() < rejectionThreshold)
 					{
 						sampleValue = proposalValue;
 						potential = potentialProposed;
@@ -19,6 +19,8 @@ package com.analog.lyric.dimple.solvers.particleBP;
 
 import static java.util.Objects.*;
 
+import java.util.Arrays;
+
 import org.eclipse.jdt.annotation.Nullable;
 
 import com.analog.lyric.collect.ArrayUtil;
@@ -50,6 +52,24 @@ public class ParticleBPRealFactor extends SFactorBase
 	protected boolean _moreCombinations;
 	protected double _beta = 1;
 
+	// State for evaluating the factor function over blocks of particles using FactorFunction.evalEnergies.
+	// Only used when every value in every variable domain is a Double.
+	private boolean _batched;
+	private double[][] _particles = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;	// Unboxed copy of _variableDomains
+	private double[][] _blockColumns = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
+	private double[][] _fillColumns = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
+	private double[] _energies = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+
+	// Cached factor weights, exp(-beta * energy), for every combination of particles, with port 0 varying
+	// fastest. Valid until one of the real variables is resampled or beta changes.
+	private int _maxCachedWeights;
+	private int _weightsSize;		// Number of combinations, or -1 if too many to cache
+	private double[] _weights = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+	private boolean _weightsValid;
+	private double _weightsBeta;
+	private ParticleBPSolverVariableToFactorMessage[] _particleMessages = new ParticleBPSolverVariableToFactorMessage[0];	// null for discrete
+	private int[] _weightsVersions = ArrayUtil.EMPTY_INT_ARRAY;
+
 
 	
 	public ParticleBPRealFactor(Factor factor)
@@ -63,6 +83,12 @@ public class ParticleBPRealFactor extends SFactorBase
 	{
 		FactorFunction factorFunction = _realFactor.getFactorFunction();
 
+		if (_batched)
+		{
+			loadParticles();
+			return getMarginalPotentialBatched(factorFunction, value, outPortIndex);
+		}
+		
         double marginal = 0;
         initializeVariableCombinations();
 		_variableValues[outPortIndex] = value;	// Use the specified value for the output port
@@ -92,6 +118,13 @@ public class ParticleBPRealFactor extends SFactorBase
 	{
 		FactorFunction factorFunction = _realFactor.getFactorFunction();
 
+		if (_batched)
+		{
+			loadParticles();
+			updateEdgeBatched(factorFunction, outPortNum);
+			return;
+		}
+		
         double[] outputMsgs = _outMsgArray[outPortNum];
     	int outputMsgLength = outputMsgs.length;
         for (int i = 0; i < outputMsgLength; i++) outputMsgs[i] = 0;
@@ -124,6 +157,14 @@ public class ParticleBPRealFactor extends SFactorBase
 	{
 		FactorFunction factorFunction = _realFactor.getFactorFunction();
 
+		if (_batched)
+		{
+			loadParticles();
+			for (int outPortNum = 0; outPortNum < _numPorts; outPortNum++)
+				updateEdgeBatched(factorFunction, outPortNum);
+			return;
+		}
+		
 		for (int outPortNum = 0; outPortNum < _numPorts; outPortNum++)
 		{
 			double[] outputMsgs = _outMsgArray[outPortNum];
@@ -155,6 +196,235 @@ public class ParticleBPRealFactor extends SFactorBase
 	
 	
 	
+	// Computes the output message for the given port, evaluating the factor function once per
+	// combination of the other ports' particles over the whole block of the output port's particles.
+	private void updateEdgeBatched(FactorFunction factorFunction, int outPortNum)
+	{
+		if (useCachedWeights(factorFunction))
+		{
+			updateEdgeCached(outPortNum);
+			return;
+		}
+		
+		final double[] outputMsgs = _outMsgArray[outPortNum];
+		final int outputMsgLength = outputMsgs.length;
+		final double[] energies = _energies;
+		final double beta = _beta;
+		Arrays.fill(outputMsgs, 0);
+
+		final double[][] columns = setupBlockColumns(outPortNum);
+		Arrays.fill(_variableIndices, 0);
+		do
+		{
+			final double weight = fillBlockColumns(outPortNum, -1, outputMsgLength);
+			if (weight != 0)
+			{
+				factorFunction.evalEnergies(columns, outputMsgLength, energies);
+				for (int i = 0; i < outputMsgLength; i++)
+					outputMsgs[i] += weight * Math.exp(-beta * energies[i]);
+			}
+		} while (nextBlock(outPortNum, -1));
+
+		double sum = 0;
+		for (int i = 0; i < outputMsgLength; i++) sum += outputMsgs[i];
+		for (int i = 0; i < outputMsgLength; i++) outputMsgs[i] /= sum;
+	}
+
+	// Computes the output message for the given port from the cached weights
+	private void updateEdgeCached(int outPortNum)
+	{
+		final double[] outputMsgs = _outMsgArray[outPortNum];
+		final int outputMsgLength = outputMsgs.length;
+		final double[] weights = _weights;
+		final int blockSize = _variableDomainLengths[0];
+		Arrays.fill(outputMsgs, 0);
+
+		int offset = 0;
+		Arrays.fill(_variableIndices, 0);
+		if (outPortNum == 0)
+		{
+			do
+			{
+				final double weight = otherPortsWeight(0, -1);
+				if (weight != 0)
+				{
+					for (int i = 0; i < blockSize; i++)
+						outputMsgs[i] += weight * weights[offset + i];
+				}
+				offset += blockSize;
+			} while (nextBlock(0, -1));
+		}
+		else
+		{
+			final double[] blockMsgs = _inPortMsgs[0];
+			do
+			{
+				final double weight = otherPortsWeight(0, outPortNum);
+				if (weight != 0)
+				{
+					double blockSum = 0;
+					for (int i = 0; i < blockSize; i++)
+						blockSum += weights[offset + i] * blockMsgs[i];
+					outputMsgs[_variableIndices[outPortNum]] += weight * blockSum;
+				}
+				offset += blockSize;
+			} while (nextBlock(0, -1));
+		}
+
+		double sum = 0;
+		for (int i = 0; i < outputMsgLength; i++) sum += outputMsgs[i];
+		for (int i = 0; i < outputMsgLength; i++) outputMsgs[i] /= sum;
+	}
+	
+	// Returns true if the cached weights may be used, recomputing them first if any variable has been resampled
+	private boolean useCachedWeights(FactorFunction factorFunction)
+	{
+		final int size = _weightsSize;
+		if (size < 0 || size > _maxCachedWeights)
+			return false;
+
+		final ParticleBPSolverVariableToFactorMessage[] particleMessages = _particleMessages;
+		boolean valid = _weightsValid && _weightsBeta == _beta;
+		for (int iPort = 0; iPort < _numPorts; iPort++)
+		{
+			final ParticleBPSolverVariableToFactorMessage message = particleMessages[iPort];
+			if (message != null && message.resamplingVersion != _weightsVersions[iPort])
+			{
+				_weightsVersions[iPort] = message.resamplingVersion;
+				valid = false;
+			}
+		}
+		
+		if (!valid)
+		{
+			if (_weights.length != size)
+				_weights = new double[size];
+			
+			final double[] weights = _weights;
+			final double[] energies = _energies;
+			final double beta = _weightsBeta = _beta;
+			final int blockSize = _variableDomainLengths[0];
+			final double[][] columns = setupBlockColumns(0);
+			int offset = 0;
+			Arrays.fill(_variableIndices, 0);
+			do
+			{
+				fillBlockColumns(0, -1, blockSize);
+				factorFunction.evalEnergies(columns, blockSize, energies);
+				for (int i = 0; i < blockSize; i++)
+					weights[offset + i] = Math.exp(-beta * energies[i]);
+				offset += blockSize;
+			} while (nextBlock(0, -1));
+			_weightsValid = true;
+		}
+		
+		return true;
+	}
+	
+	// Same as the unbatched getMarginalPotential, but evaluates blocks over the particles of
+	// some port other than the output port, whose column is filled with the given value.
+	private double getMarginalPotentialBatched(FactorFunction factorFunction, double value, int outPortIndex)
+	{
+		final double[] energies = _energies;
+		final double beta = _beta;
+
+		if (_numPorts == 1)
+		{
+			final double[][] columns = setupBlockColumns(-1);
+			columns[0][0] = value;
+			factorFunction.evalEnergies(columns, 1, energies);
+			return beta * energies[0];
+		}
+		
+		final int blockPort = outPortIndex == 0 ? 1 : 0;
+		final double[] blockMsgs = _inPortMsgs[blockPort];
+		final int blockSize = _variableDomainLengths[blockPort];
+		final double[][] columns = setupBlockColumns(blockPort);
+		Arrays.fill(columns[outPortIndex], 0, blockSize, value);
+
+		double marginal = 0;
+		Arrays.fill(_variableIndices, 0);
+		do
+		{
+			final double weight = fillBlockColumns(blockPort, outPortIndex, blockSize);
+			if (weight != 0)
+			{
+				factorFunction.evalEnergies(columns, blockSize, energies);
+				double blockSum = 0;
+				for (int i = 0; i < blockSize; i++)
+					blockSum += blockMsgs[i] * Math.exp(-beta * energies[i]);
+				marginal += weight * blockSum;
+			}
+		} while (nextBlock(blockPort, outPortIndex));
+
+        // FIXME: Should do bounds checking
+		return -Math.log(marginal);
+	}
+
+	// Copy current particle values into primitive arrays; particle values may change between updates
+	private void loadParticles()
+	{
+		for (int iPort = 0; iPort < _numPorts; iPort++)
+		{
+			final Object[] domain = _variableDomains[iPort];
+			final double[] particles = _particles[iPort];
+			for (int i = 0, n = particles.length; i < n; i++)
+				particles[i] = (Double)domain[i];
+		}
+	}
+	
+	// Use the particles themselves as the column for the block port and scratch columns for the others
+	private double[][] setupBlockColumns(int blockPort)
+	{
+		final double[][] columns = _blockColumns;
+		for (int iPort = 0; iPort < _numPorts; iPort++)
+			columns[iPort] = iPort == blockPort ? _particles[iPort] : _fillColumns[iPort];
+		return columns;
+	}
+	
+	// Fill the columns of ports other than the block and fixed ports with their current particle value
+	// and return the product of their input messages.
+	private double fillBlockColumns(int blockPort, int fixedPort, int blockSize)
+	{
+		for (int iPort = 0; iPort < _numPorts; iPort++)
+		{
+			if (iPort != blockPort && iPort != fixedPort)
+				Arrays.fill(_fillColumns[iPort], 0, blockSize, _particles[iPort][_variableIndices[iPort]]);
+		}
+		return otherPortsWeight(blockPort, fixedPort);
+	}
+	
+	// Product of the current input messages of ports other than the block and fixed ports
+	private double otherPortsWeight(int blockPort, int fixedPort)
+	{
+		double weight = 1;
+		for (int iPort = 0; iPort < _numPorts; iPort++)
+		{
+			if (iPort != blockPort && iPort != fixedPort)
+				weight *= _inPortMsgs[iPort][_variableIndices[iPort]];
+		}
+		return weight;
+	}
+	
+	// Advance _variableIndices over ports other than the block and fixed ports; returns false when done
+	private boolean nextBlock(int blockPort, int fixedPort)
+	{
+		for (int iPort = 0; iPort < _numPorts; iPort++)
+		{
+			if (iPort != blockPort && iPort != fixedPort)
+			{
+				final int newIndex = _variableIndices[iPort] + 1;
+				if (newIndex < _variableDomainLengths[iPort])
+				{
+					_variableIndices[iPort] = newIndex;
+					return true;
+				}
+				_variableIndices[iPort] = 0;
+			}
+		}
+		return false;
+	}
+	
 	protected void initializeVariableCombinations()
 	{
 		_moreCombinations = true;
@@ -239,6 +509,9 @@ public class ParticleBPRealFactor extends SFactorBase
 	{
 		super.initialize();
 
+		// Particle values are reset on initialization without changing their resampling versions
+		_weightsValid = false;
+		_maxCachedWeights = getOptionOrDefault(ParticleBPOptions.maxCachedFactorWeights);
 	}
 
 	@Override
@@ -253,6 +526,13 @@ public class ParticleBPRealFactor extends SFactorBase
 		_variableIndices = new int[_numPorts];
 		_variableDomainLengths = new int[_numPorts];
 		final boolean[] realVariable = _realVariable = new boolean[_numPorts];
+		_particles = new double[_numPorts][];
+		_blockColumns = new double[_numPorts][];
+		_fillColumns = new double[_numPorts][];
+		final ParticleBPSolverVariableToFactorMessage[] particleMessages = new ParticleBPSolverVariableToFactorMessage[_numPorts];
+		boolean batched = true;
+		int maxDomainLength = 1;
+		long weightsSize = 1;
 
 		for (int iPort = 0; iPort < _numPorts; iPort++)
 	    {
@@ -265,6 +545,7 @@ public class ParticleBPRealFactor extends SFactorBase
 	    	{
 	    		ParticleBPSolverVariableToFactorMessage tmp = (ParticleBPSolverVariableToFactorMessage)messages[1];
 	    		realVariable[iPort] = true;
+	    		particleMessages[iPort] = tmp;
 	    		_variableDomains[iPort] = tmp.particleValues;
 	    		_inPortMsgs[iPort] = tmp.messageValues;
 	    	}
@@ -277,7 +558,24 @@ public class ParticleBPRealFactor extends SFactorBase
 	    	
     		_outMsgArray[iPort] = (double[])messages[0];
 	    	_variableDomainLengths[iPort] = _variableDomains[iPort].length;
+	    	
+	    	final int domainLength = _variableDomainLengths[iPort];
+	    	maxDomainLength = Math.max(maxDomainLength, domainLength);
+	    	weightsSize = Math.min(weightsSize * domainLength, Integer.MAX_VALUE);
+	    	_particles[iPort] = new double[domainLength];
+	    	for (Object element : _variableDomains[iPort])
+	    		batched &= element instanceof Double;
 	    }
+		
+		for (int iPort = 0; iPort < _numPorts; iPort++)
+			_fillColumns[iPort] = new double[maxDomainLength];
+		_energies = new double[maxDomainLength];
+		_batched = batched;
+		_particleMessages = particleMessages;
+		_weightsVersions = new int[_numPorts];
+		_weightsSize = weightsSize < Integer.MAX_VALUE ? (int)weightsSize : -1;
+		_weights = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+		_weightsValid = false;
 	}
 
 
@@ -21,6 +21,7 @@ import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.Variable;
 import com.analog.lyric.dimple.model.variables.VariableList;
 import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultiThreadingManager;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
 import com.analog.lyric.dimple.solvers.sumproduct.SDiscreteVariable;
@@ -49,6 +50,7 @@ public class ParticleBPSolverGraph extends SFactorGraphBase
 	protected ParticleBPSolverGraph(FactorGraph factorGraph)
 	{
 		super(factorGraph);
+		setMultithreadingManager(new MultiThreadingManager(getModelObject()));
 	}
 
 	@Override
@@ -112,6 +114,8 @@ public class ParticleBPSolverGraph extends SFactorGraphBase
 	{
 		VariableList vars = _factorGraph.getVariables();
 		
+		beginIterations();
+		
 		int iterationsBeforeResampling = 1;
 		for (int iterNum = 0; iterNum < numIters; iterNum++)
 		{
@@ -126,13 +130,20 @@ public class ParticleBPSolverGraph extends SFactorGraphBase
 				iterationsBeforeResampling = _numIterationsBetweenResampling;
 			}
 			
-			update();
+			// Resampling must be done serially, but the updates within an iteration may be run in parallel
+			if (useMultithreading())
+				getMultithreadingManager().iterate(1);
+			else
+				update();
 			
 			if (_temper)
 			{
 				_temperature *= _temperingDecayConstant;
 				setTemperature(_temperature);
 			}
+			
+			if (endIteration())
+				break;
 
 			// Allow interruption (if the solver is run as a thread)
 			// Currently interruption is allowed only between iterations, not within a single iteration
@@ -143,7 +154,8 @@ public class ParticleBPSolverGraph extends SFactorGraphBase
 				return;
 			}
 		}
-
+		
+		endIterations();
 	}
 	
 
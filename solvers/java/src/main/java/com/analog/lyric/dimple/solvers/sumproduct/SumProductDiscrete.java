@@ -40,6 +40,33 @@ import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
  */
 public class SumProductDiscrete extends SDiscreteVariableDoubleArray
 {
+	/*-----------
+	 * Constants
+	 */
+	
+	/**
+	 * Log weight used in place of zero weights.
+	 */
+	private static final double MIN_LOG = -100;
+	
+	/**
+	 * Weight used in place of zero weights when computing products directly. Same as
+	 * {@code exp(MIN_LOG)}.
+	 */
+	private static final double MIN_WEIGHT = Math.exp(MIN_LOG);
+
+	/**
+	 * Weight products are rescaled when their largest element falls outside the range
+	 * [1/{@code RESCALE_LIMIT}, {@code RESCALE_LIMIT}].
+	 */
+	private static final double RESCALE_LIMIT = 1e100;
+	
+	/**
+	 * If the ratio of the smallest to the largest element of a weight product falls below this,
+	 * then the product could lose precision, so the update falls back to the log domain.
+	 */
+	private static final double UNDERFLOW_LIMIT = 1e-200;
+	
 	/*
 	 * We cache all of the double arrays we use during the update.  This saves
 	 * time when performing the update.
@@ -48,7 +75,9 @@ public class SumProductDiscrete extends SDiscreteVariableDoubleArray
     double [][] _savedOutMsgArray = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
     double [][] _outPortDerivativeMsgs = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
     double [] _dampingParams = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+    private double [] _alphas = ArrayUtil.EMPTY_DOUBLE_ARRAY;
     private boolean _calculateDerivative = false;
+    private boolean _logDomainUpdates = SumProductOptions.logDomainVariableUpdates.defaultValue();
 	protected boolean _dampingInUse = false;
     @Nullable private double [][][] _outMessageDerivative;
 
@@ -66,6 +95,7 @@ public class SumProductDiscrete extends SDiscreteVariableDoubleArray
 		super.initialize();
 
 		configureDampingFromOptions();
+		_logDomainUpdates = getOptionOrDefault(SumProductOptions.logDomainVariableUpdates);
 	}
 
 	public Variable getVariable()
@@ -119,7 +149,7 @@ public class SumProductDiscrete extends SDiscreteVariableDoubleArray
 	protected void doUpdateEdge(int outPortNum)
     {
     	
-        final double minLog = -100;
+        final double minLog = MIN_LOG;
         double[] priors = _input;
         int M = priors.length;
         int D = _var.getSiblingCount();
@@ -139,35 +169,42 @@ public class SumProductDiscrete extends SDiscreteVariableDoubleArray
         }
 
         
-        for (int m = 0; m < M; m++)
+        if (!_logDomainUpdates && computeWeightProduct(outMsgs, outPortNum))
         {
-        	double prior = priors[m];
-        	double out = (prior == 0) ? minLog : Math.log(prior);
-        	
-	        for (int d = 0; d < D; d++)
-	        {
-	        	if (d != outPortNum)		// For all ports except the output port
-	        	{
-	        		double tmp = _inputMessages[d][m];
-	        		out += (tmp == 0) ? minLog : Math.log(tmp);
-	        	}
-	        }
-        	if (out > maxLog) maxLog = out;
-        	outMsgs[m] = out;
+        	normalize(outMsgs);
         }
-        
-        //create sum
-        double sum = 0;
-        for (int m = 0; m < M; m++)
+        else
         {
-        	double out = Math.exp(outMsgs[m] - maxLog);
-        	outMsgs[m] = out;
-        	sum += out;
+	        for (int m = 0; m < M; m++)
+	        {
+	        	double prior = priors[m];
+	        	double out = (prior == 0) ? minLog : Math.log(prior);
+	        	
+		        for (int d = 0; d < D; d++)
+		        {
+		        	if (d != outPortNum)		// For all ports except the output port
+		        	{
+		        		double tmp = _inputMessages[d][m];
+		        		out += (tmp == 0) ? minLog : Math.log(tmp);
+		        	}
+		        }
+	        	if (out > maxLog) maxLog = out;
+	        	outMsgs[m] = out;
+	        }
+	        
+	        //create sum
+	        double sum = 0;
+	        for (int m = 0; m < M; m++)
+	        {
+	        	double out = Math.exp(outMsgs[m] - maxLog);
+	        	outMsgs[m] = out;
+	        	sum += out;
+	        }
+	        
+	        //calculate message by dividing by sum
+	        for (int m = 0; m < M; m++)
+	        	outMsgs[m] /= sum;
         }
-        
-        //calculate message by dividing by sum
-        for (int m = 0; m < M; m++)
-        	outMsgs[m] /= sum;
 
         if (_dampingInUse)
         {
@@ -189,30 +226,36 @@ public class SumProductDiscrete extends SDiscreteVariableDoubleArray
     @Override
 	protected void doUpdate()
     {
-        final double minLog = -100;
+        final double minLog = MIN_LOG;
         double[] priors = _input;
         int M = priors.length;
         int D = _var.getSiblingCount();
         
+        double[] alphas = _alphas;
+        if (alphas.length != M)
+        	_alphas = alphas = new double[M];
         
-        //Compute alphas
-        double[] alphas = new double[M];
-        for (int m = 0; m < M; m++)
+        // Compute alphas, either as the product of all incoming weights or, if the product cannot
+        // be computed accurately, as the sum of their logs.
+        final boolean weightDomain = !_logDomainUpdates && computeWeightProduct(alphas, -1);
+        if (!weightDomain)
         {
-        	double prior = priors[m];
-        	double alpha = (prior == 0) ? minLog : Math.log(prior);
-
-        	for (int d = 0; d < D; d++)
+	        for (int m = 0; m < M; m++)
 	        {
-	        	double tmp = _inputMessages[d][m];
-        		double logtmp = (tmp == 0) ? minLog : Math.log(tmp);
-        		_logInPortMsgs[d][m] = logtmp;
-        		alpha += logtmp;
+	        	double prior = priors[m];
+	        	double alpha = (prior == 0) ? minLog : Math.log(prior);
+	
+	        	for (int d = 0; d < D; d++)
+		        {
+		        	double tmp = _inputMessages[d][m];
+	        		double logtmp = (tmp == 0) ? minLog : Math.log(tmp);
+	        		_logInPortMsgs[d][m] = logtmp;
+	        		alpha += logtmp;
+		        }
+		        alphas[m] = alpha;
 	        }
-	        alphas[m] = alpha;
         }
         
-        
         //Now compute output messages for each outgoing edge
 	    for (int out_d = 0; out_d < D; out_d++ )
 	    {
@@ -230,35 +273,47 @@ public class SumProductDiscrete extends SDiscreteVariableDoubleArray
             	}
             }
             
-            
-            double maxLog = Double.NEGATIVE_INFINITY;
-            
-            //set outMsgs to alpha - mu_d,m
-            //find max alpha
-            double[] logInPortMsgsD = _logInPortMsgs[out_d];
-            for (int m = 0; m < M; m++)
+            if (weightDomain)
             {
-            	double out = alphas[m] - logInPortMsgsD[m];
-                if (out > maxLog) maxLog = out;
-                outMsgs[m] = out;
-            }
-            
-            //create sum
-            double sum = 0;
-            for (int m = 0; m < M; m++)
-            {
-                double out = Math.exp(outMsgs[m] - maxLog);
-                outMsgs[m] = out;
-                sum += out;
+            	// Divide out the weight from the output port
+            	double[] inMsgs = _inputMessages[out_d];
+            	for (int m = 0; m < M; m++)
+            	{
+            		double tmp = inMsgs[m];
+            		outMsgs[m] = alphas[m] / ((tmp == 0) ? MIN_WEIGHT : tmp);
+            	}
+            	normalize(outMsgs);
             }
-            
-            //calculate message by dividing by sum
-            for (int m = 0; m < M; m++)
+            else
             {
-            	outMsgs[m] /= sum;
+	            double maxLog = Double.NEGATIVE_INFINITY;
+	            
+	            //set outMsgs to alpha - mu_d,m
+	            //find max alpha
+	            double[] logInPortMsgsD = _logInPortMsgs[out_d];
+	            for (int m = 0; m < M; m++)
+	            {
+	            	double out = alphas[m] - logInPortMsgsD[m];
+	                if (out > maxLog) maxLog = out;
+	                outMsgs[m] = out;
+	            }
+	            
+	            //create sum
+	            double sum = 0;
+	            for (int m = 0; m < M; m++)
+	            {
+	                double out = Math.exp(outMsgs[m] - maxLog);
+	                outMsgs[m] = out;
+	                sum += out;
+	            }
+	            
+	            //calculate message by dividing by sum
+	            for (int m = 0; m < M; m++)
+	            {
+	            	outMsgs[m] /= sum;
+	            }
             }
             
-            
             if (_dampingInUse)
             {
             	double damping = _dampingParams[out_d];
@@ -283,7 +338,7 @@ public class SumProductDiscrete extends SDiscreteVariableDoubleArray
 	public double[] getBelief()
     {
 
-        final double minLog = -100;
+        final double minLog = MIN_LOG;
         double[] priors = _input;
         int M = priors.length;
         int D = _var.getSiblingCount();
@@ -292,6 +347,12 @@ public class SumProductDiscrete extends SDiscreteVariableDoubleArray
         
         double[] outBelief = new double[M];
 
+        if (!_logDomainUpdates && computeWeightProduct(outBelief, -1))
+        {
+        	normalize(outBelief);
+        	return outBelief;
+        }
+        
         for (int m = 0; m < M; m++)
         {
         	double prior = priors[m];
@@ -325,6 +386,93 @@ public class SumProductDiscrete extends SDiscreteVariableDoubleArray
         return outBelief;
     }
     
+	/**
+	 * Computes the product of the input weights and the incoming messages on all ports except
+	 * {@code excludedPort} directly in the weight domain.
+	 * <p>
+	 * This is equivalent to summing the logs of the weights, but does not require any calls to
+	 * {@link Math#log} or {@link Math#exp}. As in the log domain computation, zero weights are
+	 * replaced by a small positive value. The product is rescaled by a constant factor as needed
+	 * to avoid overflow and underflow.
+	 * <p>
+	 * @param out is the array into which the product will be written; it must have the same length
+	 * as the domain.
+	 * @param excludedPort is the index of the port to leave out of the product or -1 to include all ports.
+	 * @return false if some element of the product is too small relative to the largest element to
+	 * be represented accurately, in which case the caller should recompute it in the log domain.
+	 * The contents of {@code out} are unspecified in that case.
+	 */
+	private boolean computeWeightProduct(double[] out, int excludedPort)
+	{
+		final double[] priors = _input;
+		final int M = priors.length;
+		final int D = _var.getSiblingCount();
+		
+		double max = 0, min = Double.POSITIVE_INFINITY;
+		for (int m = 0; m < M; m++)
+		{
+			final double prior = priors[m];
+			final double weight = (prior == 0) ? MIN_WEIGHT : prior;
+			if (weight > max) max = weight;
+			if (weight < min) min = weight;
+			out[m] = weight;
+		}
+		
+		for (int d = 0; d <= D; d++)
+		{
+			if (!(min >= max * UNDERFLOW_LIMIT))
+				return false;
+			
+			if (max > RESCALE_LIMIT || max < 1 / RESCALE_LIMIT)
+				max = rescale(out, max);
+			
+			if (d == D || d == excludedPort)
+				continue;
+			
+			final double[] inMsgs = _inputMessages[d];
+			max = 0;
+			min = Double.POSITIVE_INFINITY;
+			for (int m = 0; m < M; m++)
+			{
+				final double tmp = inMsgs[m];
+				final double weight = out[m] * ((tmp == 0) ? MIN_WEIGHT : tmp);
+				if (weight > max) max = weight;
+				if (weight < min) min = weight;
+				out[m] = weight;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Scales elements of {@code values} so that the largest one is 1, where {@code max} is the current
+	 * largest value. Returns the new largest value.
+	 */
+	private static double rescale(double[] values, double max)
+	{
+		if (max > 0 && max != 1 && max < Double.POSITIVE_INFINITY)
+		{
+			final double scale = 1 / max;
+			for (int m = 0, M = values.length; m < M; m++)
+				values[m] *= scale;
+			return 1;
+		}
+		return max;
+	}
+	
+	/**
+	 * Divides elements of {@code values} by their sum.
+	 */
+	private static void normalize(double[] values)
+	{
+		double sum = 0;
+		for (double value : values)
+			sum += value;
+		for (int m = 0, M = values.length; m < M; m++)
+			values[m] /= sum;
+	}
+	
 	public double [] getNormalizedInputs()
 	{
 		double [] tmp = new double [_input.length];
@@ -17,15 +17,93 @@
 package com.analog.lyric.dimple.solvers.sumproduct;
 
 import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.sumproduct.sampledfactor.SampledFactor;
+import com.analog.lyric.options.BooleanOptionKey;
+import com.analog.lyric.options.IntegerOptionKey;
 
 /**
  * Options for sum-product solver.
  * <p>
- * There are currently no options specific to the SumProduct solver. See {@link BPOptions} instead.
+ * See also {@link BPOptions}.
  * <p>
  * @since 0.07
  * @author Christopher Barber
  */
 public class SumProductOptions extends BPOptions
 {
+	/**
+	 * Specifies whether discrete variables compute their messages and beliefs in the log domain.
+	 * <p>
+	 * When false, discrete variables compute outgoing messages and beliefs by multiplying the
+	 * incoming message weights directly, rescaling as needed to avoid underflow. This produces the
+	 * same results to within rounding error, but avoids a {@link Math#log} call for every element of
+	 * every incoming message and a {@link Math#exp} call for every element of every outgoing message.
+	 * If some element of a product would be too small to be represented accurately, that update falls
+	 * back to the log domain computation.
+	 * <p>
+	 * When true, the log domain computation is always used.
+	 * <p>
+	 * This option may be set on the entire graph or on individual discrete variables.
+	 * It is looked up when the solver graph is initialized.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final BooleanOptionKey logDomainVariableUpdates =
+		new BooleanOptionKey(SumProductOptions.class, "logDomainVariableUpdates", false);
+
+	/**
+	 * Specifies whether sampled factors continue their Gibbs chains from one update to the next.
+	 * <p>
+	 * Affects {@linkplain SampledFactor sampled factors}, which compute their messages by running
+	 * the Gibbs solver on a private graph containing a copy of the factor. By default, every update
+	 * starts a new chain from randomly chosen values and performs {@link GibbsOptions#burnInScans}
+	 * scans of burn-in. When this is true, each update instead resumes the chain from the sample
+	 * values at the end of the factor's previous update and performs only
+	 * {@link #sampledFactorWarmStartBurnInScans} scans of burn-in, which is much cheaper when
+	 * the incoming messages change little between updates. The first update after the solver
+	 * graph is initialized still starts a new chain.
+	 * <p>
+	 * This option may be set on the entire graph or on individual factors.
+	 * It is looked up when the solver graph is initialized.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final BooleanOptionKey sampledFactorWarmStart =
+		new BooleanOptionKey(SumProductOptions.class, "sampledFactorWarmStart", false);
+	
+	/**
+	 * Specifies the number of burn-in scans performed by sampled factors when resuming a chain.
+	 * <p>
+	 * Used instead of {@link GibbsOptions#burnInScans} when {@link #sampledFactorWarmStart} is
+	 * enabled, except on the first update after initialization.
+	 * <p>
+	 * This option may be set on the entire graph or on individual factors.
+	 * It is looked up when the solver graph is initialized.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final IntegerOptionKey sampledFactorWarmStartBurnInScans =
+		new IntegerOptionKey(SumProductOptions.class, "sampledFactorWarmStartBurnInScans", 1, 0, Integer.MAX_VALUE);
+	
+	/**
+	 * Specifies whether sampled factors compute all of their output messages from one Gibbs run.
+	 * <p>
+	 * By default, when all of the edges of a {@linkplain SampledFactor sampled factor} are updated
+	 * together, it runs the Gibbs solver once for each edge, each time replacing the input for the
+	 * corresponding variable with a uniform one. When this is true, it instead runs the solver once
+	 * with the inputs of all variables set from the incoming messages and computes each
+	 * output message by dividing the estimated belief of the corresponding variable by its incoming
+	 * message (weighting the samples of continuous variables by the reciprocal of the incoming message
+	 * density). This reduces the sampling cost of such updates by a factor of the number of edges,
+	 * but the result is less accurate wherever an incoming message is concentrated, since
+	 * few samples then fall outside its support. Updates of single edges are unaffected.
+	 * <p>
+	 * This option may be set on the entire graph or on individual factors.
+	 * It is looked up when the solver graph is initialized.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final BooleanOptionKey sampledFactorShareSamples =
+		new BooleanOptionKey(SumProductOptions.class, "sampledFactorShareSamples", false);
 }
@@ -61,6 +61,7 @@ import com.analog.lyric.dimple.solvers.optimizedupdate.CostType;
 import com.analog.lyric.dimple.solvers.optimizedupdate.Costs;
 import com.analog.lyric.dimple.solvers.optimizedupdate.FactorTableUpdateSettings;
 import com.analog.lyric.dimple.solvers.optimizedupdate.FactorUpdatePlan;
+import com.analog.lyric.dimple.solvers.optimizedupdate.FactorUpdatePlanCache;
 import com.analog.lyric.dimple.solvers.optimizedupdate.IMarginalizationStep;
 import com.analog.lyric.dimple.solvers.optimizedupdate.IMarginalizationStepEstimator;
 import com.analog.lyric.dimple.solvers.optimizedupdate.ISFactorGraphToOptimizedUpdateAdapter;
@@ -90,6 +91,7 @@ import com.analog.lyric.dimple.solvers.sumproduct.customFactors.CustomNormalCons
 import com.analog.lyric.dimple.solvers.sumproduct.sampledfactor.SampledFactor;
 import com.analog.lyric.math.DimpleRandomGenerator;
 import com.analog.lyric.options.IOptionKey;
+import com.analog.lyric.util.misc.Internal;
 
 /**
  * Solver representation of factor graph under Sum-Product solver.
@@ -293,6 +295,20 @@ public class SumProductSolverGraph extends SFactorGraphBase
 
 	private final ISFactorGraphToOptimizedUpdateAdapter _optimizedUpdateAdapter = new SFactorGraphToOptimizedUpdateAdapter(this);
 
+	private final FactorUpdatePlanCache _updatePlanCache = new FactorUpdatePlanCache();
+
+	/**
+	 * The cache of optimized update plans that lets {@link #initialize()} reuse the plans built by
+	 * earlier initializations for factor tables that have not changed.
+	 * 
+	 * @since 0.08
+	 */
+	@Internal
+	public FactorUpdatePlanCache getUpdatePlanCache()
+	{
+		return _updatePlanCache;
+	}
+
 	private static class SFactorGraphToOptimizedUpdateAdapter implements ISFactorGraphToOptimizedUpdateAdapter
 	{
 		final private SumProductSolverGraph _sumProductSolverGraph;
@@ -680,7 +696,7 @@ public class SumProductSolverGraph extends SFactorGraphBase
 	public void initialize()
 	{
 		super.initialize();
-		UpdateCostOptimizer optimizer = new UpdateCostOptimizer(_optimizedUpdateAdapter);
+		UpdateCostOptimizer optimizer = new UpdateCostOptimizer(_optimizedUpdateAdapter, _updatePlanCache);
 		optimizer.optimize(_factorGraph);
 		for (Factor f : getModelObject().getFactors())
 		{
@@ -96,6 +96,8 @@ public class SumProductTableFactor extends STableFactorDoubleArray
 		
 		configureDampingFromOptions();
 		updateK(getOptionOrDefault(BPOptions.maxMessageSize));
+		_kbestFactorEngine.setMaxMemoSize(getOptionOrDefault(BPOptions.maxKBestMemoSize));
+		_kbestFactorEngine.reset();
 	}
 	
 	@Internal
@@ -111,6 +113,10 @@ public class SumProductTableFactor extends STableFactorDoubleArray
 		{
 			_tableFactorEngine = new TableFactorEngineOptimized(this, updatePlan);
 		}
+		else if (getOptionOrDefault(BPOptions.usePackedTableIndices))
+		{
+			_tableFactorEngine = new TableFactorEnginePacked(this);
+		}
 		else
 		{
 			_tableFactorEngine = new TableFactorEngine(this);
@@ -466,9 +472,15 @@ public class SumProductTableFactor extends STableFactorDoubleArray
 	}
 
 	@Override
-	public int[] findKBestForMsg(double[] msg, int k)
+	public void findKBestForMsg(double[] msg, int k, int[] indices, double[] scratch)
+	{
+		Selection.findLastKIndices(msg, k, indices, scratch);
+	}
+
+	@Override
+	public double factorValueFromEnergy(double energy)
 	{
-		return Selection.findLastKIndices(msg, k);
+		return Math.exp(-energy);
 	}
 
 	/******************************************************
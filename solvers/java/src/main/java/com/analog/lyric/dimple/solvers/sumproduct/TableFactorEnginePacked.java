@@ -0,0 +1,151 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.sumproduct;
+
+import java.util.Arrays;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+
+/**
+ * Sum-product table factor update that iterates over packed factor table indices.
+ * <p>
+ * Computes the same messages as {@link TableFactorEngine}, but reads the element indices of
+ * each table entry from the contiguous row-major array provided by
+ * {@link IFactorTable#getIndicesSparsePackedUnsafe()} instead of from a separate array object
+ * per entry.
+ * <p>
+ * @since 0.08
+ * @see com.analog.lyric.dimple.options.BPOptions#usePackedTableIndices
+ */
+public class TableFactorEnginePacked extends TableFactorEngine
+{
+	public TableFactorEnginePacked(SumProductTableFactor tableFactor)
+	{
+		super(tableFactor);
+	}
+
+	@Override
+	public void updateEdge(int outPortNum)
+	{
+		final IFactorTable factorTable = _tableFactor.getFactorTable();
+		final int[] indices = factorTable.getIndicesSparsePackedUnsafe();
+		final double[] values = factorTable.getWeightsSparseUnsafe();
+		final int tableLength = values.length;
+		final int numPorts = _factor.getSiblingCount();
+
+		final double[] outputMsgs = _tableFactor.getOutPortMsgs()[outPortNum];
+		final double[][] inputMsgs = _tableFactor.getInPortMsgs();
+		final int outputMsgLength = outputMsgs.length;
+
+		final boolean damping = saveForDamping(outPortNum, outputMsgs);
+
+		Arrays.fill(outputMsgs, 0);
+
+		for (int tableIndex = 0, rowOffset = 0; tableIndex < tableLength; ++tableIndex, rowOffset += numPorts)
+		{
+			double prob = values[tableIndex];
+
+			for (int inPortNum = 0; inPortNum < outPortNum; ++inPortNum)
+				prob *= inputMsgs[inPortNum][indices[rowOffset + inPortNum]];
+			for (int inPortNum = outPortNum + 1; inPortNum < numPorts; ++inPortNum)
+				prob *= inputMsgs[inPortNum][indices[rowOffset + inPortNum]];
+
+			outputMsgs[indices[rowOffset + outPortNum]] += prob;
+		}
+
+		normalizeAndDamp(outPortNum, outputMsgs, outputMsgLength, damping, "UpdateEdge");
+	}
+
+	@Override
+	public void update()
+	{
+		final IFactorTable factorTable = _tableFactor.getFactorTable();
+		final int[] indices = factorTable.getIndicesSparsePackedUnsafe();
+		final double[] values = factorTable.getWeightsSparseUnsafe();
+		final int tableLength = values.length;
+		final int numPorts = _factor.getSiblingCount();
+
+		final double[][] outMsgs = _tableFactor.getOutPortMsgs();
+		final double[][] inMsgs = _tableFactor.getInPortMsgs();
+
+		for (int outPortNum = 0; outPortNum < numPorts; outPortNum++)
+		{
+			final double[] outputMsgs = outMsgs[outPortNum];
+			final int outputMsgLength = outputMsgs.length;
+
+			final boolean damping = saveForDamping(outPortNum, outputMsgs);
+
+			Arrays.fill(outputMsgs, 0);
+
+			for (int tableIndex = 0, rowOffset = 0; tableIndex < tableLength; ++tableIndex, rowOffset += numPorts)
+			{
+				double prob = values[tableIndex];
+
+				for (int inPortNum = 0; inPortNum < outPortNum; ++inPortNum)
+					prob *= inMsgs[inPortNum][indices[rowOffset + inPortNum]];
+				for (int inPortNum = outPortNum + 1; inPortNum < numPorts; ++inPortNum)
+					prob *= inMsgs[inPortNum][indices[rowOffset + inPortNum]];
+
+				outputMsgs[indices[rowOffset + outPortNum]] += prob;
+			}
+
+			normalizeAndDamp(outPortNum, outputMsgs, outputMsgLength, damping, "Update");
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * If damping is in use for given port, saves current contents of {@code outputMsgs} and returns true.
+	 */
+	private boolean saveForDamping(int outPortNum, double[] outputMsgs)
+	{
+		if (_tableFactor._dampingInUse && _tableFactor._dampingParams[outPortNum] != 0)
+		{
+			System.arraycopy(outputMsgs, 0, _tableFactor._savedOutMsgArray[outPortNum], 0, outputMsgs.length);
+			return true;
+		}
+		return false;
+	}
+
+	private void normalizeAndDamp(int outPortNum, double[] outputMsgs, int outputMsgLength, boolean damping,
+		String what)
+	{
+		double sum = 0;
+		for (int i = 0; i < outputMsgLength; i++)
+			sum += outputMsgs[i];
+		if (sum == 0)
+		{
+			throw new DimpleException("%s failed in SumProduct Solver.  All probabilities were zero when calculating message for port "
+				+ "%d on factor %s", what, outPortNum, _factor.getLabel());
+		}
+
+		for (int i = 0; i < outputMsgLength; i++)
+			outputMsgs[i] /= sum;
+
+		if (damping)
+		{
+			final double dampingVal = _tableFactor._dampingParams[outPortNum];
+			final double[] saved = _tableFactor._savedOutMsgArray[outPortNum];
+			for (int i = 0; i < outputMsgLength; i++)
+				outputMsgs[i] = (1-dampingVal)*outputMsgs[i] + dampingVal*saved[i];
+		}
+	}
+}
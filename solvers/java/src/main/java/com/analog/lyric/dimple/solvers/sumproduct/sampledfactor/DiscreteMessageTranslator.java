@@ -65,6 +65,41 @@ public class DiscreteMessageTranslator extends MessageTranslatorBase
 		double[] message = (double[])_variable.getBeliefObject();
 		System.arraycopy(message, 0, _outputMessage, 0, message.length);
 	}
+
+	@SuppressWarnings("null")
+	@Override
+	public final void setOutputMessageFromVariableBeliefExcludingInput()
+	{
+		if (_variable.hasFixedValue())		// Input was not used
+		{
+			setOutputMessageFromVariableBelief();
+			return;
+		}
+		
+		final double[] belief = (double[])_variable.getBeliefObject();
+		final double[] inputMessage = _inputMessage;
+		final double[] outputMessage = _outputMessage;
+		
+		// Values that the input message excludes were never sampled, so there is no information about them
+		double sum = 0;
+		for (int i = 0; i < belief.length; i++)
+		{
+			final double input = inputMessage[i];
+			final double value = input > 0 ? belief[i] / input : 0;
+			outputMessage[i] = value;
+			sum += value;
+		}
+		
+		if (sum > 0)
+		{
+			for (int i = 0; i < belief.length; i++)
+				outputMessage[i] /= sum;
+		}
+		else
+		{
+			System.arraycopy(belief, 0, outputMessage, 0, belief.length);
+		}
+	}
 	
 
 	@SuppressWarnings("null")
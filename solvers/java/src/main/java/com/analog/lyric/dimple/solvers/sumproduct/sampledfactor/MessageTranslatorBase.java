@@ -49,6 +49,16 @@ public abstract class MessageTranslatorBase
 	public abstract void setVariableInputFromInputMessage();
 	public abstract void setVariableInputUniform();
 	public abstract void setOutputMessageFromVariableBelief();
+	
+	/**
+	 * Sets the output message from the belief of the variable when its input was set from the
+	 * input message, by dividing the input message out of the belief.
+	 * <p>
+	 * This allows output messages for all edges to be computed from a single run of the message graph.
+	 * @since 0.08
+	 */
+	public abstract void setOutputMessageFromVariableBeliefExcludingInput();
+	
 	public abstract void initialize();
 	public abstract void createInputMessage(Object msg);
 	public abstract void createOutputMessage(Object msg);
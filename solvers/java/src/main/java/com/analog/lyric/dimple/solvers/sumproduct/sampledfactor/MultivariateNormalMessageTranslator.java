@@ -18,11 +18,13 @@ package com.analog.lyric.dimple.solvers.sumproduct.sampledfactor;
 
 import static java.util.Objects.*;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
 import org.eclipse.jdt.annotation.Nullable;
 
+import com.analog.lyric.collect.ArrayUtil;
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.factorfunctions.MultivariateNormal;
 import com.analog.lyric.dimple.model.core.Port;
@@ -39,6 +41,10 @@ public class MultivariateNormalMessageTranslator extends MessageTranslatorBase
 	private @Nullable MultivariateNormalParameters _outputMessage;
 	private @Nullable MultivariateNormal _variableInput;
 	private @Nullable GibbsRealJoint _solverVariable;
+	private double[] _weights = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+	private double[] _mean = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+	private double[] _diff = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+	private double[][] _covariance = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
 
 	public MultivariateNormalMessageTranslator(Port port, Variable variable)
 	{
@@ -94,9 +100,10 @@ public class MultivariateNormalMessageTranslator extends MessageTranslatorBase
 		@SuppressWarnings("null")
 		int numSamples = sampleValues.size();
 		int dimension = sampleValues.get(0).length;
+		resetBuffers(dimension);
 
 		// For all sample values, compute the mean
-		double[] mean = new double[dimension];
+		double[] mean = _mean;
 		for (int sample = 0; sample < numSamples; sample++)
 		{
 			double[] tmp = sampleValues.get(sample);
@@ -107,8 +114,8 @@ public class MultivariateNormalMessageTranslator extends MessageTranslatorBase
 			mean[i] /= numSamples;
 		
 		// For all sample values, compute the covariance matrix
-		double[] diff = new double[dimension];
-		double[][] covariance = new double[dimension][dimension];
+		double[] diff = _diff;
+		double[][] covariance = _covariance;
 		for (int sample = 0; sample < numSamples; sample++)
 		{
 			double[] tmp = sampleValues.get(sample);
@@ -135,6 +142,95 @@ public class MultivariateNormalMessageTranslator extends MessageTranslatorBase
 		Objects.requireNonNull(_outputMessage).setMeanAndCovariance(mean, covariance);
 	}
 	
+	@Override
+	public final void setOutputMessageFromVariableBeliefExcludingInput()
+	{
+		final MultivariateNormalParameters inputMessage = requireNonNull(_inputMessage);
+		if (_variable.hasFixedValue() || inputMessage.isNull())		// Input was not used
+		{
+			setOutputMessageFromVariableBelief();
+			return;
+		}
+		
+		// Get the raw sample array to avoid making a copy; this is unsafe, so be careful not to modify it
+		@SuppressWarnings("null")
+		List<double[]> sampleValues = _solverVariable._getSampleArrayUnsafe();
+		@SuppressWarnings("null")
+		int numSamples = sampleValues.size();
+		int dimension = sampleValues.get(0).length;
+		resetBuffers(dimension);
+		
+		// Weight each sample by the reciprocal of the input message density, which is proportional to
+		// exp(x'Jx/2 - h'x) for information matrix J and vector h
+		final double[][] informationMatrix = inputMessage.getInformationMatrix();
+		final double[] informationVector = inputMessage.getInformationVector();
+		double[] weights = _weights;
+		if (weights.length < numSamples)
+			weights = _weights = new double[numSamples];
+		double maxLogWeight = Double.NEGATIVE_INFINITY;
+		for (int sample = 0; sample < numSamples; sample++)
+		{
+			double[] tmp = sampleValues.get(sample);
+			double logWeight = 0;
+			for (int row = 0; row < dimension; row++)
+			{
+				double[] informationRow = informationMatrix[row];
+				double product = 0;
+				for (int col = 0; col < dimension; col++)
+					product += informationRow[col] * tmp[col];
+				logWeight += tmp[row] * (product / 2 - informationVector[row]);
+			}
+			weights[sample] = logWeight;
+			maxLogWeight = Math.max(maxLogWeight, logWeight);
+		}
+		
+		// Compute relative to the largest weight to avoid overflow
+		double sumWeights = 0;
+		for (int sample = 0; sample < numSamples; sample++)
+			sumWeights += weights[sample] = Math.exp(weights[sample] - maxLogWeight);
+		
+		// For all sample values, compute the weighted mean
+		double sumSquaredWeights = 0;
+		double[] mean = _mean;
+		for (int sample = 0; sample < numSamples; sample++)
+		{
+			double weight = weights[sample] /= sumWeights;
+			sumSquaredWeights += weight * weight;
+			double[] tmp = sampleValues.get(sample);
+			for (int i = 0; i < dimension; i++)
+				mean[i] += weight * tmp[i];
+		}
+		
+		// For all sample values, compute the weighted covariance matrix
+		double[] diff = _diff;
+		double[][] covariance = _covariance;
+		for (int sample = 0; sample < numSamples; sample++)
+		{
+			double weight = weights[sample];
+			double[] tmp = sampleValues.get(sample);
+			for (int i = 0; i < dimension; i++)
+				diff[i] = tmp[i] - mean[i];
+			for (int row = 0; row < dimension; row++)
+			{
+				double[] covarianceRow = covariance[row];
+				for (int col = row; col < dimension; col++)		// Compute only the upper triangular half for now
+					covarianceRow[col] += weight * diff[row] * diff[col];
+			}
+		}
+		double scale = 1 - sumSquaredWeights;	// Unbiased for normalized weights
+		for (int row = 0; row < dimension; row++)
+		{
+			for (int col = row; col < dimension; col++)
+			{
+				double value = covariance[row][col] / scale;
+				covariance[row][col] = value;
+				covariance[col][row] = value;	// Fill in lower triangular half
+			}
+		}
+		
+		Objects.requireNonNull(_outputMessage).setMeanAndCovariance(mean, covariance);
+	}
+	
 	
 	@SuppressWarnings("null")
 	@Override
@@ -176,4 +272,20 @@ public class MultivariateNormalMessageTranslator extends MessageTranslatorBase
 		_inputMessage = ((MultivariateNormalMessageTranslator)other)._inputMessage;
 		_outputMessage = ((MultivariateNormalMessageTranslator)other)._outputMessage;
 	}
+	
+	// Size the mean, difference and covariance buffers to the dimension and zero the accumulators
+	private void resetBuffers(int dimension)
+	{
+		if (_mean.length != dimension)
+		{
+			_mean = new double[dimension];
+			_diff = new double[dimension];
+			_covariance = new double[dimension][dimension];
+			return;
+		}
+		
+		Arrays.fill(_mean, 0);
+		for (double[] covarianceRow : _covariance)
+			Arrays.fill(covarianceRow, 0);
+	}
 }
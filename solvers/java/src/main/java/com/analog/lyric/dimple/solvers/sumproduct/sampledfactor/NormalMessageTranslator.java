@@ -24,6 +24,7 @@ import org.eclipse.jdt.annotation.Nullable;
 
 import cern.colt.list.DoubleArrayList;
 
+import com.analog.lyric.collect.ArrayUtil;
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.factorfunctions.Normal;
 import com.analog.lyric.dimple.model.core.Port;
@@ -40,6 +41,7 @@ public class NormalMessageTranslator extends MessageTranslatorBase
 	private @Nullable NormalParameters _outputMessage;
 	private Normal _variableInput;
 	private @Nullable GibbsReal _solverVariable;
+	private double[] _weights = ArrayUtil.EMPTY_DOUBLE_ARRAY;
 
 	public NormalMessageTranslator(Port port, Variable variable)
 	{
@@ -117,6 +119,77 @@ public class NormalMessageTranslator extends MessageTranslatorBase
 		outputMessage.setVariance(variance);
 	}
 	
+	@Override
+	public final void setOutputMessageFromVariableBeliefExcludingInput()
+	{
+		final NormalParameters inputMessage = requireNonNull(_inputMessage);
+		if (_variable.hasFixedValue() || inputMessage.getPrecision() == 0)		// Input was not used
+		{
+			setOutputMessageFromVariableBelief();
+			return;
+		}
+		
+		final NormalParameters outputMessage = Objects.requireNonNull(_outputMessage);
+		
+		// Get the raw sample array to avoid making a copy; this is unsafe, so be careful not to modify it
+		@SuppressWarnings("null")
+		DoubleArrayList sampleValues = _solverVariable._getSampleArrayUnsafe();
+		@SuppressWarnings("null")
+		int numSamples = sampleValues.size();
+		
+		// Weight each sample by the reciprocal of the input message density
+		final double inputMean = inputMessage.getMean();
+		final double halfPrecision = inputMessage.getPrecision() / 2;
+		double[] weights = _weights;
+		if (weights.length < numSamples)
+			weights = _weights = new double[numSamples];
+		double maxLogWeight = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < numSamples; i++)
+		{
+			double tmp = sampleValues.get(i);
+			if (Double.isInfinite(tmp) || Double.isNaN(tmp))
+			{
+				outputMessage.setNull();
+				return;
+			}
+			final double diff = tmp - inputMean;
+			final double logWeight = halfPrecision * diff * diff;
+			weights[i] = logWeight;
+			maxLogWeight = Math.max(maxLogWeight, logWeight);
+		}
+		
+		// Compute relative to the largest weight to avoid overflow
+		double sumWeights = 0;
+		double sum = 0;
+		for (int i = 0; i < numSamples; i++)
+		{
+			final double weight = weights[i] = Math.exp(weights[i] - maxLogWeight);
+			sumWeights += weight;
+			sum += weight * sampleValues.get(i);
+		}
+		final double mean = sum / sumWeights;
+		
+		double sumsq = 0;
+		double sumSquaredWeights = 0;
+		for (int i = 0; i < numSamples; i++)
+		{
+			final double weight = weights[i] / sumWeights;
+			final double diff = sampleValues.get(i) - mean;
+			sumsq += weight * diff * diff;
+			sumSquaredWeights += weight * weight;
+		}
+		final double variance = sumsq / (1 - sumSquaredWeights);	// Unbiased for normalized weights
+		
+		if (!(variance > 0))
+		{
+			outputMessage.setNull();
+			return;
+		}
+		
+		outputMessage.setMean(mean);
+		outputMessage.setVariance(variance);
+	}
+	
 	
 	@SuppressWarnings("null")
 	@Override
@@ -20,12 +20,17 @@ import static java.util.Objects.*;
 
 import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.model.variables.Variable;
 import com.analog.lyric.dimple.solvers.core.SFactorBase;
 import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
 import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.solvers.gibbs.ISolverVariableGibbs;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductOptions;
+import com.analog.lyric.util.misc.Internal;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 
@@ -56,6 +61,13 @@ import org.eclipse.jdt.annotation.Nullable;
  * of the desired output message.  The accuracy depends on the number of
  * samples used in each update.
  * 
+ * Optionally, the Gibbs chain may be resumed from where the previous update
+ * left off rather than restarted (see SumProductOptions.sampledFactorWarmStart),
+ * and all output messages may be computed from a single run when the whole
+ * factor is updated at once (see SumProductOptions.sampledFactorShareSamples).
+ * Since each sampled factor has its own message graph, sampled factors may be
+ * updated concurrently when multithreading is enabled on the solver graph.
+ * 
  */
 public class SampledFactor extends SFactorBase
 {
@@ -63,6 +75,14 @@ public class SampledFactor extends SFactorBase
 	private final Variable[] _privateVariables;
 	private final FactorGraph _messageGraph;
 	
+	// Options, looked up on initialization
+	private int _warmStartBurnInScans;
+	private boolean _shareSamples;
+	
+	// Sample values of the private variables at the end of the previous run for each output edge,
+	// or the shared run in the last entry, when warm start is enabled.
+	private @Nullable Value[][] _chainStates;
+	
 	public final static int DEFAULT_SAMPLES_PER_UPDATE = 1000;
 	public final static int DEFAULT_BURN_IN_SCANS_PER_UPDATE = 10;
 	public final static int DEFAULT_SCANS_PER_SAMPLE = 1;
@@ -101,6 +121,41 @@ public class SampledFactor extends SFactorBase
 		_messageGraph.addFactor(factor.getFactorFunction(), _privateVariables);
 	}
 	
+	@Override
+	public void initialize()
+	{
+		super.initialize();
+		
+		final boolean warmStart = getOptionOrDefault(SumProductOptions.sampledFactorWarmStart);
+		_warmStartBurnInScans = getOptionOrDefault(SumProductOptions.sampledFactorWarmStartBurnInScans);
+		_shareSamples = getOptionOrDefault(SumProductOptions.sampledFactorShareSamples);
+		_chainStates = warmStart ? new Value[_privateVariables.length + 1][] : null;
+	}
+	
+	@Override
+	protected void doUpdate()
+	{
+		if (!_shareSamples)
+		{
+			super.doUpdate();
+			return;
+		}
+		
+		// Set inputs of all of the message-graph variables to the incoming message value
+		for (MessageTranslatorBase messageTranslator : _messageTranslator)
+		{
+			messageTranslator.setMessageDirection(MessageTranslatorBase.MessageDirection.OUTPUT);
+			messageTranslator.setVariableInputFromInputMessage();
+		}
+
+		// Run the Gibbs solver
+		runMessageGraph(_privateVariables.length);
+		
+		// Set each output message by removing the effect of the corresponding input from the belief
+		for (MessageTranslatorBase messageTranslator : _messageTranslator)
+			messageTranslator.setOutputMessageFromVariableBeliefExcludingInput();
+	}
+	
 	@Override
 	public void doUpdateEdge(int outPortNum)
 	{
@@ -123,13 +178,81 @@ public class SampledFactor extends SFactorBase
 		}
 
 		// Run the Gibbs solver
-		_messageGraph.solve();
+		runMessageGraph(outPortNum);
 	
 		// Set the output message using the belief of the message-graph output variable
 		_messageTranslator[outPortNum].setOutputMessageFromVariableBelief();
 
 	}
 	
+	/**
+	 * Generates samples on the message graph given its current inputs.
+	 * <p>
+	 * When warm start is enabled and this is not the first run for the same output edge since
+	 * initialization, this resumes the chain from the sample values at the end of that previous run
+	 * and performs the reduced number of burn-in scans, without random restarts. Otherwise this simply
+	 * solves the message graph.
+	 * <p>
+	 * Chains are kept separately for each output edge because the input of the output variable
+	 * differs, so the final state of a run for one edge may be far from typical for another.
+	 * <p>
+	 * @param outPortNum is the output edge, or the number of edges for a run used for all edges.
+	 */
+	private void runMessageGraph(int outPortNum)
+	{
+		final FactorGraph messageGraph = _messageGraph;
+		final Variable[] variables = _privateVariables;
+		final GibbsSolverGraph sgraph = (GibbsSolverGraph)requireNonNull(messageGraph.getSolver());
+		final Value[][] chainStates = _chainStates;
+		
+		if (chainStates == null)
+		{
+			messageGraph.solve();
+			return;
+		}
+		
+		Value[] chainState = chainStates[outPortNum];
+		if (chainState == null)
+		{
+			messageGraph.solve();
+			chainState = chainStates[outPortNum] = new Value[variables.length];
+			for (int i = 0; i < variables.length; i++)
+				chainState[i] = solverVariable(sgraph, i).getCurrentSampleValue().clone();
+			return;
+		}
+		
+		// Initialization is required to pick up the new inputs and clear sample statistics, but resets the sample values
+		messageGraph.initialize();
+		sgraph.deferDeterministicUpdates();
+		for (int i = 0; i < variables.length; i++)
+		{
+			if (!variables[i].isDeterministicOutput())
+				solverVariable(sgraph, i).setCurrentSample(chainState[i]);
+		}
+		sgraph.processDeferredDeterministicUpdates();
+		
+		sgraph.iterate(_warmStartBurnInScans * sgraph.getUpdatesPerScan());
+		sgraph.sample(sgraph.getNumSamples());
+		
+		for (int i = 0; i < variables.length; i++)
+			chainState[i].setFrom(solverVariable(sgraph, i).getCurrentSampleValue());
+	}
+	
+	/**
+	 * The private graph on which the Gibbs solver is run to compute messages.
+	 * @since 0.08
+	 */
+	@Internal
+	public FactorGraph getMessageGraph()
+	{
+		return _messageGraph;
+	}
+	
+	private ISolverVariableGibbs solverVariable(GibbsSolverGraph sgraph, int edge)
+	{
+		return requireNonNull(sgraph.getSolverVariable(_privateVariables[edge]));
+	}
+	
 	
 	/**
 	 * @deprecated Will be removed in a future release. Instead set {@link GibbsOptions#numSamples} option
@@ -0,0 +1,201 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.math;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import cern.jet.random.Beta;
+import cern.jet.random.Binomial;
+import cern.jet.random.Gamma;
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * A set of random variate generators that share a single {@link SplittableRandomGenerator} stream.
+ * <p>
+ * Provides the uniform generator used by Dimple samplers along with the gamma, beta and binomial
+ * generators not supported by the Apache framework. Instances are not thread safe: each thread
+ * should use its own, normally obtained from {@link com.analog.lyric.dimple.environment.DimpleEnvironment#getRandom()}
+ * or {@link DimpleRandomGenerator#current()}.
+ * <p>
+ * @since 0.08
+ */
+public final class DimpleRandom
+{
+	/*-------
+	 * State
+	 */
+	
+	private final SplittableRandomGenerator _rand;
+	private final Gamma _gamma;
+	private final Beta _beta;
+	private final Binomial _binomial;
+	
+	/**
+	 * Adapts the uniform generator for use by the Colt variate generators.
+	 */
+	private static final class Engine extends RandomEngine
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final SplittableRandomGenerator _rand;
+		
+		private Engine(SplittableRandomGenerator rand)
+		{
+			_rand = rand;
+		}
+		
+		@Override
+		public int nextInt()
+		{
+			return _rand.nextInt();
+		}
+		
+		@Override
+		public long nextLong()
+		{
+			return _rand.nextLong();
+		}
+		
+		@Override
+		public double nextDouble()
+		{
+			return raw();
+		}
+		
+		@Override
+		public double raw()
+		{
+			// Colt requires values in the open interval (0,1)
+			double d;
+			do
+			{
+				d = _rand.nextDouble();
+			} while (d == 0.0);
+			return d;
+		}
+	}
+	
+	/*--------------
+	 * Construction
+	 */
+	
+	/**
+	 * Constructs instance whose generators are seeded with {@code seed}.
+	 */
+	public DimpleRandom(long seed)
+	{
+		this(new SplittableRandomGenerator(seed));
+	}
+	
+	private DimpleRandom(SplittableRandomGenerator rand)
+	{
+		_rand = rand;
+		final Engine engine = new Engine(rand);
+		_gamma = new Gamma(1, 1, engine);
+		_beta = new Beta(1, 1, engine);
+		_binomial = new Binomial(1, 0.5, engine);
+	}
+	
+	/**
+	 * Returns a new instance whose seed is drawn from this instance's stream.
+	 * <p>
+	 * This advances the stream. The new instance may be handed to another thread.
+	 * <p>
+	 * @see SplittableRandomGenerator#split()
+	 */
+	public DimpleRandom split()
+	{
+		return new DimpleRandom(_rand.split());
+	}
+	
+	/*----------------------
+	 * DimpleRandom methods
+	 */
+	
+	/**
+	 * The seed used to initialize this instance.
+	 */
+	public long getSeed()
+	{
+		return _rand.getSeed();
+	}
+	
+	/**
+	 * The underlying uniform random generator.
+	 */
+	public RandomGenerator getGenerator()
+	{
+		return _rand;
+	}
+	
+	/**
+	 * Gamma variate generator sharing the stream of the {@linkplain #getGenerator() uniform generator}.
+	 */
+	public Gamma getGamma()
+	{
+		return _gamma;
+	}
+	
+	/**
+	 * Beta variate generator sharing the stream of the {@linkplain #getGenerator() uniform generator}.
+	 */
+	public Beta getBeta()
+	{
+		return _beta;
+	}
+	
+	/**
+	 * Next uniformly distributed double in the range [0,1).
+	 */
+	public double nextDouble()
+	{
+		return _rand.nextDouble();
+	}
+	
+	/**
+	 * Next normally distributed double with mean zero and unit variance.
+	 */
+	public double nextGaussian()
+	{
+		return _rand.nextGaussian();
+	}
+	
+	/**
+	 * Next uniformly distributed int in the range [0,n).
+	 */
+	public int nextInt(int n)
+	{
+		return _rand.nextInt(n);
+	}
+	
+	/**
+	 * Next value from the binomial distribution with given number of trials {@code N} and
+	 * success probability {@code p}.
+	 * <p>
+	 * Unlike the underlying Colt implementation, this accepts {@code N} of zero and {@code p} of zero or one.
+	 */
+	public int nextBinomial(int N, double p)
+	{
+		if (N <= 0 || p <= 0)
+			return 0;
+		else if (p >= 1)
+			return N;
+		else
+			return _binomial.nextInt(N, p);
+	}
+}
@@ -20,20 +20,50 @@ import org.apache.commons.math3.random.RandomGenerator;
 
 import cern.jet.random.engine.RandomEngine;
 
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
 
+/**
+ * Static access to random number generators used by Dimple.
+ * <p>
+ * The generators returned by the static methods of this class come from the {@linkplain DimpleRandom random streams}
+ * of the {@linkplain DimpleEnvironment#active() active environment} for the current thread, so they may
+ * safely be used concurrently from multiple threads, and results are reproducible after {@link #setSeed(long)}.
+ * <p>
+ * The public static fields are retained only for backward compatibility and are not used by Dimple itself.
+ */
 public class DimpleRandomGenerator
 {
+	/**
+	 * @deprecated use {@link #rand()} instead.
+	 */
+	@Deprecated
 	public static RandomGenerator rand = new org.apache.commons.math3.random.MersenneTwister();
 	
 	// Other random number generators not supported by the Apache framework
 	private static RandomEngine randEngine = new cern.jet.random.engine.MersenneTwister(rand.nextInt());
+	/**
+	 * @deprecated use {@link #randGamma()} instead.
+	 */
+	@Deprecated
 	public static cern.jet.random.Gamma randGamma = new cern.jet.random.Gamma(1, 1, randEngine);
+	/**
+	 * @deprecated use {@link #randBeta()} instead.
+	 */
+	@Deprecated
 	public static cern.jet.random.Beta randBeta = new cern.jet.random.Beta(1, 1, randEngine);
+	/**
+	 * @deprecated use {@link #randomBinomial(int, double)} instead.
+	 */
+	@Deprecated
 	public static cern.jet.random.Binomial randBinomial = new cern.jet.random.Binomial(1, 0.5, randEngine);
 	
-	
+	/**
+	 * Sets the {@linkplain DimpleEnvironment#setRandomSeed(long) random seed} of the active environment.
+	 */
 	public static void setSeed(long seed)
 	{
+		DimpleEnvironment.active().setRandomSeed(seed);
+		
 		// Work-around for bug in apache-commons.math-2.2
 		// Bug 723: https://issues.apache.org/jira/browse/MATH-723
 		// Can't just set the seed; must replace the object instead
@@ -47,18 +77,57 @@ public class DimpleRandomGenerator
 		randBinomial = new cern.jet.random.Binomial(1, 0.5, randEngine);
 	}
 	
+	/**
+	 * The random streams for the current thread in the active environment.
+	 * <p>
+	 * Code that draws many values in a single operation should look this up once rather than
+	 * calling {@link #rand()} repeatedly.
+	 * <p>
+	 * @since 0.08
+	 * @see DimpleEnvironment#getRandom()
+	 */
+	public static DimpleRandom current()
+	{
+		return DimpleEnvironment.active().getRandom();
+	}
+	
+	/**
+	 * The uniform random generator for the current thread.
+	 * <p>
+	 * @since 0.08
+	 * @see #current()
+	 */
+	public static RandomGenerator rand()
+	{
+		return current().getGenerator();
+	}
+	
+	/**
+	 * The gamma variate generator for the current thread.
+	 * <p>
+	 * @since 0.08
+	 * @see #current()
+	 */
+	public static cern.jet.random.Gamma randGamma()
+	{
+		return current().getGamma();
+	}
+	
+	/**
+	 * The beta variate generator for the current thread.
+	 * <p>
+	 * @since 0.08
+	 * @see #current()
+	 */
+	public static cern.jet.random.Beta randBeta()
+	{
+		return current().getBeta();
+	}
 	
 	// randBinomial doesn't accept zero N value or 1 or 0 p value
 	public static final int randomBinomial(int N, double p)
 	{
-		if (N <= 0)
-			return 0;
-		else if (p <= 0)
-			return 0;
-		else if (p >= 1)
-			return N;
-		else
-			return randBinomial.nextInt(N, p);
+		return current().nextBinomial(N, p);
 	}
 
 }
@@ -0,0 +1,219 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.math;
+
+import org.apache.commons.math3.random.BitsStreamGenerator;
+
+/**
+ * Fast splittable uniform random generator.
+ * <p>
+ * This implements the xoroshiro128++ algorithm of Blackman and Vigna, which has a period of
+ * 2<sup>128</sup>-1 and passes the standard statistical test batteries while needing only 128 bits of
+ * state and a handful of shift/xor/add operations per 64-bit output. The state is initialized from
+ * a single 64-bit seed using the SplitMix64 generator, so that nearby seeds produce unrelated streams.
+ * <p>
+ * {@link #split()} produces a new generator whose seed is drawn from this one, which allows
+ * a tree of independent, reproducible streams to be derived from a single root seed, e.g. one per
+ * sampling chain or worker thread. {@link #streamSeed(long, long)} provides a direct mapping from a
+ * root seed and stream index to a seed.
+ * <p>
+ * Unlike the {@code MersenneTwister} implementations this is intended to replace, instances are cheap
+ * to create. Like them, instances are not thread safe and should not be shared across threads.
+ * <p>
+ * @since 0.08
+ */
+public final class SplittableRandomGenerator extends BitsStreamGenerator
+{
+	/*-------
+	 * State
+	 */
+	
+	private static final long serialVersionUID = 1L;
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	private static final double DOUBLE_UNIT = 0x1.0p-53;
+	
+	private long _seed;
+	private long _s0;
+	private long _s1;
+	
+	/*--------------
+	 * Construction
+	 */
+	
+	/**
+	 * Constructs generator with given {@code seed}.
+	 */
+	public SplittableRandomGenerator(long seed)
+	{
+		setSeed(seed);
+	}
+	
+	/**
+	 * Constructs generator with seed produced by {@link System#nanoTime()} mixed with the
+	 * object's identity hash code.
+	 */
+	public SplittableRandomGenerator()
+	{
+		this(mix64(System.nanoTime()) ^ System.identityHashCode(new Object()));
+	}
+	
+	/**
+	 * Returns a new generator whose seed is drawn from this generator's stream.
+	 * <p>
+	 * Advances this generator's state.
+	 */
+	public SplittableRandomGenerator split()
+	{
+		return new SplittableRandomGenerator(nextLong());
+	}
+	
+	/*--------------------------------
+	 * BitsStreamGenerator methods
+	 */
+	
+	@Override
+	public void setSeed(int seed)
+	{
+		setSeed((long)seed);
+	}
+
+	@Override
+	public void setSeed(int[] seed)
+	{
+		long combined = 0;
+		for (int i : seed)
+		{
+			combined = mix64(combined + GOLDEN_GAMMA + (i & 0xFFFFFFFFL));
+		}
+		setSeed(combined);
+	}
+
+	@Override
+	public void setSeed(long seed)
+	{
+		_seed = seed;
+		long x = seed;
+		_s0 = mix64(x += GOLDEN_GAMMA);
+		_s1 = mix64(x += GOLDEN_GAMMA);
+		if ((_s0 | _s1) == 0)
+		{
+			// The all zero state is the one fixed point of the algorithm.
+			_s1 = GOLDEN_GAMMA;
+		}
+		clear();
+	}
+
+	@Override
+	protected int next(int bits)
+	{
+		return (int)(nextLong() >>> (64 - bits));
+	}
+	
+	@Override
+	public boolean nextBoolean()
+	{
+		return nextLong() < 0;
+	}
+	
+	@Override
+	public double nextDouble()
+	{
+		return (nextLong() >>> 11) * DOUBLE_UNIT;
+	}
+	
+	@Override
+	public int nextInt()
+	{
+		return (int)(nextLong() >>> 32);
+	}
+	
+	@Override
+	public int nextInt(int n)
+	{
+		if (n <= 0)
+		{
+			// Delegate to get the standard exception
+			return super.nextInt(n);
+		}
+		
+		// Lemire's multiply and reject method, which avoids division in all but rare cases.
+		long m = (nextLong() >>> 32) * n;
+		long low = m & 0xFFFFFFFFL;
+		if (low < n)
+		{
+			final long threshold = (0x100000000L - n) % n;
+			while (low < threshold)
+			{
+				m = (nextLong() >>> 32) * n;
+				low = m & 0xFFFFFFFFL;
+			}
+		}
+		return (int)(m >>> 32);
+	}
+	
+	@Override
+	public long nextLong()
+	{
+		final long s0 = _s0;
+		long s1 = _s1;
+		final long result = Long.rotateLeft(s0 + s1, 17) + s0;
+		s1 ^= s0;
+		_s0 = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+		_s1 = Long.rotateLeft(s1, 28);
+		return result;
+	}
+	
+	/*-----------------------------------
+	 * SplittableRandomGenerator methods
+	 */
+	
+	/**
+	 * The seed most recently used to initialize the state of this generator.
+	 */
+	public long getSeed()
+	{
+		return _seed;
+	}
+	
+	/**
+	 * Computes seed for stream with given {@code index} derived from {@code rootSeed}.
+	 * <p>
+	 * This is a deterministic function of its arguments that produces well separated seeds
+	 * for distinct indexes, so it can be used to assign reproducible streams to a numbered set of
+	 * chains or workers regardless of which thread they actually run on.
+	 */
+	public static long streamSeed(long rootSeed, long index)
+	{
+		return mix64(mix64(rootSeed) + GOLDEN_GAMMA * (index + 1));
+	}
+	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	/**
+	 * SplitMix64 finalizer (variant 13 of Stafford's mix functions).
+	 */
+	private static long mix64(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -61,6 +61,102 @@ public class TestSelection
 		testCase(array);
 	}
 	
+	@Test
+	public void testNoAllocation()
+	{
+		for (int iteration = 0; iteration < 5; ++iteration)
+		{
+			double[] array = randomArray();
+			for (int i = 0; i < array.length; ++i)
+			{
+				// Include some ties
+				array[i] = Math.floor(array[i] * 10);
+			}
+			
+			final int n = array.length;
+			final double[] unsortedArray = array.clone();
+			final double[] sortedArray = array.clone();
+			Arrays.sort(sortedArray);
+			final int[] indices = new int[n];
+			final double[] scratch = new double[n];
+			
+			for (int k = 1; k <= n; ++k)
+			{
+				findFirstKIndices(unsortedArray, k, indices, scratch);
+				assertKIndices(unsortedArray, k, indices, sortedArray[k-1], true);
+				
+				findLastKIndices(unsortedArray, k, indices, scratch);
+				assertKIndices(unsortedArray, k, indices, sortedArray[n-k], false);
+			}
+			
+			assertArrayEquals(array, unsortedArray, 0.0);
+		}
+	}
+	
+	@Test
+	public void testTies()
+	{
+		final double[] array = new double[] { 5, 5, 1 };
+		final Double[] array2 = new Double[] { 5.0, 5.0, 1.0 };
+		assertArrayEquals(new int[] { 0, 2 }, findFirstKIndices(array, 2));
+		assertArrayEquals(new int[] { 0, 2 }, findFirstKIndices(array2, 2));
+		assertArrayEquals(new int[] { 2 }, findFirstKIndices(array, 1));
+		assertArrayEquals(new int[] { 2 }, findFirstKIndices(array2, 1));
+		assertArrayEquals(new int[] { 0 }, findLastKIndices(array, 1));
+		assertArrayEquals(new int[] { 0 }, findLastKIndices(array2, 1));
+
+		final double[] array3 = new double[] { 1, 1, 5 };
+		final Double[] array4 = new Double[] { 1.0, 1.0, 5.0 };
+		assertArrayEquals(new int[] { 0, 2 }, findLastKIndices(array3, 2));
+		assertArrayEquals(new int[] { 0, 2 }, findLastKIndices(array4, 2));
+		
+		// Allocating versions agree with the non-allocating ones
+		final double[] random = randomArray();
+		final int n = random.length;
+		final int[] indices = new int[n];
+		for (int i = 0; i < n; ++i)
+		{
+			random[i] = Math.floor(random[i] * 5);
+		}
+		for (int k = 1; k <= n; ++k)
+		{
+			findFirstKIndices(random, k, indices, new double[n]);
+			assertArrayEquals(Arrays.copyOf(indices, k), findFirstKIndices(random, k));
+			findLastKIndices(random, k, indices, new double[n]);
+			assertArrayEquals(Arrays.copyOf(indices, k), findLastKIndices(random, k));
+		}
+	}
+	
+	private void assertKIndices(double[] array, int k, int[] indices, double kth, boolean first)
+	{
+		int nBetter = 0;
+		for (double d : array)
+		{
+			if (first ? d < kth : d > kth)
+			{
+				++nBetter;
+			}
+		}
+		
+		int nSelectedBetter = 0;
+		for (int i = 0; i < k; ++i)
+		{
+			if (i > 0)
+			{
+				assertTrue(indices[i] > indices[i-1]);
+			}
+			final double d = array[indices[i]];
+			assertTrue(first ? d <= kth : d >= kth);
+			if (d != kth)
+			{
+				++nSelectedBetter;
+			}
+		}
+		
+		// All strictly better values must be included
+		assertEquals(nBetter, nSelectedBetter);
+	}
+	
 	private void testCase(double[] array)
 	{
 		double[] unsortedArray = array.clone();
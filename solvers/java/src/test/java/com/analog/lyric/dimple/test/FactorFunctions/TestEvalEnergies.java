@@ -0,0 +1,212 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.dimple.test.FactorFunctions;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.Gamma;
+import com.analog.lyric.dimple.factorfunctions.LinearEquation;
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.Product;
+import com.analog.lyric.dimple.factorfunctions.Sum;
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunctionWithConstants;
+import com.analog.lyric.dimple.model.values.RealValue;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for {@link FactorFunction#evalEnergies}.
+ * 
+ * @since 0.08
+ */
+public class TestEvalEnergies extends DimpleTestBase
+{
+	private final Random _rand = new Random(42);
+	private final int N = 20;
+	
+	@Test
+	public void testNormal()
+	{
+		assertEvalEnergies(new Normal(0.5, 2.0), randomColumns(3, -2, 2));
+		
+		double[][] columns = randomColumns(4, -2, 2);
+		columns[1][3] = -1.0;	// negative precision
+		columns[1][4] = 0.0;
+		assertEvalEnergies(new Normal(), columns);
+	}
+	
+	@Test
+	public void testGamma()
+	{
+		assertEvalEnergies(new Gamma(2.0, 3.0), randomColumns(2, -.5, 4));
+		assertEvalEnergies(new Gamma(1.0, 2.0), randomColumns(2, -.5, 4));
+		assertEvalEnergies(new Gamma(), randomColumns(3, -.5, 4));
+	}
+	
+	@Test
+	public void testDeterministic()
+	{
+		for (FactorFunction function : new FactorFunction[] {
+			new Sum(), new Sum(.5), new Product(), new Product(.25),
+			new LinearEquation(new double[] { 2, -1, .5 }), new LinearEquation(new double[] { 2, -1, .5 }, .5) })
+		{
+			double[][] columns = randomColumns(4, -2, 2);
+			
+			// Make every other output consistent with the inputs
+			for (int j = 0; j < N; j += 2)
+			{
+				Value[] values = row(columns, j);
+				function.evalDeterministic(values);
+				columns[0][j] = values[0].getDouble();
+			}
+			assertEvalEnergies(function, columns);
+		}
+	}
+	
+	@Test
+	public void testDefault()
+	{
+		FactorFunction function = new FactorFunction() {
+			@Override
+			public double evalEnergy(Value[] values)
+			{
+				double x = values[0].getDouble(), y = values[1].getDouble();
+				return x < 0 ? Double.NaN : Math.sqrt(x) * y;
+			}
+		};
+		assertEvalEnergies(function, randomColumns(2, -1, 1));
+	}
+	
+	@Test
+	public void testConstants()
+	{
+		FactorFunction normal = new FactorFunctionWithConstants(new Normal(), new Object[] { 1.0, 2 }, new int[] { 0, 1 });
+		assertEvalEnergies(normal, randomColumns(2, -2, 2));
+		
+		FactorFunction sum = new FactorFunctionWithConstants(new Sum(.5), new Object[] { 1.5 }, new int[] { 2 });
+		assertEvalEnergies(sum, randomColumns(3, -2, 2));
+		
+		// Non-numeric constants are handled by the default implementation
+		FactorFunction nonNumeric = new FactorFunctionWithConstants(new FactorFunction() {
+			@Override
+			public double evalEnergy(Value[] values)
+			{
+				return values[0].getBoolean() ? values[1].getDouble() : 0.0;
+			}
+		}, new Object[] { true }, new int[] { 0 });
+		assertEvalEnergies(nonNumeric, randomColumns(1, -2, 2));
+		
+		// Constant columns are reused across calls with new argument columns and varying counts
+		for (int count : new int[] { 5, N, 3, N })
+		{
+			assertEvalEnergies(normal, randomColumns(2, -2, 2), count);
+			assertEvalEnergies(sum, randomColumns(3, -2, 2), count);
+		}
+	}
+	
+	@Test
+	public void testConstantsNoAllocation()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)bean;
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+		
+		FactorFunction normal = new FactorFunctionWithConstants(new Normal(), new Object[] { 1.0, 2 }, new int[] { 0, 1 });
+		double[][] columns = randomColumns(2, -2, 2);
+		double[] energies = new double[N];
+		normal.evalEnergies(columns, N, energies);
+		
+		final int nCalls = 1000;
+		final long threadId = Thread.currentThread().getId();
+		final long before = threadBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < nCalls; ++i)
+		{
+			normal.evalEnergies(columns, 1 + i % N, energies);
+		}
+		final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+		assertTrue("allocated " + allocated + " bytes", allocated < nCalls);
+	}
+	
+	/*-----------------
+	 * Helper methods
+	 */
+	
+	private double[][] randomColumns(int size, double min, double max)
+	{
+		// Leave room past N so that we can verify the count argument is honored
+		double[][] columns = new double[size][N + 3];
+		for (double[] column : columns)
+		{
+			for (int j = 0; j < column.length; ++j)
+			{
+				column[j] = min + (max - min) * _rand.nextDouble();
+			}
+		}
+		return columns;
+	}
+	
+	private static Value[] row(double[][] columns, int j)
+	{
+		Value[] values = new Value[columns.length];
+		for (int i = 0; i < values.length; ++i)
+		{
+			values[i] = RealValue.create(columns[i][j]);
+		}
+		return values;
+	}
+	
+	private void assertEvalEnergies(FactorFunction function, double[][] columns)
+	{
+		assertEvalEnergies(function, columns, N);
+	}
+	
+	private void assertEvalEnergies(FactorFunction function, double[][] columns, int count)
+	{
+		double[] energies = new double[count + 1];
+		energies[count] = 42.0;
+		function.evalEnergies(columns, count, energies);
+		assertEquals(42.0, energies[count], 0.0);
+		
+		for (int j = 0; j < count; ++j)
+		{
+			double expected = function.evalEnergy(row(columns, j));
+			if (Double.isNaN(expected))
+			{
+				expected = Double.POSITIVE_INFINITY;
+			}
+			
+			if (Double.isInfinite(expected))
+			{
+				assertEquals(expected, energies[j], 0.0);
+			}
+			else
+			{
+				assertEquals(expected, energies[j], 1e-12 * Math.max(1, Math.abs(expected)));
+			}
+		}
+	}
+}
@@ -36,9 +36,11 @@ import com.analog.lyric.dimple.factorfunctions.GreaterThanOrEqual;
 import com.analog.lyric.dimple.factorfunctions.LessThan;
 import com.analog.lyric.dimple.factorfunctions.LessThanOrEqual;
 import com.analog.lyric.dimple.factorfunctions.Log;
+import com.analog.lyric.dimple.factorfunctions.Multiplexer;
 import com.analog.lyric.dimple.factorfunctions.Negate;
 import com.analog.lyric.dimple.factorfunctions.Or;
 import com.analog.lyric.dimple.factorfunctions.Product;
+import com.analog.lyric.dimple.factorfunctions.Sum;
 import com.analog.lyric.dimple.factorfunctions.Xor;
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
 import com.analog.lyric.dimple.model.domains.DiscreteDomain;
@@ -248,6 +250,19 @@ public class TestSimpleDeterministicFunctions extends FactorFunctionTester
 		});
 	}
 
+	@Test
+	public void testMultiplexer()
+	{
+		Multiplexer multiplexer = new Multiplexer();
+		assertArrayEquals(new int[] { 0 }, multiplexer.getDirectedToIndices());
+		testEvalDeterministic(multiplexer, RealDomain.unbounded(),
+			testCase(2.0, 0.0, 2.0, 5.0),
+			testCase(2.0, 0.0, 2.0, 7.0),	// unselected input changed
+			testCase(7.0, 1.0, 2.0, 7.0),	// selector changed
+			testCase(3.0, 1.0, 2.0, 3.0),	// selected input changed
+			testCase(4.0, 0.0, 4.0, 1.0));
+	}
+	
 	@Test
 	public void testNegate()
 	{
@@ -301,6 +316,28 @@ public class TestSimpleDeterministicFunctions extends FactorFunctionTester
 		});
 	}
 	
+	@Test
+	public void testSum()
+	{
+		Sum sum = new Sum();
+		assertArrayEquals(new int[] { 0 }, sum.getDirectedToIndices());
+		testEvalDeterministic(sum, RealDomain.unbounded(),
+			testCase(6.0, 1.0, 2.0, 3.0, 0.0),
+			testCase(9.0, 4.0, 2.0, 3.0, 0.0),
+			testCase(-1.0, 4.0, -2.0, -3.0, 0.0),
+			testCase(2.75, 1.5, -2.0, 3.0, .25),	// not integers
+			testCase(1.0, 1.0, 0.0, 0.0, 0.0));
+		
+		testSimple(sum, new TestCaseGenerator() {
+			@Override
+			public Value[] createTestCase()
+			{
+				double x = _rand.nextDouble(), y = _rand.nextDouble();
+				return testCase(x + y, x, y);
+			}
+		});
+	}
+	
 	@Test
 	public void testXor()
 	{
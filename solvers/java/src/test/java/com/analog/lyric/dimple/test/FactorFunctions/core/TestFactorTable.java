@@ -1343,7 +1343,19 @@ public class TestFactorTable extends DimpleTestBase
 				assertEquals(table.getWeightForSparseIndex(si), sparseWeights[si], 0.0);
 			}
 		}
-		
+		if (table.hasSparseIndices())
+		{
+			int[][] sparseIndices = table.getIndicesSparseUnsafe();
+			int[] packedIndices = table.getIndicesSparsePackedUnsafe();
+			assertSame(packedIndices, table.getIndicesSparsePackedUnsafe());
+			final int nDims = table.getDimensions();
+			assertEquals(sparseIndices.length * nDims, packedIndices.length);
+			for (int si = sparseIndices.length; --si>=0;)
+			{
+				assertArrayEquals(sparseIndices[si], Arrays.copyOfRange(packedIndices, si * nDims, (si + 1) * nDims));
+			}
+		}
+
 		JointDomainReindexer nullConverter =
 			JointDomainReindexer.createPermuter(table.getDomainIndexer(), table.getDomainIndexer());
 
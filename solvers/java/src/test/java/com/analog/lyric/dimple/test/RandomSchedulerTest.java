@@ -80,13 +80,13 @@ public class RandomSchedulerTest extends DimpleTestBase
 		{
 			if (debugPrint) System.out.println(entry.toString());
 			if (i == 3)
-				assertTrue(entry.toString().equals("IScheduleEntry [F2]"));
+				assertTrue(entry.toString().equals("IScheduleEntry [F1]"));
 			else if (i == 7)
-				assertTrue(entry.toString().equals("IScheduleEntry [F4]"));
-			else if (i == 11)
 				assertTrue(entry.toString().equals("IScheduleEntry [F3]"));
+			else if (i == 11)
+				assertTrue(entry.toString().equals("IScheduleEntry [F4]"));
 			else if (i == 15)
-				assertTrue(entry.toString().equals("IScheduleEntry [F1]"));
+				assertTrue(entry.toString().equals("IScheduleEntry [F2]"));
 			i++;
 		}
 
@@ -135,13 +135,13 @@ public class RandomSchedulerTest extends DimpleTestBase
 		{
 			if (debugPrint) System.out.println(entry.toString());
 			if (i == 3)
-				assertTrue(entry.toString().equals("IScheduleEntry [F1]"));
+				assertTrue(entry.toString().equals("IScheduleEntry [F2]"));
 			else if (i == 7)
 				assertTrue(entry.toString().equals("IScheduleEntry [F2]"));
 			else if (i == 11)
-				assertTrue(entry.toString().equals("IScheduleEntry [F2]"));
-			else if (i == 15)
 				assertTrue(entry.toString().equals("IScheduleEntry [F4]"));
+			else if (i == 15)
+				assertTrue(entry.toString().equals("IScheduleEntry [F2]"));
 			i++;
 		}
 
@@ -281,8 +281,8 @@ public class RealVariableParticleBPTest extends DimpleTestBase
 		if (debugPrint) System.out.println("bExpectedMean: " + bProb1);
 		
 		
-		assertTrue(nearlyEquals(aSolverMean,0.1929829696757485));
-		assertTrue(nearlyEquals(bSolverMean,0.5809732764581331));
+		assertTrue(nearlyEquals(aSolverMean,0.19298296967574835));
+		assertTrue(nearlyEquals(bSolverMean,0.6228993795296259));
 	}
 	
 	
@@ -0,0 +1,165 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.schedulers.ResidualBPScheduler;
+import com.analog.lyric.dimple.schedulers.schedule.ResidualBPSchedule;
+import com.analog.lyric.dimple.solvers.interfaces.IFactorGraphFactory;
+import com.analog.lyric.dimple.solvers.minsum.MinSumSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.model.RandomGraphGenerator;
+
+/**
+ * Tests for {@link ResidualBPScheduler}
+ */
+public class ResidualBPSchedulerTest extends DimpleTestBase
+{
+	@Test
+	public void testTree()
+	{
+		final Random rand = new Random(42);
+		for (IFactorGraphFactory<?> solver : new IFactorGraphFactory<?>[] { new SumProductSolver(), new MinSumSolver() })
+		{
+			RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+			gen.domains(DiscreteDomain.range(1, 2), DiscreteDomain.range(1, 4));
+			FactorGraph fg = gen.buildRandomTree(30);
+			fg.setSolverFactory(solver);
+			setRandomInputs(fg, rand);
+
+			// On a tree, a converged residual schedule should reach the same fixed point as flooding.
+			final int iterations = 40;
+			List<double[]> expected = solve(fg, iterations);
+
+			fg.setScheduler(new ResidualBPScheduler(0.0));
+			List<double[]> actual = solve(fg, iterations);
+			assertBeliefsEqual(expected, actual, 1e-10);
+
+			ResidualBPSchedule schedule = (ResidualBPSchedule)fg.getSchedule();
+			assertEquals(iterations, schedule.getIterationCount());
+			assertEquals(0.0, schedule.getMaxResidual(), 0.0);
+			assertTrue(schedule.getUpdateCount() > 0);
+			assertEquals(schedule.getFloodingUpdateCount() - schedule.getUpdateCount(), schedule.getSavedUpdateCount());
+			assertTrue(schedule.getSavedUpdateCount() > schedule.getUpdateCount());
+
+			// Solving again should reset the schedule along with the messages.
+			solve(fg, 1);
+			assertSame(schedule, fg.getSchedule());
+			assertEquals(1, schedule.getIterationCount());
+			assertEquals(schedule.getFloodingUpdateCount(), schedule.getUpdateCount());
+			requireNonNull(fg.getSolver()).iterate(iterations - 1);
+			assertBeliefsEqual(actual, getBeliefs(fg), 0.0);
+		}
+	}
+
+	@Test
+	public void testLoopy()
+	{
+		final Random rand = new Random(23);
+		RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.range(1, 2), DiscreteDomain.range(1, 3));
+		FactorGraph fg = gen.buildGrid(6);
+		fg.setSolverFactory(new SumProductSolver());
+		setRandomInputs(fg, rand);
+
+		final int iterations = 200;
+		List<double[]> expected = solve(fg, iterations);
+
+		ResidualBPScheduler scheduler = new ResidualBPScheduler(1e-12);
+		assertEquals(1e-12, scheduler.getTolerance(), 0.0);
+		fg.setScheduler(scheduler);
+		List<double[]> actual = solve(fg, iterations);
+		assertBeliefsEqual(expected, actual, 1e-8);
+
+		ResidualBPSchedule schedule = (ResidualBPSchedule)fg.getSchedule();
+		assertEquals(1e-12, schedule.getTolerance(), 0.0);
+		assertTrue(schedule.getMaxResidual() <= 1e-12);
+		assertTrue(schedule.getSavedUpdateCount() > 0);
+	}
+
+	@Test
+	public void testInvalidTolerance()
+	{
+		assertEquals(ResidualBPSchedule.DEFAULT_TOLERANCE, new ResidualBPScheduler().getTolerance(), 0.0);
+
+		try
+		{
+			new ResidualBPScheduler(-1.0);
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+	}
+
+	/*-----------------
+	 * Helper methods
+	 */
+
+	private static void setRandomInputs(FactorGraph fg, Random rand)
+	{
+		for (Variable var : fg.getVariables())
+		{
+			Discrete discrete = (Discrete)var;
+			double[] input = new double[discrete.getDomain().size()];
+			for (int i = 0; i < input.length; ++i)
+			{
+				input[i] = rand.nextDouble() + .1;
+			}
+			discrete.setInput(input);
+		}
+	}
+
+	private static List<double[]> solve(FactorGraph fg, int iterations)
+	{
+		requireNonNull(fg.getSolver()).setNumIterations(iterations);
+		fg.solve();
+		return getBeliefs(fg);
+	}
+
+	private static List<double[]> getBeliefs(FactorGraph fg)
+	{
+		List<double[]> beliefs = new ArrayList<double[]>();
+		for (Variable var : fg.getVariables())
+		{
+			beliefs.add(((Discrete)var).getBelief());
+		}
+		return beliefs;
+	}
+
+	private static void assertBeliefsEqual(List<double[]> expected, List<double[]> actual, double delta)
+	{
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0, n = expected.size(); i < n; ++i)
+		{
+			assertArrayEquals(expected.get(i), actual.get(i), delta);
+		}
+	}
+}
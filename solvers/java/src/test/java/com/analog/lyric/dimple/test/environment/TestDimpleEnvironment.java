@@ -44,6 +44,7 @@ import com.analog.lyric.dimple.solvers.core.proposalKernels.NormalProposalKernel
 import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
 import com.analog.lyric.dimple.solvers.gibbs.samplers.generic.SliceSampler;
 import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.math.DimpleRandom;
 import com.analog.lyric.util.test.TestLogger;
 
 /**
@@ -248,4 +249,90 @@ public class TestDimpleEnvironment extends DimpleTestBase
 		assertEquals(GibbsSolver.class, env.solvers().getClass("Gibbs"));
 		assertSame(env.solvers(), env.solvers());
 	}
+	
+	@Test
+	public void testRandom() throws InterruptedException
+	{
+		final DimpleEnvironment env = new DimpleEnvironment();
+		
+		env.setRandomSeed(42);
+		assertEquals(42, env.getRandomSeed());
+		final DimpleRandom random = env.getRandom();
+		assertSame(random, env.getRandom());
+		assertEquals(env.createRandom(0).getSeed(), random.getSeed());
+		final double first = random.nextDouble();
+		
+		// Same seed gives same sequence on this thread
+		env.setRandomSeed(42);
+		assertNotSame(random, env.getRandom());
+		assertEquals(first, env.getRandom().nextDouble(), 0.0);
+		
+		// Indexed streams are deterministic and distinct
+		assertEquals(env.createRandom(3).nextDouble(), env.createRandom(3).nextDouble(), 0.0);
+		assertNotEquals(env.createRandom(3).getSeed(), env.createRandom(4).getSeed());
+		
+		// Other threads get their own streams
+		final DimpleRandom[] other = new DimpleRandom[2];
+		Thread thread = new Thread() {
+			@Override
+			public void run()
+			{
+				other[0] = env.getRandom();
+				other[1] = env.getRandom();
+			}
+		};
+		thread.start();
+		thread.join();
+		assertSame(other[0], other[1]);
+		assertNotSame(env.getRandom(), other[0]);
+		assertNotEquals(env.getRandom().getSeed(), other[0].getSeed());
+		
+		// Explicitly set streams
+		final DimpleRandom explicit = new DimpleRandom(23);
+		final DimpleRandom prev = env.getRandom();
+		assertSame(prev, env.setThreadRandom(explicit));
+		assertSame(explicit, env.getRandom());
+		assertSame(explicit, env.setThreadRandom(prev));
+		assertSame(prev, env.getRandom());
+		env.setThreadRandom(null);
+		assertNotSame(prev, env.getRandom());
+		
+		// Restoring an implicitly assigned stream does not pin it
+		final DimpleRandom implicit = env.getRandom();
+		final DimpleEnvironment.ThreadRandomState saved = env.saveThreadRandom();
+		assertSame(implicit, saved.getRandom());
+		env.setThreadRandom(explicit);
+		env.restoreThreadRandom(saved);
+		assertSame(implicit, env.getRandom());
+		thread = new Thread() {
+			@Override
+			public void run()
+			{
+				env.setRandomSeed(42);
+			}
+		};
+		thread.start();
+		thread.join();
+		assertNotSame(implicit, env.getRandom());
+		
+		// But an explicit one is still pinned after restoring it
+		env.setThreadRandom(explicit);
+		final DimpleEnvironment.ThreadRandomState savedExplicit = env.saveThreadRandom();
+		env.setThreadRandom(null);
+		env.restoreThreadRandom(savedExplicit);
+		thread = new Thread() {
+			@Override
+			public void run()
+			{
+				env.setRandomSeed(43);
+			}
+		};
+		thread.start();
+		thread.join();
+		assertSame(explicit, env.getRandom());
+		env.setThreadRandom(null);
+		
+		// Different environments have independent streams
+		assertNotSame(env.getRandom(), DimpleEnvironment.active().getRandom());
+	}
 }
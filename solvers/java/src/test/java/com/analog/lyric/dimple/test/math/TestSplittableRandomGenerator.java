@@ -0,0 +1,161 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.dimple.test.math;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.math.DimpleRandom;
+import com.analog.lyric.math.SplittableRandomGenerator;
+
+/**
+ * Tests for {@link SplittableRandomGenerator} and {@link DimpleRandom}
+ * 
+ * @since 0.08
+ */
+public class TestSplittableRandomGenerator extends DimpleTestBase
+{
+	@Test
+	public void testSeeding()
+	{
+		SplittableRandomGenerator rand1 = new SplittableRandomGenerator(42);
+		SplittableRandomGenerator rand2 = new SplittableRandomGenerator(42);
+		assertEquals(42, rand1.getSeed());
+		for (int i = 0; i < 100; ++i)
+		{
+			assertEquals(rand1.nextLong(), rand2.nextLong());
+		}
+		
+		rand2.setSeed(43);
+		assertEquals(43, rand2.getSeed());
+		assertNotEquals(rand1.nextLong(), rand2.nextLong());
+		
+		rand1.setSeed(43);
+		rand2.setSeed(43);
+		assertEquals(rand1.nextGaussian(), rand2.nextGaussian(), 0.0);
+		
+		rand1.setSeed(new int[] { 1, 2, 3 });
+		rand2.setSeed(new int[] { 1, 2, 3 });
+		assertEquals(rand1.nextLong(), rand2.nextLong());
+		
+		// Zero seed still produces varied output
+		rand1.setSeed(0L);
+		assertNotEquals(rand1.nextLong(), rand1.nextLong());
+		
+		assertEquals(SplittableRandomGenerator.streamSeed(5, 1), SplittableRandomGenerator.streamSeed(5, 1));
+		assertNotEquals(SplittableRandomGenerator.streamSeed(5, 1), SplittableRandomGenerator.streamSeed(5, 2));
+		assertNotEquals(SplittableRandomGenerator.streamSeed(5, 1), SplittableRandomGenerator.streamSeed(6, 1));
+	}
+	
+	@Test
+	public void testSplit()
+	{
+		SplittableRandomGenerator rand1 = new SplittableRandomGenerator(42);
+		SplittableRandomGenerator rand2 = new SplittableRandomGenerator(42);
+		
+		SplittableRandomGenerator child1 = rand1.split();
+		SplittableRandomGenerator child2 = rand2.split();
+		assertEquals(child1.getSeed(), child2.getSeed());
+		assertEquals(child1.nextLong(), child2.nextLong());
+		
+		// Splitting advances the parent
+		assertEquals(rand1.nextLong(), rand2.nextLong());
+		assertNotEquals(child1.split().getSeed(), rand1.split().getSeed());
+	}
+	
+	@Test
+	public void testUniform()
+	{
+		final SplittableRandomGenerator rand = new SplittableRandomGenerator(123);
+		final int n = 100000;
+		final int nBins = 10;
+		final int[] counts = new int[nBins];
+		double sum = 0;
+		int trues = 0;
+		for (int i = 0; i < n; ++i)
+		{
+			final double d = rand.nextDouble();
+			assertTrue(d >= 0 && d < 1);
+			sum += d;
+			
+			final int bin = rand.nextInt(nBins);
+			assertTrue(bin >= 0 && bin < nBins);
+			++counts[bin];
+			
+			if (rand.nextBoolean())
+				++trues;
+		}
+		assertEquals(.5, sum / n, .01);
+		assertEquals(.5, (double)trues / n, .01);
+		for (int count : counts)
+		{
+			assertEquals(.1, (double)count / n, .01);
+		}
+		
+		// Non power of two range that exercises the rejection path
+		final int big = (1 << 30) + 1;
+		for (int i = 0; i < 1000; ++i)
+		{
+			final int x = rand.nextInt(big);
+			assertTrue(x >= 0 && x < big);
+		}
+		
+		try
+		{
+			rand.nextInt(0);
+			fail("expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex)
+		{
+		}
+	}
+	
+	@Test
+	public void testDimpleRandom()
+	{
+		final DimpleRandom random = new DimpleRandom(7);
+		assertEquals(7, random.getSeed());
+		assertEquals(new DimpleRandom(7).nextDouble(), random.nextDouble(), 0.0);
+		
+		final int n = 20000;
+		double sumGaussian = 0, sumSquareGaussian = 0, sumGamma = 0, sumBeta = 0, sumBinomial = 0;
+		for (int i = 0; i < n; ++i)
+		{
+			final double g = random.nextGaussian();
+			sumGaussian += g;
+			sumSquareGaussian += g * g;
+			sumGamma += random.getGamma().nextDouble(3, 2);
+			sumBeta += random.getBeta().nextDouble(2, 6);
+			sumBinomial += random.nextBinomial(10, .3);
+		}
+		assertEquals(0, sumGaussian / n, .05);
+		assertEquals(1, sumSquareGaussian / n, .05);
+		assertEquals(1.5, sumGamma / n, .05); // shape 3, rate 2
+		assertEquals(.25, sumBeta / n, .01);
+		assertEquals(3, sumBinomial / n, .05);
+		
+		assertEquals(0, random.nextBinomial(0, .5));
+		assertEquals(0, random.nextBinomial(5, 0));
+		assertEquals(5, random.nextBinomial(5, 1));
+		
+		final DimpleRandom child = random.split();
+		assertNotEquals(random.getSeed(), child.getSeed());
+	}
+}
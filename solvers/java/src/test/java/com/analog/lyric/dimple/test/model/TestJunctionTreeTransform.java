@@ -229,6 +229,7 @@ public class TestJunctionTreeTransform extends DimpleTestBase
 		JunctionTreeTransform jt = new JunctionTreeTransform().random(rand);
 		assertSame(rand, jt.random());
 		assertFalse(jt.useConditioning());
+		assertFalse(jt.useMultithreading());
 		
 		JunctionTreeTransformMap transformMap = jt.transform(model);
 		
@@ -273,6 +274,13 @@ public class TestJunctionTreeTransform extends DimpleTestBase
 		}
 		assertTrue(transformMap.target().isForest());
 		assertModelsEquivalent(transformMap);
+		
+		// Try with parallel search for elimination order
+		jt.useMultithreading(true);
+		assertTrue(jt.useMultithreading());
+		transformMap = jt.transform(model);
+		assertTrue(transformMap.target().isForest());
+		assertModelsEquivalent(transformMap);
 	}
 	
 }
@@ -0,0 +1,177 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.model;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.Equals;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.transform.JunctionTreeTransform;
+import com.analog.lyric.dimple.model.transform.JunctionTreeTransformCache;
+import com.analog.lyric.dimple.model.transform.JunctionTreeTransformMap;
+import com.analog.lyric.dimple.model.transform.VariableEliminator.Ordering;
+import com.analog.lyric.dimple.model.transform.VariableEliminator.VariableCost;
+import com.analog.lyric.dimple.model.variables.VariableList;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Test cases for {@link JunctionTreeTransformCache}
+ *
+ * @since 0.08
+ */
+public class TestJunctionTreeTransformCache extends DimpleTestBase
+{
+	@Test
+	public void test() throws IOException
+	{
+		final File directory = Files.createTempDirectory("TestJunctionTreeTransformCache").toFile();
+		try
+		{
+			final JunctionTreeTransformCache cache = new JunctionTreeTransformCache(new File(directory, "cache"));
+
+			//
+			// Keys
+			//
+
+			final long seed = new Random().nextLong();
+			final FactorGraph model = new RandomGraphGenerator(new Random(seed)).buildGrid(4);
+			final FactorGraph model2 = new RandomGraphGenerator(new Random(seed)).buildGrid(4);
+			final JunctionTreeTransform plain = new JunctionTreeTransform();
+			final JunctionTreeTransform conditioned = new JunctionTreeTransform().useConditioning(true);
+			final String key = cache.key(model, plain);
+			assertEquals(40, key.length());
+			assertEquals(key, cache.key(model, plain));
+			assertEquals(key, cache.key(model2, plain));
+			assertNotEquals(key, cache.key(model, conditioned));
+
+			// Settings that affect the search are part of the key
+			assertNotEquals(key, cache.key(model, new JunctionTreeTransform().maxTransformationAttempts(
+				plain.maxTransformationAttempts() + 1)));
+			assertNotEquals(key, cache.key(model,
+				new JunctionTreeTransform().variableEliminatorCostFunctions(VariableCost.MIN_FILL)));
+			assertNotEquals(cache.key(model, new JunctionTreeTransform().variableEliminatorCostFunctions(
+				VariableCost.MIN_FILL, VariableCost.MIN_NEIGHBORS)),
+				cache.key(model, new JunctionTreeTransform().variableEliminatorCostFunctions(
+					VariableCost.MIN_NEIGHBORS, VariableCost.MIN_FILL)));
+			// An empty list means all of the standard cost functions
+			assertEquals(key, cache.key(model,
+				new JunctionTreeTransform().variableEliminatorCostFunctions(VariableCost.values())));
+
+			// Weights are not part of the key
+			for (Factor factor : model2.getFactors())
+			{
+				final double[] weights = factor.getFactorTable().getWeightsSparseUnsafe().clone();
+				for (int i = 0; i < weights.length; ++i)
+				{
+					weights[i] *= 2;
+				}
+				factor.getFactorTable().replaceWeightsSparse(weights);
+			}
+			assertEquals(key, cache.key(model2, plain));
+
+			// Topology and domains are
+			final FactorGraph model3 = new RandomGraphGenerator(new Random(seed)).buildGrid(4);
+			final VariableList variables3 = model3.getVariables();
+			model3.addFactor(new Equals(), variables3.getByIndex(0), variables3.getByIndex(5));
+			assertNotEquals(key, cache.key(model3, plain));
+			final FactorGraph model4 = new RandomGraphGenerator(new Random(seed))
+				.domains(DiscreteDomain.range(1, 3)).buildGrid(4);
+			assertNotEquals(cache.key(new RandomGraphGenerator(new Random(seed))
+				.domains(DiscreteDomain.range(1, 2)).buildGrid(4), plain), cache.key(model4, plain));
+
+			//
+			// Load and store
+			//
+
+			assertNull(cache.load(model, key));
+			assertFalse(cache.file(key).exists());
+
+			final JunctionTreeTransform transformer = new JunctionTreeTransform().random(new Random(seed));
+			final Ordering ordering = transformer.buildEliminationOrder(model);
+			assertTrue(cache.store(model, key, ordering));
+			assertTrue(cache.file(key).isFile());
+
+			final Ordering loaded = requireNonNull(cache.load(model2, key));
+			final VariableList variables = model.getVariables(), variables2 = model2.getVariables();
+			assertEquals(ordering.variables.size(), loaded.variables.size());
+			for (int i = 0, n = variables.size(); i < n; ++i)
+			{
+				final int position = ordering.variables.indexOf(variables.getByIndex(i));
+				assertSame(variables2.getByIndex(i), loaded.variables.get(position));
+			}
+			assertEquals(ordering.stats.addedEdges(), loaded.stats.addedEdges());
+			assertEquals(ordering.stats.addedEdgeWeight(), loaded.stats.addedEdgeWeight());
+			assertEquals(ordering.stats.conditionedVariables(), loaded.stats.conditionedVariables());
+			assertEquals(ordering.stats.factorsWithDuplicateVariables(), loaded.stats.factorsWithDuplicateVariables());
+			assertEquals(ordering.stats.maxCliqueSize(), loaded.stats.maxCliqueSize());
+			assertEquals(ordering.stats.maxCliqueCardinality(), loaded.stats.maxCliqueCardinality());
+			assertEquals(ordering.stats.mergedFactors(), loaded.stats.mergedFactors());
+			assertEquals(ordering.stats.variablesWithDuplicateEdges(), loaded.stats.variablesWithDuplicateEdges());
+
+			// Transformation from loaded ordering has the same structure
+			final JunctionTreeTransformMap map1 = transformer.transform(model, ordering);
+			final JunctionTreeTransformMap map2 = transformer.transform(model2, loaded);
+			assertEquals(map1.isIdentity(), map2.isIdentity());
+			assertEquals(map1.target().getVariableCount(), map2.target().getVariableCount());
+			assertEquals(map1.target().getFactorCount(), map2.target().getFactorCount());
+			assertTrue(map2.target().isForest());
+
+			// Entry that does not fit the model
+			assertNull(cache.load(new RandomGraphGenerator(new Random(seed)).buildGrid(3), key));
+
+			// Truncated entry
+			try (RandomAccessFile file = new RandomAccessFile(cache.file(key), "rw"))
+			{
+				file.setLength(file.length() - 1);
+			}
+			assertNull(cache.load(model, key));
+
+			// Unwritable directory
+			final File notADirectory = new File(directory, "file");
+			assertTrue(notADirectory.createNewFile());
+			assertFalse(new JunctionTreeTransformCache(notADirectory).store(model, key, ordering));
+		}
+		finally
+		{
+			delete(directory);
+		}
+	}
+
+	private static void delete(File file)
+	{
+		final File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
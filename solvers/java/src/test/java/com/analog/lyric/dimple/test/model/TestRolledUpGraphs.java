@@ -0,0 +1,137 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.dimple.test.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.repeated.DiscreteStream;
+import com.analog.lyric.dimple.model.repeated.DoubleArrayDataSource;
+import com.analog.lyric.dimple.model.repeated.FactorGraphStream;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.minsum.MinSumSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for rolled-up graphs built using {@link FactorGraph#addRepeatedFactorWithBufferSize}.
+ * 
+ * @since 0.08
+ */
+public class TestRolledUpGraphs extends DimpleTestBase
+{
+	@Test
+	public void testHMM()
+	{
+		final Random rand = new Random(42);
+		final DiscreteDomain domain = DiscreteDomain.range(1, 3);
+		final int nSteps = 30;
+		
+		final IFactorTable transition = FactorTable.create(domain, domain);
+		final double[] weights = new double[transition.jointSize()];
+		for (int i = 0; i < weights.length; ++i)
+		{
+			weights[i] = rand.nextDouble() + .1;
+		}
+		transition.setWeightsDense(weights);
+		
+		final double[][] inputs = new double[nSteps][];
+		for (int i = 0; i < nSteps; ++i)
+		{
+			inputs[i] = new double[] { rand.nextDouble(), rand.nextDouble(), rand.nextDouble() };
+		}
+		
+		// Unrolled chain
+		final FactorGraph unrolled = new FactorGraph();
+		unrolled.setSolverFactory(new SumProductSolver());
+		final Discrete[] chain = new Discrete[nSteps];
+		for (int i = 0; i < nSteps; ++i)
+		{
+			chain[i] = new Discrete(domain);
+			chain[i].setInput(inputs[i]);
+			if (i > 0)
+			{
+				unrolled.addFactor(transition, chain[i-1], chain[i]);
+			}
+		}
+		unrolled.solve();
+		final double[] expected = chain[nSteps - 1].getBelief();
+		
+		// Filtering estimate of the last variable does not depend on the buffer size.
+		for (int bufferSize : new int[] { 1, 2, 7 })
+		{
+			final Discrete x0 = new Discrete(domain), x1 = new Discrete(domain);
+			final FactorGraph slice = new FactorGraph(x0, x1);
+			slice.addFactor(transition, x0, x1);
+			
+			final FactorGraph rolled = new FactorGraph();
+			rolled.setSolverFactory(new SumProductSolver());
+			final DiscreteStream stream = new DiscreteStream(domain);
+			final FactorGraphStream fgs = rolled.addRepeatedFactorWithBufferSize(slice, bufferSize, stream, stream.getSlice(1));
+			assertEquals(bufferSize, fgs.getBufferSize());
+			stream.setDataSource(new DoubleArrayDataSource(inputs));
+			
+			rolled.solve();
+			assertFalse(rolled.hasNext());
+			assertArrayEquals(expected, ((Discrete)stream.get(bufferSize)).getBelief(), 1e-10);
+		}
+	}
+	
+	@Test
+	public void testChangeSolver()
+	{
+		final DiscreteDomain domain = DiscreteDomain.bit();
+		final Discrete x0 = new Discrete(domain), x1 = new Discrete(domain);
+		final FactorGraph slice = new FactorGraph(x0, x1);
+		slice.addFactor(new int[][] { {0,0}, {1,1}, {0,1} }, new double[] { 3, 3, 1 }, x0, x1);
+		
+		final double[][] inputs = new double[12][];
+		for (int i = 0; i < inputs.length; ++i)
+		{
+			inputs[i] = new double[] { .4, .6 };
+		}
+		
+		final FactorGraph rolled = new FactorGraph();
+		rolled.setSolverFactory(new SumProductSolver());
+		final DiscreteStream stream = new DiscreteStream(domain);
+		rolled.addRepeatedFactorWithBufferSize(slice, 4, stream, stream.getSlice(1));
+		stream.setDataSource(new DoubleArrayDataSource(inputs));
+		rolled.solve();
+		final double[] sumProduct = ((Discrete)stream.get(4)).getBelief();
+		
+		// Messages are moved between the new solver objects after the solver changes.
+		stream.setDataSource(new DoubleArrayDataSource(inputs));
+		rolled.setSolverFactory(new MinSumSolver());
+		rolled.solve();
+		assertFalse(rolled.hasNext());
+		final double[] minSum = ((Discrete)stream.get(4)).getBelief();
+		assertEquals(2, minSum.length);
+		
+		stream.setDataSource(new DoubleArrayDataSource(inputs));
+		rolled.setSolverFactory(new SumProductSolver());
+		rolled.solve();
+		assertArrayEquals(sumProduct, ((Discrete)stream.get(4)).getBelief(), 1e-12);
+	}
+}
@@ -20,6 +20,8 @@ import static com.analog.lyric.util.test.ExceptionTester.*;
 import static java.util.Objects.*;
 import static org.junit.Assert.*;
 
+import java.util.Random;
+
 import org.junit.Test;
 
 import com.analog.lyric.dimple.exceptions.DimpleException;
@@ -447,6 +449,89 @@ public class TestVariableEliminator extends DimpleTestBase
 			r, a, b);
 	}
 	
+	@Test
+	public void testGenerateInParallel()
+	{
+		// 8x8 grid with random cardinalities
+		final Random rand = new Random(42);
+		final FactorGraph model = new FactorGraph();
+		final int size = 8;
+		final Discrete[][] vars = new Discrete[size][size];
+		for (int row = 0; row < size; ++row)
+		{
+			for (int col = 0; col < size; ++col)
+			{
+				final Discrete var = vars[row][col] = newVar(2 + rand.nextInt(3), "v" + row + "_" + col);
+				if (row > 0)
+				{
+					addClique(model, vars[row - 1][col], var);
+				}
+				if (col > 0)
+				{
+					addClique(model, vars[row][col - 1], var);
+				}
+			}
+		}
+		final int nVariables = model.getVariableCount();
+		
+		// Unreachable threshold, so every attempt is either completed or pruned and the result does
+		// not depend on the order in which attempts finish.
+		final Stats threshold = new Stats().maxCliqueCardinality(0);
+		
+		// Deterministic
+		Ordering serial = VariableEliminator.generate(new VariableEliminator(model, false, null), -1, threshold);
+		for (int nThreads : new int[] { 1, 2, 4 })
+		{
+			Ordering parallel =
+				VariableEliminator.generateInParallel(new VariableEliminator(model, false, null), -1, threshold, nThreads);
+			assertEquals(serial.variables, parallel.variables);
+			assertEquals(serial.stats.maxCliqueCardinality(), parallel.stats.maxCliqueCardinality());
+		}
+		
+		// Randomized attempts are repeatable from the same seed regardless of the number of threads
+		Ordering expected =
+			VariableEliminator.generateInParallel(new VariableEliminator(model, false, new Random(23)), 20, threshold, 2);
+		assertEquals(nVariables, expected.variables.size());
+		for (int nThreads : new int[] { 3, 4 })
+		{
+			Ordering parallel = VariableEliminator.generateInParallel(
+				new VariableEliminator(model, false, new Random(23)), 20, threshold, nThreads);
+			assertEquals(expected.variables, parallel.variables);
+			assertStats(expected.stats, parallel.stats);
+		}
+		
+		// Stops early once the threshold is met
+		final Stats easyThreshold = new Stats().maxCliqueCardinality(expected.stats.maxCliqueCardinality() * 100);
+		Ordering early = VariableEliminator.generateInParallel(
+			new VariableEliminator(model, false, new Random(23)), 1000, easyThreshold, 4);
+		assertEquals(nVariables, early.variables.size());
+		assertTrue(early.stats.meetsThreshold(easyThreshold));
+		
+		// Graph that needs no added edges
+		FactorGraph chain = new FactorGraph();
+		Discrete a = newVar(2, "a"), b = newVar(3, "b"), c = newVar(4, "c");
+		addClique(chain, a, b);
+		addClique(chain, b, c);
+		Ordering chainOrder = VariableEliminator.generateInParallel(
+			new VariableEliminator(chain, false, new Random(1)), 100, threshold, 4);
+		assertEquals(3, chainOrder.variables.size());
+		assertEquals(0, chainOrder.stats.addedEdges());
+		
+		// Non-discrete variables are reported in the calling thread
+		FactorGraph mixed = new FactorGraph();
+		mixed.setSolverFactory(new com.analog.lyric.dimple.solvers.gibbs.Solver());
+		addClique(mixed, newVar(2, "d"), new Real());
+		try
+		{
+			VariableEliminator.generateInParallel(new VariableEliminator(mixed, false), 10, threshold, 4);
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+			assertTrue(ex.getMessage().contains("cannot handle non-discrete variable"));
+		}
+	}
+	
 	@Test
 	public void testStats()
 	{
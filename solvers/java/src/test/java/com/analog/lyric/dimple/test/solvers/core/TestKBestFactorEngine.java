@@ -0,0 +1,372 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.core;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.solvers.core.kbest.IKBestFactor;
+import com.analog.lyric.dimple.solvers.interfaces.IFactorGraphFactory;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
+import com.analog.lyric.dimple.solvers.minsum.MinSumSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for {@link com.analog.lyric.dimple.solvers.core.kbest.KBestFactorEngine}
+ *
+ * @since 0.08
+ */
+public class TestKBestFactorEngine extends DimpleTestBase
+{
+	private static final int DOMAIN_SIZE = 8;
+	
+	private static class TestFunction extends FactorFunction
+	{
+		@Override
+		public double evalEnergy(Value[] values)
+		{
+			final double a = values[0].getDouble(), b = values[1].getDouble(), c = values[2].getDouble();
+			return energy(a, b, c);
+		}
+		
+		static double energy(double a, double b, double c)
+		{
+			return .25 * (a + b - c) * (a + b - c) + .1 * a * c;
+		}
+	}
+	
+	private static class CountingTestFunction extends TestFunction
+	{
+		int count;
+		
+		@Override
+		public double evalEnergy(Value[] values)
+		{
+			++count;
+			return super.evalEnergy(values);
+		}
+	}
+	
+	private static class BatchedTestFunction extends TestFunction
+	{
+		@Override
+		public void evalEnergies(double[][] columns, int count, double[] energies)
+		{
+			for (int i = 0; i < count; ++i)
+			{
+				energies[i] = energy(columns[0][i], columns[1][i], columns[2][i]);
+			}
+		}
+	}
+	
+	private static enum Arguments
+	{
+		INTEGER,
+		DOUBLE,
+		DOUBLE_BATCHED;
+	}
+	
+	@Test
+	public void test()
+	{
+		final Random rand = new Random(42);
+		
+		for (IFactorGraphFactory<?> solver : new IFactorGraphFactory<?>[] { new SumProductSolver(), new MinSumSolver() })
+		{
+			final boolean sumProduct = solver instanceof SumProductSolver;
+			for (Arguments arguments : Arguments.values())
+			{
+				for (boolean useTable : new boolean[] { false, true })
+				{
+					for (int k : new int[] { 1, 3, DOMAIN_SIZE - 1 })
+					{
+						Factor factor = buildFactor(rand, arguments, useTable);
+						FactorGraph fg = requireNonNull(factor.getParentGraph());
+						fg.setSolverFactory(solver);
+						fg.setOption(BPOptions.maxMessageSize, k);
+						fg.setOption(BPOptions.iterations, 1);
+						fg.solve();
+						
+						final ISolverFactor sfactor = requireNonNull(factor.getSolver());
+						final IKBestFactor kbest = (IKBestFactor)sfactor;
+						for (int edge = 0; edge < 3; ++edge)
+						{
+							final double[] expected = expectedMessage(factor, kbest.getInPortMsgs(), edge, k, sumProduct);
+							sfactor.updateEdge(edge);
+							assertArrayEquals(expected, kbest.getOutPortMsgs()[edge], 1e-12);
+						}
+						
+						// Repeating the update with the same input messages should produce the same result
+						for (int edge = 0; edge < 3; ++edge)
+						{
+							final double[] expected = kbest.getOutPortMsgs()[edge].clone();
+							sfactor.updateEdge(edge);
+							assertArrayEquals(expected, kbest.getOutPortMsgs()[edge], 0.0);
+						}
+						
+						// Changing the input messages changes the selected indices
+						for (double[] msg : kbest.getInPortMsgs())
+						{
+							randomMessage(rand, msg, sumProduct);
+						}
+						for (int edge = 0; edge < 3; ++edge)
+						{
+							final double[] expected = expectedMessage(factor, kbest.getInPortMsgs(), edge, k, sumProduct);
+							sfactor.updateEdge(edge);
+							assertArrayEquals(expected, kbest.getOutPortMsgs()[edge], 1e-12);
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testNoAllocation()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)bean;
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+		
+		final Random rand = new Random(23);
+		for (Arguments arguments : Arguments.values())
+		{
+			Factor factor = buildFactor(rand, arguments, false);
+			FactorGraph fg = requireNonNull(factor.getParentGraph());
+			fg.setSolverFactory(new MinSumSolver());
+			fg.setOption(BPOptions.maxMessageSize, 3);
+			fg.initialize();
+			
+			final ISolverFactor sfactor = requireNonNull(factor.getSolver());
+			final double[][] inputMsgs = ((IKBestFactor)sfactor).getInPortMsgs();
+			final double[][] messages = new double[2][];
+			for (int i = 0; i < 2; ++i)
+			{
+				// Alternate between two sets of messages so that factor values must be recomputed
+				messages[i] = new double[DOMAIN_SIZE * inputMsgs.length];
+				for (int j = 0; j < messages[i].length; ++j)
+				{
+					messages[i][j] = rand.nextDouble();
+				}
+			}
+			
+			final int nUpdates = 1000;
+			for (int pass = 0; pass < 2; ++pass)
+			{
+				final long threadId = Thread.currentThread().getId();
+				final long before = threadBean.getThreadAllocatedBytes(threadId);
+				for (int n = 0; n < nUpdates; ++n)
+				{
+					final double[] source = messages[n & 1];
+					for (int i = 0; i < inputMsgs.length; ++i)
+					{
+						System.arraycopy(source, i * DOMAIN_SIZE, inputMsgs[i], 0, DOMAIN_SIZE);
+					}
+					sfactor.updateEdge(n % inputMsgs.length);
+				}
+				final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+				
+				// First pass allocates working storage
+				if (pass > 0)
+				{
+					assertTrue("allocated " + allocated + " bytes", allocated < nUpdates);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testMemoSize()
+	{
+		final Random rand = new Random(11);
+		final int k = 3;
+		// Factor values for one edge are the output domain size times k squared combinations of inputs
+		final int edgeValues = DOMAIN_SIZE * k * k;
+		for (int memoSize : new int[] { 3 * edgeValues, 3 * edgeValues - 1, 0 })
+		{
+			final CountingTestFunction function = new CountingTestFunction();
+			final DiscreteDomain domain = DiscreteDomain.range(0, DOMAIN_SIZE - 1);
+			final FactorGraph fg = new FactorGraph();
+			final Factor factor = fg.addFactor(function, new Discrete(domain), new Discrete(domain), new Discrete(domain));
+			fg.setSolverFactory(new MinSumSolver());
+			fg.setOption(BPOptions.maxMessageSize, k);
+			fg.setOption(BPOptions.maxKBestMemoSize, memoSize);
+			fg.initialize();
+			
+			final ISolverFactor sfactor = requireNonNull(factor.getSolver());
+			for (double[] msg : ((IKBestFactor)sfactor).getInPortMsgs())
+			{
+				randomMessage(rand, msg, false);
+			}
+			function.count = 0;
+			sfactor.updateEdge(0);
+			final int count = function.count;
+			assertEquals(edgeValues, count);
+			
+			// Values are only remembered if the edge's share of the limit holds them
+			sfactor.updateEdge(0);
+			assertEquals(memoSize >= 3 * edgeValues ? count : 2 * count, function.count);
+		}
+	}
+	
+	/*-----------------
+	 * Helper methods
+	 */
+	
+	private static Factor buildFactor(Random rand, Arguments arguments, boolean useTable)
+	{
+		DiscreteDomain domain = arguments == Arguments.INTEGER ?
+			DiscreteDomain.range(0, DOMAIN_SIZE - 1) : DiscreteDomain.range(0.0, DOMAIN_SIZE - 1);
+		FactorGraph fg = new FactorGraph();
+		Discrete a = new Discrete(domain), b = new Discrete(domain), c = new Discrete(domain);
+		for (Discrete var : new Discrete[] { a, b, c })
+		{
+			double[] input = new double[DOMAIN_SIZE];
+			for (int i = 0; i < input.length; ++i)
+			{
+				input[i] = rand.nextDouble() + .1;
+			}
+			var.setInput(input);
+		}
+		FactorFunction function = arguments == Arguments.DOUBLE_BATCHED ? new BatchedTestFunction() : new TestFunction();
+		Factor factor = fg.addFactor(function, a, b, c);
+		if (useTable)
+		{
+			factor.getFactorTable();
+		}
+		return factor;
+	}
+	
+	private static void randomMessage(Random rand, double[] msg, boolean sumProduct)
+	{
+		double sum = 0;
+		for (int i = 0; i < msg.length; ++i)
+		{
+			sum += msg[i] = rand.nextDouble() + .1;
+		}
+		for (int i = 0; i < msg.length; ++i)
+		{
+			msg[i] = sumProduct ? msg[i] / sum : -Math.log(msg[i]);
+		}
+	}
+	
+	/**
+	 * Computes expected output message by brute force over all combinations of the k best
+	 * values of the other input messages.
+	 */
+	private static double[] expectedMessage(Factor factor, double[][] inputMsgs, int outEdge, int k, boolean sumProduct)
+	{
+		final int nEdges = inputMsgs.length;
+		final int[][] selected = new int[nEdges][];
+		for (int i = 0; i < nEdges; ++i)
+		{
+			selected[i] = kBest(inputMsgs[i], k, sumProduct);
+		}
+		
+		final TestFunction function = new TestFunction();
+		final Value[] values = new Value[nEdges];
+		final double[] result = new double[DOMAIN_SIZE];
+		final int[] indices = new int[nEdges];
+		for (int out = 0; out < DOMAIN_SIZE; ++out)
+		{
+			double total = sumProduct ? 0 : Double.POSITIVE_INFINITY;
+			for (int x = 0; x < k; ++x)
+			{
+				for (int y = 0; y < k; ++y)
+				{
+					for (int i = 0, j = 0; i < nEdges; ++i)
+					{
+						indices[i] = i == outEdge ? out : selected[i][j++ == 0 ? x : y];
+					}
+					double sum = 0;
+					for (int i = 0; i < nEdges; ++i)
+					{
+						values[i] = Value.create(((DiscreteDomain)factor.getDomainList().get(i)).getElement(indices[i]));
+						if (i != outEdge)
+						{
+							sum += sumProduct ? Math.log(inputMsgs[i][indices[i]]) : inputMsgs[i][indices[i]];
+						}
+					}
+					final double energy = function.evalEnergy(values);
+					if (sumProduct)
+						total += Math.exp(sum - energy);
+					else
+						total = Math.min(total, sum + energy);
+				}
+			}
+			result[out] = total;
+		}
+		
+		if (sumProduct)
+		{
+			double sum = 0;
+			for (double d : result)
+				sum += d;
+			for (int i = 0; i < result.length; ++i)
+				result[i] /= sum;
+		}
+		else
+		{
+			double min = Double.POSITIVE_INFINITY;
+			for (double d : result)
+				min = Math.min(min, d);
+			for (int i = 0; i < result.length; ++i)
+				result[i] -= min;
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Indices of the k best entries of {@code msg}, preferring lower indices when there are ties.
+	 */
+	private static int[] kBest(double[] msg, int k, boolean largest)
+	{
+		final int[] indices = new int[k];
+		final boolean[] used = new boolean[msg.length];
+		for (int n = 0; n < k; ++n)
+		{
+			int best = -1;
+			for (int i = 0; i < msg.length; ++i)
+			{
+				if (!used[i] && (best < 0 || (largest ? msg[i] > msg[best] : msg[i] < msg[best])))
+				{
+					best = i;
+				}
+			}
+			used[best] = true;
+			indices[n] = best;
+		}
+		return indices;
+	}
+}
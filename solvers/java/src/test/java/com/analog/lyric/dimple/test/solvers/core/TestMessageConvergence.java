@@ -0,0 +1,218 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.core;
+
+import static java.util.Objects.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
+import com.analog.lyric.dimple.events.DimpleEventHandler;
+import com.analog.lyric.dimple.events.DimpleEventListener;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.solvers.core.ConvergenceNorm;
+import com.analog.lyric.dimple.solvers.core.MessageConvergenceEvent;
+import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
+import com.analog.lyric.dimple.solvers.interfaces.IFactorGraphFactory;
+import com.analog.lyric.dimple.solvers.minsum.MinSumSolver;
+import com.analog.lyric.dimple.solvers.particleBP.ParticleBPSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.dimple.test.model.RandomGraphGenerator;
+
+/**
+ * Tests for {@link BPOptions#convergenceTolerance} and related options.
+ *
+ * @since 0.08
+ */
+public class TestMessageConvergence extends DimpleTestBase
+{
+	@Test
+	public void testDisabled()
+	{
+		FactorGraph fg = buildGrid(new Random(42));
+		SFactorGraphBase sfg = (SFactorGraphBase)requireNonNull(fg.setSolverFactory(new SumProductSolver()));
+		assertEquals(0.0, BPOptions.convergenceTolerance.defaultValue(), 0.0);
+		assertEquals(ConvergenceNorm.MAXIMUM, BPOptions.convergenceNorm.defaultValue());
+		assertEquals(1, (int)BPOptions.minIterations.defaultValue());
+
+		sfg.setOption(BPOptions.iterations, 30);
+		fg.solve();
+		assertEquals(30, sfg.getNumIterationsUsed());
+		assertTrue(Double.isNaN(sfg.getConvergenceResidual()));
+		assertFalse(sfg.hasConverged());
+
+		sfg.iterate(5);
+		assertEquals(35, sfg.getNumIterationsUsed());
+	}
+
+	@Test
+	public void testLoopy()
+	{
+		for (IFactorGraphFactory<?> solver : new IFactorGraphFactory<?>[] { new SumProductSolver(), new MinSumSolver() })
+		{
+			FactorGraph fg = buildGrid(new Random(42));
+			SFactorGraphBase sfg = (SFactorGraphBase)requireNonNull(fg.setSolverFactory(solver));
+
+			final int maxIterations = 500;
+			sfg.setOption(BPOptions.iterations, maxIterations);
+			fg.solve();
+			List<double[]> expected = getBeliefs(fg);
+
+			sfg.setOption(BPOptions.convergenceTolerance, 1e-10);
+			fg.solve();
+			final int used = sfg.getNumIterationsUsed();
+			assertTrue(sfg.hasConverged());
+			assertTrue(used > 1);
+			assertTrue(used < maxIterations);
+			final double residual = sfg.getConvergenceResidual();
+			assertTrue(residual <= 1e-10);
+
+			List<double[]> actual = getBeliefs(fg);
+			for (int i = 0, n = expected.size(); i < n; ++i)
+			{
+				assertArrayEquals(expected.get(i), actual.get(i), 1e-8);
+			}
+
+			// Average residual is never larger than the maximum, so should stop no later
+			sfg.setOption(BPOptions.convergenceNorm, ConvergenceNorm.AVERAGE);
+			fg.solve();
+			assertTrue(sfg.hasConverged());
+			assertTrue(sfg.getNumIterationsUsed() <= used);
+
+			// Does not stop before the minimum number of iterations
+			sfg.setOption(BPOptions.convergenceTolerance, 1e6);
+			sfg.setOption(BPOptions.minIterations, 7);
+			fg.solve();
+			assertTrue(sfg.hasConverged());
+			assertEquals(7, sfg.getNumIterationsUsed());
+		}
+	}
+
+	@Test
+	public void testParticleBP()
+	{
+		Random rand = new Random(23);
+		RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.range(1, 2), DiscreteDomain.range(1, 3));
+		FactorGraph fg = gen.buildRandomTree(15);
+		setRandomInputs(fg, rand);
+		SFactorGraphBase sfg = (SFactorGraphBase)requireNonNull(fg.setSolverFactory(new ParticleBPSolver()));
+
+		sfg.setOption(BPOptions.iterations, 100);
+		sfg.setOption(BPOptions.convergenceTolerance, 1e-12);
+		fg.solve();
+		assertTrue(sfg.hasConverged());
+		assertTrue(sfg.getNumIterationsUsed() < 100);
+	}
+
+	@Test
+	public void testEvents()
+	{
+		FactorGraph fg = buildGrid(new Random(42));
+		SFactorGraphBase sfg = (SFactorGraphBase)requireNonNull(fg.setSolverFactory(new SumProductSolver()));
+		sfg.setOption(BPOptions.iterations, 200);
+
+		DimpleEnvironment env = fg.getEnvironment();
+		DimpleEventListener listener = env.createEventListener();
+		ConvergenceEventHandler handler = new ConvergenceEventHandler();
+		listener.register(handler, MessageConvergenceEvent.class, env);
+
+		// No events unless convergence testing is enabled
+		fg.solve();
+		assertTrue(handler.events.isEmpty());
+
+		sfg.setOption(BPOptions.convergenceTolerance, 1e-6);
+		fg.solve();
+		assertEquals(1, handler.events.size());
+		MessageConvergenceEvent event = handler.events.get(0);
+		assertSame(sfg, event.getSource());
+		assertSame(fg, event.getModelObject());
+		assertTrue(event.converged());
+		assertEquals(sfg.getNumIterationsUsed(), event.iterations());
+		assertEquals(sfg.getConvergenceResidual(), event.residual(), 0.0);
+		assertThat(event.toString(0), containsString("converged after " + event.iterations() + " iterations"));
+
+		handler.events.clear();
+		sfg.setOption(BPOptions.convergenceTolerance, 1e-300);
+		fg.solve();
+		sfg.iterate(2);
+		assertEquals(2, handler.events.size());
+		event = handler.events.get(1);
+		assertFalse(event.converged());
+		assertEquals(202, event.iterations());
+		assertThat(event.toString(0), containsString("not converged"));
+	}
+
+	/*-----------------
+	 * Helper methods
+	 */
+
+	private static FactorGraph buildGrid(Random rand)
+	{
+		RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.range(1, 2), DiscreteDomain.range(1, 3));
+		FactorGraph fg = gen.buildGrid(5);
+		setRandomInputs(fg, rand);
+		return fg;
+	}
+
+	private static void setRandomInputs(FactorGraph fg, Random rand)
+	{
+		for (Variable var : fg.getVariables())
+		{
+			Discrete discrete = (Discrete)var;
+			double[] input = new double[discrete.getDomain().size()];
+			for (int i = 0; i < input.length; ++i)
+			{
+				input[i] = rand.nextDouble() + .1;
+			}
+			discrete.setInput(input);
+		}
+	}
+
+	private static List<double[]> getBeliefs(FactorGraph fg)
+	{
+		List<double[]> beliefs = new ArrayList<>();
+		for (Variable var : fg.getVariables())
+		{
+			beliefs.add(((Discrete)var).getBelief());
+		}
+		return beliefs;
+	}
+
+	static class ConvergenceEventHandler extends DimpleEventHandler<MessageConvergenceEvent>
+	{
+		List<MessageConvergenceEvent> events = new ArrayList<>();
+
+		@Override
+		public void handleEvent(MessageConvergenceEvent event)
+		{
+			events.add(event);
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.core;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.INode;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.schedulers.IScheduler;
+import com.analog.lyric.dimple.schedulers.schedule.FixedSchedule;
+import com.analog.lyric.dimple.schedulers.schedule.ISchedule;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.EdgeScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.NodeScheduleEntry;
+import com.analog.lyric.dimple.solvers.interfaces.IFactorGraphFactory;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph;
+import com.analog.lyric.dimple.solvers.minsum.MinSumSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.dimple.test.model.RandomGraphGenerator;
+
+/**
+ * Verifies that table factor engines using packed factor table indices produce exactly the
+ * same results as the engines using per-entry index arrays.
+ *
+ * @since 0.08
+ */
+public class TestPackedTableFactorEngine extends DimpleTestBase
+{
+	/**
+	 * Scheduler that updates factors one edge at a time, so as to exercise the updateEdge path.
+	 */
+	private static class EdgeScheduler implements IScheduler
+	{
+		@Override
+		public ISchedule createSchedule(FactorGraph g)
+		{
+			FixedSchedule schedule = new FixedSchedule();
+			for (Variable v : g.getVariablesTop())
+			{
+				schedule.add(new NodeScheduleEntry(v));
+			}
+			for (Factor f : g.getNonGraphFactorsTop())
+			{
+				for (int i = 0, n = f.getSiblingCount(); i < n; ++i)
+				{
+					schedule.add(new EdgeScheduleEntry(f, i));
+				}
+			}
+			return schedule;
+		}
+	}
+
+	@Test
+	public void test()
+	{
+		assertTrue(BPOptions.usePackedTableIndices.defaultValue());
+
+		final Random rand = new Random(42);
+		final FactorGraph fg = buildSparseGrid(rand);
+
+		for (IFactorGraphFactory<?> solver : new IFactorGraphFactory<?>[] { new SumProductSolver(), new MinSumSolver() })
+		{
+			fg.setSolverFactory(solver);
+			fg.setScheduler(null);
+			compareEngines(fg, 0.0);
+			compareEngines(fg, .4);
+			fg.setScheduler(new EdgeScheduler());
+			compareEngines(fg, 0.0);
+			compareEngines(fg, .4);
+		}
+	}
+
+	private FactorGraph buildSparseGrid(Random rand)
+	{
+		RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.range(1, 3), DiscreteDomain.range(1, 5), DiscreteDomain.range(1,7));
+		FactorGraph fg = gen.buildGrid(4, 5);
+
+		// Add some higher degree factors and make all of the tables sparse.
+		Variable[] vars = fg.getVariables().toArray(new Variable[0]);
+		for (int i = 2; i < vars.length; i += 3)
+		{
+			gen.addClique(fg, (Discrete)vars[i - 2], (Discrete)vars[i - 1], (Discrete)vars[i]);
+		}
+
+		for (Factor factor : fg.getNonGraphFactors())
+		{
+			IFactorTable table = factor.getFactorTable();
+			for (int ji = 0, end = table.jointSize(); ji < end; ++ji)
+			{
+				if (rand.nextDouble() < .4)
+				{
+					table.setWeightForJointIndex(0.0, ji);
+				}
+			}
+		}
+
+		return fg;
+	}
+
+	private void compareEngines(FactorGraph fg, double damping)
+	{
+		final ISolverFactorGraph sfg = requireNonNull(fg.getSolver());
+		sfg.setOption(BPOptions.damping, damping);
+
+		sfg.setOption(BPOptions.usePackedTableIndices, false);
+		fg.initialize();
+		sfg.iterate(5);
+		List<double[]> expected = getBeliefs(fg);
+
+		sfg.setOption(BPOptions.usePackedTableIndices, true);
+		fg.initialize();
+		sfg.iterate(5);
+		List<double[]> actual = getBeliefs(fg);
+
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0, n = expected.size(); i < n; ++i)
+		{
+			assertArrayEquals(expected.get(i), actual.get(i), 0.0);
+		}
+	}
+
+	private List<double[]> getBeliefs(FactorGraph fg)
+	{
+		List<double[]> beliefs = new ArrayList<>();
+		for (INode node : fg.getVariables())
+		{
+			beliefs.add(((Discrete)node).getBelief());
+		}
+		return beliefs;
+	}
+}
@@ -0,0 +1,274 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.core.multithreading;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultiThreadingManager;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultithreadingMode;
+import com.analog.lyric.dimple.solvers.core.multithreading.SpinParkBarrier;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
+import com.analog.lyric.dimple.solvers.core.multithreading.phasealgorithm.PersistentPhaseMultithreadingAlgorithm;
+import com.analog.lyric.dimple.solvers.interfaces.IFactorGraphFactory;
+import com.analog.lyric.dimple.solvers.minsum.MinSumSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.dimple.test.model.RandomGraphGenerator;
+
+/**
+ * Tests for {@link PersistentPhaseMultithreadingAlgorithm} and {@link SpinParkBarrier}
+ * 
+ * @since 0.08
+ */
+public class TestPersistentPhaseMultithreading extends DimpleTestBase
+{
+	@Test
+	public void testPersistentPhase()
+	{
+		for (IFactorGraphFactory<?> solver : new IFactorGraphFactory<?>[] { new SumProductSolver(), new MinSumSolver() })
+		{
+			Random rand = new Random(42);
+			RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+			gen.domains(DiscreteDomain.range(1, 2), DiscreteDomain.range(1, 4));
+			FactorGraph fg = gen.buildGrid(8);
+			setRandomInputs(fg, rand);
+			SFactorGraphBase sfg = (SFactorGraphBase)requireNonNull(fg.setSolverFactory(solver));
+			sfg.setOption(BPOptions.iterations, 15);
+			
+			fg.solve();
+			List<double[]> expected = getBeliefs(fg);
+			
+			sfg.useMultithreading(true);
+			MultiThreadingManager manager = sfg.getMultithreadingManager();
+			manager.setMode(MultithreadingMode.PersistentPhase);
+			
+			for (int numWorkers : new int[] { 1, 2, 3, 7 })
+			{
+				manager.setNumWorkers(numWorkers);
+				fg.solve();
+				assertBeliefsEqual(expected, getBeliefs(fg), 1e-12);
+			}
+			
+			// Iterations split across multiple calls should give the same result.
+			manager.setNumWorkers(4);
+			fg.initialize();
+			sfg.iterate(10);
+			sfg.iterate(5);
+			assertBeliefsEqual(expected, getBeliefs(fg), 1e-12);
+			
+			// Uses new phases when the graph changes.
+			Discrete extra = new Discrete(DiscreteDomain.range(1, 2));
+			extra.setInput(.3, .7);
+			fg.addFactor(new int[][] {{ 0, 0 }, { 0, 1 }, { 1, 1 }}, new double[] { .2, .8, .4 }, extra,
+				(Discrete)fg.getVariables().iterator().next());
+			sfg.useMultithreading(false);
+			fg.solve();
+			expected = getBeliefs(fg);
+			sfg.useMultithreading(true);
+			fg.solve();
+			assertBeliefsEqual(expected, getBeliefs(fg), 1e-12);
+		}
+	}
+
+	@Test
+	public void testNumWorkers()
+	{
+		FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new SumProductSolver());
+		MultiThreadingManager manager = new MultiThreadingManager(fg);
+		PersistentPhaseMultithreadingAlgorithm alg = new PersistentPhaseMultithreadingAlgorithm(manager);
+		
+		// Workers do not use the shared pool, so they are not limited by its size.
+		ThreadPool.setNumThreads(2);
+		try
+		{
+			manager.setNumWorkers(2);
+			assertEquals(2, alg.getNumWorkers());
+			manager.setNumWorkers(10);
+			assertEquals(10, alg.getNumWorkers());
+		}
+		finally
+		{
+			ThreadPool.setNumThreadsToDefault();
+		}
+	}
+	
+	@Test
+	public void testBusyPool() throws Exception
+	{
+		Random rand = new Random(23);
+		RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.range(1, 2), DiscreteDomain.range(1, 3));
+		final FactorGraph fg = gen.buildGrid(6);
+		setRandomInputs(fg, rand);
+		final SFactorGraphBase sfg = (SFactorGraphBase)requireNonNull(fg.setSolverFactory(new SumProductSolver()));
+		sfg.setOption(BPOptions.iterations, 10);
+		fg.solve();
+		final List<double[]> expected = getBeliefs(fg);
+		
+		sfg.useMultithreading(true);
+		MultiThreadingManager manager = sfg.getMultithreadingManager();
+		manager.setMode(MultithreadingMode.PersistentPhase);
+		manager.setNumWorkers(4);
+		
+		// Solving from the only thread of the shared pool used to leave the other workers
+		// queued behind the caller, waiting at the barrier forever.
+		ThreadPool.setNumThreads(1);
+		try
+		{
+			Future<?> future = ThreadPool.getThreadPool().submit(new Runnable() {
+				@Override
+				public void run()
+				{
+					fg.solve();
+				}
+			});
+			future.get(30, TimeUnit.SECONDS);
+			assertBeliefsEqual(expected, getBeliefs(fg), 1e-12);
+		}
+		finally
+		{
+			ThreadPool.setNumThreadsToDefault();
+		}
+	}
+	
+	@Test
+	public void testBarrier() throws InterruptedException
+	{
+		final int parties = 4;
+		final int rounds = 1000;
+		final AtomicInteger trips = new AtomicInteger();
+		final int[] counts = new int[parties];
+		final SpinParkBarrier barrier = new SpinParkBarrier(parties, 10, new Runnable() {
+			@Override
+			public void run()
+			{
+				// All parties must have completed the current round.
+				int round = trips.getAndIncrement();
+				for (int count : counts)
+				{
+					assertEquals(round + 1, count);
+				}
+			}
+		});
+		assertEquals(parties, barrier.getParties());
+		
+		final AtomicInteger failures = new AtomicInteger();
+		Thread[] threads = new Thread[parties];
+		for (int i = 0; i < parties; ++i)
+		{
+			final int party = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run()
+				{
+					for (int round = 0; round < rounds; ++round)
+					{
+						++counts[party];
+						if (!barrier.await(party))
+						{
+							failures.incrementAndGet();
+							return;
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join(TimeUnit.SECONDS.toMillis(30));
+		}
+		assertEquals(0, failures.get());
+		assertEquals(rounds, trips.get());
+		assertFalse(barrier.isBroken());
+		
+		// Breaking barrier releases waiting parties.
+		final SpinParkBarrier barrier2 = new SpinParkBarrier(2, null);
+		Thread waiter = new Thread() {
+			@Override
+			public void run()
+			{
+				if (barrier2.await(1))
+				{
+					failures.incrementAndGet();
+				}
+			}
+		};
+		waiter.start();
+		Thread.sleep(10);
+		barrier2.breakBarrier();
+		waiter.join(TimeUnit.SECONDS.toMillis(30));
+		assertFalse(waiter.isAlive());
+		assertEquals(0, failures.get());
+		assertTrue(barrier2.isBroken());
+		assertFalse(barrier2.await(0));
+	}
+	
+	/*-----------------
+	 * Helper methods
+	 */
+	
+	private static void setRandomInputs(FactorGraph fg, Random rand)
+	{
+		for (Variable var : fg.getVariables())
+		{
+			Discrete discrete = (Discrete)var;
+			double[] input = new double[discrete.getDomain().size()];
+			for (int i = 0; i < input.length; ++i)
+			{
+				input[i] = rand.nextDouble() + .1;
+			}
+			discrete.setInput(input);
+		}
+	}
+
+	private static List<double[]> getBeliefs(FactorGraph fg)
+	{
+		List<double[]> beliefs = new ArrayList<double[]>();
+		for (Variable var : fg.getVariables())
+		{
+			beliefs.add(((Discrete)var).getBelief());
+		}
+		return beliefs;
+	}
+
+	private static void assertBeliefsEqual(List<double[]> expected, List<double[]> actual, double delta)
+	{
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0, n = expected.size(); i < n; ++i)
+		{
+			assertArrayEquals(expected.get(i), actual.get(i), delta);
+		}
+	}
+}
@@ -99,8 +99,8 @@ public class GibbsTestParameterizedNormal extends DimpleTestBase
 		if (debugPrint) System.out.println("vModelMeanBest: " + (Double)svModelMean.getBestSample());
 		if (debugPrint) System.out.println("vModelInverseVarianceBest: " + (Double)svModelInverseVariance.getBestSample());
 
-		assertTrue(nearlyEquals(svModelMean.getBestSample(),27.029282787511672));
-		assertTrue(nearlyEquals(svModelInverseVariance.getBestSample(),0.005320791975254845));
+		assertTrue(nearlyEquals(svModelMean.getBestSample(),26.982743373966372));
+		assertTrue(nearlyEquals(svModelInverseVariance.getBestSample(),0.005326213658658996));
 	}
 	
 	
@@ -104,10 +104,10 @@ public class RealVariableGibbsTest extends DimpleTestBase
 		if (debugPrint) System.out.println("aBest: " + (Double)sa.getBestSample());
 		if (debugPrint) System.out.println("bBest: " + (Double)sb.getBestSample());
 		
-		assertTrue(nearlyEquals(aMean,0.8050875226168582));
-		assertTrue(nearlyEquals(bMean,-0.1921312702232493));
-		assertTrue(nearlyEquals(sa.getBestSample(),0.8043550661413381));
-		assertTrue(nearlyEquals(sb.getBestSample(),-0.20700427734616236));
+		assertTrue(nearlyEquals(aMean,0.7997988810504943));
+		assertTrue(nearlyEquals(bMean,-0.19433064754122809));
+		assertTrue(nearlyEquals(sa.getBestSample(),0.8059346300225894));
+		assertTrue(nearlyEquals(sb.getBestSample(),-0.19094783366241122));
 	}
 	
 	
@@ -185,9 +185,9 @@ public class RealVariableGibbsTest extends DimpleTestBase
 		if (debugPrint) System.out.println("aBest: " + (Double)sa.getBestSample());
 		if (debugPrint) System.out.println("bBest: " + sb.getBestSample());
 		
-		assertTrue(nearlyEquals(aMean,0.20867216566185906));
-		assertTrue(nearlyEquals(bMean,0.6055));
-		assertTrue(nearlyEquals(sa.getBestSample(),0.977986266650138));
+		assertTrue(nearlyEquals(aMean,0.16755580823476873));
+		assertTrue(nearlyEquals(bMean,0.5922));
+		assertTrue(nearlyEquals(sa.getBestSample(),0.9780003611986282));
 		assertTrue((Integer)sb.getBestSample() == 1);
 	}
 	
@@ -0,0 +1,269 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.Xor;
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.INode;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Bit;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.options.SolverOptions;
+import com.analog.lyric.dimple.schedulers.GibbsChromaticScheduler;
+import com.analog.lyric.dimple.schedulers.schedule.GibbsChromaticSchedule;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.BlockScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.IScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.NodeScheduleEntry;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.solvers.gibbs.samplers.block.BlockMHSampler;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.dimple.test.model.RandomGraphGenerator;
+
+/**
+ * Tests for {@link GibbsChromaticScheduler}
+ *
+ * @since 0.08
+ */
+public class TestGibbsChromaticScheduler extends DimpleTestBase
+{
+	@Test
+	public void testColoring()
+	{
+		final Random rand = new Random(42);
+		RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.bit());
+
+		// Pairwise grid is a checkerboard
+		FactorGraph fg = gen.buildGrid(6);
+		GibbsChromaticSchedule schedule = createSchedule(fg);
+		assertEquals(2, schedule.getColorCount());
+		assertEquals(18, schedule.getColor(0).size());
+		assertEquals(18, schedule.getColor(1).size());
+
+		// Overlapping 2x2 blocks need four colors
+		final int n = 8;
+		fg = new FactorGraph();
+		Bit[][] vars = new Bit[n][n];
+		for (int row = 0; row < n; ++row)
+			for (int col = 0; col < n; ++col)
+				vars[row][col] = new Bit();
+		for (int row = 1; row < n; ++row)
+			for (int col = 1; col < n; ++col)
+				fg.addFactor(bitTable(4),
+					vars[row-1][col-1], vars[row-1][col], vars[row][col-1], vars[row][col]);
+		schedule = createSchedule(fg);
+		assertEquals(4, schedule.getColorCount());
+
+		for (int i = 0; i < 5; ++i)
+		{
+			createSchedule(gen.buildRandomGraph(20));
+		}
+	}
+
+	@Test
+	public void testDeterministicAndBlocks()
+	{
+		FactorGraph fg = new FactorGraph();
+		fg.setSolverFactory(new GibbsSolver());
+		Bit a = new Bit(), b = new Bit(), c = new Bit(), d = new Bit(), e = new Bit(), f = new Bit();
+		fg.addFactor(new Xor(), c, a, b);
+		fg.addFactor(bitTable(2), c, d);
+		fg.addFactor(bitTable(2), d, e);
+		fg.addFactor(bitTable(2), e, f);
+
+		// Variables connected to the deterministic factor each have their own color.
+		GibbsChromaticScheduler scheduler = new GibbsChromaticScheduler();
+		GibbsChromaticSchedule schedule = (GibbsChromaticSchedule)scheduler.createSchedule(fg);
+		validate(fg, schedule);
+		assertEquals(5, schedule.getColorCount());
+		assertEquals(2, schedule.getColor(0).size());
+		for (int color = 1; color < 5; ++color)
+			assertEquals(1, schedule.getColor(color).size());
+
+		// Blocks replace the entries for their variables and have their own color.
+		BlockScheduleEntry block = new BlockScheduleEntry(new BlockMHSampler(), d, e);
+		scheduler.addBlockScheduleEntry(block);
+		validate(fg, schedule);
+		assertEquals(5, schedule.getColorCount());
+		assertEquals(5, schedule.size());
+		assertEquals(1, schedule.getColor(0).size());
+		assertSame(block, schedule.getColor(4).get(0));
+	}
+
+	@Test
+	public void testSampling()
+	{
+		final Random rand = new Random(23);
+		RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.range(1, 2), DiscreteDomain.range(1, 3));
+		FactorGraph fg = gen.buildRandomTree(30);
+		for (Variable var : fg.getVariables())
+		{
+			Discrete discrete = (Discrete)var;
+			double[] input = new double[discrete.getDomain().size()];
+			for (int i = 0; i < input.length; ++i)
+			{
+				input[i] = rand.nextDouble() + .1;
+			}
+			discrete.setInput(input);
+		}
+
+		// Exact marginals from sum-product on a tree
+		fg.setSolverFactory(new SumProductSolver());
+		fg.solve();
+		double[][] expected = new double[fg.getVariableCount()][];
+		int vi = 0;
+		for (Variable var : fg.getVariables())
+		{
+			expected[vi++] = ((Discrete)var).getBelief();
+		}
+
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		fg.setScheduler(new GibbsChromaticScheduler());
+		sfg.setOption(GibbsOptions.numSamples, 5000);
+		sfg.setOption(GibbsOptions.burnInScans, 10);
+		sfg.useMultithreading(true);
+		assertTrue(sfg.useMultithreading());
+
+		final int prevThreads = ThreadPool.getNumThreads();
+		try
+		{
+			ThreadPool.setNumThreads(4);
+			sfg.setSeed(42);
+			fg.solve();
+
+			double[][] beliefs = new double[expected.length][];
+			vi = 0;
+			for (Variable var : fg.getVariables())
+			{
+				beliefs[vi] = ((Discrete)var).getBelief();
+				assertArrayEquals(expected[vi], beliefs[vi], .03);
+				++vi;
+			}
+
+			// Same samples regardless of the number of threads
+			ThreadPool.setNumThreads(1);
+			sfg.setSeed(42);
+			fg.solve();
+			vi = 0;
+			for (Variable var : fg.getVariables())
+			{
+				assertArrayEquals(beliefs[vi++], ((Discrete)var).getBelief(), 0.0);
+			}
+
+			// Updates that do not cover whole colors
+			ThreadPool.setNumThreads(3);
+			for (int i = 1; i < 20; ++i)
+			{
+				sfg.iterate(i);
+			}
+
+			// Sequential updates in the same order
+			sfg.setOption(SolverOptions.enableMultithreading, false);
+			sfg.setOption(GibbsOptions.numSamples, 10000);
+			fg.solve();
+			vi = 0;
+			for (Variable var : fg.getVariables())
+			{
+				assertArrayEquals(expected[vi++], ((Discrete)var).getBelief(), .03);
+			}
+		}
+		finally
+		{
+			if (prevThreads > 0)
+				ThreadPool.setNumThreads(prevThreads);
+			else
+				ThreadPool.setNumThreadsToDefault();
+		}
+	}
+
+	/*-----------------
+	 * Helper methods
+	 */
+
+	private IFactorTable bitTable(int nVars)
+	{
+		DiscreteDomain[] domains = new DiscreteDomain[nVars];
+		Arrays.fill(domains, DiscreteDomain.bit());
+		IFactorTable table = FactorTable.create(domains);
+		double[] weights = new double[table.jointSize()];
+		for (int i = 0; i < weights.length; ++i)
+			weights[i] = i + 1;
+		table.setWeightsDense(weights);
+		return table;
+	}
+
+	private GibbsChromaticSchedule createSchedule(FactorGraph fg)
+	{
+		GibbsChromaticSchedule schedule = (GibbsChromaticSchedule)new GibbsChromaticScheduler().createSchedule(fg);
+		validate(fg, schedule);
+		return schedule;
+	}
+
+	/**
+	 * Verifies that each variable is updated once and that variables of the same color do not
+	 * share any factors.
+	 */
+	private void validate(FactorGraph fg, GibbsChromaticSchedule schedule)
+	{
+		Set<INode> updated = new HashSet<INode>();
+		int size = 0;
+		for (int color = 0, nColors = schedule.getColorCount(); color < nColors; ++color)
+		{
+			List<IScheduleEntry> entries = schedule.getColor(color);
+			assertFalse(entries.isEmpty());
+			Set<Factor> factors = new HashSet<Factor>();
+			for (IScheduleEntry entry : entries)
+			{
+				assertSame(entry, schedule.get(size++));
+				if (entry instanceof BlockScheduleEntry)
+				{
+					for (INode node : ((BlockScheduleEntry)entry).getNodeList())
+						assertTrue(updated.add(node));
+					continue;
+				}
+				Variable var = (Variable)((NodeScheduleEntry)entry).getNode();
+				assertTrue(updated.add(var));
+				for (Factor factor : var.getSiblings())
+				{
+					assertTrue(factors.add(factor));
+				}
+			}
+		}
+		assertEquals(size, schedule.size());
+		assertEquals(fg.getVariableCount(), updated.size());
+	}
+}
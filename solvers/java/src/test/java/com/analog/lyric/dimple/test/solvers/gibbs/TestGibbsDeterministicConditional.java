@@ -0,0 +1,253 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.Multiplexer;
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.Product;
+import com.analog.lyric.dimple.factorfunctions.Sum;
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsDiscrete;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsReal;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.dimple.test.model.RandomGraphGenerator;
+
+/**
+ * Tests for the Gibbs conditional distribution of discrete variables with deterministic dependents.
+ *
+ * @since 0.08
+ */
+public class TestGibbsDeterministicConditional extends DimpleTestBase
+{
+	@Test
+	public void testMarginals()
+	{
+		final Model model = new Model(new Random(42));
+		final FactorGraph fg = model.fg;
+
+		// Exact marginals from sum-product on a tree
+		fg.setSolverFactory(new SumProductSolver());
+		fg.solve();
+		final Discrete[] variables = model.variables();
+		final double[][] expected = new double[variables.length][];
+		for (int i = 0; i < variables.length; ++i)
+		{
+			expected[i] = variables[i].getBelief();
+		}
+
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		sfg.setOption(GibbsOptions.numSamples, 10000);
+		sfg.setOption(GibbsOptions.burnInScans, 10);
+		sfg.setSeed(42);
+		fg.solve();
+		for (int i = 0; i < variables.length; ++i)
+		{
+			assertArrayEquals(expected[i], variables[i].getBelief(), .03);
+		}
+		model.assertConsistent();
+	}
+
+	@Test
+	public void testScores()
+	{
+		final Model model = new Model(new Random(23));
+		final FactorGraph fg = model.fg;
+
+		// Real output of a deterministic factor with discrete inputs
+		Real r = new Real();
+		fg.addFactor(new Sum(), r, model.a, model.x1);
+		fg.addFactor(new Normal(2.0, 1.0), r);
+
+		// The change in score computed from the conditional must match the score over the whole graph.
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		sfg.setOption(GibbsOptions.numSamples, 500);
+		sfg.setOption(GibbsOptions.saveAllScores, true);
+		sfg.setOption(GibbsOptions.scoreRecomputeInterval, 1);
+		sfg.setSeed(7);
+		fg.solve();
+		final double[] expected = requireNonNull(sfg.getAllScores());
+
+		sfg.setOption(GibbsOptions.scoreRecomputeInterval, 1000);
+		sfg.setSeed(7);
+		fg.solve();
+		assertTrue(sfg.isTrackingSampleScore());
+		assertArrayEquals(expected, requireNonNull(sfg.getAllScores()), 1e-9);
+		model.assertConsistent();
+		assertEquals(Model.index(model.a) + Model.index(model.x1),
+			((GibbsReal)requireNonNull(r.getSolver())).getCurrentSample(), 0.0);
+	}
+
+	@Test
+	public void testUnchangedDependents()
+	{
+		final Model model = new Model(new Random(3));
+		final FactorGraph fg = model.fg;
+
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		fg.initialize();
+		((GibbsDiscrete)requireNonNull(model.sel.getSolver())).setCurrentSampleIndex(0);
+		model.product.evalCount = 0;
+
+		// The multiplexer output does not depend on its unselected input, so the product is not
+		// evaluated for each of the input's values, only once on first use.
+		GibbsDiscrete sx1 = (GibbsDiscrete)requireNonNull(model.x1.getSolver());
+		for (int i = 0; i < 10; ++i)
+		{
+			sx1.update();
+		}
+		assertEquals(1, model.product.evalCount);
+		model.product.evalCount = 0;
+		model.assertConsistent();
+
+		// But it is for each value of the selected input, and at most once more to set the sample.
+		GibbsDiscrete sx0 = (GibbsDiscrete)requireNonNull(model.x0.getSolver());
+		sx0.update();
+		assertTrue(model.product.evalCount <= model.x0.getDomain().size() + 1);
+		model.assertConsistent();
+	}
+
+	/*-----------------
+	 * Helper classes
+	 */
+
+	/**
+	 * Tree with a chain of deterministic factors: c = a + b, m = mux(sel, x0, x1), p = c * m,
+	 * and a random table between p and q.
+	 */
+	private static class Model
+	{
+		final FactorGraph fg = new FactorGraph();
+		final Discrete a, b, c, sel, x0, x1, m, p, q;
+		final CountingFunction product = new CountingFunction(new Product());
+
+		Model(Random rand)
+		{
+			final DiscreteDomain small = DiscreteDomain.range(0, 3);
+			a = new Discrete(small);
+			b = new Discrete(small);
+			c = new Discrete(DiscreteDomain.range(0, 6));
+			sel = new Discrete(DiscreteDomain.range(0, 1));
+			x0 = new Discrete(small);
+			x1 = new Discrete(small);
+			m = new Discrete(small);
+			p = new Discrete(DiscreteDomain.range(0, 18));
+			q = new Discrete(DiscreteDomain.range(0, 2));
+
+			fg.addFactor(new Sum(), c, a, b);
+			fg.addFactor(new Multiplexer(), m, sel, x0, x1);
+			fg.addFactor(product, p, c, m);
+
+			final RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+			fg.addFactor(gen.randomTable(p, q), p, q);
+
+			for (Discrete var : new Discrete[] { a, b, sel, x0, x1, q })
+			{
+				double[] input = new double[var.getDomain().size()];
+				for (int i = 0; i < input.length; ++i)
+				{
+					input[i] = rand.nextDouble() + .1;
+				}
+				var.setInput(input);
+			}
+		}
+
+		Discrete[] variables()
+		{
+			return new Discrete[] { a, b, c, sel, x0, x1, m, p, q };
+		}
+
+		/**
+		 * Asserts that the samples of the deterministic outputs match those of their inputs.
+		 */
+		void assertConsistent()
+		{
+			final int cValue = index(a) + index(b);
+			assertEquals(cValue, index(c));
+			final int mValue = index(sel) == 0 ? index(x0) : index(x1);
+			assertEquals(mValue, index(m));
+			assertEquals(cValue * mValue, index(p));
+		}
+
+		static int index(Variable var)
+		{
+			return ((GibbsDiscrete)requireNonNull(var.getSolver())).getCurrentSampleIndex();
+		}
+	}
+
+	/**
+	 * Delegates to another function, counting deterministic evaluations.
+	 */
+	private static class CountingFunction extends FactorFunction
+	{
+		private final FactorFunction _delegate;
+		int evalCount = 0;
+
+		private CountingFunction(FactorFunction delegate)
+		{
+			_delegate = delegate;
+		}
+
+		@Override
+		public final @Nullable int[] getDirectedToIndices(int numEdges)
+		{
+			return _delegate.getDirectedToIndices(numEdges);
+		}
+
+		@Override
+		public double evalEnergy(Value[] values)
+		{
+			return _delegate.evalEnergy(values);
+		}
+
+		@Override
+		public void evalDeterministic(Value[] arguments)
+		{
+			_delegate.evalDeterministic(arguments);
+			++evalCount;
+		}
+
+		@Override
+		public boolean isDeterministicDirected()
+		{
+			return _delegate.isDeterministicDirected();
+		}
+
+		@Override
+		public boolean isDirected()
+		{
+			return _delegate.isDirected();
+		}
+	}
+}
@@ -50,7 +50,11 @@ public class TestGibbsOptions extends DimpleTestBase
 		assertEquals(1, GibbsOptions.scansPerSample.defaultIntValue());
 		assertEquals(0, GibbsOptions.burnInScans.defaultIntValue());
 		assertFalse(GibbsOptions.saveAllSamples.defaultBooleanValue());
+		assertEquals("", GibbsOptions.sampleStoreDirectory.defaultValue());
+		assertFalse(GibbsOptions.computeSampleStatistics.defaultValue());
+		assertEquals(0.0, GibbsOptions.targetEffectiveSampleSize.defaultDoubleValue(), 0.0);
 		assertFalse(GibbsOptions.saveAllScores.defaultBooleanValue());
+		assertEquals(100, GibbsOptions.scoreRecomputeInterval.defaultIntValue());
 		assertFalse(GibbsOptions.enableAnnealing.defaultValue());
 		assertEquals(1.0, GibbsOptions.initialTemperature.defaultDoubleValue(), 1.0);
 		assertEquals(1.0, GibbsOptions.annealingHalfLife.defaultDoubleValue(), 1.0);
@@ -0,0 +1,196 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsDiscrete;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsReal;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.dimple.test.model.RandomGraphGenerator;
+import com.analog.lyric.math.DimpleRandom;
+import com.analog.lyric.math.DimpleRandomGenerator;
+
+/**
+ * Tests for {@link GibbsOptions#numChains}
+ * 
+ * @since 0.08
+ */
+public class TestGibbsParallelChains extends DimpleTestBase
+{
+	@Test
+	public void testDiscrete()
+	{
+		final Random rand = new Random(42);
+		RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.range(1, 2), DiscreteDomain.range(1, 3));
+		FactorGraph fg = gen.buildRandomTree(8);
+		for (Variable var : fg.getVariables())
+		{
+			Discrete discrete = (Discrete)var;
+			double[] input = new double[discrete.getDomain().size()];
+			for (int i = 0; i < input.length; ++i)
+			{
+				input[i] = rand.nextDouble() + .1;
+			}
+			discrete.setInput(input);
+		}
+		
+		// Exact marginals from sum-product on a tree
+		fg.setSolverFactory(new SumProductSolver());
+		fg.solve();
+		double[][] expected = new double[fg.getVariableCount()][];
+		int vi = 0;
+		for (Variable var : fg.getVariables())
+		{
+			expected[vi++] = ((Discrete)var).getBelief();
+		}
+		
+		final int numChains = 4, numSamples = 2000, numRestarts = 1;
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		sfg.setOption(GibbsOptions.numChains, numChains);
+		sfg.setOption(GibbsOptions.numSamples, numSamples);
+		sfg.setOption(GibbsOptions.numRandomRestarts, numRestarts);
+		sfg.setOption(GibbsOptions.burnInScans, 10);
+		sfg.setOption(GibbsOptions.saveAllSamples, true);
+		sfg.setOption(GibbsOptions.saveAllScores, true);
+		
+		DimpleRandomGenerator.setSeed(123);
+		fg.solve();
+		assertEquals(numChains, sfg.getNumChains());
+		
+		final int totalSamples = numChains * numSamples * (numRestarts + 1);
+		double[] scores = requireNonNull(sfg.getAllScores());
+		assertEquals(totalSamples, scores.length);
+		double minScore = Double.POSITIVE_INFINITY;
+		for (double score : scores)
+		{
+			minScore = Math.min(minScore, score);
+		}
+		assertEquals(minScore, sfg.getBestSampleScore(), 0.0);
+		
+		double[][] beliefs = new double[expected.length][];
+		vi = 0;
+		for (Variable var : fg.getVariables())
+		{
+			GibbsDiscrete svar = (GibbsDiscrete)requireNonNull(sfg.getSolverVariable(var));
+			assertEquals(totalSamples, svar.getAllSampleIndices().length);
+			beliefs[vi] = svar.getBelief();
+			assertArrayEquals(expected[vi], beliefs[vi], .03);
+			
+			// Histogram should agree with the saved samples from all chains
+			int[] counts = new int[beliefs[vi].length];
+			for (int index : svar.getAllSampleIndices())
+			{
+				++counts[index];
+			}
+			for (int i = 0; i < counts.length; ++i)
+			{
+				assertEquals(beliefs[vi][i], (double)counts[i] / totalSamples, 1e-12);
+			}
+			++vi;
+		}
+		
+		// Solving again with the same seed should reproduce the same results
+		DimpleRandomGenerator.setSeed(123);
+		fg.solve();
+		vi = 0;
+		for (Variable var : fg.getVariables())
+		{
+			assertArrayEquals(beliefs[vi++], ((Discrete)var).getBelief(), 0.0);
+		}
+		assertArrayEquals(scores, sfg.getAllScores(), 0.0);
+		
+		// Single chain
+		sfg.setOption(GibbsOptions.numChains, 1);
+		fg.solve();
+		assertEquals(numSamples * (numRestarts + 1), requireNonNull(sfg.getAllScores()).length);
+	}
+	
+	@Test
+	public void testReal()
+	{
+		FactorGraph fg = new FactorGraph();
+		Real mean = new Real();
+		mean.setFixedValue(3.0);
+		Real x = new Real();
+		fg.addFactor(new Normal(), mean, 0.5, x);
+		
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		sfg.setOption(GibbsOptions.numChains, 3);
+		sfg.setOption(GibbsOptions.numSamples, 5000);
+		sfg.setOption(GibbsOptions.saveAllSamples, true);
+		DimpleRandomGenerator.setSeed(42);
+		fg.solve();
+		
+		GibbsReal sx = (GibbsReal)requireNonNull(sfg.getSolverVariable(x));
+		double[] samples = sx.getAllSamples();
+		assertEquals(15000, samples.length);
+		
+		double sum = 0, sumSquare = 0;
+		for (double sample : samples)
+		{
+			sum += sample;
+			sumSquare += sample * sample;
+		}
+		assertEquals(sum / samples.length, sx.getSampleMean(), 1e-9);
+		assertEquals((sumSquare - sum * sum / samples.length) / (samples.length - 1), sx.getSampleVariance(), 1e-6);
+		assertEquals(3.0, sx.getSampleMean(), .1);
+		assertEquals(2.0, sx.getSampleVariance(), .2); // precision is 0.5
+	}
+	
+	@Test
+	public void testChainStreams()
+	{
+		// The caller's stream after solving only depends on the seed and the number of chains.
+		final FactorGraph fg = new FactorGraph();
+		final Discrete a = new Discrete(DiscreteDomain.bit()), b = new Discrete(DiscreteDomain.bit());
+		fg.addFactor(new int[][] { {0,0}, {1,1} }, new double[] { 1, 2 }, a, b);
+		final GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		sfg.setOption(GibbsOptions.numSamples, 100);
+		sfg.setOption(GibbsOptions.numChains, 3);
+		
+		final DimpleEnvironment env = DimpleEnvironment.active();
+		sfg.setSeed(5);
+		final DimpleRandom random = env.getRandom();
+		fg.solve();
+		assertSame(random, env.getRandom());
+		final double next = random.nextDouble();
+		final double[] belief = a.getBelief();
+		
+		sfg.setSeed(5);
+		fg.solve();
+		assertEquals(next, env.getRandom().nextDouble(), 0.0);
+		assertArrayEquals(belief, a.getBelief(), 0.0);
+	}
+}
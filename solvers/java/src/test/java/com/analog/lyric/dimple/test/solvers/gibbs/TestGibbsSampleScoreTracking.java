@@ -0,0 +1,200 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.Xor;
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Bit;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.model.variables.RealJoint;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.schedulers.GibbsRandomScanScheduler;
+import com.analog.lyric.dimple.schedulers.schedule.FixedSchedule;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.BlockScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.NodeScheduleEntry;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.solvers.gibbs.samplers.block.BlockMHSampler;
+import com.analog.lyric.dimple.solvers.gibbs.samplers.generic.MHSampler;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.dimple.test.model.RandomGraphGenerator;
+
+/**
+ * Tests for incremental tracking of the sample score in the Gibbs solver.
+ *
+ * @since 0.08
+ * @see GibbsOptions#scoreRecomputeInterval
+ */
+public class TestGibbsSampleScoreTracking extends DimpleTestBase
+{
+	/**
+	 * Non-conjugate energy: sum of squares of real and real joint arguments.
+	 */
+	static class SquaredEnergy extends FactorFunction
+	{
+		@Override
+		public final double evalEnergy(Value[] arguments)
+		{
+			double energy = 0.0;
+			for (Value arg : arguments)
+			{
+				for (double d : arg.getDoubleArray())
+				{
+					energy += d * d;
+				}
+			}
+			return energy;
+		}
+	}
+
+	@Test
+	public void testDiscrete()
+	{
+		final Random rand = new Random(42);
+		final RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.range(1, 2), DiscreteDomain.range(1, 3));
+		FactorGraph fg = gen.buildGrid(4);
+		setRandomInputs(rand, fg);
+
+		// Variables with deterministic dependents
+		Bit a = new Bit(), b = new Bit(), c = new Bit();
+		a.setInput(.3);
+		b.setInput(.6);
+		fg.addFactor(new Xor(), c, a, b);
+		Discrete d = (Discrete)fg.getVariables().iterator().next();
+		fg.addFactor(gen.randomTable(c, d), c, d);
+
+		fg.setSolverFactory(new GibbsSolver());
+		assertTrackedScores(fg, true);
+
+		fg.setOption(GibbsOptions.enableAnnealing, true);
+		assertTrackedScores(fg, true);
+		fg.setOption(GibbsOptions.enableAnnealing, false);
+
+		fg.setScheduler(new GibbsRandomScanScheduler());
+		assertTrackedScores(fg, false);
+	}
+
+	@Test
+	public void testReal()
+	{
+		FactorGraph fg = new FactorGraph();
+		Real mean = new Real(), x1 = new Real(), x2 = new Real(), x3 = new Real();
+		RealJoint j = new RealJoint(2);
+		mean.setInput(new Normal(0.0, .1));
+		fg.addFactor(new Normal(), mean, 0.5, x1, x2, x3);
+		fg.addFactor(new SquaredEnergy(), x1, j);
+		fg.addFactor(new SquaredEnergy(), x2);
+
+		// Conjugate sampling for mean and x3, slice sampling for x1, and Metropolis-Hastings for x2 and j
+		x2.setOption(GibbsOptions.realSampler, MHSampler.class);
+		j.setOption(GibbsOptions.realSampler, MHSampler.class);
+
+		fg.setSolverFactory(new GibbsSolver());
+		assertTrackedScores(fg, true);
+	}
+
+	@Test
+	public void testBlock()
+	{
+		final Random rand = new Random(23);
+		final RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.range(1, 3));
+		FactorGraph fg = gen.buildGrid(3);
+		setRandomInputs(rand, fg);
+		fg.setSolverFactory(new GibbsSolver());
+
+		Variable[] variables = fg.getVariables().toArray(new Variable[0]);
+		FixedSchedule schedule = new FixedSchedule();
+		for (int i = 2; i < variables.length; ++i)
+		{
+			schedule.add(new NodeScheduleEntry(variables[i]));
+		}
+		schedule.add(new BlockScheduleEntry(new BlockMHSampler(new TrivialUniformBlockProposer()),
+			variables[0], variables[1]));
+		fg.setSchedule(schedule);
+		assertTrackedScores(fg, true);
+	}
+
+	/*-----------------
+	 * Helper methods
+	 */
+
+	/**
+	 * Verifies that the scores saved when tracking scores incrementally match those computed over
+	 * the whole graph for the same samples.
+	 */
+	private void assertTrackedScores(FactorGraph fg, boolean expectTracking)
+	{
+		final GibbsSolverGraph sfg = requireNonNull((GibbsSolverGraph)fg.getSolver());
+		sfg.setOption(GibbsOptions.numSamples, 200);
+		sfg.setOption(GibbsOptions.burnInScans, 5);
+		sfg.setOption(GibbsOptions.numRandomRestarts, 1);
+		sfg.setOption(GibbsOptions.saveAllScores, true);
+
+		sfg.setOption(GibbsOptions.scoreRecomputeInterval, 1);
+		sfg.setSeed(7);
+		fg.solve();
+		assertFalse(sfg.isTrackingSampleScore());
+		final double[] expected = requireNonNull(sfg.getAllScores());
+		final double expectedBest = sfg.getBestSampleScore();
+		assertEquals(400, expected.length);
+
+		sfg.setOption(GibbsOptions.scoreRecomputeInterval, 1000);
+		sfg.setSeed(7);
+		fg.solve();
+		assertEquals(expectTracking, sfg.isTrackingSampleScore());
+		final double[] scores = requireNonNull(sfg.getAllScores());
+		assertArrayEquals(expected, scores, 1e-9);
+		assertEquals(expectedBest, sfg.getBestSampleScore(), 1e-9);
+		assertEquals(sfg.getSampleScore(), scores[scores.length - 1], 1e-9);
+
+		// Changes between calls to sample are not missed
+		sfg.iterate(3);
+		sfg.randomRestart(0);
+		sfg.sample(20);
+		final double[] moreScores = requireNonNull(sfg.getAllScores());
+		assertEquals(sfg.getSampleScore(), moreScores[moreScores.length - 1], 1e-9);
+	}
+
+	private static void setRandomInputs(Random rand, FactorGraph fg)
+	{
+		for (Variable var : fg.getVariables())
+		{
+			Discrete discrete = (Discrete)var;
+			double[] input = new double[discrete.getDomain().size()];
+			for (int i = 0; i < input.length; ++i)
+			{
+				input[i] = rand.nextDouble() + .1;
+			}
+			discrete.setInput(input);
+		}
+	}
+}
@@ -0,0 +1,282 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsDiscrete;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsReal;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSampleStatistics;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for {@link GibbsSampleStatistics}
+ *
+ * @since 0.08
+ * @see GibbsOptions#computeSampleStatistics
+ */
+public class TestGibbsSampleStatistics extends DimpleTestBase
+{
+	@Test
+	public void testMoments()
+	{
+		final Random rand = new Random(42);
+		final int n = 20000;
+		final double[][] samples = new double[n][];
+		final GibbsSampleStatistics stats = new GibbsSampleStatistics(2);
+		assertArrayEquals(new double[] { Double.NaN, Double.NaN }, stats.getMean(), 0.0);
+		assertTrue(Double.isNaN(stats.getQuantile(0, .5)));
+
+		// Correlated pair with a large offset to check numerical stability
+		for (int i = 0; i < n; ++i)
+		{
+			final double x = rand.nextGaussian(), y = .5 * x + rand.nextGaussian();
+			samples[i] = new double[] { 1e6 + x, y };
+			stats.add(samples[i]);
+		}
+		assertEquals(n, stats.getCount());
+		assertEquals(1, stats.getSegmentCount());
+
+		// Two-pass moments
+		final double[] mean = new double[2];
+		for (double[] sample : samples)
+			for (int i = 0; i < 2; ++i)
+				mean[i] += sample[i] / n;
+		final double[][] covariance = new double[2][2];
+		for (double[] sample : samples)
+			for (int i = 0; i < 2; ++i)
+				for (int j = 0; j < 2; ++j)
+					covariance[i][j] += (sample[i] - mean[i]) * (sample[j] - mean[j]) / (n - 1);
+
+		assertArrayEquals(mean, stats.getMean(), 1e-9);
+		final double[][] actualCovariance = stats.getCovariance();
+		for (int i = 0; i < 2; ++i)
+		{
+			assertArrayEquals(covariance[i], actualCovariance[i], 1e-9);
+			assertEquals(covariance[i][i], stats.getVariance()[i], 1e-9);
+		}
+		assertEquals(.5, covariance[0][1], .05);
+
+		// Quantiles
+		final double[] sorted = new double[n];
+		for (int i = 0; i < n; ++i)
+			sorted[i] = samples[i][1];
+		Arrays.sort(sorted);
+		assertEquals(sorted[0], stats.getQuantile(1, 0.0), 0.0);
+		assertEquals(sorted[n - 1], stats.getQuantile(1, 1.0), 0.0);
+		for (double p : new double[] { .001, .01, .1, .25, .5, .75, .9, .99, .999 })
+		{
+			// Compare the rank of the estimate, which is more accurate in the tails
+			final int rank = Arrays.binarySearch(sorted, stats.getQuantile(1, p));
+			assertEquals(p, (rank < 0 ? -rank - 1 : rank) / (double)n, .002);
+		}
+
+		// Independent samples
+		assertEquals(n, stats.getEffectiveSampleSize(0), .25 * n);
+		assertEquals(n, stats.getMinEffectiveSampleSize(), .25 * n);
+		assertEquals(1.0, stats.getAutocorrelationTime(1), .25);
+		assertTrue(Double.isNaN(stats.getPotentialScaleReduction(0)));
+	}
+
+	@Test
+	public void testEffectiveSampleSize()
+	{
+		final Random rand = new Random(23);
+		final GibbsSampleStatistics stats = new GibbsSampleStatistics(1);
+		assertTrue(Double.isNaN(stats.getEffectiveSampleSize(0)));
+
+		// AR(1) process, whose integrated autocorrelation time is (1 + rho) / (1 - rho)
+		final double rho = .9;
+		final int n = 200000;
+		double x = 0;
+		for (int i = 0; i < n; ++i)
+		{
+			x = rho * x + Math.sqrt(1 - rho * rho) * rand.nextGaussian();
+			stats.add(x);
+		}
+		final double tau = (1 + rho) / (1 - rho);
+		// Batch means over at most MAX_BATCHES batches only gives a rough estimate
+		final double actualTau = stats.getAutocorrelationTime(0);
+		assertTrue(actualTau > tau / 1.5 && actualTau < tau * 1.5);
+		assertEquals(n / actualTau, stats.getEffectiveSampleSize(0), 1e-6);
+
+		// Highly autocorrelated chain, whose true effective sample size is 0.5 after 100 samples, must not
+		// meet a small target at the first check, as it would with batches of one or two samples.
+		final double rho2 = .99;
+		final GibbsSampleStatistics slow = new GibbsSampleStatistics(1);
+		x = 0;
+		for (int i = 0; i < 100; ++i)
+		{
+			x = rho2 * x + Math.sqrt(1 - rho2 * rho2) * rand.nextGaussian();
+			slow.add(x);
+		}
+		assertFalse(slow.getEffectiveSampleSize(0) >= 20);
+
+		// Constant samples
+		final GibbsSampleStatistics constant = new GibbsSampleStatistics(1);
+		for (int i = 0; i < 1000; ++i)
+			constant.add(3.0);
+		assertEquals(1000, constant.getEffectiveSampleSize(0), 0.0);
+		assertEquals(3.0, constant.getQuantile(0, .3), 0.0);
+	}
+
+	@Test
+	public void testSegmentsAndMerge()
+	{
+		final Random rand = new Random(7);
+		final GibbsSampleStatistics stats = new GibbsSampleStatistics(1);
+		final GibbsSampleStatistics first = new GibbsSampleStatistics(1), second = new GibbsSampleStatistics(1);
+
+		// Segments from the same distribution
+		for (int segment = 0; segment < 4; ++segment)
+		{
+			stats.startSegment();
+			final GibbsSampleStatistics part = segment < 2 ? first : second;
+			part.startSegment();
+			for (int i = 0; i < 5000; ++i)
+			{
+				final double x = rand.nextGaussian();
+				stats.add(x);
+				part.add(x);
+			}
+		}
+		stats.startSegment();
+		assertEquals(4, stats.getSegmentCount());
+		assertEquals(1.0, stats.getPotentialScaleReduction(0), .01);
+
+		// Merging the parts gives the same result
+		first.merge(second);
+		assertEquals(stats.getCount(), first.getCount());
+		assertEquals(4, first.getSegmentCount());
+		assertArrayEquals(stats.getMean(), first.getMean(), 1e-12);
+		assertArrayEquals(stats.getVariance(), first.getVariance(), 1e-9);
+		assertEquals(stats.getPotentialScaleReduction(0), first.getPotentialScaleReduction(0), 1e-9);
+		assertEquals(stats.getQuantile(0, .5), first.getQuantile(0, .5), .02);
+		assertEquals(stats.getQuantile(0, .95), first.getQuantile(0, .95), .02);
+		assertEquals(stats.getEffectiveSampleSize(0), first.getEffectiveSampleSize(0), .25 * stats.getCount());
+
+		// A segment that has not converged
+		for (int i = 0; i < 5000; ++i)
+			stats.add(2 + rand.nextGaussian());
+		assertEquals(5, stats.getSegmentCount());
+		assertTrue(stats.getMaxPotentialScaleReduction() > 1.2);
+
+		stats.reset();
+		assertEquals(0, stats.getCount());
+		assertEquals(0, stats.getSegmentCount());
+
+		// Merging batches with a nonzero mean, where the merged batches do not all fit without combining
+		final GibbsSampleStatistics all = new GibbsSampleStatistics(1);
+		final GibbsSampleStatistics third = new GibbsSampleStatistics(1), fourth = new GibbsSampleStatistics(1);
+		for (int i = 0; i < 10000; ++i)
+		{
+			final double x = 10 + rand.nextGaussian();
+			all.add(x);
+			(i < 5000 ? third : fourth).add(x);
+		}
+		third.merge(fourth);
+		assertEquals(10000, third.getCount());
+		// Batch means over few batches only gives a rough estimate, but mismatched batch sizes would
+		// make it collapse
+		for (GibbsSampleStatistics s : new GibbsSampleStatistics[] { all, third })
+		{
+			final double size = s.getEffectiveSampleSize(0);
+			assertTrue(size > 5000 && size < 20000);
+		}
+	}
+
+	@Test
+	public void testSolver()
+	{
+		FactorGraph fg = new FactorGraph();
+		Real mean = new Real(), x = new Real();
+		mean.setInput(new Normal(1.0, 1.0));
+		fg.addFactor(new Normal(), mean, 1.0, x);
+		Discrete d = new Discrete(DiscreteDomain.range(1, 3)), e = new Discrete(DiscreteDomain.range(1, 3));
+		d.setInput(.2, .3, .5);
+		fg.addFactor(new int[][] { { 0, 0 }, { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, 2 }, { 2, 1 }, { 2, 2 } },
+			new double[] { 1, .5, .5, 1, .5, .5, 1 }, d, e);
+
+		final GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		final GibbsReal sx = (GibbsReal)requireNonNull(x.getSolver());
+		final GibbsDiscrete sd = (GibbsDiscrete)requireNonNull(d.getSolver());
+		sfg.setOption(GibbsOptions.numSamples, 2000);
+		sfg.setOption(GibbsOptions.numRandomRestarts, 1);
+		sfg.setSeed(42);
+		fg.solve();
+		assertNull(sx.getSampleStatistics());
+
+		sfg.setOption(GibbsOptions.computeSampleStatistics, true);
+		sfg.setSeed(42);
+		fg.solve();
+		final GibbsSampleStatistics xStats = requireNonNull(sx.getSampleStatistics());
+		assertEquals(4000, xStats.getCount());
+		assertEquals(2, xStats.getSegmentCount());
+		assertEquals(sx.getSampleMean(), xStats.getMean()[0], 1e-9);
+		assertEquals(sx.getSampleVariance(), xStats.getVariance()[0], 1e-6);
+		assertEquals(1.0, xStats.getPotentialScaleReduction(0), .1);
+		assertEquals(1.0, xStats.getQuantile(0, .5), .2);
+		final double singleChainSize = xStats.getEffectiveSampleSize(0);
+
+		// Discrete statistics use the values of the domain
+		final GibbsSampleStatistics dStats = requireNonNull(sd.getSampleStatistics());
+		final double[] belief = d.getBelief();
+		assertEquals(belief[0] + 2 * belief[1] + 3 * belief[2], dStats.getMean()[0], 1e-9);
+
+		// Statistics are available while sampling
+		fg.initialize();
+		assertEquals(0, xStats.getCount());
+		sfg.burnIn();
+		sfg.sample(50);
+		assertEquals(50, xStats.getCount());
+		assertEquals(1, xStats.getSegmentCount());
+
+		// Merged from parallel chains
+		sfg.setOption(GibbsOptions.numChains, 2);
+		fg.solve();
+		final GibbsSampleStatistics mergedStats = requireNonNull(sx.getSampleStatistics());
+		assertEquals(8000, mergedStats.getCount());
+		assertEquals(4, mergedStats.getSegmentCount());
+		// Twice as many samples from independent chains
+		assertTrue(mergedStats.getEffectiveSampleSize(0) > singleChainSize);
+		sfg.setOption(GibbsOptions.numChains, 1);
+
+		// Stops once the effective sample size is reached
+		sfg.setOption(GibbsOptions.numSamples, 1000000);
+		sfg.setOption(GibbsOptions.targetEffectiveSampleSize, 2000.0);
+		fg.solve();
+		final long count = xStats.getCount();
+		assertTrue(count < 100000);
+		assertEquals(0, count % 100);
+		assertTrue(xStats.getMinEffectiveSampleSize() >= 2000);
+		assertTrue(dStats.getMinEffectiveSampleSize() >= 2000);
+	}
+}
@@ -0,0 +1,324 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.collect.PrimitiveIterator;
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.NotEquals;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.model.variables.RealJoint;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsDiscrete;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsReal;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsRealJoint;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSampleStore;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.solvers.gibbs.samplers.generic.MHSampler;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for {@link GibbsSampleStore}
+ *
+ * @since 0.08
+ * @see GibbsOptions#sampleStoreDirectory
+ */
+public class TestGibbsSampleStore extends DimpleTestBase
+{
+	@Test
+	public void testColumns() throws IOException
+	{
+		final File directory = Files.createTempDirectory("TestGibbsSampleStore").toFile();
+		try
+		{
+			final GibbsSampleStore store = new GibbsSampleStore(new File(directory, "samples"));
+			assertTrue(store.getFile().isFile());
+			assertEquals(0, store.getSize());
+			final Random rand = new Random(42);
+
+			//
+			// Bit-packed indices
+			//
+
+			for (int cardinality : new int[] { 1, 2, 5, 1000, Integer.MAX_VALUE })
+			{
+				final GibbsSampleStore.IntColumn column = store.newIntColumn(cardinality);
+				final int[] expected = new int[10000];
+				for (int i = 0; i < expected.length; ++i)
+				{
+					expected[i] = rand.nextInt(cardinality);
+					column.add(expected[i]);
+				}
+				assertEquals(expected.length, column.size());
+				assertArrayEquals(expected, column.toArray());
+				for (int i = 0; i < expected.length; ++i)
+				{
+					assertEquals(expected[i], column.get(i));
+				}
+				assertIterator(expected, column.iterator());
+			}
+			assertEquals(3, store.newIntColumn(5).bitsPerSample());
+			assertEquals(1, store.newIntColumn(1).bitsPerSample());
+			assertEquals(31, store.newIntColumn(Integer.MAX_VALUE).bitsPerSample());
+
+			// Samples take no more than the bits required for the domain
+			long size = store.getSize();
+			final GibbsSampleStore.IntColumn bits = store.newIntColumn(4);
+			for (int i = 0; i < 40960; ++i)
+			{
+				bits.add(i & 3);
+			}
+			assertEquals(40960 / 4, store.getSize() - size);
+
+			//
+			// XOR-compressed reals
+			//
+
+			final double[] special = new double[] { 0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE, 1.0, 1.0, 1.0, 2.0 };
+			final double[] expected = new double[5000];
+			for (int i = 0; i < expected.length; ++i)
+			{
+				switch (rand.nextInt(4))
+				{
+				case 0:
+					expected[i] = special[rand.nextInt(special.length)];
+					break;
+				case 1:
+					// Repeated value, as for a rejected proposal
+					expected[i] = i > 0 ? expected[i - 1] : 0.0;
+					break;
+				case 2:
+					expected[i] = rand.nextInt(100);
+					break;
+				default:
+					expected[i] = rand.nextGaussian() * 1e3;
+					break;
+				}
+			}
+			final GibbsSampleStore.DoubleColumn column = store.newDoubleColumn();
+			for (double value : expected)
+			{
+				column.add(value);
+			}
+			assertEquals(expected.length, column.size());
+			assertBitsEqual(expected, column.toArray());
+			final PrimitiveIterator.OfDouble iter = column.iterator();
+			for (double value : expected)
+			{
+				assertTrue(iter.hasNext());
+				assertEquals(Double.doubleToRawLongBits(value), Double.doubleToRawLongBits(iter.nextDouble()));
+			}
+			assertFalse(iter.hasNext());
+
+			// Repeated values take a single bit each
+			size = store.getSize();
+			final GibbsSampleStore.DoubleColumn repeated = store.newDoubleColumn();
+			for (int i = 0; i < 10240; ++i)
+			{
+				repeated.add(i < 5120 ? Math.PI : Math.E);
+			}
+			assertTrue(store.getSize() - size < 10 * 8 * 24);
+
+			// Appending another column
+			final GibbsSampleStore.DoubleColumn copy = store.newDoubleColumn();
+			copy.add(-1.0);
+			copy.addAll(column);
+			assertEquals(expected.length + 1, copy.size());
+			assertEquals(-1.0, copy.iterator().nextDouble(), 0.0);
+
+			// Spans more than one mapped region of the file
+			final GibbsSampleStore.DoubleColumn large = store.newDoubleColumn();
+			for (int i = 0; i < 1000000; ++i)
+			{
+				large.add(rand.nextDouble());
+			}
+			assertTrue(store.getSize() > 4 << 20);
+			final PrimitiveIterator.OfDouble largeIter = large.iterator();
+			int count = 0;
+			while (largeIter.hasNext())
+			{
+				assertTrue(largeIter.nextDouble() < 1.0);
+				++count;
+			}
+			assertEquals(1000000, count);
+
+			store.close();
+			assertTrue(store.isClosed());
+			assertFalse(store.getFile().exists());
+		}
+		finally
+		{
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void testSolver() throws IOException
+	{
+		FactorGraph fg = new FactorGraph();
+		Discrete d = new Discrete(DiscreteDomain.range(0, 4)), e = new Discrete(DiscreteDomain.range(0, 4));
+		d.setInput(.1, .3, .2, .3, .1);
+		fg.addFactor(new NotEquals(), d, e);
+		Real r = new Real();
+		RealJoint j = new RealJoint(2);
+		fg.addFactor(new Normal(0.0, 1.0), r);
+		fg.addFactor(new TestGibbsSampleScoreTracking.SquaredEnergy(), r, j);
+		// Metropolis-Hastings sampling produces repeated samples
+		j.setOption(GibbsOptions.realSampler, MHSampler.class);
+
+		final GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		final GibbsDiscrete sd = (GibbsDiscrete)requireNonNull(d.getSolver());
+		final GibbsReal sr = (GibbsReal)requireNonNull(r.getSolver());
+		final GibbsRealJoint sj = (GibbsRealJoint)requireNonNull(j.getSolver());
+		sfg.setOption(GibbsOptions.numSamples, 5000);
+		sfg.setOption(GibbsOptions.numChains, 2);
+		sfg.setOption(GibbsOptions.saveAllSamples, true);
+
+		sfg.setSeed(7);
+		fg.solve();
+		assertNull(sfg.getSampleStore());
+		final int[] expectedIndices = sd.getAllSampleIndices();
+		final double[] expectedReals = sr.getAllSamples();
+		final double[][] expectedJoints = sj.getAllSamples();
+		assertEquals(10000, expectedIndices.length);
+
+		final File directory = Files.createTempDirectory("TestGibbsSampleStore").toFile();
+		try
+		{
+			sfg.setOption(GibbsOptions.sampleStoreDirectory, directory.getPath());
+			sfg.setSeed(7);
+			fg.solve();
+			final GibbsSampleStore store = requireNonNull(sfg.getSampleStore());
+			assertTrue(store.getFile().isFile());
+			assertTrue(store.getSize() > 0);
+			// Only this graph's file remains after merging the other chain's samples.
+			assertEquals(1, requireNonNull(directory.listFiles()).length);
+
+			assertArrayEquals(expectedIndices, sd.getAllSampleIndices());
+			final Object[] samples = sd.getAllSamples();
+			assertEquals(expectedIndices.length, samples.length);
+			for (int i = 0; i < samples.length; ++i)
+			{
+				assertEquals(d.getDomain().getElement(expectedIndices[i]), samples[i]);
+			}
+			assertBitsEqual(expectedReals, sr.getAllSamples());
+			assertEquals(expectedReals.length, requireNonNull(sr._getSampleArrayUnsafe()).size());
+			final double[][] joints = sj.getAllSamples();
+			assertEquals(expectedJoints.length, joints.length);
+			for (int i = 0; i < joints.length; ++i)
+			{
+				assertBitsEqual(expectedJoints[i], joints[i]);
+			}
+
+			assertIterator(expectedIndices, sd.getAllSampleIndexIterator());
+			final PrimitiveIterator.OfDouble realIter = sr.getAllSampleIterator();
+			for (double value : expectedReals)
+			{
+				assertEquals(value, realIter.nextDouble(), 0.0);
+			}
+			assertFalse(realIter.hasNext());
+			final Iterator<double[]> jointIter = sj.getAllSampleIterator();
+			for (double[] value : expectedJoints)
+			{
+				assertArrayEquals(value, jointIter.next(), 0.0);
+			}
+			assertFalse(jointIter.hasNext());
+
+			// Reinitialization discards the samples
+			fg.initialize();
+			assertFalse(store.getFile().exists());
+			assertEquals(0, sd.getAllSampleIndices().length);
+			assertFalse(sr.getAllSampleIterator().hasNext());
+
+			// The directory is looked up on the root graph, including options set on its model
+			sfg.unsetOption(GibbsOptions.sampleStoreDirectory);
+			fg.setOption(GibbsOptions.sampleStoreDirectory, directory.getPath());
+			sfg.setSeed(7);
+			fg.solve();
+			final GibbsSampleStore store2 = requireNonNull(sfg.getSampleStore());
+			assertNotSame(store, store2);
+			assertEquals(directory, store2.getFile().getParentFile());
+			assertArrayEquals(expectedIndices, sd.getAllSampleIndices());
+			fg.unsetOption(GibbsOptions.sampleStoreDirectory);
+			fg.solve();
+			assertNull(sfg.getSampleStore());
+			assertFalse(store2.getFile().exists());
+			fg.setOption(GibbsOptions.sampleStoreDirectory, directory.getPath());
+
+			sfg.setOption(GibbsOptions.saveAllSamples, false);
+			fg.solve();
+			assertNull(sfg.getSampleStore());
+			assertEquals(0, sj.getAllSamples().length);
+		}
+		finally
+		{
+			fg.initialize();
+			delete(directory);
+		}
+	}
+
+	/*-----------------
+	 * Helper methods
+	 */
+
+	private static void assertIterator(int[] expected, PrimitiveIterator.OfInt iter)
+	{
+		for (int value : expected)
+		{
+			assertTrue(iter.hasNext());
+			assertEquals(value, iter.nextInt());
+		}
+		assertFalse(iter.hasNext());
+	}
+
+	private static void assertBitsEqual(double[] expected, double[] actual)
+	{
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; ++i)
+		{
+			assertEquals(Double.doubleToRawLongBits(expected[i]), Double.doubleToRawLongBits(actual[i]));
+		}
+	}
+
+	private static void delete(File file)
+	{
+		final File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,243 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.values.IndexedValue;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.options.SolverOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsDiscrete;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.dimple.test.model.RandomGraphGenerator;
+import com.analog.lyric.math.DimpleRandomGenerator;
+
+/**
+ * Tests for the precompiled sampling plan used by {@link GibbsSolverGraph#sample(int)}.
+ * 
+ * @since 0.08
+ */
+public class TestGibbsSamplingPlan extends DimpleTestBase
+{
+	@Test
+	public void testScheduleWrapAround()
+	{
+		FactorGraph fg = buildGrid(new Random(42), 4);
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+
+		// Splitting updates across calls must continue from the same place in the schedule.
+		DimpleRandomGenerator.setSeed(7);
+		fg.initialize();
+		sfg.iterate(7);
+		sfg.iterate(30);
+		sfg.iterate(1);
+		int[] expected = getSampleIndices(fg);
+
+		DimpleRandomGenerator.setSeed(7);
+		fg.initialize();
+		sfg.iterate(38);
+		assertArrayEquals(expected, getSampleIndices(fg));
+	}
+	
+	@Test
+	public void testSampleScore()
+	{
+		Random rand = new Random(23);
+		FactorGraph fg = buildGrid(rand, 3);
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		fg.initialize();
+		sfg.sample(10);
+		assertEquals(computeSampleScore(fg), sfg.getSampleScore(), 1e-12);
+		
+		// Adding nodes should be reflected in the score
+		Discrete a = (Discrete)fg.getVariables().iterator().next();
+		Discrete b = new Discrete(a.getDomain());
+		b.setInput(randomInput(rand, b.getDomain().size()));
+		fg.addFactor(new RandomGraphGenerator(rand).randomTable(a, b), a, b);
+		fg.initialize();
+		sfg.sample(10);
+		assertEquals(computeSampleScore(fg), sfg.getSampleScore(), 1e-12);
+	}
+
+	@Test
+	public void testNoAllocation()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)bean;
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+		
+		FactorGraph fg = buildGrid(new Random(42), 5);
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		fg.initialize();
+		sfg.burnIn();
+		sfg.sample(1000);
+		
+		final long threadId = Thread.currentThread().getId();
+		final int nSamples = 2000;
+		final long before = threadBean.getThreadAllocatedBytes(threadId);
+		sfg.sample(nSamples);
+		final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+		
+		// Allow for allocations that are not per sample (e.g. from the runtime itself)
+		assertTrue("allocated " + allocated + " bytes", allocated < nSamples);
+	}
+	
+	@Test
+	public void testNoAllocationWithUpdateEnergy()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)bean;
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+		
+		// Factor without a table whose ports are updated in turn through updateEnergy
+		FactorGraph fg = new FactorGraph();
+		DiscreteDomain domain = DiscreteDomain.range(0, 4);
+		Discrete[] vars = new Discrete[3];
+		for (int i = 0; i < vars.length; ++i)
+		{
+			vars[i] = new Discrete(domain);
+		}
+		SumEnergyFunction function = new SumEnergyFunction();
+		fg.addFactor(function, vars);
+		fg.setOption(SolverOptions.maxAutomaticFactorTableSize, 0);
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		fg.initialize();
+		sfg.burnIn();
+		sfg.sample(1000);
+		assertTrue(function.nUpdates > 0);
+		
+		final long threadId = Thread.currentThread().getId();
+		final int nSamples = 2000;
+		final long before = threadBean.getThreadAllocatedBytes(threadId);
+		sfg.sample(nSamples);
+		final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+		
+		assertTrue("allocated " + allocated + " bytes", allocated < nSamples);
+	}
+	
+	/*-----------------
+	 * Helper methods
+	 */
+	
+	private static class SumEnergyFunction extends FactorFunction
+	{
+		private int nUpdates;
+		
+		@Override
+		public double evalEnergy(Value[] values)
+		{
+			double energy = 0;
+			for (Value value : values)
+			{
+				energy += value.getIndex();
+			}
+			return energy * .1;
+		}
+		
+		@Override
+		public boolean useUpdateEnergy(Value[] values, int nChangedValues)
+		{
+			return true;
+		}
+		
+		@Override
+		public double updateEnergy(Value[] values, IndexedValue[] oldValues, double oldEnergy)
+		{
+			++nUpdates;
+			double energy = oldEnergy;
+			for (IndexedValue oldValue : oldValues)
+			{
+				energy += (values[oldValue.getIndex()].getIndex() - oldValue.getValue().getIndex()) * .1;
+			}
+			return energy;
+		}
+	}
+	
+	private static FactorGraph buildGrid(Random rand, int size)
+	{
+		RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.range(1, 2), DiscreteDomain.range(1, 3));
+		FactorGraph fg = gen.buildGrid(size);
+		for (Variable var : fg.getVariables())
+		{
+			Discrete discrete = (Discrete)var;
+			discrete.setInput(randomInput(rand, discrete.getDomain().size()));
+		}
+		return fg;
+	}
+	
+	private static double[] randomInput(Random rand, int size)
+	{
+		double[] input = new double[size];
+		for (int i = 0; i < size; ++i)
+		{
+			input[i] = rand.nextDouble() + .1;
+		}
+		return input;
+	}
+	
+	private static int[] getSampleIndices(FactorGraph fg)
+	{
+		int[] indices = new int[fg.getVariableCount()];
+		int i = 0;
+		for (Variable var : fg.getVariables())
+		{
+			indices[i++] = ((GibbsDiscrete)requireNonNull(var.getSolver())).getCurrentSampleIndex();
+		}
+		return indices;
+	}
+	
+	private static double computeSampleScore(FactorGraph fg)
+	{
+		double score = 0;
+		for (Factor factor : fg.getFactors())
+		{
+			int[] indices = new int[factor.getSiblingCount()];
+			for (int i = 0; i < indices.length; ++i)
+			{
+				indices[i] = ((GibbsDiscrete)requireNonNull(factor.getSibling(i).getSolver())).getCurrentSampleIndex();
+			}
+			score += factor.getFactorTable().getEnergyForIndices(indices);
+		}
+		for (Variable var : fg.getVariables())
+		{
+			Discrete discrete = (Discrete)var;
+			int index = ((GibbsDiscrete)requireNonNull(discrete.getSolver())).getCurrentSampleIndex();
+			score += -Math.log(discrete.getInput()[index]);
+		}
+		return score;
+	}
+}
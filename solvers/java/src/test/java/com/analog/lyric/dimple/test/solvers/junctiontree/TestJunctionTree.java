@@ -19,12 +19,19 @@ package com.analog.lyric.dimple.test.solvers.junctiontree;
 import static java.util.Objects.*;
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
 import org.junit.Test;
 
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
+import com.analog.lyric.dimple.events.DimpleEventHandler;
+import com.analog.lyric.dimple.events.DimpleEventListener;
 import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
 import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
 import com.analog.lyric.dimple.model.core.FactorGraph;
@@ -36,9 +43,13 @@ import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.Discrete;
 import com.analog.lyric.dimple.model.variables.Variable;
 import com.analog.lyric.dimple.model.variables.VariableList;
+import com.analog.lyric.dimple.options.DimpleOptions;
+import com.analog.lyric.dimple.solvers.core.SFactorGraphBase;
 import com.analog.lyric.dimple.solvers.core.SolverBase;
+import com.analog.lyric.dimple.solvers.junctiontree.JunctionTreeOptions;
 import com.analog.lyric.dimple.solvers.junctiontree.JunctionTreeSolver;
 import com.analog.lyric.dimple.solvers.junctiontree.JunctionTreeSolverGraphBase;
+import com.analog.lyric.dimple.solvers.junctiontree.JunctionTreeTransformCacheEvent;
 import com.analog.lyric.dimple.solvers.junctiontreemap.JunctionTreeMAPSolver;
 import com.analog.lyric.dimple.test.DimpleTestBase;
 import com.analog.lyric.dimple.test.model.RandomGraphGenerator;
@@ -122,6 +133,200 @@ public class TestJunctionTree extends DimpleTestBase
 		
 	}
 	
+	@Test
+	public void testIncrementalPropagation()
+	{
+		testIncrementalPropagation(_graphGenerator.buildGrid(4), false);
+		testIncrementalPropagation(_graphGenerator.buildGrid(4), true);
+		testIncrementalPropagation(_graphGenerator.buildGrid(3, 6), false);
+	}
+	
+	private void testIncrementalPropagation(FactorGraph model, boolean useMap)
+	{
+		JunctionTreeSolverGraphBase<?> jtgraph =
+			model.createSolver(useMap ? new JunctionTreeMAPSolver() : new JunctionTreeSolver());
+		jtgraph.getTransformer().random(_rand);
+		model.solve();
+		
+		int nEdges = 0;
+		for (Factor factor : requireNonNull(jtgraph.getDelegate()).getModelObject().getFactors())
+		{
+			nEdges += factor.getSiblingCount();
+		}
+		assertEquals(2 * nEdges, jtgraph.getNumMessagesComputed());
+		
+		// Nothing to recompute if nothing has changed
+		model.solve();
+		assertEquals(0, jtgraph.getNumMessagesComputed());
+
+		// Changing one input only affects messages leading away from it.
+		final VariableList variables = model.getVariables();
+		changeInput(variables.getByIndex(_rand.nextInt(variables.size())).asDiscreteVariable());
+		model.solve();
+		assertTrue(jtgraph.getNumMessagesComputed() <= nEdges);
+		final double[][] beliefs = getBeliefs(model);
+		
+		model.setOption(JunctionTreeOptions.useCliqueTreeEngine, false);
+		model.solve();
+		assertEquals(-1, jtgraph.getNumMessagesComputed());
+		assertBeliefsEqual(getBeliefs(model), beliefs);
+		model.unsetOption(JunctionTreeOptions.useCliqueTreeEngine);
+		
+		// With lazy propagation, messages are only computed when beliefs are requested.
+		model.setOption(JunctionTreeOptions.useLazyPropagation, true);
+		model.solve();
+		assertEquals(0, jtgraph.getNumMessagesComputed());
+		getBeliefs(model);
+		assertEquals(2 * nEdges, jtgraph.getNumMessagesComputed());
+		final Discrete variable = variables.getByIndex(_rand.nextInt(variables.size())).asDiscreteVariable();
+		changeInput(variable);
+		model.solve();
+		assertEquals(0, jtgraph.getNumMessagesComputed());
+		variable.getBelief(); // messages into the changed variable do not depend on it
+		assertEquals(0, jtgraph.getNumMessagesComputed());
+		final double[][] lazyBeliefs = getBeliefs(model);
+		assertTrue(jtgraph.getNumMessagesComputed() <= nEdges);
+		
+		model.setOption(JunctionTreeOptions.useCliqueTreeEngine, false);
+		model.solve();
+		assertBeliefsEqual(getBeliefs(model), lazyBeliefs);
+		model.unsetOption(JunctionTreeOptions.useCliqueTreeEngine);
+		model.unsetOption(JunctionTreeOptions.useLazyPropagation);
+	}
+	
+	@Test
+	public void testTransformCache() throws IOException
+	{
+		final File directory = Files.createTempDirectory("TestJunctionTree").toFile();
+		try
+		{
+			final DimpleEnvironment env = DimpleEnvironment.active();
+			final DimpleEventListener listener = env.createEventListener();
+			final CacheEventHandler handler = new CacheEventHandler();
+			listener.register(handler, JunctionTreeTransformCacheEvent.class, env);
+			
+			final long seed = _rand.nextLong();
+			final FactorGraph model = new RandomGraphGenerator(new Random(seed)).buildGrid(4);
+			model.setOption(DimpleOptions.randomSeed, seed); // same ordering search as model1
+			final JunctionTreeSolverGraphBase<?> jtgraph = requireNonNull(model.setSolverFactory(new JunctionTreeSolver()));
+			model.solve();
+			assertTrue(handler.events.isEmpty());
+
+			// First solve with cache misses and stores the ordering.
+			final FactorGraph model1 = new RandomGraphGenerator(new Random(seed)).buildGrid(4);
+			model1.setOption(JunctionTreeOptions.transformCacheDirectory, directory.getPath());
+			model1.setOption(DimpleOptions.randomSeed, seed);
+			final JunctionTreeSolverGraphBase<?> jtgraph1 =
+				requireNonNull(model1.setSolverFactory(new JunctionTreeSolver()));
+			model1.solve();
+			assertEquals(1, handler.events.size());
+			final JunctionTreeTransformCacheEvent miss = handler.events.get(0);
+			assertSame(jtgraph1, miss.getSource());
+			assertSame(model1, miss.getModelObject());
+			assertFalse(miss.isHit());
+			assertTrue(miss.file().isFile());
+			assertEquals(directory, miss.file().getParentFile());
+			assertTrue(miss.toString(0).contains("cache miss"));
+			assertBeliefsEqual(getBeliefs(model), getBeliefs(model1));
+			
+			// Solving again does not redo the transformation.
+			model1.solve();
+			assertEquals(1, handler.events.size());
+			
+			// Identical model reuses the ordering.
+			final FactorGraph model2 = new RandomGraphGenerator(new Random(seed)).buildGrid(4);
+			model2.setOption(JunctionTreeOptions.transformCacheDirectory, directory.getPath());
+			final JunctionTreeSolverGraphBase<?> jtgraph2 =
+				requireNonNull(model2.setSolverFactory(new JunctionTreeSolver()));
+			model2.solve();
+			assertEquals(2, handler.events.size());
+			final JunctionTreeTransformCacheEvent hit = handler.events.get(1);
+			assertTrue(hit.isHit());
+			assertEquals(miss.key(), hit.key());
+			assertTrue(hit.toString(0).contains("cache hit"));
+			assertBeliefsEqual(getBeliefs(model1), getBeliefs(model2));
+			final FactorGraph target1 = requireNonNull(jtgraph1.getTransformMap()).target();
+			final FactorGraph target2 = requireNonNull(jtgraph2.getTransformMap()).target();
+			assertEquals(target1.getVariableCount(), target2.getVariableCount());
+			assertEquals(target1.getFactorCount(), target2.getFactorCount());
+			assertEquals(requireNonNull(jtgraph.getTransformMap()).target().getFactorCount(), target1.getFactorCount());
+			
+			// Different search settings do not reuse the ordering.
+			final FactorGraph model2b = new RandomGraphGenerator(new Random(seed)).buildGrid(4);
+			model2b.setOption(JunctionTreeOptions.transformCacheDirectory, directory.getPath());
+			model2b.setOption(JunctionTreeOptions.maxTransformationAttempts, 2);
+			model2b.setSolverFactory(new JunctionTreeSolver());
+			model2b.solve();
+			assertEquals(3, handler.events.size());
+			assertFalse(handler.events.get(2).isHit());
+			assertNotEquals(miss.key(), handler.events.get(2).key());
+			
+			// Unreadable entry falls back to computing the ordering.
+			assertTrue(miss.file().delete());
+			assertTrue(miss.file().mkdir());
+			final FactorGraph model3 = new RandomGraphGenerator(new Random(seed)).buildGrid(4);
+			model3.setOption(JunctionTreeOptions.transformCacheDirectory, directory.getPath());
+			model3.setSolverFactory(new JunctionTreeSolver());
+			model3.solve();
+			assertEquals(4, handler.events.size());
+			assertFalse(handler.events.get(3).isHit());
+			assertBeliefsEqual(getBeliefs(model1), getBeliefs(model3));
+		}
+		finally
+		{
+			final File[] files = directory.listFiles();
+			if (files != null)
+			{
+				for (File file : files)
+				{
+					file.delete();
+				}
+			}
+			directory.delete();
+		}
+	}
+	
+	static class CacheEventHandler extends DimpleEventHandler<JunctionTreeTransformCacheEvent>
+	{
+		final List<JunctionTreeTransformCacheEvent> events = new ArrayList<>();
+		
+		@Override
+		public void handleEvent(JunctionTreeTransformCacheEvent event)
+		{
+			events.add(event);
+		}
+	}
+	
+	private void changeInput(Discrete variable)
+	{
+		final double[] input = new double[variable.getDomain().size()];
+		for (int i = 0; i < input.length; ++i)
+		{
+			input[i] = _rand.nextDouble() + .01;
+		}
+		variable.setInput(input);
+	}
+	
+	private double[][] getBeliefs(FactorGraph model)
+	{
+		final VariableList variables = model.getVariables();
+		final double[][] beliefs = new double[variables.size()][];
+		for (int i = 0; i < beliefs.length; ++i)
+		{
+			beliefs[i] = variables.getByIndex(i).asDiscreteVariable().getBelief();
+		}
+		return beliefs;
+	}
+	
+	private void assertBeliefsEqual(double[][] expected, double[][] actual)
+	{
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; ++i)
+		{
+			assertArrayEquals(expected[i], actual[i], 1e-10);
+		}
+	}
+	
 	private void testGraph(FactorGraph model)
 	{
 		try
@@ -145,7 +350,15 @@ public class TestJunctionTree extends DimpleTestBase
 	
 	private void testGraphImpl(FactorGraph model, boolean useMap)
 	{
+		testGraphImpl(model, useMap, true);
 		testGraphImpl(model, useMap, false);
+	}
+	
+	private void testGraphImpl(FactorGraph model, boolean useMap, boolean useEngine)
+	{
+		model.setOption(JunctionTreeOptions.useCliqueTreeEngine, useEngine);
+		
+		testGraphImpl(model, useMap, useEngine, false);
 		
 		// Choose a variable at random and give it a fixed value.
 		final VariableList variables = model.getVariables();
@@ -154,15 +367,16 @@ public class TestJunctionTree extends DimpleTestBase
 		final int valueIndex = _rand.nextInt(variable.getDomain().size());
 		variable.asDiscreteVariable().setFixedValueIndex(valueIndex);
 		
-		testGraphImpl(model, useMap, false);
+		testGraphImpl(model, useMap, useEngine, false);
 		
-		testGraphImpl(model, useMap, true);
+		testGraphImpl(model, useMap, useEngine, true);
 		
 		// Clear fixed value
 		variable.setInputObject(null);
+		model.unsetOption(JunctionTreeOptions.useCliqueTreeEngine);
 	}
 	
-	private void testGraphImpl(FactorGraph model, boolean useMap, boolean useConditioning)
+	private void testGraphImpl(FactorGraph model, boolean useMap, boolean useEngine, boolean useConditioning)
 	{
 		JunctionTreeSolverGraphBase<?> jtgraph =
 			model.createSolver(useMap ? new JunctionTreeMAPSolver() : new JunctionTreeSolver());
@@ -170,6 +384,9 @@ public class TestJunctionTree extends DimpleTestBase
 		jtgraph.getTransformer().random(_rand); // set random generator so we can reproduce failures
 		model.solve();
 		
+		// The delegate solver only iterates when the clique tree engine is not used.
+		assertEquals(useEngine ? 0 : 1, ((SFactorGraphBase)requireNonNull(jtgraph.getDelegate())).getNumIterationsUsed());
+		
 		FactorGraph transformedModel = requireNonNull(jtgraph.getDelegate()).getModelObject();
 		RandomGraphGenerator.labelFactors(transformedModel);
 		assertTrue(transformedModel.isForest());
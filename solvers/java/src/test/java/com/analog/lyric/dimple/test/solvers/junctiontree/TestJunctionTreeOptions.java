@@ -45,6 +45,9 @@ public class TestJunctionTreeOptions extends DimpleTestBase
 		assertTrue(JunctionTreeOptions.variableEliminatorCostFunctions.defaultValue().isEmpty());
 		assertEquals((Integer)JunctionTreeTransform.DEFAULT_MAX_TRANSFORMATION_ATTEMPTS,
 			JunctionTreeOptions.maxTransformationAttempts.defaultValue());
+		assertEquals(true, JunctionTreeOptions.useCliqueTreeEngine.defaultValue());
+		assertEquals(false, JunctionTreeOptions.useLazyPropagation.defaultValue());
+		assertEquals("", JunctionTreeOptions.transformCacheDirectory.defaultValue());
 		
 		FactorGraph fg = new FactorGraph();
 		
@@ -41,6 +41,8 @@ public class TestLPOptions extends DimpleTestBase
 		// Test default values
 		assertEquals("", LPOptions.LPSolver.defaultValue());
 		assertEquals("", LPOptions.MatlabLPSolver.defaultValue());
+		assertFalse(LPOptions.BranchAndBound.defaultValue());
+		assertEquals(10000, (int)LPOptions.MaxBranchAndBoundNodes.defaultValue());
 		
 		FactorGraph fg = new FactorGraph();
 		LPOptions.LPSolver.set(fg, "GLPK");
@@ -20,6 +20,13 @@ import static java.util.Objects.*;
 import static org.junit.Assert.*;
 import static org.junit.matchers.JUnitMatchers.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.sf.javailp.OptType;
+import net.sf.javailp.Problem;
+
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -29,15 +36,21 @@ import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
 import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.model.domains.DiscreteDomain;
 import com.analog.lyric.dimple.model.domains.RealDomain;
+import com.analog.lyric.dimple.model.factors.DiscreteFactor;
+import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.model.variables.Discrete;
 import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.model.variables.Variable;
 import com.analog.lyric.dimple.solvers.core.SolverBase;
+import com.analog.lyric.dimple.solvers.lp.LPOptions;
 import com.analog.lyric.dimple.solvers.lp.LPSolver;
 import com.analog.lyric.dimple.solvers.lp.LPSolverGraph;
 import com.analog.lyric.dimple.solvers.lp.Solver;
+import com.analog.lyric.dimple.solvers.lp.SparseSimplex;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
 import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.dimple.test.model.RandomGraphGenerator;
 
 public class TestLPSolver extends DimpleTestBase
 {
@@ -253,6 +266,115 @@ public class TestLPSolver extends DimpleTestBase
 		bug51.testLPState();
 	}
 
+	@Test
+	public void testSimplex()
+	{
+		// On a tree the LP relaxation is tight.
+		Random rand = new Random(42);
+		RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.range(1, 2), DiscreteDomain.range(1, 3));
+		FactorGraph tree = gen.buildRandomTree(10);
+		setRandomInputs(tree, rand);
+		LPSolverGraph sfg = requireNonNull(tree.setSolverFactory(new LPSolver()));
+		sfg.setLPSolverName("Simplex");
+		assertNull(sfg.getMatlabSolveWrapper());
+		tree.solve();
+		assertIntegral(tree);
+		assertEquals(maxScore(tree), solutionScore(tree), 1e-10);
+		
+		// An odd cycle of factors that prefer unequal values has a fractional relaxation.
+		FactorGraph cycle = new FactorGraph();
+		Discrete[] vars = new Discrete[5];
+		for (int i = 0; i < vars.length; ++i)
+		{
+			vars[i] = new Discrete(DiscreteDomain.bit());
+			vars[i].setInput(1 + .1 * rand.nextDouble(), 1 + .1 * rand.nextDouble());
+		}
+		for (int i = 0; i < vars.length; ++i)
+		{
+			cycle.addFactor(new int[][] { {0,0}, {0,1}, {1,0}, {1,1} },
+				new double[] { 1, 3 + rand.nextDouble(), 3 + rand.nextDouble(), 1 }, vars[i], vars[(i + 1) % vars.length]);
+		}
+		sfg = requireNonNull(cycle.setSolverFactory(new LPSolver()));
+		sfg.setLPSolverName("Simplex");
+		cycle.solve();
+		assertEquals(.5, vars[0].getBelief()[0], 1e-10);
+		
+		sfg.setOption(LPOptions.BranchAndBound, true);
+		cycle.solve();
+		assertIntegral(cycle);
+		assertEquals(maxScore(cycle), solutionScore(cycle), 1e-10);
+		
+		// With only one node the relaxed solution is returned.
+		sfg.setOption(LPOptions.MaxBranchAndBoundNodes, 1);
+		cycle.solve();
+		assertEquals(.5, vars[0].getBelief()[0], 1e-10);
+	}
+	
+	@Test
+	public void testSimplexWarmStart()
+	{
+		Random rand = new Random(23);
+		RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.range(1, 3));
+		FactorGraph fg = gen.buildGrid(4);
+		setRandomInputs(fg, rand);
+		LPSolverGraph sfg = requireNonNull(fg.setSolverFactory(new LPSolver()));
+		
+		SparseSimplex simplex = new SparseSimplex();
+		sfg.buildLPState();
+		assertFalse(simplex.setProblem(requireNonNull(sfg.getObjectiveFunction()), requireNonNull(sfg.getConstraints())));
+		simplex.solve();
+		assertFalse(simplex.wasWarmStarted());
+		final int coldIterations = simplex.getIterationCount();
+		
+		// Changing non-zero inputs only changes the objective.
+		Discrete var = (Discrete)fg.getVariables().iterator().next();
+		var.setInput(.2, .3, .5);
+		sfg.buildLPState();
+		double[] objective = requireNonNull(sfg.getObjectiveFunction());
+		assertTrue(simplex.setProblem(objective, requireNonNull(sfg.getConstraints())));
+		double[] warm = simplex.solve();
+		assertTrue(simplex.wasWarmStarted());
+		assertTrue(simplex.getIterationCount() < coldIterations);
+		
+		SparseSimplex coldSimplex = new SparseSimplex();
+		coldSimplex.setProblem(objective, requireNonNull(sfg.getConstraints()));
+		double[] cold = coldSimplex.solve();
+		assertEquals(dot(objective, cold), dot(objective, warm), 1e-9);
+		
+		// Zero inputs remove LP variables, so the constraints change.
+		var.setInput(0, .5, .5);
+		sfg.buildLPState();
+		assertFalse(simplex.setProblem(requireNonNull(sfg.getObjectiveFunction()), requireNonNull(sfg.getConstraints())));
+		simplex.solve();
+		assertFalse(simplex.wasWarmStarted());
+	}
+	
+	@Test
+	public void testJavaILPProblem()
+	{
+		Random rand = new Random(7);
+		RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.range(1, 3));
+		FactorGraph fg = gen.buildRandomTree(4);
+		setRandomInputs(fg, rand);
+		LPSolverGraph sfg = requireNonNull(fg.setSolverFactory(new LPSolver()));
+		
+		// The objective is the log of the weights, which must be maximized to find the MAP solution.
+		Problem problem = sfg.createJavaILPProblem();
+		assertEquals(OptType.MAX, problem.getOptType());
+		double[] objective = requireNonNull(sfg.getObjectiveFunction());
+		assertEquals(objective.length, problem.getVariablesCount());
+		assertEquals(objective.length, problem.getObjective().size());
+		assertEquals(requireNonNull(sfg.getConstraints()).size(), problem.getConstraintsCount());
+		for (int i = 0; i < objective.length; ++i)
+		{
+			assertEquals(0.0, problem.getVarLowerBound(i).doubleValue(), 0.0);
+			assertEquals(1.0, problem.getVarUpperBound(i).doubleValue(), 0.0);
+		}
+	}
+	
 	@Test
 	@Ignore
 	public void testGLPK()
@@ -279,4 +401,103 @@ public class TestLPSolver extends DimpleTestBase
 		solver.setLPSolverName("GLPK");
 		solver.solve();
 	}
+	
+	/*-----------------
+	 * Helper methods
+	 */
+	
+	private static void setRandomInputs(FactorGraph fg, Random rand)
+	{
+		for (Variable var : fg.getVariables())
+		{
+			Discrete discrete = (Discrete)var;
+			double[] input = new double[discrete.getDomain().size()];
+			for (int i = 0; i < input.length; ++i)
+			{
+				input[i] = rand.nextDouble() + .1;
+			}
+			discrete.setInput(input);
+		}
+	}
+	
+	private static void assertIntegral(FactorGraph fg)
+	{
+		for (Variable var : fg.getVariables())
+		{
+			for (double belief : ((Discrete)var).getBelief())
+			{
+				assertTrue(belief < 1e-9 || belief > 1 - 1e-9);
+			}
+		}
+	}
+	
+	/**
+	 * Log probability of assignment in which each variable takes value with largest belief.
+	 */
+	private static double solutionScore(FactorGraph fg)
+	{
+		List<Variable> vars = new ArrayList<Variable>(fg.getVariables());
+		int[] assignment = new int[vars.size()];
+		for (int i = 0; i < assignment.length; ++i)
+		{
+			assignment[i] = ((Discrete)vars.get(i)).getValueIndex();
+		}
+		return score(fg, vars, assignment);
+	}
+	
+	/**
+	 * Log probability of the MAP assignment computed by exhaustive search.
+	 */
+	private static double maxScore(FactorGraph fg)
+	{
+		List<Variable> vars = new ArrayList<Variable>(fg.getVariables());
+		int[] assignment = new int[vars.size()];
+		double best = Double.NEGATIVE_INFINITY;
+		while (true)
+		{
+			best = Math.max(best, score(fg, vars, assignment));
+			int i = 0;
+			for (; i < assignment.length; ++i)
+			{
+				if (++assignment[i] < ((Discrete)vars.get(i)).getDomain().size())
+				{
+					break;
+				}
+				assignment[i] = 0;
+			}
+			if (i == assignment.length)
+			{
+				return best;
+			}
+		}
+	}
+	
+	private static double score(FactorGraph fg, List<Variable> vars, int[] assignment)
+	{
+		double score = 0;
+		for (int i = 0; i < assignment.length; ++i)
+		{
+			score += Math.log(((Discrete)vars.get(i)).getInput()[assignment[i]]);
+		}
+		for (Factor factor : fg.getFactors())
+		{
+			int[] indices = new int[factor.getSiblingCount()];
+			for (int i = 0; i < indices.length; ++i)
+			{
+				indices[i] = assignment[vars.indexOf(factor.getSibling(i))];
+			}
+			score += Math.log(((DiscreteFactor)factor).getFactorTable().getWeightForIndices(indices));
+		}
+		return score;
+	}
+	
+	private static double dot(double[] x, double[] y)
+	{
+		double sum = 0;
+		for (int i = 0; i < x.length; ++i)
+		{
+			sum += x[i] * y[i];
+		}
+		return sum;
+	}
 }
@@ -0,0 +1,126 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.dimple.test.solvers.particleBP;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.Gamma;
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.Sum;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.RealDomain;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.solvers.particleBP.ParticleBPOptions;
+import com.analog.lyric.dimple.solvers.particleBP.ParticleBPReal;
+import com.analog.lyric.dimple.solvers.particleBP.ParticleBPSolver;
+import com.analog.lyric.dimple.solvers.particleBP.ParticleBPSolverGraph;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for cached factor weights and multithreaded updates in particle BP.
+ * 
+ * @since 0.08
+ * @see ParticleBPOptions#maxCachedFactorWeights
+ */
+public class TestParticleBPFactorWeights extends DimpleTestBase
+{
+	@Test
+	public void testCachedWeights()
+	{
+		for (int iterationsBetweenResampling : new int[] { 1, 3 })
+		{
+			FactorGraph fg = buildGraph();
+			fg.setOption(ParticleBPOptions.iterationsBetweenResampling, iterationsBetweenResampling);
+			double[][] expected = solve(fg, 0, false);
+			
+			assertResultsEqual(expected, solve(fg, 1<<18, false));
+			
+			// Weights not cached if there are too many combinations
+			assertResultsEqual(expected, solve(fg, 5*5*5 - 1, false));
+		}
+	}
+
+	@Test
+	public void testMultithreading()
+	{
+		FactorGraph fg = buildGraph();
+		fg.setOption(ParticleBPOptions.iterationsBetweenResampling, 2);
+		
+		double[][] expected = solve(fg, 1<<18, false);
+		assertResultsEqual(expected, solve(fg, 1<<18, true));
+		assertResultsEqual(expected, solve(fg, 0, true));
+	}
+	
+	/*-----------------
+	 * Helper methods
+	 */
+
+	private static FactorGraph buildGraph()
+	{
+		FactorGraph fg = new FactorGraph();
+		fg.setOption(ParticleBPOptions.numParticles, 5);
+		fg.setOption(ParticleBPOptions.resamplingUpdatesPerParticle, 3);
+		
+		Real[] vars = new Real[6];
+		for (int i = 0; i < vars.length; ++i)
+		{
+			vars[i] = new Real(RealDomain.create(i < 4 ? -3 : 0, 3));
+			vars[i].setName("r" + i);
+		}
+		vars[0].setInputObject(new Normal(1, 2));
+		vars[1].setInputObject(new Normal(-1, 1));
+		
+		fg.addFactor(new Sum(.5), vars[2], vars[0], vars[1]);
+		fg.addFactor(new Normal(), vars[2], vars[4], vars[3]);
+		fg.addFactor(new Gamma(2, 1), vars[5]);
+		fg.addFactor(new Normal(0, 1), vars[3], vars[5]);
+		return fg;
+	}
+	
+	private static double[][] solve(FactorGraph fg, int maxCachedWeights, boolean multithreaded)
+	{
+		ParticleBPSolverGraph sfg = requireNonNull(fg.setSolverFactory(new ParticleBPSolver()));
+		sfg.setOption(ParticleBPOptions.maxCachedFactorWeights, maxCachedWeights);
+		sfg.setNumIterations(7);
+		sfg.useMultithreading(multithreaded);
+		sfg.setSeed(42);
+		fg.solve();
+		
+		double[][] results = new double[2 * fg.getVariableCount()][];
+		int i = 0;
+		for (Real var : fg.getVariables().toArray(new Real[0]))
+		{
+			ParticleBPReal svar = (ParticleBPReal)var.getSolver();
+			results[i++] = svar.getParticleValues();
+			results[i++] = svar.getBelief();
+		}
+		return results;
+	}
+	
+	private static void assertResultsEqual(double[][] expected, double[][] actual)
+	{
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; ++i)
+		{
+			assertArrayEquals(expected[i], actual[i], 1e-10);
+		}
+	}
+}
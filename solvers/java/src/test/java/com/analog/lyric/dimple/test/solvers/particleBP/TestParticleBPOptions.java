@@ -54,6 +54,7 @@ public class TestParticleBPOptions extends DimpleTestBase
 		assertEquals((Integer)1, ParticleBPOptions.iterationsBetweenResampling.defaultValue());
 		assertEquals((Integer)1, ParticleBPOptions.numParticles.defaultValue());
 		assertEquals((Integer)1, ParticleBPOptions.resamplingUpdatesPerParticle.defaultValue());
+		assertEquals((Integer)(1<<18), ParticleBPOptions.maxCachedFactorWeights.defaultValue());
 		assertEquals(1.0, ParticleBPOptions.annealingHalfLife.defaultValue(), 0.0);
 		assertEquals(NormalProposalKernel.class, ParticleBPOptions.proposalKernel.defaultValue());
 		assertEquals(new OptionDoubleList(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY),
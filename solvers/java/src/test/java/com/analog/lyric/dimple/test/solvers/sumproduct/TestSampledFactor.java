@@ -0,0 +1,221 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.sumproduct;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.MultivariateNormal;
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.model.variables.RealJoint;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.schedulers.FloodingScheduler;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.MultivariateNormalParameters;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.NormalParameters;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.solvers.gibbs.ISolverVariableGibbs;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductOptions;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
+import com.analog.lyric.dimple.solvers.sumproduct.sampledfactor.SampledFactor;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.math.DimpleRandomGenerator;
+
+/**
+ * Tests for {@link SampledFactor}
+ * 
+ * @since 0.08
+ */
+public class TestSampledFactor extends DimpleTestBase
+{
+	/**
+	 * Energy {@code 2(a - b)^2}, which has no custom sum-product implementation.
+	 */
+	private static class Coupling extends FactorFunction
+	{
+		@Override
+		public double evalEnergy(Value[] values)
+		{
+			final double diff = values[0].getDouble() - values[1].getDouble();
+			return 2 * diff * diff;
+		}
+	}
+	
+	/**
+	 * Energy {@code 2|a - b|^2} for joint variables.
+	 */
+	private static class JointCoupling extends FactorFunction
+	{
+		@Override
+		public double evalEnergy(Value[] values)
+		{
+			final double[] a = values[0].getDoubleArray(), b = values[1].getDoubleArray();
+			double energy = 0;
+			for (int i = 0; i < a.length; ++i)
+			{
+				final double diff = a[i] - b[i];
+				energy += 2 * diff * diff;
+			}
+			return energy;
+		}
+	}
+	
+	@Test
+	public void testWarmStart()
+	{
+		final int burnInScans = 100, numSamples = 1000, iterations = 3;
+		
+		for (boolean shareSamples : new boolean[] { false, true })
+		{
+			for (boolean warmStart : new boolean[] { false, true })
+			{
+				DimpleRandomGenerator.setSeed(42);
+				FactorGraph fg = new FactorGraph();
+				SumProductSolverGraph sfg = requireNonNull(fg.setSolverFactory(new SumProductSolver()));
+				Real a = new Real(), b = new Real();
+				a.setInputObject(new Normal(1, 4));
+				Factor factor = fg.addFactor(new Coupling(), a, b);
+				fg.setScheduler(new FloodingScheduler());	// Update all edges of factor together
+				
+				sfg.setOption(BPOptions.iterations, iterations);
+				sfg.setOption(GibbsOptions.burnInScans, burnInScans);
+				sfg.setOption(GibbsOptions.numSamples, numSamples);
+				sfg.setOption(SumProductOptions.sampledFactorWarmStart, warmStart);
+				sfg.setOption(SumProductOptions.sampledFactorWarmStartBurnInScans, 0);
+				sfg.setOption(SumProductOptions.sampledFactorShareSamples, shareSamples);
+				
+				SampledFactor sfactor = (SampledFactor)requireNonNull(factor.getSolver());
+				GibbsSolverGraph messageSolver = (GibbsSolverGraph)requireNonNull(sfactor.getMessageGraph().getSolver());
+				ISolverVariableGibbs privateA =
+					requireNonNull(messageSolver.getSolverVariable(sfactor.getMessageGraph().getFactors().iterator().next().getSibling(0)));
+				
+				fg.solve();
+				
+				// Update counts are reset when the message graph is initialized, so only reflect the last run, which
+				// updates each variable once per scan.
+				assertEquals(warmStart ? numSamples : burnInScans + numSamples, privateA.getUpdateCount());
+				
+				// Message to b is approximately N(1, variance 1/4 + 1/4)
+				NormalParameters msg = (NormalParameters)requireNonNull(factor.getSolver().getOutputMsg(1));
+				assertEquals(1.0, msg.getMean(), .15);
+				assertEquals(.5, msg.getVariance(), .15);
+				
+				// Reinitialization should restart the chains
+				sfg.setOption(BPOptions.iterations, 1);
+				fg.solve();
+				assertEquals(burnInScans + numSamples, privateA.getUpdateCount());
+			}
+		}
+	}
+	
+	@Test
+	public void testShareSamples()
+	{
+		DimpleRandomGenerator.setSeed(23);
+		FactorGraph fg = new FactorGraph();
+		Discrete d = new Discrete(DiscreteDomain.range(0, 1));
+		Real x = new Real();
+		d.setInput(.3, .7);
+		x.setInputObject(new Normal(.8, 4));
+		Factor factor = fg.addFactor(new Coupling(), d, x);
+		fg.setScheduler(new FloodingScheduler());
+		SumProductSolverGraph sfg = requireNonNull(fg.setSolverFactory(new SumProductSolver()));
+		sfg.setOption(BPOptions.iterations, 1);
+		sfg.setOption(GibbsOptions.numSamples, 4000);
+		sfg.setOption(SumProductOptions.sampledFactorShareSamples, true);
+		fg.solve();
+		
+		// Message to d is proportional to exp(-(d - .8)^2)
+		double[] expected = new double[] { Math.exp(-.64), Math.exp(-.04) };
+		final double sum = expected[0] + expected[1];
+		expected[0] /= sum;
+		expected[1] /= sum;
+		assertArrayEquals(expected, (double[])requireNonNull(factor.getSolver().getOutputMsg(0)), .05);
+		
+		// Message to x is a mixture of normals with means 0 and 1, variance 1/4 and weights .3, .7
+		NormalParameters msg = (NormalParameters)requireNonNull(factor.getSolver().getOutputMsg(1));
+		assertEquals(.7, msg.getMean(), .1);
+		assertEquals(.25 + .21, msg.getVariance(), .1);
+	}
+	
+	@Test
+	public void testMultivariateShareSamples()
+	{
+		DimpleRandomGenerator.setSeed(17);
+		FactorGraph fg = new FactorGraph();
+		RealJoint a = new RealJoint(2), b = new RealJoint(2);
+		a.setInputObject(new MultivariateNormal(new double[] { 1, -1 }, new double[][] { { .25, 0 }, { 0, .25 } }));
+		b.setInputObject(new MultivariateNormal(new double[] { 0, 0 }, new double[][] { { 4, 0 }, { 0, 4 } }));
+		Factor factor = fg.addFactor(new JointCoupling(), a, b);
+		fg.setScheduler(new FloodingScheduler());
+		SumProductSolverGraph sfg = requireNonNull(fg.setSolverFactory(new SumProductSolver()));
+		sfg.setOption(BPOptions.iterations, 3);
+		sfg.setOption(GibbsOptions.numSamples, 4000);
+		sfg.setOption(SumProductOptions.sampledFactorShareSamples, true);
+		
+		// Repeat to check that the results of previous updates do not leak into later ones
+		for (int run = 0; run < 2; ++run)
+		{
+			fg.solve();
+			
+			// Message to b is approximately N([1, -1], (1/4 + 1/4) I) after removing the input on b
+			MultivariateNormalParameters msg =
+				(MultivariateNormalParameters)requireNonNull(factor.getSolver().getOutputMsg(1));
+			assertArrayEquals(new double[] { 1, -1 }, msg.getMean(), .15);
+			double[][] covariance = msg.getCovariance();
+			assertArrayEquals(new double[] { .5, 0 }, covariance[0], .15);
+			assertArrayEquals(new double[] { 0, .5 }, covariance[1], .15);
+		}
+	}
+	
+	@Test
+	public void testMultithreading()
+	{
+		DimpleRandomGenerator.setSeed(7);
+		FactorGraph fg = new FactorGraph();
+		SumProductSolverGraph sfg = requireNonNull(fg.setSolverFactory(new SumProductSolver()));
+		final int n = 20;
+		Factor[] factors = new Factor[n];
+		for (int i = 0; i < n; ++i)
+		{
+			Real a = new Real(), b = new Real();
+			a.setInputObject(new Normal(i, 4));
+			factors[i] = fg.addFactor(new Coupling(), a, b);
+		}
+		fg.setOption(BPOptions.iterations, 3);
+		fg.setOption(SumProductOptions.sampledFactorWarmStart, true);
+		sfg.useMultithreading(true);
+		fg.solve();
+		
+		for (int i = 0; i < n; ++i)
+		{
+			NormalParameters msg = (NormalParameters)requireNonNull(factors[i].getSolver().getOutputMsg(1));
+			assertEquals(i, msg.getMean(), .15);
+			assertEquals(.5, msg.getVariance(), .15);
+		}
+	}
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+
+package com.analog.lyric.dimple.test.solvers.sumproduct;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductDiscrete;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductOptions;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.dimple.test.model.RandomGraphGenerator;
+
+/**
+ * Tests for {@link SumProductOptions#logDomainVariableUpdates}.
+ * 
+ * @since 0.08
+ */
+public class TestSumProductDiscreteUpdates extends DimpleTestBase
+{
+	@Test
+	public void testUpdates()
+	{
+		// Ordinary messages, including some zeros
+		testUpdates(new Random(42), 0.0, 1e-12);
+		
+		// Messages whose elements span a huge range, which should force use of the log domain
+		// for some updates.
+		testUpdates(new Random(23), 1e-300, 1e-12);
+	}
+	
+	@Test
+	public void testSolve()
+	{
+		FactorGraph fg1 = buildGraph(new Random(7));
+		FactorGraph fg2 = buildGraph(new Random(7));
+		fg1.setOption(SumProductOptions.logDomainVariableUpdates, true);
+		fg1.setOption(BPOptions.iterations, 20);
+		fg2.setOption(BPOptions.iterations, 20);
+		fg1.setOption(BPOptions.damping, .2);
+		fg2.setOption(BPOptions.damping, .2);
+		fg1.solve();
+		fg2.solve();
+		
+		Variable[] vars1 = fg1.getVariables().toArray(new Variable[0]);
+		Variable[] vars2 = fg2.getVariables().toArray(new Variable[0]);
+		for (int i = 0; i < vars1.length; ++i)
+		{
+			assertArrayEquals(((Discrete)vars1[i]).getBelief(), ((Discrete)vars2[i]).getBelief(), 1e-12);
+		}
+	}
+	
+	/*-----------------
+	 * Helper methods
+	 */
+	
+	private void testUpdates(Random rand, double tinyValue, double tolerance)
+	{
+		final long seed = rand.nextLong();
+		FactorGraph fg1 = buildGraph(new Random(seed));
+		FactorGraph fg2 = buildGraph(new Random(seed));
+		fg1.setOption(SumProductOptions.logDomainVariableUpdates, true);
+		fg1.initialize();
+		fg2.initialize();
+		
+		Variable[] vars1 = fg1.getVariables().toArray(new Variable[0]);
+		Variable[] vars2 = fg2.getVariables().toArray(new Variable[0]);
+		assertEquals(vars1.length, vars2.length);
+		
+		for (int i = 0; i < vars1.length; ++i)
+		{
+			SumProductDiscrete sv1 = (SumProductDiscrete)requireNonNull(vars1[i].getSolver());
+			SumProductDiscrete sv2 = (SumProductDiscrete)requireNonNull(vars2[i].getSolver());
+			final int size = ((Discrete)vars1[i]).getDomain().size();
+			final int nPorts = vars1[i].getSiblingCount();
+			
+			for (int port = 0; port < nPorts; ++port)
+			{
+				double[] msg = randomMessage(rand, size, tinyValue);
+				sv1.setInputMsgValues(port, msg);
+				sv2.setInputMsgValues(port, msg);
+			}
+			
+			for (int port = 0; port < nPorts; ++port)
+			{
+				sv1.updateEdge(port);
+				sv2.updateEdge(port);
+				assertArrayEquals((double[])sv1.getOutputMsg(port), (double[])sv2.getOutputMsg(port), tolerance);
+			}
+			
+			sv1.update();
+			sv2.update();
+			for (int port = 0; port < nPorts; ++port)
+			{
+				assertArrayEquals((double[])sv1.getOutputMsg(port), (double[])sv2.getOutputMsg(port), tolerance);
+			}
+			
+			assertArrayEquals(sv1.getBelief(), sv2.getBelief(), tolerance);
+		}
+	}
+	
+	private static FactorGraph buildGraph(Random rand)
+	{
+		RandomGraphGenerator gen = new RandomGraphGenerator(rand);
+		gen.domains(DiscreteDomain.range(1, 2), DiscreteDomain.range(1, 5), DiscreteDomain.range(1, 20));
+		FactorGraph fg = gen.maxBranches(6).buildRandomTree(20);
+		fg.setSolverFactory(new SumProductSolver());
+		for (Variable var : fg.getVariables())
+		{
+			Discrete discrete = (Discrete)var;
+			double[] input = randomMessage(rand, discrete.getDomain().size(), 0.0);
+			discrete.setInput(input);
+		}
+		return fg;
+	}
+	
+	private static double[] randomMessage(Random rand, int size, double tinyValue)
+	{
+		double[] msg = new double[size];
+		double sum = 0;
+		for (int i = 0; i < size; ++i)
+		{
+			double r = rand.nextDouble();
+			if (r < .1)
+			{
+				msg[i] = tinyValue;
+			}
+			else
+			{
+				msg[i] = r;
+			}
+			sum += msg[i];
+		}
+		if (sum == 0)
+		{
+			msg[0] = sum = 1;
+		}
+		for (int i = 0; i < size; ++i)
+		{
+			msg[i] /= sum;
+		}
+		return msg;
+	}
+}
@@ -36,6 +36,7 @@ import com.analog.lyric.dimple.model.variables.VariableList;
 import com.analog.lyric.dimple.options.BPOptions;
 import com.analog.lyric.dimple.schedulers.FloodingScheduler;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph;
+import com.analog.lyric.dimple.solvers.optimizedupdate.FactorUpdatePlanCache;
 import com.analog.lyric.dimple.solvers.optimizedupdate.UpdateApproach;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductTableFactor;
@@ -417,6 +418,105 @@ public class TestSumProductOptimizedUpdate extends DimpleTestBase
 		automaticHelper(density, multithreaded);
 	}
 
+	/**
+	 * @since 0.08
+	 */
+	@Test
+	public void testUpdatePlanCache()
+	{
+		final Random rand = new Random(0);
+		final FactorGraph fg = new FactorGraph();
+		final DiscreteDomain domain = DiscreteDomain.range(1, 3);
+		final Discrete[] vars = new Discrete[6];
+		for (int i = 0; i < vars.length; ++i)
+		{
+			vars[i] = new Discrete(domain);
+			vars[i].setInput(rand.nextDouble(), rand.nextDouble(), rand.nextDouble());
+		}
+		final IFactorTable shared = FactorTable.create(domain, domain, domain);
+		shared.setWeightsDense(randomWeights(rand, shared.getDomainIndexer().getCardinality()));
+		final IFactorTable other = FactorTable.create(domain, domain, domain);
+		other.setWeightsDense(randomWeights(rand, other.getDomainIndexer().getCardinality()));
+		fg.addFactor(shared, vars[0], vars[1], vars[2]);
+		fg.addFactor(shared, vars[2], vars[3], vars[4]);
+		final Factor otherFactor = fg.addFactor(other, vars[4], vars[5], vars[0]);
+
+		final SumProductSolverGraph sfg = getSumProductSolverGraph(fg);
+		sfg.setOption(BPOptions.updateApproach, UpdateApproach.OPTIMIZED);
+		final FactorUpdatePlanCache cache = sfg.getUpdatePlanCache();
+
+		// One plan is built for each table, not for each factor.
+		sfg.initialize();
+		assertEquals(2, cache.size());
+		assertEquals(0, cache.getHits());
+		assertEquals(2, cache.getMisses());
+
+		// Plans are reused when the graph is initialized again.
+		sfg.initialize();
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+
+		// In-place weight changes do not invalidate plans, and the reused plans see the new weights.
+		shared.replaceWeightsSparse(randomWeights(rand, shared.sparseSize()));
+		fg.solve();
+		assertEquals(4, cache.getHits());
+		final double[][] optimizedBeliefs = beliefs(vars);
+		sfg.setOption(BPOptions.updateApproach, UpdateApproach.NORMAL);
+		fg.solve();
+		final double[][] normalBeliefs = beliefs(vars);
+		for (int i = 0; i < vars.length; ++i)
+		{
+			assertArrayEquals(normalBeliefs[i], optimizedBeliefs[i], 1e-12);
+		}
+
+		// Changes to the sparse structure and to the sparse threshold do.
+		sfg.setOption(BPOptions.updateApproach, UpdateApproach.OPTIMIZED);
+		shared.setWeightForIndices(0.0, 0, 0, 0);
+		shared.compact();
+		sfg.initialize();
+		assertEquals(5, cache.getHits());
+		assertEquals(3, cache.getMisses());
+		sfg.setOption(BPOptions.optimizedUpdateSparseThreshold, 0.5);
+		sfg.initialize();
+		assertEquals(5, cache.getHits());
+		assertEquals(5, cache.getMisses());
+
+		// Entries for tables that are no longer used are dropped.
+		fg.remove(otherFactor);
+		sfg.initialize();
+		assertEquals(1, cache.size());
+		assertEquals(6, cache.getHits());
+
+		// Automatic approach decisions are cached along with the plans.
+		sfg.setOption(BPOptions.updateApproach, UpdateApproach.AUTOMATIC);
+		sfg.initialize();
+		final long hits = cache.getHits();
+		final UpdateApproach decision = getSumProductFactorTable(fg.getFactors().iterator().next()).getAutomaticUpdateApproach();
+		sfg.initialize();
+		assertEquals(decision == UpdateApproach.OPTIMIZED ? hits + 2 : hits + 1, cache.getHits());
+		assertEquals(decision, getSumProductFactorTable(fg.getFactors().iterator().next()).getAutomaticUpdateApproach());
+	}
+
+	private static double[] randomWeights(Random rand, int size)
+	{
+		final double[] weights = new double[size];
+		for (int i = 0; i < size; ++i)
+		{
+			weights[i] = rand.nextDouble() + .01;
+		}
+		return weights;
+	}
+
+	private static double[][] beliefs(Discrete[] vars)
+	{
+		final double[][] beliefs = new double[vars.length][];
+		for (int i = 0; i < vars.length; ++i)
+		{
+			beliefs[i] = vars[i].getBelief();
+		}
+		return beliefs;
+	}
+
 	static public class Graph
 	{
 		private static Random _rnd = new Random();
@@ -34,6 +34,7 @@ import com.analog.lyric.dimple.solvers.minsum.MinSumSolver;
 import com.analog.lyric.dimple.solvers.optimizedupdate.UpdateApproach;
 import com.analog.lyric.dimple.solvers.sumproduct.Solver;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductDiscrete;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductOptions;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductTableFactor;
@@ -61,6 +62,10 @@ public class TestSumProductOptions extends DimpleTestBase
 		assertEquals(1.0, BPOptions.automaticExecutionTimeScalingFactor.defaultValue(), 1.0e-9);
 		assertEquals(10.0, BPOptions.automaticMemoryAllocationScalingFactor.defaultValue(), 1.0e-9);
 		assertEquals(1.0, BPOptions.optimizedUpdateSparseThreshold.defaultValue(), 1.0e-9);
+		assertFalse(SumProductOptions.logDomainVariableUpdates.defaultValue());
+		assertFalse(SumProductOptions.sampledFactorWarmStart.defaultValue());
+		assertEquals(1, (int)SumProductOptions.sampledFactorWarmStartBurnInScans.defaultValue());
+		assertFalse(SumProductOptions.sampledFactorShareSamples.defaultValue());
 		
 		final int nVars = 4;
 		FactorGraph fg = new FactorGraph();